@@ -0,0 +1,128 @@
+package org.gicentre.handy.server;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+import org.gicentre.handy.HandyRenderer;
+import org.gicentre.handy.SVGRecorder;
+import org.gicentre.handy.batch.SceneDescription;
+
+import processing.core.PGraphics;
+import processing.core.PGraphicsJava2D;
+
+//*****************************************************************************************
+/** Offscreen drawing surfaces and renderer that are borrowed by one request at a time. The
+ *  raster and vector surfaces are kept between requests and only replaced when a scene of a
+ *  different size is drawn, so a warmed-up canvas renders without allocating new contexts.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class Canvas
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private PGraphicsJava2D graphics;		// Raster drawing surface.
+	private BufferedImage image;			// Image into which raster output is copied for encoding.
+	private SVGRecorder svg;				// Vector drawing surface.
+	private HandyRenderer handy;			// Renderer shared by both surfaces.
+	private ByteArrayOutputStream encoded;	// Reusable buffer holding the encoded image.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a canvas whose surfaces will be allocated when first used.
+	 */
+	Canvas()
+	{
+		encoded = new ByteArrayOutputStream(64*1024);
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Draws the given scene and encodes it as a PNG image.
+	 *  @param scene Scene to draw.
+	 *  @return Encoded PNG image.
+	 *  @throws IOException If the image cannot be encoded.
+	 */
+	byte[] renderPNG(SceneDescription scene) throws IOException
+	{
+		int width = scene.getWidth();
+		int height = scene.getHeight();
+
+		if ((graphics == null) || (graphics.width != width) || (graphics.height != height))
+		{
+			graphics = new PGraphicsJava2D();
+			graphics.setPrimary(false);
+			graphics.setSize(width,height);
+			graphics.smooth();
+			image = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
+		}
+
+		setGraphics(graphics);
+		graphics.beginDraw();
+		scene.draw(handy);
+		graphics.endDraw();
+		graphics.loadPixels();
+		image.setRGB(0,0,width,height,graphics.pixels,0,width);
+
+		encoded.reset();
+		if (ImageIO.write(image,"png",encoded) == false)
+		{
+			throw new IOException("No PNG writer available.");
+		}
+		return encoded.toByteArray();
+	}
+
+	/** Draws the given scene and encodes it as an SVG document.
+	 *  @param scene Scene to draw.
+	 *  @return UTF-8 encoded SVG document.
+	 */
+	byte[] renderSVG(SceneDescription scene)
+	{
+		if ((svg == null) || (svg.getWidth() != scene.getWidth()) || (svg.getHeight() != scene.getHeight()))
+		{
+			svg = new SVGRecorder(scene.getWidth(),scene.getHeight());
+		}
+
+		svg.clear();
+		setGraphics(svg.getGraphics());
+		scene.draw(handy);
+		return svg.getSVG().getBytes(StandardCharsets.UTF_8);
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Directs the canvas's renderer to the given surface, creating the renderer if necessary.
+	 *  @param g Surface on which to draw.
+	 */
+	private void setGraphics(PGraphics g)
+	{
+		if (handy == null)
+		{
+			handy = new HandyRenderer(g);
+		}
+		else if (handy.getGraphics() != g)
+		{
+			handy.setGraphics(g);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package org.gicentre.handy.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//*****************************************************************************************
+/** Fixed-size pool of canvases shared between concurrent requests. The number of canvases
+ *  bounds the number of scenes drawn at once and so the memory used by drawing surfaces,
+ *  however many requests are waiting. A request that cannot obtain a canvas within a given
+ *  time is refused rather than queued indefinitely.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class CanvasPool
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private BlockingQueue<Canvas> idle;		// Canvases not currently in use.
+	private int size;						// Total number of canvases in the pool.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a pool containing the given number of canvases.
+	 *  @param size Number of canvases in the pool.
+	 */
+	CanvasPool(int size)
+	{
+		this.size = Math.max(1,size);
+		idle = new ArrayBlockingQueue<Canvas>(this.size);
+		for (int i=0; i<this.size; i++)
+		{
+			idle.add(new Canvas());
+		}
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Borrows a canvas from the pool, waiting up to the given time for one to become free.
+	 *  @param timeout Maximum time to wait in milliseconds.
+	 *  @return Canvas to draw on, or null if none became free in time.
+	 *  @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	Canvas acquire(long timeout) throws InterruptedException
+	{
+		return idle.poll(timeout,TimeUnit.MILLISECONDS);
+	}
+
+	/** Returns a borrowed canvas to the pool.
+	 *  @param canvas Canvas that is no longer in use.
+	 */
+	void release(Canvas canvas)
+	{
+		idle.offer(canvas);
+	}
+
+	/** Reports the total number of canvases in the pool.
+	 *  @return Pool size.
+	 */
+	int getSize()
+	{
+		return size;
+	}
+
+	/** Reports the number of canvases currently in use.
+	 *  @return Number of borrowed canvases.
+	 */
+	int getNumInUse()
+	{
+		return size-idle.size();
+	}
+}
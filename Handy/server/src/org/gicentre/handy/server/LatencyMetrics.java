@@ -0,0 +1,124 @@
+package org.gicentre.handy.server;
+
+import java.util.Arrays;
+
+//*****************************************************************************************
+/** Request counts and latency percentiles for the render service. Latencies of the most
+ *  recent requests are kept in a fixed-size ring so that percentiles reflect current load
+ *  and the cost of recording does not grow with the lifetime of the server.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class LatencyMetrics
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private long[] latencies;			// Ring of recent latencies in nanoseconds.
+	private int next;					// Position in the ring of the next latency to record.
+	private int numStored;				// Number of latencies in the ring.
+
+	private long numRendered;			// Number of successfully rendered requests.
+	private long numRejected;			// Number of requests refused because no canvas was free.
+	private long numFailed;				// Number of requests that could not be rendered.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates metrics that keep the latencies of the given number of recent requests.
+	 *  @param windowSize Number of recent latencies used to calculate percentiles.
+	 */
+	LatencyMetrics(int windowSize)
+	{
+		latencies = new long[Math.max(1,windowSize)];
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Records a successfully rendered request.
+	 *  @param latency Time from receipt of the request to completion of the response in nanoseconds.
+	 */
+	synchronized void addRendered(long latency)
+	{
+		latencies[next] = latency;
+		next = (next+1)%latencies.length;
+		numStored = Math.min(numStored+1,latencies.length);
+		numRendered++;
+	}
+
+	/** Records a request that was refused because the service was at capacity.
+	 */
+	synchronized void addRejected()
+	{
+		numRejected++;
+	}
+
+	/** Records a request that could not be rendered.
+	 */
+	synchronized void addFailed()
+	{
+		numFailed++;
+	}
+
+	/** Provides the metrics in a plain text format with one <code>name value</code> pair per line.
+	 *  Latencies are given in milliseconds.
+	 *  @param numInUse Number of canvases currently in use.
+	 *  @param poolSize Total number of canvases.
+	 *  @return Text describing the current metrics.
+	 */
+	String report(int numInUse, int poolSize)
+	{
+		long[] sorted;
+		StringBuilder text = new StringBuilder();
+		synchronized (this)
+		{
+			sorted = Arrays.copyOf(latencies,numStored);
+			text.append("handy_requests_rendered ").append(numRendered).append('\n');
+			text.append("handy_requests_rejected ").append(numRejected).append('\n');
+			text.append("handy_requests_failed ").append(numFailed).append('\n');
+		}
+		Arrays.sort(sorted);
+
+		text.append("handy_canvases_in_use ").append(numInUse).append('\n');
+		text.append("handy_canvases_total ").append(poolSize).append('\n');
+		appendPercentile(text,"0.5",sorted,50);
+		appendPercentile(text,"0.95",sorted,95);
+		appendPercentile(text,"0.99",sorted,99);
+		appendPercentile(text,"1",sorted,100);
+		return text.toString();
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Appends a latency percentile to the given report.
+	 *  @param text Report to which the percentile is added.
+	 *  @param label Quantile label.
+	 *  @param sorted Sorted latencies in nanoseconds.
+	 *  @param percentile Percentile to report between 0 and 100.
+	 */
+	private static void appendPercentile(StringBuilder text, String label, long[] sorted, int percentile)
+	{
+		double value = 0;
+		if (sorted.length > 0)
+		{
+			int index = (int)Math.ceil(percentile/100.0*sorted.length)-1;
+			value = sorted[Math.max(0,index)]/1e6;
+		}
+		text.append("handy_latency_ms{quantile=\"").append(label).append("\"} ")
+			.append(String.format("%.3f",Double.valueOf(value))).append('\n');
+	}
+}
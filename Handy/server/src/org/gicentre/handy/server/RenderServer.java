@@ -0,0 +1,355 @@
+package org.gicentre.handy.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.InetAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.gicentre.handy.batch.SceneDescription;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+//*****************************************************************************************
+/** Local HTTP service that renders sketchy scenes on request. Scenes are posted as the text
+ *  of a <code>SceneDescription</code> to <code>/render</code> and returned as PNG or SVG images:
+ *  <pre>
+ *  curl --data-binary @chart.txt "http://localhost:8080/render?format=svg&amp;seed=42"
+ *  </pre>
+ *  The optional <code>seed</code> parameter replaces the scene's own seed so that callers can
+ *  request repeatable variations of the same scene. Each request is handled on its own virtual
+ *  thread but drawing is limited to a fixed pool of canvases. A request that cannot obtain a
+ *  canvas within a short time receives a <code>503</code> response with a <code>Retry-After</code>
+ *  header so that callers back off rather than queue without limit. Request counts and latency
+ *  percentiles are available as plain text from <code>/metrics</code>. The service only listens
+ *  on the loopback interface. Must be compiled and run with JDK 21 or later, separately from the
+ *  main library, as described in the package documentation. Can be run with:
+ *  <pre>
+ *  java org.gicentre.handy.server.RenderServer [-port n] [-canvases n] [-wait milliseconds]
+ *  </pre>
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class RenderServer
+{
+	// ----------------------------- Class and object Variables ---------------------------
+
+	private static final int MAX_BODY_SIZE = 1024*1024;	// Largest scene description accepted in bytes.
+	private static final int LATENCY_WINDOW = 4096;		// Number of recent requests used for percentiles.
+
+	private HttpServer server;				// Server handling HTTP connections.
+	private ExecutorService executor;		// Creates a virtual thread for each request.
+	private CanvasPool canvases;			// Canvases shared between requests.
+	private LatencyMetrics metrics;			// Request counts and latencies.
+	private long maxWait;					// Time to wait for a free canvas in milliseconds.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a render service that will listen on the given local port once started.
+	 *  @param port Port on which to listen, or 0 to use any free port.
+	 *  @param numCanvases Maximum number of scenes that may be drawn at once.
+	 *  @param maxWait Time in milliseconds a request may wait for a free canvas before being refused.
+	 *  @throws IOException If the server cannot be bound to the port.
+	 */
+	public RenderServer(int port, int numCanvases, long maxWait) throws IOException
+	{
+		this.canvases = new CanvasPool(numCanvases);
+		this.metrics = new LatencyMetrics(LATENCY_WINDOW);
+		this.maxWait = Math.max(0,maxWait);
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),port),0);
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		server.setExecutor(executor);
+
+		server.createContext("/render", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				handleRender(exchange);
+			}
+		});
+
+		server.createContext("/metrics", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				String text = metrics.report(canvases.getNumInUse(),canvases.getSize());
+				send(exchange,200,"text/plain; charset=utf-8",text.getBytes(StandardCharsets.UTF_8));
+			}
+		});
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Starts accepting requests.
+	 */
+	public void start()
+	{
+		server.start();
+	}
+
+	/** Stops accepting requests, allowing any being handled up to the given time to complete.
+	 *  @param delay Maximum time to wait for current requests in seconds.
+	 */
+	public void stop(int delay)
+	{
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/** Reports the port on which the service is listening.
+	 *  @return Local port number.
+	 */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/** Starts a render service using the settings given on the command line.
+	 *  @param args Optional <code>-port n</code>, <code>-canvases n</code> and <code>-wait milliseconds</code> settings.
+	 */
+	public static void main(String[] args)
+	{
+		if (System.getProperty("java.awt.headless") == null)
+		{
+			System.setProperty("java.awt.headless","true");
+		}
+
+		int port = 8080;
+		int numCanvases = Runtime.getRuntime().availableProcessors();
+		long maxWait = 250;
+
+		for (int i=0; i<args.length-1; i+=2)
+		{
+			if (args[i].equals("-port"))
+			{
+				port = Integer.parseInt(args[i+1]);
+			}
+			else if (args[i].equals("-canvases"))
+			{
+				numCanvases = Integer.parseInt(args[i+1]);
+			}
+			else if (args[i].equals("-wait"))
+			{
+				maxWait = Long.parseLong(args[i+1]);
+			}
+			else
+			{
+				System.err.println("Usage: RenderServer [-port n] [-canvases n] [-wait milliseconds]");
+				return;
+			}
+		}
+
+		try
+		{
+			RenderServer renderServer = new RenderServer(port,numCanvases,maxWait);
+			renderServer.start();
+			System.out.println("Handy render service listening on port "+renderServer.getPort());
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot start render service: "+e.getMessage());
+		}
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Renders the scene described in the body of the given request.
+	 *  @param exchange Request and response.
+	 *  @throws IOException If the response cannot be sent.
+	 */
+	private void handleRender(HttpExchange exchange) throws IOException
+	{
+		long start = System.nanoTime();
+
+		if (exchange.getRequestMethod().equalsIgnoreCase("POST") == false)
+		{
+			exchange.getResponseHeaders().set("Allow","POST");
+			sendText(exchange,405,"Scenes must be sent with POST.");
+			return;
+		}
+
+		String format = "png";
+		Long seed = null;
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null)
+		{
+			for (String param : query.split("&"))
+			{
+				int equals = param.indexOf('=');
+				String key = equals < 0 ? param : param.substring(0,equals);
+				String value = equals < 0 ? "" : URLDecoder.decode(param.substring(equals+1),"UTF-8");
+				if (key.equals("format"))
+				{
+					format = value.toLowerCase();
+				}
+				else if (key.equals("seed"))
+				{
+					try
+					{
+						seed = Long.valueOf(value);
+					}
+					catch (NumberFormatException e)
+					{
+						sendText(exchange,400,"Seed must be an integer.");
+						return;
+					}
+				}
+			}
+		}
+		if ((format.equals("png") == false) && (format.equals("svg") == false))
+		{
+			sendText(exchange,400,"Format must be png or svg.");
+			return;
+		}
+
+		byte[] body = readBody(exchange.getRequestBody());
+		if (body == null)
+		{
+			sendText(exchange,413,"Scene description is too large.");
+			return;
+		}
+
+		SceneDescription scene;
+		try
+		{
+			scene = SceneDescription.parse("request",new String(body,StandardCharsets.UTF_8));
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Malformed scenes, including those too large to render, are rejected before a canvas is used.
+			sendText(exchange,400,e.getMessage());
+			return;
+		}
+		if (seed != null)
+		{
+			scene.setSeed(seed.longValue());
+		}
+
+		Canvas canvas;
+		try
+		{
+			canvas = canvases.acquire(maxWait);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			canvas = null;
+		}
+
+		if (canvas == null)
+		{
+			metrics.addRejected();
+			exchange.getResponseHeaders().set("Retry-After","1");
+			sendText(exchange,503,"All canvases are busy, try again later.");
+			return;
+		}
+
+		byte[] image;
+		try
+		{
+			image = format.equals("png") ? canvas.renderPNG(scene) : canvas.renderSVG(scene);
+		}
+		catch (RuntimeException e)
+		{
+			image = null;
+			System.err.println("Problem rendering scene: "+e);
+		}
+		catch (IOException e)
+		{
+			image = null;
+			System.err.println("Problem encoding scene: "+e);
+		}
+		finally
+		{
+			canvases.release(canvas);
+		}
+
+		if (image == null)
+		{
+			metrics.addFailed();
+			sendText(exchange,500,"Scene could not be rendered.");
+			return;
+		}
+
+		send(exchange,200,format.equals("png") ? "image/png" : "image/svg+xml",image);
+		metrics.addRendered(System.nanoTime()-start);
+	}
+
+	/** Reads the body of a request, stopping if it exceeds the maximum size allowed.
+	 *  @param in Stream providing the request body.
+	 *  @return Content of the body, or null if it was too large.
+	 *  @throws IOException If the body cannot be read.
+	 */
+	private static byte[] readBody(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+		byte[] buffer = new byte[8192];
+		int numRead;
+		while ((numRead = in.read(buffer)) > 0)
+		{
+			if (body.size()+numRead > MAX_BODY_SIZE)
+			{
+				return null;
+			}
+			body.write(buffer,0,numRead);
+		}
+		return body.toByteArray();
+	}
+
+	/** Sends a plain text response.
+	 *  @param exchange Request and response.
+	 *  @param status HTTP status code.
+	 *  @param message Text of the response.
+	 *  @throws IOException If the response cannot be sent.
+	 */
+	private static void sendText(HttpExchange exchange, int status, String message) throws IOException
+	{
+		send(exchange,status,"text/plain; charset=utf-8",(message+"\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Sends a response with the given content.
+	 *  @param exchange Request and response.
+	 *  @param status HTTP status code.
+	 *  @param contentType MIME type of the content.
+	 *  @param content Body of the response.
+	 *  @throws IOException If the response cannot be sent.
+	 */
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] content) throws IOException
+	{
+		exchange.getResponseHeaders().set("Content-Type",contentType);
+		exchange.sendResponseHeaders(status,content.length);
+		OutputStream out = exchange.getResponseBody();
+		try
+		{
+			out.write(content);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package org.gicentre.handy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+//*****************************************************************************************
+/** Stores simplified versions of the boundaries of shapes and lines so that detailed boundaries
+ *  drawn repeatedly at the same scale only need to be simplified once. Boundaries are identified
+ *  by the array that holds their x coordinates. Each entry also records a hash of the coordinates
+ *  and the tolerance with which it was simplified, so arrays whose contents have changed, or that
+ *  are drawn with different y coordinates or roughness, are simplified again rather than drawn
+ *  with stale geometry. Entries are held only as long as their arrays are in use elsewhere. Each
+ *  boundary may be stored at several scales, grouped into buckets a quarter of a doubling in
+ *  scale apart, so that zooming does not continually add new entries.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class BoundaryCache
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	private static final int BUCKETS_PER_DOUBLING = 4;	// Number of scale buckets for every doubling in scale.
+	private static final int MAX_SCALES = 8;			// Maximum number of scales stored for a single boundary.
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private Map<Object,Map<Integer,Boundary>> boundaries;	// Simplified boundaries keyed by source array and scale bucket.
+	private boolean[] keep;									// Reusable flags identifying retained vertices.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates an empty boundary cache.
+	 */
+	BoundaryCache()
+	{
+		boundaries = new WeakHashMap<Object,Map<Integer,Boundary>>();
+		keep = new boolean[256];
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Finds the scale bucket into which the given scale falls.
+	 *  @param scale Scale factor from shape coordinates to pixels.
+	 *  @return Scale bucket.
+	 */
+	static int getBucket(float scale)
+	{
+		return Math.round((float)(Math.log(scale)/Math.log(2))*BUCKETS_PER_DOUBLING);
+	}
+
+	/** Reports the scale represented by the given bucket.
+	 *  @param bucket Scale bucket.
+	 *  @return Scale factor from shape coordinates to pixels.
+	 */
+	static float getScale(int bucket)
+	{
+		return (float)Math.pow(2,bucket/(double)BUCKETS_PER_DOUBLING);
+	}
+
+	/** Provides the stored simplified version of the given boundary if there is one.
+	 *  @param source Array holding the coordinates of the boundary.
+	 *  @param bucket Scale bucket at which the boundary is to be drawn.
+	 *  @param isClosed True if the boundary is drawn as a closed shape, false if as an open line.
+	 *  @param numCoords Number of vertices in the boundary, used to detect arrays that have been resized.
+	 *  @param hash Hash of the boundary's coordinates from <code>hash()</code>, used to detect changed contents.
+	 *  @param tolerance Douglas-Peucker tolerance with which the boundary should have been simplified.
+	 *  @return Simplified boundary or null if it has not been stored or is out of date.
+	 */
+	Boundary get(Object source, int bucket, boolean isClosed, int numCoords, long hash, float tolerance)
+	{
+		Map<Integer,Boundary> scales = boundaries.get(source);
+		if (scales == null)
+		{
+			return null;
+		}
+		Boundary boundary = scales.get(Integer.valueOf(bucket*2 + (isClosed ? 1 : 0)));
+		if ((boundary == null) || (boundary.numSourceCoords != numCoords) || (boundary.sourceHash != hash) ||
+			(boundary.tolerance != tolerance))
+		{
+			return null;
+		}
+		return boundary;
+	}
+
+	/** Simplifies the given boundary and stores the result.
+	 *  @param source Array holding the coordinates of the boundary, used to identify it.
+	 *  @param bucket Scale bucket at which the boundary is to be drawn.
+	 *  @param isClosed True if the boundary is drawn as a closed shape, false if as an open line.
+	 *  @param xCoords x coordinates of all rings of the boundary.
+	 *  @param yCoords y coordinates of all rings of the boundary.
+	 *  @param numCoords Total number of vertices in all rings.
+	 *  @param starts Index of the first vertex of each ring.
+	 *  @param numParts Number of rings.
+	 *  @param hash Hash of the boundary's coordinates from <code>hash()</code>.
+	 *  @param tolerance Douglas-Peucker tolerance in shape coordinates.
+	 *  @return Simplified boundary.
+	 */
+	Boundary add(Object source, int bucket, boolean isClosed, float[] xCoords, float[] yCoords, int numCoords,
+				 int[] starts, int numParts, long hash, float tolerance)
+	{
+		if (keep.length < numCoords)
+		{
+			keep = new boolean[Math.max(keep.length*2,numCoords)];
+		}
+
+		// Identify the retained vertices of each ring, discarding closed rings that collapse.
+		int numKept = 0;
+		int numKeptParts = 0;
+		for (int p=0; p<numParts; p++)
+		{
+			int start = starts[p];
+			int end = (p < numParts-1 ? starts[p+1] : numCoords)-1;
+			int numRingKept = Simplifier.simplify(xCoords,yCoords,start,end,tolerance,keep);
+			if (isClosed && (numRingKept < 3))
+			{
+				for (int i=start; i<=end; i++)
+				{
+					keep[i] = false;
+				}
+			}
+			else
+			{
+				numKept += numRingKept;
+				numKeptParts++;
+			}
+		}
+
+		Boundary boundary;
+		if (numKeptParts == 0)
+		{
+			// Whole boundary is too small to simplify so draw it as it is.
+			boundary = new Boundary(copyOf(xCoords,numCoords),copyOf(yCoords,numCoords),copyOf(starts,numParts),
+									numParts,numCoords,numCoords,hash,tolerance);
+		}
+		else
+		{
+			float[] xs = new float[numKept];
+			float[] ys = new float[numKept];
+			int[] keptStarts = new int[numKeptParts];
+			int i = 0;
+			int part = 0;
+			for (int p=0; p<numParts; p++)
+			{
+				int start = starts[p];
+				int end = p < numParts-1 ? starts[p+1] : numCoords;
+				if (keep[start] == false)
+				{
+					continue;
+				}
+				keptStarts[part++] = i;
+				for (int v=start; v<end; v++)
+				{
+					if (keep[v])
+					{
+						xs[i] = xCoords[v];
+						ys[i] = yCoords[v];
+						i++;
+					}
+				}
+			}
+			boundary = new Boundary(xs,ys,keptStarts,numKeptParts,numKept,numCoords,hash,tolerance);
+		}
+
+		Map<Integer,Boundary> scales = boundaries.get(source);
+		if ((scales == null) || (scales.size() >= MAX_SCALES))
+		{
+			scales = new HashMap<Integer,Boundary>();
+			boundaries.put(source,scales);
+		}
+		scales.put(Integer.valueOf(bucket*2 + (isClosed ? 1 : 0)),boundary);
+		return boundary;
+	}
+
+	/** Calculates a hash of the coordinates of a boundary so that changes to its contents can be detected.
+	 *  @param xCoords x coordinates of the boundary.
+	 *  @param yCoords y coordinates of the boundary.
+	 *  @param numCoords Number of vertices in the boundary.
+	 *  @return Hash of the coordinates.
+	 */
+	static long hash(float[] xCoords, float[] yCoords, int numCoords)
+	{
+		long hash = numCoords;
+		for (int i=0; i<numCoords; i++)
+		{
+			hash = KeyedRandom.hash(KeyedRandom.hash(hash,xCoords[i]),yCoords[i]);
+		}
+		return hash;
+	}
+
+	/** Calculates a hash of the coordinates of a boundary made up of several rings so that changes to its
+	 *  contents can be detected.
+	 *  @param xCoords x coordinates of each ring of the boundary.
+	 *  @param yCoords y coordinates of each ring of the boundary.
+	 *  @return Hash of the coordinates.
+	 */
+	static long hash(float[][] xCoords, float[][] yCoords)
+	{
+		long hash = xCoords.length;
+		for (int r=0; r<xCoords.length; r++)
+		{
+			hash = KeyedRandom.hash(hash,xCoords[r].length) ^ hash(xCoords[r],yCoords[r],xCoords[r].length);
+		}
+		return hash;
+	}
+
+	/** Removes all stored boundaries.
+	 */
+	void clear()
+	{
+		boundaries.clear();
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Provides a copy of the first part of the given array.
+	 *  @param values Array to copy.
+	 *  @param length Number of values to copy.
+	 *  @return New array holding the copied values.
+	 */
+	private static float[] copyOf(float[] values, int length)
+	{
+		float[] copy = new float[length];
+		System.arraycopy(values,0,copy,0,length);
+		return copy;
+	}
+
+	/** Provides a copy of the first part of the given array.
+	 *  @param values Array to copy.
+	 *  @param length Number of values to copy.
+	 *  @return New array holding the copied values.
+	 */
+	private static int[] copyOf(int[] values, int length)
+	{
+		int[] copy = new int[length];
+		System.arraycopy(values,0,copy,0,length);
+		return copy;
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** Simplified boundary made up of one or more rings stored consecutively.
+	 */
+	static class Boundary
+	{
+		final float[] xs, ys;			// Vertices of all rings.
+		final int[] starts;				// Index of the first vertex of each ring.
+		final int numParts;				// Number of rings.
+		final int numCoords;			// Total number of vertices.
+		final int numSourceCoords;		// Number of vertices in the boundary before simplification.
+		final long sourceHash;			// Hash of the coordinates of the boundary before simplification.
+		final float tolerance;			// Douglas-Peucker tolerance with which the boundary was simplified.
+
+		Boundary(float[] xs, float[] ys, int[] starts, int numParts, int numCoords, int numSourceCoords,
+				 long sourceHash, float tolerance)
+		{
+			this.xs = xs;
+			this.ys = ys;
+			this.starts = starts;
+			this.numParts = numParts;
+			this.numCoords = numCoords;
+			this.numSourceCoords = numSourceCoords;
+			this.sourceHash = sourceHash;
+			this.tolerance = tolerance;
+		}
+	}
+}
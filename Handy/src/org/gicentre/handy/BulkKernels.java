@@ -0,0 +1,196 @@
+package org.gicentre.handy;
+
+//*****************************************************************************************
+/** Bulk numerical operations used when drawing shapes with many vertices. This class provides
+ *  scalar implementations that run on any Java platform. If the optional vector source root
+ *  (<code>Handy/vector/src</code>) has been compiled and the <code>jdk.incubator.vector</code>
+ *  module is available at run time, <code>getInstance()</code> instead provides a subclass that
+ *  performs the same operations with SIMD instructions. Both produce identical results, so drawing
+ *  does not depend on which is used. Vector kernels can be disabled by setting the system property
+ *  <code>handy.vector</code> to <code>false</code>.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class BulkKernels
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private static final String VECTOR_CLASS = "org.gicentre.handy.VectorKernels";
+	private static BulkKernels instance;		// Fastest kernels available on this platform.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates the scalar implementation of the bulk kernels.
+	 */
+	BulkKernels()
+	{
+		// Nothing to initialise.
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Provides the fastest kernels available on this platform. Vector kernels are loaded by reflection
+	 *  so that the library can still be compiled and run on platforms without the vector API.
+	 *  @return Bulk kernels to use for drawing.
+	 */
+	static synchronized BulkKernels getInstance()
+	{
+		if (instance == null)
+		{
+			if (!"false".equalsIgnoreCase(System.getProperty("handy.vector")))
+			{
+				try
+				{
+					instance = (BulkKernels)Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+				}
+				catch (Exception e)
+				{
+					// Vector kernels not compiled, so use scalar kernels.
+				}
+				catch (LinkageError e)
+				{
+					// Vector API module not available at run time, so use scalar kernels.
+				}
+			}
+			if (instance == null)
+			{
+				instance = new BulkKernels();
+			}
+		}
+		return instance;
+	}
+
+	/** Reports the name of this implementation of the kernels.
+	 *  @return Description of the kernels.
+	 */
+	String getName()
+	{
+		return "scalar";
+	}
+
+	/** Finds the smallest and largest values in part of an array.
+	 *  @param values Values to search.
+	 *  @param start Index of the first value to consider.
+	 *  @param end Index one beyond the last value to consider. Must be greater than <code>start</code>.
+	 *  @param range Array into which the minimum and maximum values are placed.
+	 */
+	void range(float[] values, int start, int end, float[] range)
+	{
+		float min = values[start];
+		float max = values[start];
+		for (int i=start+1; i<end; i++)
+		{
+			min = Math.min(min,values[i]);
+			max = Math.max(max,values[i]);
+		}
+		range[0] = min;
+		range[1] = max;
+	}
+
+	/** Converts uniform random numbers between 0 and 1 into random offsets in place. Each value v becomes
+	 *  <code>scale*(v*(maxVal-minVal)+minVal)</code>, matching the offsets generated for single points so that
+	 *  random numbers may be drawn first and converted in bulk without changing the result.
+	 *  @param values Random numbers to convert.
+	 *  @param start Index of the first value to convert.
+	 *  @param end Index one beyond the last value to convert.
+	 *  @param minVal Offset corresponding to a random number of 0 before scaling.
+	 *  @param maxVal Offset corresponding to a random number of 1 before scaling.
+	 *  @param scale Scaling applied to each offset, usually the renderer's roughness.
+	 */
+	void offsets(float[] values, int start, int end, float minVal, float maxVal, float scale)
+	{
+		float range = maxVal-minVal;
+		for (int i=start; i<end; i++)
+		{
+			values[i] = scale*(values[i]*range+minVal);
+		}
+	}
+
+	/** Applies the affine transformation (a*x + b*y + c, d*x + e*y + f) to a set of points in place.
+	 *  @param xs x coordinates of the points.
+	 *  @param ys y coordinates of the points.
+	 *  @param start Index of the first point to transform.
+	 *  @param end Index one beyond the last point to transform.
+	 *  @param a Scaling of x coordinates contributing to the new x coordinate.
+	 *  @param b Scaling of y coordinates contributing to the new x coordinate.
+	 *  @param c Translation of the new x coordinate.
+	 *  @param d Scaling of x coordinates contributing to the new y coordinate.
+	 *  @param e Scaling of y coordinates contributing to the new y coordinate.
+	 *  @param f Translation of the new y coordinate.
+	 */
+	void transform(float[] xs, float[] ys, int start, int end, float a, float b, float c, float d, float e, float f)
+	{
+		for (int i=start; i<end; i++)
+		{
+			float x = xs[i];
+			float y = ys[i];
+			xs[i] = a*x + b*y + c;
+			ys[i] = d*x + e*y + f;
+		}
+	}
+
+	/** Finds the vertex between two others that is furthest from the straight segment joining them. This
+	 *  is the core of Douglas-Peucker simplification.
+	 *  @param xs x coordinates of the line.
+	 *  @param ys y coordinates of the line.
+	 *  @param first Index of the vertex at the start of the segment.
+	 *  @param last Index of the vertex at the end of the segment.
+	 *  @param tolSq Squared distance that the furthest vertex must exceed.
+	 *  @return Index of the first of the furthest vertices, or -1 if no vertex is further than the tolerance.
+	 */
+	int furthestPoint(float[] xs, float[] ys, int first, int last, float tolSq)
+	{
+		float ax = xs[first];
+		float ay = ys[first];
+		float ex = xs[last]-ax;
+		float ey = ys[last]-ay;
+		float lenSq = ex*ex + ey*ey;
+		float invLenSq = (lenSq > 0) ? 1/lenSq : 0;
+
+		float maxDistSq = tolSq;
+		int furthest = -1;
+		for (int i=first+1; i<last; i++)
+		{
+			float distSq = segmentDistSq(xs[i]-ax,ys[i]-ay,ex,ey,invLenSq);
+			if (distSq > maxDistSq)
+			{
+				maxDistSq = distSq;
+				furthest = i;
+			}
+		}
+		return furthest;
+	}
+
+	/** Calculates the squared distance between a point and a segment starting at the origin. Vector kernels
+	 *  must perform exactly the same operations so that results do not depend on the implementation.
+	 *  @param px x coordinate of the point relative to the start of the segment.
+	 *  @param py y coordinate of the point relative to the start of the segment.
+	 *  @param ex x coordinate of the end of the segment relative to its start.
+	 *  @param ey y coordinate of the end of the segment relative to its start.
+	 *  @param invLenSq Reciprocal of the squared length of the segment, or 0 if it has zero length.
+	 *  @return Squared distance from the point to the nearest point on the segment.
+	 */
+	static float segmentDistSq(float px, float py, float ex, float ey, float invLenSq)
+	{
+		float u = Math.min(1,Math.max(0,(px*ex + py*ey)*invLenSq));
+		float dx = px - u*ex;
+		float dy = py - u*ey;
+		return dx*dx + dy*dy;
+	}
+}
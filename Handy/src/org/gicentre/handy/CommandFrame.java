@@ -0,0 +1,512 @@
+package org.gicentre.handy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PMatrix2D;
+
+//*****************************************************************************************
+/** Drawing commands captured from a sketch over a single frame, together with the sketchy
+ *  geometry generated from them. Commands are stored in flat primitive arrays, so capturing
+ *  one costs little more than copying its arguments. Styles and transformations are stored
+ *  in tables that grow only when they change, and each command refers to its entries by index.
+ *  Once the frame has been captured, its commands are divided into contiguous chunks and each
+ *  chunk is converted to sketchy geometry on a worker thread by its own copy of the handy
+ *  renderer, using keyed seeds so that the appearance of each mark does not depend on how the
+ *  frame was divided. The recorded geometry of all chunks is then drawn in command order.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class CommandFrame
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	static final int POINT      = 0;		// Command codes.
+	static final int LINE       = 1;
+	static final int RECT       = 2;
+	static final int ELLIPSE    = 3;
+	static final int TRIANGLE   = 4;
+	static final int QUAD       = 5;
+	static final int ARC        = 6;
+	static final int SHAPE      = 7;
+	static final int BACKGROUND = 8;
+
+	static final int VERTEX        = 0;		// Vertex types stored with the coordinates of a shape.
+	static final int CURVE_VERTEX  = 1;
+	static final int BEGIN_CONTOUR = 2;
+	static final int END_CONTOUR   = 3;
+
+	private static final int CMD_SIZE   = 6;	// Values stored for each command, style and matrix.
+	private static final int STYLE_SIZE = 7;
+	private static final int MATRIX_SIZE= 6;
+	private static final int MIN_CHUNK  = 64;	// Smallest number of commands worth giving to a worker.
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private int[] commands;						// Code, first argument, number of arguments, style, matrix and extra value of each command.
+	private int numCommands;
+	private float[] args;						// Arguments of all commands.
+	private int numArgs;
+	private int[] styles;						// Fill, fill colour, stroke, stroke colour, weight, rect and ellipse modes.
+	private int numStyles;
+	private float[] matrices;					// Affine transformation in force for each group of commands.
+	private int numMatrices;
+	private int shapeStart;						// Index of the first argument of the shape being captured.
+
+	private Slot[] slots;						// Renderer and recorder used to process each chunk of commands.
+	private List<Future<Slot>> results;			// Pending processing of each chunk.
+	private int numChunks;
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates an empty frame that can be reused for any number of frames.
+	 *  @param handy Renderer whose settings are copied by each worker.
+	 *  @param numWorkers Maximum number of chunks into which the frame is divided.
+	 *  @param seed Seed that determines the appearance of the frame's marks.
+	 */
+	CommandFrame(HandyRenderer handy, int numWorkers, long seed)
+	{
+		commands = new int[CMD_SIZE*256];
+		args     = new float[1024];
+		styles   = new int[STYLE_SIZE*16];
+		matrices = new float[MATRIX_SIZE*16];
+		results  = new ArrayList<Future<Slot>>();
+
+		slots = new Slot[Math.max(1,numWorkers)];
+		for (int i=0; i<slots.length; i++)
+		{
+			slots[i] = new Slot(handy,seed);
+		}
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Removes all captured commands so that the next frame can be captured.
+	 */
+	void clear()
+	{
+		numCommands = 0;
+		numArgs     = 0;
+		numStyles   = 0;
+		numMatrices = 0;
+		numChunks   = 0;
+		results.clear();
+	}
+
+	/** Reports the number of commands captured in this frame.
+	 *  @return Number of captured commands.
+	 */
+	int getNumCommands()
+	{
+		return numCommands;
+	}
+
+	/** Sets the seed that determines the appearance of the frame's marks.
+	 *  @param seed Random number seed.
+	 */
+	void setSeed(long seed)
+	{
+		for (Slot slot : slots)
+		{
+			slot.handy.setSeed(seed);
+		}
+	}
+
+	/** Adds a style to the style table. Subsequent commands are drawn with this style.
+	 *  @param g Graphics context holding the style to add.
+	 */
+	void addStyle(PGraphics g)
+	{
+		if (numStyles*STYLE_SIZE == styles.length)
+		{
+			int[] newStyles = new int[styles.length*2];
+			System.arraycopy(styles,0,newStyles,0,styles.length);
+			styles = newStyles;
+		}
+		int i = numStyles*STYLE_SIZE;
+		styles[i]   = g.fill ? 1 : 0;
+		styles[i+1] = g.fillColor;
+		styles[i+2] = g.stroke ? 1 : 0;
+		styles[i+3] = g.strokeColor;
+		styles[i+4] = Float.floatToIntBits(g.strokeWeight);
+		styles[i+5] = g.rectMode;
+		styles[i+6] = g.ellipseMode;
+		numStyles++;
+	}
+
+	/** Reports whether the given graphics context has a different style from the last one added.
+	 *  @param g Graphics context to compare.
+	 *  @return True if no style has been added or the style of the context differs from the last one added.
+	 */
+	boolean isNewStyle(PGraphics g)
+	{
+		if (numStyles == 0)
+		{
+			return true;
+		}
+		int i = (numStyles-1)*STYLE_SIZE;
+		return (styles[i] != (g.fill ? 1 : 0)) || (styles[i+1] != g.fillColor) ||
+			   (styles[i+2] != (g.stroke ? 1 : 0)) || (styles[i+3] != g.strokeColor) ||
+			   (styles[i+4] != Float.floatToIntBits(g.strokeWeight)) ||
+			   (styles[i+5] != g.rectMode) || (styles[i+6] != g.ellipseMode);
+	}
+
+	/** Adds a transformation to the matrix table. Subsequent commands are drawn with this transformation.
+	 *  @param m Transformation to add.
+	 */
+	void addMatrix(PMatrix2D m)
+	{
+		if (numMatrices*MATRIX_SIZE == matrices.length)
+		{
+			float[] newMatrices = new float[matrices.length*2];
+			System.arraycopy(matrices,0,newMatrices,0,matrices.length);
+			matrices = newMatrices;
+		}
+		int i = numMatrices*MATRIX_SIZE;
+		matrices[i]   = m.m00;
+		matrices[i+1] = m.m01;
+		matrices[i+2] = m.m02;
+		matrices[i+3] = m.m10;
+		matrices[i+4] = m.m11;
+		matrices[i+5] = m.m12;
+		numMatrices++;
+	}
+
+	/** Adds a command whose arguments are the given values.
+	 *  @param code Command code.
+	 *  @param extra Additional integer value stored with the command.
+	 *  @param values Arguments of the command.
+	 */
+	void add(int code, int extra, float... values)
+	{
+		addCommand(code,numArgs,values.length,extra);
+		ensureArgCapacity(values.length);
+		System.arraycopy(values,0,args,numArgs,values.length);
+		numArgs += values.length;
+	}
+
+	/** Starts capturing the vertices of a shape.
+	 */
+	void beginShape()
+	{
+		shapeStart = numArgs;
+	}
+
+	/** Adds a vertex, or the start or end of a contour, to the shape being captured.
+	 *  @param type Type of vertex.
+	 *  @param x x coordinate of the vertex.
+	 *  @param y y coordinate of the vertex.
+	 */
+	void vertex(int type, float x, float y)
+	{
+		ensureArgCapacity(3);
+		args[numArgs++] = type;
+		args[numArgs++] = x;
+		args[numArgs++] = y;
+	}
+
+	/** Adds the shape whose vertices have been captured since <code>beginShape()</code> was called.
+	 *  @param mode Processing shape mode, shifted left one bit, with the lowest bit set if the shape is closed.
+	 */
+	void endShape(int mode)
+	{
+		addCommand(SHAPE,shapeStart,numArgs-shapeStart,mode);
+	}
+
+	/** Divides the captured commands into chunks and starts generating their sketchy geometry.
+	 *  @param workers Threads on which the geometry is generated.
+	 *  @param style Sketchy style in which the frame is drawn.
+	 */
+	void submit(ExecutorService workers, HandyStyle style)
+	{
+		numChunks = Math.max(1,Math.min(slots.length,numCommands/MIN_CHUNK));
+		for (int c=0; c<numChunks; c++)
+		{
+			final Slot slot = slots[c];
+			slot.prepare(style,(int)((long)numCommands*c/numChunks),
+						 (int)((long)numCommands*(c+1)/numChunks));
+			results.add(workers.submit(new Callable<Slot>()
+			{
+				public Slot call()
+				{
+					slot.process();
+					return slot;
+				}
+			}));
+		}
+	}
+
+	/** Waits for the geometry of every chunk to be generated and draws it into the given graphics context.
+	 *  @param g Graphics context into which the frame is drawn.
+	 */
+	void draw(PGraphics g)
+	{
+		PMatrix2D matrix = new PMatrix2D();
+		for (Future<Slot> result : results)
+		{
+			Slot slot;
+			try
+			{
+				slot = result.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (ExecutionException e)
+			{
+				System.err.println("Unable to generate sketchy geometry: "+e.getCause());
+				continue;
+			}
+
+			for (Run run : slot.runs)
+			{
+				if (run.recording == null)
+				{
+					g.background(run.background);
+					continue;
+				}
+				int m = run.matrixIndex*MATRIX_SIZE;
+				matrix.set(matrices[m],matrices[m+1],matrices[m+2],matrices[m+3],matrices[m+4],matrices[m+5]);
+				g.pushMatrix();
+				g.setMatrix(matrix);
+				run.recording.replay(g);
+				g.popMatrix();
+			}
+		}
+		results.clear();
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Adds a command that uses the latest style and transformation.
+	 *  @param code Command code.
+	 *  @param argStart Index of the first argument of the command.
+	 *  @param argLength Number of arguments of the command.
+	 *  @param extra Additional integer value stored with the command.
+	 */
+	private void addCommand(int code, int argStart, int argLength, int extra)
+	{
+		if (numCommands*CMD_SIZE == commands.length)
+		{
+			int[] newCommands = new int[commands.length*2];
+			System.arraycopy(commands,0,newCommands,0,commands.length);
+			commands = newCommands;
+		}
+		int i = numCommands*CMD_SIZE;
+		commands[i]   = code;
+		commands[i+1] = argStart;
+		commands[i+2] = argLength;
+		commands[i+3] = numStyles-1;
+		commands[i+4] = numMatrices-1;
+		commands[i+5] = extra;
+		numCommands++;
+	}
+
+	/** Ensures there is space for the given number of additional arguments.
+	 *  @param numValues Number of arguments to be added.
+	 */
+	private void ensureArgCapacity(int numValues)
+	{
+		if (numArgs+numValues > args.length)
+		{
+			float[] newArgs = new float[Math.max(args.length*2,numArgs+numValues)];
+			System.arraycopy(args,0,newArgs,0,numArgs);
+			args = newArgs;
+		}
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** Geometry recorded with a single transformation, or a background fill if it has no recording.
+	 */
+	private static class Run
+	{
+		final Recording recording;
+		final int matrixIndex;
+		final int background;
+
+		Run(Recording recording, int matrixIndex, int background)
+		{
+			this.recording = recording;
+			this.matrixIndex = matrixIndex;
+			this.background = background;
+		}
+	}
+
+	/** Renderer and recorder that convert one chunk of commands into sketchy geometry.
+	 */
+	private class Slot
+	{
+		private HandyRenderer handy;
+		private RecordingGraphics recorder;
+		private List<Run> runs;
+		private int first, last;
+
+		Slot(HandyRenderer parentHandy, long seed)
+		{
+			recorder = new RecordingGraphics();
+			handy = parentHandy.fork(seed,recorder);
+			handy.setUseKeyedSeeds(true);
+			runs = new ArrayList<Run>();
+		}
+
+		/** Prepares this slot for generating the geometry of the given range of commands.
+		 */
+		void prepare(HandyStyle style, int first, int last)
+		{
+			handy.setStyle(style);
+			this.first = first;
+			this.last = last;
+			runs.clear();
+		}
+
+		/** Generates the geometry of this slot's commands, starting a new run whenever the transformation changes.
+		 */
+		void process()
+		{
+			recorder.clear(null);
+			int style = -1;
+			int matrix = -1;
+
+			for (int c=first; c<last; c++)
+			{
+				int i = c*CMD_SIZE;
+				int code = commands[i];
+				int a = commands[i+1];
+
+				if (code == BACKGROUND)
+				{
+					cut(matrix);
+					runs.add(new Run(null,matrix,commands[i+5]));
+					continue;
+				}
+				if (commands[i+4] != matrix)
+				{
+					cut(matrix);
+					matrix = commands[i+4];
+				}
+				if (commands[i+3] != style)
+				{
+					style = commands[i+3];
+					applyStyle(style);
+				}
+
+				switch (code)
+				{
+					case POINT:
+						handy.point(args[a],args[a+1]);
+						break;
+					case LINE:
+						handy.line(args[a],args[a+1],args[a+2],args[a+3]);
+						break;
+					case RECT:
+						handy.rect(args[a],args[a+1],args[a+2],args[a+3]);
+						break;
+					case ELLIPSE:
+						handy.ellipse(args[a],args[a+1],args[a+2],args[a+3]);
+						break;
+					case TRIANGLE:
+						handy.triangle(args[a],args[a+1],args[a+2],args[a+3],args[a+4],args[a+5]);
+						break;
+					case QUAD:
+						handy.quad(args[a],args[a+1],args[a+2],args[a+3],args[a+4],args[a+5],args[a+6],args[a+7]);
+						break;
+					case ARC:
+						handy.arc(args[a],args[a+1],args[a+2],args[a+3],args[a+4],args[a+5]);
+						break;
+					case SHAPE:
+						drawShape(a,commands[i+2],commands[i+5]);
+						break;
+					default:
+						System.err.println("Unknown drawing command "+code);
+				}
+			}
+			cut(matrix);
+		}
+
+		/** Ends the current run if it contains any geometry.
+		 */
+		private void cut(int matrix)
+		{
+			if ((matrix >= 0) && (recorder.isEmpty() == false))
+			{
+				runs.add(new Run(recorder.cut(),matrix,0));
+			}
+		}
+
+		/** Sets the style of the recorder to the given entry in the style table.
+		 */
+		private void applyStyle(int style)
+		{
+			int s = style*STYLE_SIZE;
+			if (styles[s] == 1)
+			{
+				recorder.fill(styles[s+1]);
+			}
+			else
+			{
+				recorder.noFill();
+			}
+			if (styles[s+2] == 1)
+			{
+				recorder.stroke(styles[s+3]);
+			}
+			else
+			{
+				recorder.noStroke();
+			}
+			recorder.strokeWeight(Float.intBitsToFloat(styles[s+4]));
+			recorder.rectMode(styles[s+5]);
+			recorder.ellipseMode(styles[s+6]);
+		}
+
+		/** Draws a shape from its captured vertices.
+		 */
+		private void drawShape(int start, int length, int mode)
+		{
+			handy.beginShape(mode>>1);
+			for (int v=start; v<start+length; v+=3)
+			{
+				switch ((int)args[v])
+				{
+					case CURVE_VERTEX:
+						handy.curveVertex(args[v+1],args[v+2]);
+						break;
+					case BEGIN_CONTOUR:
+						handy.beginContour();
+						break;
+					case END_CONTOUR:
+						handy.endContour();
+						break;
+					default:
+						handy.vertex(args[v+1],args[v+2]);
+				}
+			}
+			handy.endShape((mode & 1) == 1 ? PConstants.CLOSE : PConstants.OPEN);
+		}
+	}
+}
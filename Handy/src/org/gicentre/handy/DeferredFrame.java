@@ -0,0 +1,471 @@
+package org.gicentre.handy;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import processing.core.PGraphics;
+import processing.core.PMatrix2D;
+
+//*****************************************************************************************
+/** Collects the output of a handy renderer over a whole frame so that geometry hidden by
+ *  later opaque shapes can be omitted before anything is drawn. Output is recorded as a
+ *  sequence of marks, a new mark being started whenever a primitive paints an opaque
+ *  interior (its 'occluder') or the transformation of the target graphics context changes.
+ *  When the frame ends, marks are examined from last to first. A mark, or any individual
+ *  hachure line or outline within it, is dropped if its bounds lie entirely inside the
+ *  occluder of a later mark. Bounding boxes are compared first using a spatial index and
+ *  the exact occluding polygon is only tested when the boxes overlap. The remaining
+ *  geometry is then drawn in its original order.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class DeferredFrame
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	private static final int NUM_ELLIPSE_SIDES = 16;	// Sides of the polygon inscribed in elliptical occluders.
+	private static final float MARGIN = 1;				// Allowance in pixels for anti-aliased occluder edges.
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private PGraphics target;					// Graphics context into which the frame is finally drawn.
+	private RecordingGraphics recorder;			// Captures the geometry drawn during the frame.
+	private List<Mark> marks;					// Recorded marks in drawing order.
+	private PMatrix2D matrix;					// Transformation in force for the mark being recorded.
+	private PMatrix2D latestMatrix;				// Used to detect changes in the target's transformation.
+	private float[] occluderX, occluderY;		// Screen coordinates of the occluder of the mark being recorded.
+	private RTree<Mark> occluders;				// Spatial index of the occluders of marks already examined.
+	private List<Mark> candidates;				// Occluders whose bounds overlap a mark being examined.
+	private int numHiddenParts;					// Number of parts of marks omitted from the last frame.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a deferred frame that can be reused for any number of frames.
+	 */
+	DeferredFrame()
+	{
+		recorder     = new RecordingGraphics();
+		marks        = new ArrayList<Mark>();
+		matrix       = new PMatrix2D();
+		latestMatrix = new PMatrix2D();
+		occluders    = new RTree<Mark>();
+		candidates   = new ArrayList<Mark>();
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Starts collecting a new frame.
+	 *  @param target Graphics context into which the frame will be drawn when it ends.
+	 *  @return Graphics context into which all handy output should be directed during the frame.
+	 */
+	PGraphics begin(PGraphics target)
+	{
+		this.target = target;
+		recorder.clear(target);
+		recorder.parent = target.parent;
+		recorder.setFrame(this);
+		target.getMatrix(matrix);
+		occluderX = null;
+		occluderY = null;
+		marks.clear();
+		return recorder;
+	}
+
+	/** Reports the graphics context into which the frame will be drawn when it ends.
+	 *  @return Target graphics context.
+	 */
+	PGraphics getTarget()
+	{
+		return target;
+	}
+
+	/** Ends the frame, drawing all visible geometry into the target graphics context in the order it
+	 *  was recorded.
+	 *  @return Graphics context into which the frame was drawn.
+	 */
+	PGraphics end()
+	{
+		recorder.setFrame(null);
+		cut();
+		findHiddenParts();
+
+		for (Mark mark : marks)
+		{
+			if (mark.isHidden == false)
+			{
+				target.pushMatrix();
+				target.setMatrix(mark.matrix);
+				mark.recording.replay(target,mark.hiddenParts);
+				target.popMatrix();
+			}
+		}
+
+		marks.clear();
+		occluders.clear();
+		return target;
+	}
+
+	/** Reports the number of primitives, hachure lines and outlines omitted from the last frame
+	 *  because they were hidden.
+	 *  @return Number of hidden parts.
+	 */
+	int getNumHiddenParts()
+	{
+		return numHiddenParts;
+	}
+
+	/** Starts a new mark if the target's transformation has changed since the current mark was started.
+	 *  This is called before each drawing operation is recorded.
+	 */
+	void checkMatrix()
+	{
+		target.getMatrix(latestMatrix);
+		if ((matrix.m00 != latestMatrix.m00) || (matrix.m01 != latestMatrix.m01) || (matrix.m02 != latestMatrix.m02) ||
+			(matrix.m10 != latestMatrix.m10) || (matrix.m11 != latestMatrix.m11) || (matrix.m12 != latestMatrix.m12))
+		{
+			cut();
+			matrix.set(latestMatrix);
+		}
+	}
+
+	/** Starts a new mark whose first drawing operation will paint the given polygon opaquely.
+	 *  @param xs x coordinates of the occluding polygon.
+	 *  @param ys y coordinates of the occluding polygon.
+	 *  @param n Number of vertices in the polygon.
+	 */
+	void addOccluder(float[] xs, float[] ys, int n)
+	{
+		startOccluder(n);
+		for (int i=0; i<n; i++)
+		{
+			occluderX[i] = screenX(xs[i],ys[i]);
+			occluderY[i] = screenY(xs[i],ys[i]);
+		}
+	}
+
+	/** Starts a new mark whose first drawing operation will paint the given polygon opaquely.
+	 *  @param coords Buffer of interleaved coordinates of the occluding polygon.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param n Number of vertices in the polygon.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 */
+	void addOccluder(FloatBuffer coords, int offset, int n, int stride)
+	{
+		startOccluder(n);
+		for (int i=0; i<n; i++)
+		{
+			float x = coords.get(offset+i*stride);
+			float y = coords.get(offset+i*stride+1);
+			occluderX[i] = screenX(x,y);
+			occluderY[i] = screenY(x,y);
+		}
+	}
+
+	/** Starts a new mark whose first drawing operation will paint the given ellipse opaquely. The
+	 *  occluder is stored as a polygon inscribed within the ellipse so that it never covers more than
+	 *  the ellipse itself.
+	 *  @param cx x coordinate of the centre of the ellipse.
+	 *  @param cy y coordinate of the centre of the ellipse.
+	 *  @param rx Radius of the ellipse in the x direction.
+	 *  @param ry Radius of the ellipse in the y direction.
+	 */
+	void addOccluderEllipse(float cx, float cy, float rx, float ry)
+	{
+		startOccluder(NUM_ELLIPSE_SIDES);
+		for (int i=0; i<NUM_ELLIPSE_SIDES; i++)
+		{
+			double theta = 2*Math.PI*i/NUM_ELLIPSE_SIDES;
+			float x = cx + rx*(float)Math.cos(theta);
+			float y = cy + ry*(float)Math.sin(theta);
+			occluderX[i] = screenX(x,y);
+			occluderY[i] = screenY(x,y);
+		}
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Stores the geometry recorded since the last mark was started as a new mark.
+	 */
+	private void cut()
+	{
+		Recording recording = recorder.cut();
+		if (recording.isEmpty() == false)
+		{
+			marks.add(new Mark(recording,matrix.get(),occluderX,occluderY));
+		}
+		occluderX = null;
+		occluderY = null;
+	}
+
+	/** Starts a new mark that will have an occluder with the given number of vertices.
+	 *  @param n Number of vertices in the occluding polygon.
+	 */
+	private void startOccluder(int n)
+	{
+		cut();
+		target.getMatrix(matrix);
+		occluderX = new float[n];
+		occluderY = new float[n];
+	}
+
+	/** Identifies the marks, and parts of marks, that are entirely covered by the occluders of later marks.
+	 */
+	private void findHiddenParts()
+	{
+		numHiddenParts = 0;
+		occluders.clear();
+
+		for (int m=marks.size()-1; m>=0; m--)
+		{
+			Mark mark = marks.get(m);
+			float[] bounds = toScreen(mark.matrix,mark.recording.getMinX(),mark.recording.getMinY(),
+											  mark.recording.getMaxX(),mark.recording.getMaxY());
+			candidates.clear();
+			occluders.search(bounds[0],bounds[1],bounds[2],bounds[3],candidates);
+
+			if (candidates.isEmpty() == false)
+			{
+				if (isCovered(bounds))
+				{
+					mark.isHidden = true;
+					numHiddenParts++;
+				}
+				else
+				{
+					// Test each primitive, hachure line and outline in the mark.
+					float[] partBounds = mark.recording.getPartBounds();
+					for (int p=0; p<partBounds.length/4; p++)
+					{
+						if (partBounds[p*4] <= partBounds[p*4+2])
+						{
+							float[] b = toScreen(mark.matrix,partBounds[p*4],partBounds[p*4+1],partBounds[p*4+2],partBounds[p*4+3]);
+							if (isCovered(b))
+							{
+								if (mark.hiddenParts == null)
+								{
+									mark.hiddenParts = new BitSet();
+								}
+								mark.hiddenParts.set(p);
+								numHiddenParts++;
+							}
+						}
+					}
+				}
+			}
+
+			// Any occluder can hide earlier marks, even if it is itself hidden, since it then lies within a later occluder.
+			if (mark.occluderX != null)
+			{
+				occluders.insert(mark.minX,mark.minY,mark.maxX,mark.maxY,mark);
+			}
+		}
+	}
+
+	/** Reports whether the given screen rectangle lies entirely within any one of the current candidate occluders.
+	 *  @param bounds Rectangle to test stored as (minX,minY,maxX,maxY).
+	 *  @return True if the rectangle is covered.
+	 */
+	private boolean isCovered(float[] bounds)
+	{
+		for (Mark occluder : candidates)
+		{
+			if (occluder.contains(bounds[0],bounds[1],bounds[2],bounds[3]))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Finds the screen bounds of a rectangle after transformation, enlarged to allow for anti-aliasing.
+	 *  @param m Transformation to apply.
+	 *  @param minX Minimum x coordinate of the rectangle.
+	 *  @param minY Minimum y coordinate of the rectangle.
+	 *  @param maxX Maximum x coordinate of the rectangle.
+	 *  @param maxY Maximum y coordinate of the rectangle.
+	 *  @return Screen bounds stored as (minX,minY,maxX,maxY).
+	 */
+	private static float[] toScreen(PMatrix2D m, float minX, float minY, float maxX, float maxY)
+	{
+		float x1 = m.m00*minX + m.m01*minY + m.m02;
+		float y1 = m.m10*minX + m.m11*minY + m.m12;
+		float x2 = m.m00*maxX + m.m01*minY + m.m02;
+		float y2 = m.m10*maxX + m.m11*minY + m.m12;
+		float x3 = m.m00*maxX + m.m01*maxY + m.m02;
+		float y3 = m.m10*maxX + m.m11*maxY + m.m12;
+		float x4 = m.m00*minX + m.m01*maxY + m.m02;
+		float y4 = m.m10*minX + m.m11*maxY + m.m12;
+
+		return new float[] {Math.min(Math.min(x1,x2),Math.min(x3,x4)) - MARGIN,
+							Math.min(Math.min(y1,y2),Math.min(y3,y4)) - MARGIN,
+							Math.max(Math.max(x1,x2),Math.max(x3,x4)) + MARGIN,
+							Math.max(Math.max(y1,y2),Math.max(y3,y4)) + MARGIN};
+	}
+
+	/** Transforms the given point into a screen x coordinate using the current transformation.
+	 *  @param x x coordinate to transform.
+	 *  @param y y coordinate to transform.
+	 *  @return Transformed x coordinate.
+	 */
+	private float screenX(float x, float y)
+	{
+		return matrix.m00*x + matrix.m01*y + matrix.m02;
+	}
+
+	/** Transforms the given point into a screen y coordinate using the current transformation.
+	 *  @param x x coordinate to transform.
+	 *  @param y y coordinate to transform.
+	 *  @return Transformed y coordinate.
+	 */
+	private float screenY(float x, float y)
+	{
+		return matrix.m10*x + matrix.m11*y + matrix.m12;
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** A recorded portion of the frame with the transformation and any occluder that applies to it.
+	 */
+	private static class Mark
+	{
+		final Recording recording;
+		final PMatrix2D matrix;
+		final float[] occluderX, occluderY;		// Occluding polygon in screen coordinates or null.
+		float minX, minY, maxX, maxY;			// Screen bounds of the occluder.
+		boolean isHidden;
+		BitSet hiddenParts;
+
+		Mark(Recording recording, PMatrix2D matrix, float[] occluderX, float[] occluderY)
+		{
+			this.recording = recording;
+			this.matrix = matrix;
+			this.occluderX = occluderX;
+			this.occluderY = occluderY;
+
+			if (occluderX != null)
+			{
+				minX = maxX = occluderX[0];
+				minY = maxY = occluderY[0];
+				for (int i=1; i<occluderX.length; i++)
+				{
+					minX = Math.min(minX,occluderX[i]);
+					minY = Math.min(minY,occluderY[i]);
+					maxX = Math.max(maxX,occluderX[i]);
+					maxY = Math.max(maxY,occluderY[i]);
+				}
+			}
+		}
+
+		/** Reports whether the given rectangle lies entirely inside this mark's occluder. This is true
+		 *  when the rectangle's corners are inside the occluding polygon and none of the polygon's edges
+		 *  touch the rectangle.
+		 *  @param left Left-hand edge of the rectangle.
+		 *  @param top Top edge of the rectangle.
+		 *  @param right Right-hand edge of the rectangle.
+		 *  @param bottom Bottom edge of the rectangle.
+		 *  @return True if the rectangle is inside the occluder.
+		 */
+		boolean contains(float left, float top, float right, float bottom)
+		{
+			if ((left <= minX) || (right >= maxX) || (top <= minY) || (bottom >= maxY))
+			{
+				return false;
+			}
+
+			if (!isInside(left,top) || !isInside(right,top) || !isInside(right,bottom) || !isInside(left,bottom))
+			{
+				return false;
+			}
+
+			int n = occluderX.length;
+			for (int i=0, j=n-1; i<n; j=i++)
+			{
+				if (edgeTouchesRect(occluderX[j],occluderY[j],occluderX[i],occluderY[i],left,top,right,bottom))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/** Reports whether the given point is inside the occluding polygon.
+		 *  @param px x coordinate of the point.
+		 *  @param py y coordinate of the point.
+		 *  @return True if the point is inside the polygon.
+		 */
+		private boolean isInside(float px, float py)
+		{
+			boolean isInside = false;
+			int n = occluderX.length;
+			for (int i=0, j=n-1; i<n; j=i++)
+			{
+				if (((occluderY[i] > py) != (occluderY[j] > py)) &&
+					(px < (occluderX[j]-occluderX[i])*(py-occluderY[i])/(occluderY[j]-occluderY[i]) + occluderX[i]))
+				{
+					isInside = !isInside;
+				}
+			}
+			return isInside;
+		}
+
+		/** Reports whether the given line segment touches or crosses the given rectangle. Uses Liang-Barsky
+		 *  clipping of the segment against the rectangle.
+		 *  @return True if any part of the segment lies within or on the boundary of the rectangle.
+		 */
+		private static boolean edgeTouchesRect(float x1, float y1, float x2, float y2, float left, float top, float right, float bottom)
+		{
+			float dx = x2-x1;
+			float dy = y2-y1;
+			float[] p = {-dx, dx, -dy, dy};
+			float[] q = {x1-left, right-x1, y1-top, bottom-y1};
+			float t0 = 0;
+			float t1 = 1;
+
+			for (int i=0; i<4; i++)
+			{
+				if (p[i] == 0)
+				{
+					if (q[i] < 0)
+					{
+						return false;
+					}
+				}
+				else
+				{
+					float t = q[i]/p[i];
+					if (p[i] < 0)
+					{
+						t0 = Math.max(t0,t);
+					}
+					else
+					{
+						t1 = Math.min(t1,t);
+					}
+					if (t0 > t1)
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+}
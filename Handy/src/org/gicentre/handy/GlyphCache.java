@@ -0,0 +1,239 @@
+package org.gicentre.handy;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.geom.PathIterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//*****************************************************************************************
+/** Flattened outlines of the glyphs of a single font at a single size. Each glyph's outline
+ *  is extracted from the font and flattened into straight-edged contours only once, the first
+ *  time it is drawn, so sketchy text can be laid out each frame by translating stored coordinates.
+ *  Caches are shared by all renderers and are obtained with <code>get()</code>, which keeps the
+ *  caches of the most recently used fonts, sizes and flatness tolerances. All methods are safe
+ *  to call from multiple threads.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class GlyphCache
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	private static final int MAX_FONTS = 16;	// Number of font caches retained.
+	private static final FontRenderContext FRC = new FontRenderContext(null,true,true);
+
+	private static final Map<String,GlyphCache> caches = new LinkedHashMap<String,GlyphCache>(MAX_FONTS,0.75f,true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String,GlyphCache> eldest)
+		{
+			return size() > MAX_FONTS;
+		}
+	};
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private final Font font;					// Font scaled to the size of the cached glyphs.
+	private final float flatness;				// Maximum distance between a glyph's curves and its flattened contours.
+	private final float ascent, descent;		// Extent of the font above and below the baseline.
+	private final Map<Integer,Glyph> glyphs;	// Glyphs already flattened, keyed by code point.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates an empty cache of glyphs of the given font.
+	 *  @param font Font scaled to the size of the glyphs to cache.
+	 *  @param flatness Maximum distance in pixels between a glyph's curves and its flattened contours.
+	 */
+	private GlyphCache(Font font, float flatness)
+	{
+		this.font = font;
+		this.flatness = flatness;
+		this.glyphs = new HashMap<Integer,Glyph>();
+
+		LineMetrics metrics = font.getLineMetrics("Hg",FRC);
+		ascent  = metrics.getAscent();
+		descent = metrics.getDescent();
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Provides the glyph cache for the given font, size and flatness, creating it if necessary.
+	 *  @param font Font whose glyphs are to be drawn.
+	 *  @param size Size of the font in pixels.
+	 *  @param flatness Maximum distance in pixels between a glyph's curves and its flattened contours.
+	 *  @return Cache of glyphs of the font at the given size.
+	 */
+	static GlyphCache get(Font font, float size, float flatness)
+	{
+		String key = font.getFontName()+"|"+font.getStyle()+"|"+size+"|"+flatness;
+		synchronized (caches)
+		{
+			GlyphCache cache = caches.get(key);
+			if (cache == null)
+			{
+				cache = new GlyphCache(font.deriveFont(size),flatness);
+				caches.put(key,cache);
+			}
+			return cache;
+		}
+	}
+
+	/** Reports the distance from the baseline to the top of the tallest glyphs.
+	 *  @return Ascent of the font in pixels.
+	 */
+	float getAscent()
+	{
+		return ascent;
+	}
+
+	/** Reports the distance from the baseline to the bottom of the lowest glyphs.
+	 *  @return Descent of the font in pixels.
+	 */
+	float getDescent()
+	{
+		return descent;
+	}
+
+	/** Provides the flattened outline of the given character, extracting it from the font if it has
+	 *  not been drawn before.
+	 *  @param codePoint Unicode code point of the character.
+	 *  @return Flattened glyph.
+	 */
+	synchronized Glyph getGlyph(int codePoint)
+	{
+		Integer key = Integer.valueOf(codePoint);
+		Glyph glyph = glyphs.get(key);
+		if (glyph == null)
+		{
+			glyph = createGlyph(new String(Character.toChars(codePoint)));
+			glyphs.put(key,glyph);
+		}
+		return glyph;
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Extracts and flattens the outline of the given character.
+	 *  @param character Character whose outline is to be extracted.
+	 *  @return Flattened glyph.
+	 */
+	private Glyph createGlyph(String character)
+	{
+		GlyphVector glyphVector = font.createGlyphVector(FRC,character);
+		Shape outline = glyphVector.getOutline();
+		float advance = glyphVector.getGlyphMetrics(0).getAdvance();
+
+		float[] xs = new float[64];
+		float[] ys = new float[64];
+		int[] starts = new int[4];
+		int numCoords = 0;
+		int numContours = 0;
+		int contourStart = 0;
+		float[] coords = new float[6];
+
+		for (PathIterator path = outline.getPathIterator(null,flatness); !path.isDone(); path.next())
+		{
+			int type = path.currentSegment(coords);
+			if (type == PathIterator.SEG_CLOSE)
+			{
+				continue;
+			}
+			if (type == PathIterator.SEG_MOVETO)
+			{
+				// Discard the previous contour if it has no area.
+				if (numCoords-contourStart < 3)
+				{
+					numCoords = contourStart;
+				}
+				else
+				{
+					if (numContours == starts.length)
+					{
+						int[] newStarts = new int[starts.length*2];
+						System.arraycopy(starts,0,newStarts,0,numContours);
+						starts = newStarts;
+					}
+					starts[numContours++] = contourStart;
+					contourStart = numCoords;
+				}
+			}
+			if (numCoords == xs.length)
+			{
+				float[] newXs = new float[xs.length*2];
+				float[] newYs = new float[ys.length*2];
+				System.arraycopy(xs,0,newXs,0,numCoords);
+				System.arraycopy(ys,0,newYs,0,numCoords);
+				xs = newXs;
+				ys = newYs;
+			}
+			xs[numCoords] = coords[0];
+			ys[numCoords] = coords[1];
+			numCoords++;
+		}
+
+		if (numCoords-contourStart < 3)
+		{
+			numCoords = contourStart;
+		}
+		else
+		{
+			if (numContours == starts.length)
+			{
+				int[] newStarts = new int[starts.length+1];
+				System.arraycopy(starts,0,newStarts,0,numContours);
+				starts = newStarts;
+			}
+			starts[numContours++] = contourStart;
+		}
+
+		float[] glyphXs = new float[numCoords];
+		float[] glyphYs = new float[numCoords];
+		int[] glyphStarts = new int[numContours];
+		System.arraycopy(xs,0,glyphXs,0,numCoords);
+		System.arraycopy(ys,0,glyphYs,0,numCoords);
+		System.arraycopy(starts,0,glyphStarts,0,numContours);
+		return new Glyph(glyphXs,glyphYs,glyphStarts,advance);
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** Flattened outline of a single glyph relative to its origin on the baseline.
+	 */
+	static class Glyph
+	{
+		final float[] xs, ys;			// Vertices of all contours.
+		final int[] starts;				// Index of the first vertex of each contour.
+		final float advance;			// Horizontal distance to the origin of the next glyph.
+
+		Glyph(float[] xs, float[] ys, int[] starts, float advance)
+		{
+			this.xs = xs;
+			this.ys = ys;
+			this.starts = starts;
+			this.advance = advance;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package org.gicentre.handy;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+//*****************************************************************************************
+/** Edge structure of a polygon from which hachures at any number of angles can be generated.
+ *  The polygon's edges are extracted once. Hachures at each angle are then found by sweeping
+ *  a line across the polygon at right angles to the hachure direction, keeping a list of only
+ *  those edges that cross the current hachure. This avoids intersecting every hachure with
+ *  every edge and repeating the preparation of the polygon for each angle of a cross-hatch.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class HachureEdges
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private float[] x1s, y1s, x2s, y2s;		// End points of each edge.
+	private int numEdges;					// Number of edges in the polygon.
+
+	private float[] loU, hiU, loT, hiT;		// Positions of each edge across and along the current hachure direction.
+	private long[] order;					// Edges sorted by their lowest position across the hachure direction.
+	private int[] active;					// Edges crossing the current hachure.
+	private float[] ts;						// Positions along the current hachure at which it crosses the polygon.
+
+	// ---------------------------------- Constructors -----------------------------------
+
+	/** Extracts the edges of the given polygon. Each ring is closed automatically.
+	 *  @param xCoords x coordinates of all rings.
+	 *  @param yCoords y coordinates of all rings.
+	 *  @param numCoords Total number of vertices in all rings.
+	 *  @param starts Index of the first vertex of each ring.
+	 *  @param numParts Number of rings.
+	 */
+	HachureEdges(float[] xCoords, float[] yCoords, int numCoords, int[] starts, int numParts)
+	{
+		x1s = new float[numCoords];
+		y1s = new float[numCoords];
+		x2s = new float[numCoords];
+		y2s = new float[numCoords];
+		numEdges = 0;
+
+		for (int r=0; r<numParts; r++)
+		{
+			int first = starts[r];
+			int last = (r < numParts-1) ? starts[r+1]-1 : numCoords-1;
+			for (int i=first, j=last; i<=last; j=i++)
+			{
+				if ((xCoords[i] != xCoords[j]) || (yCoords[i] != yCoords[j]))
+				{
+					x1s[numEdges] = xCoords[j];
+					y1s[numEdges] = yCoords[j];
+					x2s[numEdges] = xCoords[i];
+					y2s[numEdges] = yCoords[i];
+					numEdges++;
+				}
+			}
+		}
+		createWorkspace();
+	}
+
+	/** Extracts the edges of a single closed ring read directly from a buffer of interleaved coordinates.
+	 *  @param coords Buffer containing the ring's coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices in the ring.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 */
+	HachureEdges(FloatBuffer coords, int offset, int numVertices, int stride)
+	{
+		x1s = new float[numVertices];
+		y1s = new float[numVertices];
+		x2s = new float[numVertices];
+		y2s = new float[numVertices];
+		numEdges = 0;
+
+		int last = offset + (numVertices-1)*stride;
+		float prevX = coords.get(last);
+		float prevY = coords.get(last+1);
+		for (int i=offset; i<=last; i+=stride)
+		{
+			float x = coords.get(i);
+			float y = coords.get(i+1);
+			if ((x != prevX) || (y != prevY))
+			{
+				x1s[numEdges] = prevX;
+				y1s[numEdges] = prevY;
+				x2s[numEdges] = x;
+				y2s[numEdges] = y;
+				numEdges++;
+			}
+			prevX = x;
+			prevY = y;
+		}
+		createWorkspace();
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Adds the hachures at the given angle that lie inside the polygon to the given buffer. Each hachure
+	 *  adds a pair of vertices at its two ends. Interior spans are found with the even-odd rule so that
+	 *  holes and overlapping rings are left unfilled.
+	 *  @param sinAngle Sine of the hachure angle where 0 is vertical and 90 degrees is horizontal.
+	 *  @param cosAngle Cosine of the hachure angle.
+	 *  @param gap Gap in pixel units between adjacent hachures.
+	 *  @param lines Buffer to which the end points of each hachure are added.
+	 */
+	void addHachures(float sinAngle, float cosAngle, float gap, VertexBuffer lines)
+	{
+		if ((numEdges < 2) || (gap <= 0))
+		{
+			return;
+		}
+
+		// Hachures run along (dx,dy) and are spaced along the perpendicular (nx,ny).
+		float dx = sinAngle;
+		float dy = -cosAngle;
+		float nx = cosAngle;
+		float ny = sinAngle;
+
+		int numSorted = 0;
+		float uMin = Float.MAX_VALUE;
+		float uMax = -Float.MAX_VALUE;
+		for (int e=0; e<numEdges; e++)
+		{
+			float u1 = x1s[e]*nx + y1s[e]*ny;
+			float u2 = x2s[e]*nx + y2s[e]*ny;
+			if (u1 == u2)
+			{
+				// Edges parallel to the hachures never cross them.
+				continue;
+			}
+			float t1 = x1s[e]*dx + y1s[e]*dy;
+			float t2 = x2s[e]*dx + y2s[e]*dy;
+			if (u1 < u2)
+			{
+				loU[e] = u1;
+				hiU[e] = u2;
+				loT[e] = t1;
+				hiT[e] = t2;
+			}
+			else
+			{
+				loU[e] = u2;
+				hiU[e] = u1;
+				loT[e] = t2;
+				hiT[e] = t1;
+			}
+			uMin = Math.min(uMin,loU[e]);
+			uMax = Math.max(uMax,hiU[e]);
+			order[numSorted++] = ((long)sortableBits(loU[e]) << 32) | e;
+		}
+		Arrays.sort(order,0,numSorted);
+
+		int next = 0;
+		int numActive = 0;
+		int numLines = (int)Math.ceil((uMax-uMin)/gap);
+		for (int h=0; h<numLines; h++)
+		{
+			float u = uMin + (h+0.5f)*gap;
+
+			// Each edge spans the half-open range [loU,hiU) so that a vertex is counted once where the boundary
+			// passes through it and twice or not at all where the boundary turns back.
+			while ((next < numSorted) && (loU[(int)order[next]] <= u))
+			{
+				active[numActive++] = (int)order[next++];
+			}
+
+			int numTs = 0;
+			int numKept = 0;
+			for (int a=0; a<numActive; a++)
+			{
+				int e = active[a];
+				if (hiU[e] > u)
+				{
+					active[numKept++] = e;
+					ts[numTs++] = loT[e] + (u-loU[e])/(hiU[e]-loU[e])*(hiT[e]-loT[e]);
+				}
+			}
+			numActive = numKept;
+
+			Arrays.sort(ts,0,numTs);
+			for (int i=0; i<numTs-1; i+=2)
+			{
+				lines.add(u*nx + ts[i]*dx,   u*ny + ts[i]*dy);
+				lines.add(u*nx + ts[i+1]*dx, u*ny + ts[i+1]*dy);
+			}
+		}
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Creates the storage used when generating hachures from the extracted edges.
+	 */
+	private void createWorkspace()
+	{
+		loU = new float[numEdges];
+		hiU = new float[numEdges];
+		loT = new float[numEdges];
+		hiT = new float[numEdges];
+		order = new long[numEdges];
+		active = new int[numEdges];
+		ts = new float[numEdges];
+	}
+
+	/** Converts a float into an integer that sorts in the same order as the float when compared as a signed integer.
+	 *  @param value Value to convert.
+	 *  @return Integer with the same ordering as the given value.
+	 */
+	private static int sortableBits(float value)
+	{
+		int bits = Float.floatToIntBits(value);
+		return bits ^ ((bits >> 31) & 0x7fffffff);
+	}
+}
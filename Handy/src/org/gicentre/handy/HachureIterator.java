@@ -45,6 +45,24 @@ class HachureIterator
 	 *  @param tanAngle Tangent of the angle of the lines.
 	 */
 	HachureIterator(float top, float bottom, float left, float right, float gap, float sinAngle, float cosAngle, float tanAngle)
+	{
+		reset(top,bottom,left,right,gap,sinAngle,cosAngle,tanAngle);
+	}
+	
+	// ------------------------------------- Methods -------------------------------------
+	
+	/** Resets the iterator so that it provides a new sequence of lines filling the rectangular region
+	 *  provided. This allows a single iterator to be reused when filling many shapes.
+	 *  @param top y-coordinate of top of rectangle.
+	 *  @param bottom y-coordinate of bottom of rectangle.
+	 *  @param left x-coordinate of left of rectangle.
+	 *  @param right x-coordinate of right of rectangle.
+	 *  @param gap Gap in pixel units between adjacent lines.
+	 *  @param sinAngle Sine of the angle of the lines.
+	 *  @param cosAngle Cosine of the angle of the lines.
+	 *  @param tanAngle Tangent of the angle of the lines.
+	 */
+	void reset(float top, float bottom, float left, float right, float gap, float sinAngle, float cosAngle, float tanAngle)
 	{
 		this.top      = top;
 		this.bottom   = bottom;
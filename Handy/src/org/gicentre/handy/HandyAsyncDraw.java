@@ -0,0 +1,623 @@
+package org.gicentre.handy;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PMatrix2D;
+
+//*****************************************************************************************
+/** Graphics context that draws a sketch's normal Processing drawing commands in a sketchy style,
+ *  generating the sketchy geometry on background threads. To use, put the drawing code between
+ *  calls to <code>startHandy()</code> and <code>stopHandy()</code> in the sketch's
+ *  <code>draw()</code> method. While active, drawing commands are not drawn but captured as
+ *  compact commands, each simply recording its arguments together with the style and
+ *  transformation in force. When <code>stopHandy()</code> is called, the captured frame is
+ *  divided between a pool of worker threads that generate its sketchy geometry while the sketch
+ *  goes on to its next frame. The geometry of each frame is drawn when the following frame is
+ *  stopped, so output is pipelined one frame behind the sketch's drawing. Call <code>flush()</code>
+ *  to draw the last frame immediately, for example before saving an image.
+ *  <p>
+ *  Each mark's random variation is keyed by its geometry, so its appearance does not depend on
+ *  how the frame was divided between workers. The sketchy style of the handy renderer is read
+ *  each frame, but its other settings are copied when this context is created. Only 2d points,
+ *  lines, rectangles, ellipses, triangles, quads, arcs, shapes and backgrounds are captured.
+ *  </p>
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class HandyAsyncDraw extends PGraphics
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private HandyRenderer handy;				// Renderer whose settings are used to generate the geometry.
+	private ExecutorService workers;			// Threads on which sketchy geometry is generated.
+	private PGraphics canvas;					// Graphics context into which frames are drawn (usually PApplet.g).
+	private boolean active;						// Whether commands are currently being captured.
+
+	private CommandFrame capturing;				// Frame into which commands are being captured.
+	private CommandFrame pending;				// Frame whose geometry is being generated, or null.
+	private PGraphics pendingCanvas;			// Graphics context into which the pending frame is drawn.
+	private boolean isShapeOpen;				// Whether the vertices of a shape are being captured.
+	private int shapeKind;						// Type of shape being captured.
+
+	private PMatrix2D matrix;					// Current transformation.
+	private float[] matrixStack;				// Pushed transformations.
+	private int matrixStackDepth;
+	private boolean isNewMatrix;				// Whether the transformation has changed since the last command.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a context that generates the sketchy geometry of the given sketch's drawing on as many threads
+	 *  as there are available processors.
+	 *  @param sketch Sketch whose drawing is to be captured.
+	 *  @param handy Renderer whose settings determine the sketchy appearance.
+	 */
+	public HandyAsyncDraw(PApplet sketch, HandyRenderer handy)
+	{
+		this(sketch,handy,Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Creates a context that generates the sketchy geometry of the given sketch's drawing on the given
+	 *  number of threads.
+	 *  @param sketch Sketch whose drawing is to be captured.
+	 *  @param handy Renderer whose settings determine the sketchy appearance.
+	 *  @param numWorkers Number of threads that can generate geometry at the same time.
+	 */
+	public HandyAsyncDraw(PApplet sketch, HandyRenderer handy, int numWorkers)
+	{
+		this.parent = sketch;
+		this.handy = handy;
+		numWorkers = Math.max(1,numWorkers);
+
+		workers = Executors.newFixedThreadPool(numWorkers, new ThreadFactory()
+		{
+			private int threadID = 0;
+
+			public synchronized Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task,"handy-async-"+(threadID++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		capturing   = new CommandFrame(handy,numWorkers,0);
+		pending     = new CommandFrame(handy,numWorkers,0);
+		matrix      = new PMatrix2D();
+		matrixStack = new float[6*32];
+		pendingCanvas = null;
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Starts capturing the sketch's drawing commands. This should be paired with a call to
+	 *  <code>stopHandy()</code> once sketchy drawing is complete.
+	 */
+	public void startHandy()
+	{
+		if (active)
+		{
+			System.err.println("Handy already started - did you stopHandy()?");
+			return;
+		}
+		canvas = parent.g;
+		HandyRenderer.copyGraphics(canvas,this);
+		colorModeX = canvas.colorModeX;
+		colorModeY = canvas.colorModeY;
+		colorModeZ = canvas.colorModeZ;
+		colorModeA = canvas.colorModeA;
+		width  = canvas.width;
+		height = canvas.height;
+
+		canvas.getMatrix(matrix);
+		matrixStackDepth = 0;
+		isNewMatrix = true;
+		isShapeOpen = false;
+		capturing.clear();
+
+		parent.g = this;
+		active = true;
+	}
+
+	/** Stops capturing the sketch's drawing commands, starts generating the sketchy geometry of the
+	 *  commands captured since <code>startHandy()</code> and draws the geometry of the previous frame.
+	 */
+	public void stopHandy()
+	{
+		if (active == false)
+		{
+			System.err.println("Handy already stopped - did you startHandy()?");
+			return;
+		}
+		parent.g = canvas;
+		active = false;
+
+		capturing.submit(workers,handy.getStyle());
+		drawPending();
+
+		CommandFrame submitted = capturing;
+		capturing = pending;
+		pending = submitted;
+		pendingCanvas = canvas;
+
+		// Leave the sketch's style and transformation as they were when capture stopped.
+		canvas.style(getStyle());
+		canvas.setMatrix(matrix);
+	}
+
+	/** Draws the most recently captured frame without waiting for the next frame to be stopped.
+	 *  Should not be called between <code>startHandy()</code> and <code>stopHandy()</code>.
+	 */
+	public void flush()
+	{
+		if (active)
+		{
+			System.err.println("Cannot flush while handy drawing is being captured - did you stopHandy()?");
+			return;
+		}
+		drawPending();
+	}
+
+	/** Sets the seed that determines the random variation of each mark. As marks are keyed by their
+	 *  geometry, the same seed gives the same appearance on every frame.
+	 *  @param seed Random number seed.
+	 */
+	public void setSeed(long seed)
+	{
+		if (active)
+		{
+			System.err.println("Cannot change the seed while handy drawing is being captured.");
+			return;
+		}
+		flush();
+		capturing.setSeed(seed);
+		pending.setSeed(seed);
+	}
+
+	/** Draws any frame still to be drawn and stops the worker threads. This context cannot be used
+	 *  after it has been disposed.
+	 */
+	@Override
+	public void dispose()
+	{
+		if (active)
+		{
+			stopHandy();
+		}
+		flush();
+		workers.shutdown();
+	}
+
+	// ----------------------- Overridden Processing Draw Methods -------------------------
+
+	/** Captures a 2D point at the given location.
+	 *  @param x x coordinate of the point to draw.
+	 *  @param y y coordinate of the point to draw.
+	 */
+	@Override
+	public void point(float x, float y)
+	{
+		prepareCommand();
+		capturing.add(CommandFrame.POINT,0,x,y);
+	}
+
+	/** Captures a 2D line between the given coordinate pairs.
+	 *  @param x1 x coordinate of the start of the line.
+	 *  @param y1 y coordinate of the start of the line.
+	 *  @param x2 x coordinate of the end of the line.
+	 *  @param y2 y coordinate of the end of the line.
+	 */
+	@Override
+	public void line(float x1, float y1, float x2, float y2)
+	{
+		prepareCommand();
+		capturing.add(CommandFrame.LINE,0,x1,y1,x2,y2);
+	}
+
+	/** Captures a rectangle using the given location and dimensions, interpreted according to the
+	 *  current <code>rectMode()</code>.
+	 *  @param x x coordinate of the rectangle position.
+	 *  @param y y coordinate of the rectangle position.
+	 *  @param w Width of the rectangle.
+	 *  @param h Height of the rectangle.
+	 */
+	@Override
+	public void rect(float x, float y, float w, float h)
+	{
+		prepareCommand();
+		capturing.add(CommandFrame.RECT,0,x,y,w,h);
+	}
+
+	/** Captures an ellipse using the given location and dimensions, interpreted according to the
+	 *  current <code>ellipseMode()</code>.
+	 *  @param x x coordinate of the ellipse's position.
+	 *  @param y y coordinate of the ellipse's position.
+	 *  @param w Width of the ellipse.
+	 *  @param h Height of the ellipse.
+	 */
+	@Override
+	public void ellipse(float x, float y, float w, float h)
+	{
+		prepareCommand();
+		capturing.add(CommandFrame.ELLIPSE,0,x,y,w,h);
+	}
+
+	/** Captures a triangle through the three given pairs of coordinates.
+	 *  @param x1 x coordinate of the first triangle vertex.
+	 *  @param y1 y coordinate of the first triangle vertex.
+	 *  @param x2 x coordinate of the second triangle vertex.
+	 *  @param y2 y coordinate of the second triangle vertex.
+	 *  @param x3 x coordinate of the third triangle vertex.
+	 *  @param y3 y coordinate of the third triangle vertex.
+	 */
+	@Override
+	public void triangle(float x1, float y1, float x2, float y2, float x3, float y3)
+	{
+		prepareCommand();
+		capturing.add(CommandFrame.TRIANGLE,0,x1,y1,x2,y2,x3,y3);
+	}
+
+	/** Captures a quadrilateral through the four given pairs of coordinates.
+	 *  @param x1 x coordinate of the first vertex.
+	 *  @param y1 y coordinate of the first vertex.
+	 *  @param x2 x coordinate of the second vertex.
+	 *  @param y2 y coordinate of the second vertex.
+	 *  @param x3 x coordinate of the third vertex.
+	 *  @param y3 y coordinate of the third vertex.
+	 *  @param x4 x coordinate of the fourth vertex.
+	 *  @param y4 y coordinate of the fourth vertex.
+	 */
+	@Override
+	public void quad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4)
+	{
+		prepareCommand();
+		capturing.add(CommandFrame.QUAD,0,x1,y1,x2,y2,x3,y3,x4,y4);
+	}
+
+	/** Captures an arc using the given location and dimensions, interpreted according to the
+	 *  current <code>ellipseMode()</code>.
+	 *  @param x x coordinate of the ellipse's position around which this arc is defined.
+	 *  @param y y coordinate of the ellipse's position around which this arc is defined.
+	 *  @param w Width of the ellipse around which this arc is defined.
+	 *  @param h Height of the ellipse around which this arc is defined.
+	 *  @param start Angle to start the arc in radians.
+	 *  @param stop Angle to stop the arc in radians.
+	 */
+	@Override
+	public void arc(float x, float y, float w, float h, float start, float stop)
+	{
+		prepareCommand();
+		capturing.add(CommandFrame.ARC,0,x,y,w,h,start,stop);
+	}
+
+	/** Starts capturing a new shape of type <code>POLYGON</code>.
+	 */
+	@Override
+	public void beginShape()
+	{
+		beginShape(PConstants.POLYGON);
+	}
+
+	/** Starts capturing a new shape of the type specified in the mode parameter.
+	 *  @param mode Type of shape, such as <code>POLYGON</code>, <code>TRIANGLES</code> or <code>QUAD_STRIP</code>.
+	 */
+	@Override
+	public void beginShape(int mode)
+	{
+		shapeKind = mode;
+		isShapeOpen = true;
+		capturing.beginShape();
+	}
+
+	/** Adds a 2d vertex to the shape being captured.
+	 *  @param x x coordinate of the vertex.
+	 *  @param y y coordinate of the vertex.
+	 */
+	@Override
+	public void vertex(float x, float y)
+	{
+		addVertex(CommandFrame.VERTEX,x,y);
+	}
+
+	/** Adds a 2d curve vertex to the shape being captured.
+	 *  @param x x coordinate of the vertex.
+	 *  @param y y coordinate of the vertex.
+	 */
+	@Override
+	public void curveVertex(float x, float y)
+	{
+		addVertex(CommandFrame.CURVE_VERTEX,x,y);
+	}
+
+	/** Starts a hole within the shape being captured.
+	 */
+	@Override
+	public void beginContour()
+	{
+		addVertex(CommandFrame.BEGIN_CONTOUR,0,0);
+	}
+
+	/** Ends a hole within the shape being captured.
+	 */
+	@Override
+	public void endContour()
+	{
+		addVertex(CommandFrame.END_CONTOUR,0,0);
+	}
+
+	/** Ends the shape being captured without closing it.
+	 */
+	@Override
+	public void endShape()
+	{
+		endShape(PConstants.OPEN);
+	}
+
+	/** Ends the shape being captured, closing it if the mode parameter is <code>CLOSE</code>.
+	 *  @param mode Closes the shape if <code>CLOSE</code>.
+	 */
+	@Override
+	public void endShape(int mode)
+	{
+		if (isShapeOpen == false)
+		{
+			System.err.println("endShape() called without a matching beginShape().");
+			return;
+		}
+		isShapeOpen = false;
+		prepareCommand();
+		capturing.endShape((shapeKind<<1) | (mode == PConstants.CLOSE ? 1 : 0));
+	}
+
+	/** Captures a background fill in the colour most recently passed to <code>background()</code>.
+	 */
+	@Override
+	protected void backgroundImpl()
+	{
+		capturing.add(CommandFrame.BACKGROUND,backgroundColor);
+	}
+
+	// ----------------------- Overridden Processing Matrix Methods -----------------------
+
+	/** Stores the current transformation so that it may be restored with <code>popMatrix()</code>.
+	 */
+	@Override
+	public void pushMatrix()
+	{
+		if (matrixStackDepth*6 == matrixStack.length)
+		{
+			float[] newStack = new float[matrixStack.length*2];
+			System.arraycopy(matrixStack,0,newStack,0,matrixStack.length);
+			matrixStack = newStack;
+		}
+		int i = matrixStackDepth*6;
+		matrixStack[i]   = matrix.m00;
+		matrixStack[i+1] = matrix.m01;
+		matrixStack[i+2] = matrix.m02;
+		matrixStack[i+3] = matrix.m10;
+		matrixStack[i+4] = matrix.m11;
+		matrixStack[i+5] = matrix.m12;
+		matrixStackDepth++;
+	}
+
+	/** Restores the transformation stored by the most recent call to <code>pushMatrix()</code>.
+	 */
+	@Override
+	public void popMatrix()
+	{
+		if (matrixStackDepth == 0)
+		{
+			System.err.println("Too many calls to popMatrix(), and not enough to pushMatrix().");
+			return;
+		}
+		matrixStackDepth--;
+		int i = matrixStackDepth*6;
+		matrix.set(matrixStack[i],matrixStack[i+1],matrixStack[i+2],matrixStack[i+3],matrixStack[i+4],matrixStack[i+5]);
+		isNewMatrix = true;
+	}
+
+	/** Translates the coordinate system.
+	 *  @param tx Horizontal translation.
+	 *  @param ty Vertical translation.
+	 */
+	@Override
+	public void translate(float tx, float ty)
+	{
+		matrix.translate(tx,ty);
+		isNewMatrix = true;
+	}
+
+	/** Rotates the coordinate system.
+	 *  @param angle Clockwise rotation in radians.
+	 */
+	@Override
+	public void rotate(float angle)
+	{
+		matrix.rotate(angle);
+		isNewMatrix = true;
+	}
+
+	/** Scales the coordinate system equally in both directions.
+	 *  @param s Scale factor.
+	 */
+	@Override
+	public void scale(float s)
+	{
+		scale(s,s);
+	}
+
+	/** Scales the coordinate system.
+	 *  @param sx Horizontal scale factor.
+	 *  @param sy Vertical scale factor.
+	 */
+	@Override
+	public void scale(float sx, float sy)
+	{
+		matrix.scale(sx,sy);
+		isNewMatrix = true;
+	}
+
+	/** Shears the coordinate system horizontally.
+	 *  @param angle Shear angle in radians.
+	 */
+	@Override
+	public void shearX(float angle)
+	{
+		applyMatrix(1,(float)Math.tan(angle),0,0,1,0);
+	}
+
+	/** Shears the coordinate system vertically.
+	 *  @param angle Shear angle in radians.
+	 */
+	@Override
+	public void shearY(float angle)
+	{
+		applyMatrix(1,0,0,(float)Math.tan(angle),1,0);
+	}
+
+	/** Replaces the current transformation with the identity transformation.
+	 */
+	@Override
+	public void resetMatrix()
+	{
+		matrix.reset();
+		isNewMatrix = true;
+	}
+
+	/** Multiplies the current transformation by the given one.
+	 *  @param source Transformation to apply.
+	 */
+	@Override
+	public void applyMatrix(PMatrix2D source)
+	{
+		matrix.apply(source);
+		isNewMatrix = true;
+	}
+
+	/** Multiplies the current transformation by the one given by the six values of a 2d affine matrix.
+	 *  @param n00 Top left value of the matrix.
+	 *  @param n01 Top middle value of the matrix.
+	 *  @param n02 Top right value of the matrix.
+	 *  @param n10 Bottom left value of the matrix.
+	 *  @param n11 Bottom middle value of the matrix.
+	 *  @param n12 Bottom right value of the matrix.
+	 */
+	@Override
+	public void applyMatrix(float n00, float n01, float n02, float n10, float n11, float n12)
+	{
+		matrix.apply(n00,n01,n02,n10,n11,n12);
+		isNewMatrix = true;
+	}
+
+	/** Replaces the current transformation with the given one.
+	 *  @param source New transformation.
+	 */
+	@Override
+	public void setMatrix(PMatrix2D source)
+	{
+		matrix.set(source);
+		isNewMatrix = true;
+	}
+
+	/** Copies the current transformation into the given matrix.
+	 *  @param target Matrix into which the transformation is copied, or null if a new one should be created.
+	 *  @return Copy of the current transformation.
+	 */
+	@Override
+	public PMatrix2D getMatrix(PMatrix2D target)
+	{
+		if (target == null)
+		{
+			target = new PMatrix2D();
+		}
+		target.set(matrix);
+		return target;
+	}
+
+	/** Reports the horizontal screen position of the given point under the current transformation.
+	 *  @param x x coordinate of the point.
+	 *  @param y y coordinate of the point.
+	 *  @return Horizontal screen position.
+	 */
+	@Override
+	public float screenX(float x, float y)
+	{
+		return matrix.m00*x + matrix.m01*y + matrix.m02;
+	}
+
+	/** Reports the vertical screen position of the given point under the current transformation.
+	 *  @param x x coordinate of the point.
+	 *  @param y y coordinate of the point.
+	 *  @return Vertical screen position.
+	 */
+	@Override
+	public float screenY(float x, float y)
+	{
+		return matrix.m10*x + matrix.m11*y + matrix.m12;
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Adds the current style and transformation to the captured frame if either has changed since
+	 *  the last command was captured.
+	 */
+	private void prepareCommand()
+	{
+		if (capturing.isNewStyle(this))
+		{
+			capturing.addStyle(this);
+		}
+		if (isNewMatrix)
+		{
+			capturing.addMatrix(matrix);
+			isNewMatrix = false;
+		}
+	}
+
+	/** Adds a vertex to the shape being captured.
+	 *  @param type Type of vertex.
+	 *  @param x x coordinate of the vertex.
+	 *  @param y y coordinate of the vertex.
+	 */
+	private void addVertex(int type, float x, float y)
+	{
+		if (isShapeOpen == false)
+		{
+			System.err.println("Vertex added without a call to beginShape().");
+			return;
+		}
+		capturing.vertex(type,x,y);
+	}
+
+	/** Waits for the geometry of the pending frame to be generated and draws it.
+	 */
+	private void drawPending()
+	{
+		if (pendingCanvas != null)
+		{
+			pending.draw(pendingCanvas);
+			pending.clear();
+			pendingCanvas = null;
+		}
+	}
+}
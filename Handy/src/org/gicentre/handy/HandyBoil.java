@@ -0,0 +1,368 @@
+package org.gicentre.handy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import processing.core.PGraphics;
+
+//*****************************************************************************************
+/** Animates sketchy marks with a hand-drawn 'boiling' effect. Rather than generating new
+ *  random geometry for every mark in every frame, a fixed number of variants of each mark are
+ *  generated the first time it is drawn and the animation cycles through them. Once every mark
+ *  has been drawn once, frames are produced by replaying stored geometry with no further sketchy
+ *  line generation. Variants are kept for a limited number of the most recently drawn marks so
+ *  that memory use is bounded however many different marks are drawn over time. For example:
+ *  <pre>
+ *  HandyBoil boil = new HandyBoil(h,3,4,1000);
+ *  ...
+ *  void draw()
+ *  {
+ *    boil.setFrame(frameCount);
+ *    boil.rect(10,10,80,40);
+ *  }
+ *  </pre>
+ *  Marks are drawn using the current fill and stroke settings of the renderer's graphics context.
+ *  <code>clear()</code> should be called after changing any of the renderer's sketchy style
+ *  settings.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class HandyBoil
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	private static final int RECT     = 0;
+	private static final int ELLIPSE  = 1;
+	private static final int TRIANGLE = 2;
+	private static final int QUAD     = 3;
+	private static final int LINE     = 4;
+	private static final int ARC      = 5;
+	private static final int SHAPE    = 6;
+	private static final int POLYLINE = 7;
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private HandyRenderer handy;					// Renderer used to generate variants.
+	private int numVariants;						// Number of variants of each mark.
+	private int framesPerVariant;					// Number of frames for which each variant is shown.
+	private int variant;							// Variant to draw in the current frame.
+	private RecordingGraphics recorder;				// Captures the geometry of each variant.
+	private Map<MarkKey,Recording[]> variants;		// Recorded variants of recently drawn marks.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a boil animator that stores the given number of variants of each mark.
+	 *  @param handy Renderer used to generate the variants. Marks are drawn into this renderer's graphics
+	 *               context using its current sketchy style.
+	 *  @param numVariants Number of variants of each mark to cycle through. Hand-drawn animation typically uses 2 or 3.
+	 *  @param framesPerVariant Number of frames for which each variant is shown before moving to the next.
+	 *  @param maxMarks Maximum number of marks whose variants are stored. When exceeded, the variants of the
+	 *                  least recently drawn mark are discarded.
+	 */
+	public HandyBoil(HandyRenderer handy, int numVariants, int framesPerVariant, final int maxMarks)
+	{
+		this.handy = handy;
+		this.numVariants = Math.max(1,numVariants);
+		this.framesPerVariant = Math.max(1,framesPerVariant);
+		this.recorder = new RecordingGraphics();
+		this.variants = new LinkedHashMap<MarkKey,Recording[]>(64,0.75f,true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<MarkKey,Recording[]> eldest)
+			{
+				return size() > Math.max(1,maxMarks);
+			}
+		};
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Sets the animation frame to be drawn. This determines which variant of each mark is drawn and would
+	 *  normally be called at the start of each frame with the sketch's <code>frameCount</code>.
+	 *  @param frame Number of the frame to be drawn.
+	 */
+	public void setFrame(int frame)
+	{
+		variant = ((frame & 0x7fffffff)/framesPerVariant) % numVariants;
+	}
+
+	/** Sets the number of frames for which each variant is shown. Larger values give a slower boil.
+	 *  @param framesPerVariant Number of frames per variant.
+	 */
+	public void setFramesPerVariant(int framesPerVariant)
+	{
+		this.framesPerVariant = Math.max(1,framesPerVariant);
+	}
+
+	/** Removes all stored variants. This should be called after changing any of the handy renderer's style
+	 *  settings so that new variants reflecting the change are generated.
+	 */
+	public void clear()
+	{
+		variants.clear();
+	}
+
+	/** Reports the number of marks whose variants are currently stored.
+	 *  @return Number of stored marks.
+	 */
+	public int getNumStoredMarks()
+	{
+		return variants.size();
+	}
+
+	/** Draws a boiling rectangle. Coordinates are interpreted according to the current <code>rectMode()</code>.
+	 *  @param x x coordinate of the rectangle position.
+	 *  @param y y coordinate of the rectangle position.
+	 *  @param w Width of the rectangle.
+	 *  @param h Height of the rectangle.
+	 */
+	public void rect(float x, float y, float w, float h)
+	{
+		draw(RECT,new float[] {x,y,w,h});
+	}
+
+	/** Draws a boiling ellipse. Coordinates are interpreted according to the current <code>ellipseMode()</code>.
+	 *  @param x x coordinate of the ellipse position.
+	 *  @param y y coordinate of the ellipse position.
+	 *  @param w Width of the ellipse.
+	 *  @param h Height of the ellipse.
+	 */
+	public void ellipse(float x, float y, float w, float h)
+	{
+		draw(ELLIPSE,new float[] {x,y,w,h});
+	}
+
+	/** Draws a boiling triangle.
+	 *  @param x1 x coordinate of the first vertex.
+	 *  @param y1 y coordinate of the first vertex.
+	 *  @param x2 x coordinate of the second vertex.
+	 *  @param y2 y coordinate of the second vertex.
+	 *  @param x3 x coordinate of the third vertex.
+	 *  @param y3 y coordinate of the third vertex.
+	 */
+	public void triangle(float x1, float y1, float x2, float y2, float x3, float y3)
+	{
+		draw(TRIANGLE,new float[] {x1,y1,x2,y2,x3,y3});
+	}
+
+	/** Draws a boiling quadrilateral.
+	 *  @param x1 x coordinate of the first vertex.
+	 *  @param y1 y coordinate of the first vertex.
+	 *  @param x2 x coordinate of the second vertex.
+	 *  @param y2 y coordinate of the second vertex.
+	 *  @param x3 x coordinate of the third vertex.
+	 *  @param y3 y coordinate of the third vertex.
+	 *  @param x4 x coordinate of the fourth vertex.
+	 *  @param y4 y coordinate of the fourth vertex.
+	 */
+	public void quad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4)
+	{
+		draw(QUAD,new float[] {x1,y1,x2,y2,x3,y3,x4,y4});
+	}
+
+	/** Draws a boiling line.
+	 *  @param x1 x coordinate of the start of the line.
+	 *  @param y1 y coordinate of the start of the line.
+	 *  @param x2 x coordinate of the end of the line.
+	 *  @param y2 y coordinate of the end of the line.
+	 */
+	public void line(float x1, float y1, float x2, float y2)
+	{
+		draw(LINE,new float[] {x1,y1,x2,y2});
+	}
+
+	/** Draws a boiling arc. Coordinates are interpreted according to the current <code>ellipseMode()</code>.
+	 *  @param x x coordinate of the ellipse around which the arc is defined.
+	 *  @param y y coordinate of the ellipse around which the arc is defined.
+	 *  @param w Width of the ellipse around which the arc is defined.
+	 *  @param h Height of the ellipse around which the arc is defined.
+	 *  @param start Angle to start the arc in radians.
+	 *  @param stop Angle to stop the arc in radians.
+	 */
+	public void arc(float x, float y, float w, float h, float start, float stop)
+	{
+		draw(ARC,new float[] {x,y,w,h,start,stop});
+	}
+
+	/** Draws a boiling closed polygon.
+	 *  @param xCoords x coordinates of the polygon's vertices.
+	 *  @param yCoords y coordinates of the polygon's vertices.
+	 */
+	public void shape(float[] xCoords, float[] yCoords)
+	{
+		draw(SHAPE,concatenate(xCoords,yCoords));
+	}
+
+	/** Draws a boiling polyline.
+	 *  @param xCoords x coordinates of the line's vertices.
+	 *  @param yCoords y coordinates of the line's vertices.
+	 */
+	public void polyLine(float[] xCoords, float[] yCoords)
+	{
+		draw(POLYLINE,concatenate(xCoords,yCoords));
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Draws the current variant of the given mark, generating all its variants if it has not been drawn recently.
+	 *  @param type Type of mark.
+	 *  @param values Coordinates defining the mark.
+	 */
+	private void draw(int type, float[] values)
+	{
+		PGraphics target = handy.getGraphics();
+		MarkKey key = new MarkKey(type,values,target);
+		Recording[] recordings = variants.get(key);
+
+		if (recordings == null)
+		{
+			recordings = new Recording[numVariants];
+			handy.setGraphics(recorder);
+			for (int i=0; i<numVariants; i++)
+			{
+				recorder.clear(target);
+
+				// Distinguishes variants when the renderer uses keyed seeding; has no effect otherwise.
+				handy.setMarkKey(31L*key.hashCode() + i);
+				drawMark(type,values);
+				recordings[i] = recorder.getRecording();
+			}
+			handy.setGraphics(target);
+			variants.put(key,recordings);
+		}
+		recordings[variant].replay(target);
+	}
+
+	/** Draws the given mark with the handy renderer.
+	 *  @param type Type of mark.
+	 *  @param v Coordinates defining the mark.
+	 */
+	private void drawMark(int type, float[] v)
+	{
+		switch (type)
+		{
+			case RECT:
+				handy.rect(v[0],v[1],v[2],v[3]);
+				break;
+			case ELLIPSE:
+				handy.ellipse(v[0],v[1],v[2],v[3]);
+				break;
+			case TRIANGLE:
+				handy.triangle(v[0],v[1],v[2],v[3],v[4],v[5]);
+				break;
+			case QUAD:
+				handy.quad(v[0],v[1],v[2],v[3],v[4],v[5],v[6],v[7]);
+				break;
+			case LINE:
+				handy.line(v[0],v[1],v[2],v[3]);
+				break;
+			case ARC:
+				handy.arc(v[0],v[1],v[2],v[3],v[4],v[5]);
+				break;
+			default:
+			{
+				int n = v.length/2;
+				float[] xs = Arrays.copyOfRange(v,0,n);
+				float[] ys = Arrays.copyOfRange(v,n,2*n);
+				if (type == SHAPE)
+				{
+					handy.shape(xs,ys);
+				}
+				else
+				{
+					handy.polyLine(xs,ys);
+				}
+				break;
+			}
+		}
+	}
+
+	/** Combines a pair of coordinate arrays into a single array of x coordinates followed by y coordinates.
+	 *  @param xCoords x coordinates.
+	 *  @param yCoords y coordinates.
+	 *  @return Combined coordinates, truncated to the length of the shorter array.
+	 */
+	private static float[] concatenate(float[] xCoords, float[] yCoords)
+	{
+		int n = Math.min(xCoords.length,yCoords.length);
+		float[] values = new float[2*n];
+		System.arraycopy(xCoords,0,values,0,n);
+		System.arraycopy(yCoords,0,values,n,n);
+		return values;
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** Identifies a mark by its type, coordinates and drawing style.
+	 */
+	private static class MarkKey
+	{
+		final int type;
+		final float[] values;
+		final boolean isFill, isStroke;
+		final int fillColour, strokeColour;
+		final float weight;
+		final int rectMode, ellipseMode;
+		final int hash;
+
+		MarkKey(int type, float[] values, PGraphics g)
+		{
+			this.type = type;
+			this.values = values;
+			this.isFill = g.fill;
+			this.isStroke = g.stroke;
+			this.fillColour = g.fillColor;
+			this.strokeColour = g.strokeColor;
+			this.weight = g.strokeWeight;
+			this.rectMode = g.rectMode;
+			this.ellipseMode = g.ellipseMode;
+
+			int h = type;
+			h = 31*h + Arrays.hashCode(values);
+			h = 31*h + (isFill ? fillColour : 1);
+			h = 31*h + (isStroke ? strokeColour : 1);
+			h = 31*h + Float.floatToIntBits(weight);
+			h = 31*h + ((type == RECT) ? rectMode : ellipseMode);
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof MarkKey))
+			{
+				return false;
+			}
+			MarkKey other = (MarkKey)obj;
+			return (type == other.type) && (hash == other.hash) && Arrays.equals(values,other.values) &&
+				   (isFill == other.isFill) && (!isFill || (fillColour == other.fillColour)) &&
+				   (isStroke == other.isStroke) && (!isStroke || (strokeColour == other.strokeColour)) &&
+				   (weight == other.weight) && (rectMode == other.rectMode) && (ellipseMode == other.ellipseMode);
+		}
+	}
+}
@@ -0,0 +1,396 @@
+package org.gicentre.handy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PShape;
+
+//*****************************************************************************************
+/** Pool of pre-generated sketchy glyphs for drawing large numbers of point symbols, such as
+ *  the points of a dense scatterplot. For each glyph type, style and approximate size, a fixed
+ *  number of random variants are drawn once by a handy renderer and recorded. Each point is
+ *  then drawn as a translated and scaled copy of one of these variants, chosen by hashing the
+ *  point's location. This retains a hand-drawn appearance in which neighbouring symbols differ,
+ *  but reduces the cost of each point to a transformation and the drawing of the stored
+ *  geometry. When drawing with an OpenGL renderer, variants are stored as <code>PShape</code>s.
+ *  Whichever renderer is used, a glyph's stroke weight is scaled along with it from the size at
+ *  which its variants were drawn, by no more than about a fifth.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class HandyGlyphPool
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	/** Identifies a circular glyph. */
+	public static final int CIRCLE   = 0;
+	/** Identifies a square glyph. */
+	public static final int SQUARE   = 1;
+	/** Identifies a triangular glyph. */
+	public static final int TRIANGLE = 2;
+	/** Identifies a cross-shaped glyph. */
+	public static final int CROSS    = 3;
+
+	private static final int MAX_CACHED_STYLES = 256;	// Maximum number of cached sets of variants.
+	private static final float BUCKETS_PER_DOUBLING = 2;// Number of size buckets each time glyph size doubles.
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private HandyRenderer handy;					// Renderer used to generate variants.
+	private int numVariants;						// Number of variants of each glyph.
+	private RecordingGraphics recorder;				// Captures the geometry of each variant.
+	private Map<GlyphKey,Recording[]> variants;		// Recorded variants for each glyph type, size and style.
+	private Map<GlyphKey,PShape[]> shapes;			// Variants stored as shapes for OpenGL renderers.
+
+	private HandyStyle style;						// Copy of the renderer's style when last checked.
+	private int styleVersion;						// Version of the renderer's style when last copied.
+	private GlyphKey probe;							// Reused to look up the variants of each glyph.
+	private Recording[] currentRecordings;			// Variants of the glyph last looked up.
+	private PShape[] currentShapes;					// Shape variants of the glyph last looked up.
+	private float currentSize, currentScale;		// Size of the glyph last looked up and its scaling from its variants.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a glyph pool that will store the given number of variants of each glyph.
+	 *  @param handy Renderer used to generate the glyph variants. Glyphs will be drawn into this renderer's
+	 *               graphics context using its current sketchy style.
+	 *  @param numVariants Number of random variants to generate for each glyph type, size and style.
+	 */
+	public HandyGlyphPool(HandyRenderer handy, int numVariants)
+	{
+		this.handy = handy;
+		this.numVariants = Math.max(1,numVariants);
+		this.recorder = new RecordingGraphics();
+		this.variants = new HashMap<GlyphKey,Recording[]>();
+		this.shapes = new HashMap<GlyphKey,PShape[]>();
+		this.probe = new GlyphKey();
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Removes all stored glyph variants. Variants are stored separately for each of the handy renderer's
+	 *  styles, so this need only be called to release the memory they occupy.
+	 */
+	public void clear()
+	{
+		variants.clear();
+		shapes.clear();
+		currentRecordings = null;
+		currentShapes = null;
+	}
+
+	/** Draws a single glyph centred on the given location using the current fill and stroke settings of
+	 *  the renderer's graphics context. The variant used is determined by the location of the glyph so
+	 *  that a glyph drawn at the same location will always have the same appearance.
+	 *  @param type Type of glyph to draw (<code>CIRCLE</code>, <code>SQUARE</code>, <code>TRIANGLE</code> or <code>CROSS</code>).
+	 *  @param x x coordinate of the centre of the glyph.
+	 *  @param y y coordinate of the centre of the glyph.
+	 *  @param size Width and height of the glyph.
+	 */
+	public void glyph(int type, float x, float y, float size)
+	{
+		glyph(type,x,y,size,hash(x,y));
+	}
+
+	/** Draws a single glyph centred on the given location using the current fill and stroke settings of
+	 *  the renderer's graphics context. The variant used is determined by the given key, allowing, for
+	 *  example, a moving point to retain its appearance.
+	 *  @param type Type of glyph to draw (<code>CIRCLE</code>, <code>SQUARE</code>, <code>TRIANGLE</code> or <code>CROSS</code>).
+	 *  @param x x coordinate of the centre of the glyph.
+	 *  @param y y coordinate of the centre of the glyph.
+	 *  @param size Width and height of the glyph.
+	 *  @param key Key used to select the variant to draw.
+	 */
+	public void glyph(int type, float x, float y, float size, int key)
+	{
+		if (findVariants(type,size))
+		{
+			drawVariant(handy.getGraphics(),x,y,key);
+		}
+	}
+
+	/** Draws a set of glyphs of the same type and size centred on the given locations. The glyph's variants
+	 *  are looked up once for the whole set.
+	 *  @param type Type of glyph to draw (<code>CIRCLE</code>, <code>SQUARE</code>, <code>TRIANGLE</code> or <code>CROSS</code>).
+	 *  @param xs x coordinates of the centres of each glyph.
+	 *  @param ys y coordinates of the centres of each glyph.
+	 *  @param size Width and height of each glyph.
+	 */
+	public void glyphs(int type, float[] xs, float[] ys, float size)
+	{
+		if ((xs == null) || (ys == null) || (xs.length != ys.length))
+		{
+			System.err.println("glyphs() requires two coordinate arrays of the same length.");
+			return;
+		}
+		if (findVariants(type,size))
+		{
+			PGraphics g = handy.getGraphics();
+			for (int i=0; i<xs.length; i++)
+			{
+				drawVariant(g,xs[i],ys[i],hash(xs[i],ys[i]));
+			}
+		}
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Finds the variants of the given glyph in the current style, generating them if necessary, and stores
+	 *  them ready for drawing. The renderer's style is only copied if it has changed since last used, and
+	 *  the stored variants are reused without a lookup if the glyph and style are unchanged.
+	 *  @param type Type of glyph to draw.
+	 *  @param size Width and height of the glyph.
+	 *  @return True if the glyph can be drawn, or false if its type or size are not valid.
+	 */
+	private boolean findVariants(int type, float size)
+	{
+		if ((size <= 0) || (type < CIRCLE) || (type > CROSS))
+		{
+			return false;
+		}
+
+		if ((style == null) || (handy.getStyleVersion() != styleVersion))
+		{
+			style = handy.getStyle();
+			styleVersion = handy.getStyleVersion();
+		}
+
+		PGraphics g = handy.getGraphics();
+		int bucket = probe.bucket;
+		float bucketSize = currentSize/currentScale;
+		if (size != currentSize)
+		{
+			bucket = Math.round(BUCKETS_PER_DOUBLING*log2(size));
+			bucketSize = (float)Math.pow(2,bucket/BUCKETS_PER_DOUBLING);
+			currentSize = size;
+			currentScale = size/bucketSize;
+		}
+
+		boolean isGL = g.isGL();
+		if ((probe.matches(type,bucket,g,style)) && ((isGL ? currentShapes : currentRecordings) != null))
+		{
+			if (isGL == false)
+			{
+				currentShapes = null;
+			}
+			return true;
+		}
+
+		probe.set(type,bucket,g,style);
+		currentRecordings = getVariants(probe,bucketSize);
+		currentShapes = null;
+
+		if (isGL)
+		{
+			currentShapes = shapes.get(probe);
+			if (currentShapes == null)
+			{
+				currentShapes = new PShape[numVariants];
+				for (int i=0; i<numVariants; i++)
+				{
+					currentShapes[i] = currentRecordings[i].toShape(g);
+				}
+				shapes.put(new GlyphKey(probe),currentShapes);
+			}
+		}
+		return true;
+	}
+
+	/** Draws one of the variants found by the last call to <code>findVariants()</code>.
+	 *  @param g Graphics context into which to draw.
+	 *  @param x x coordinate of the centre of the glyph.
+	 *  @param y y coordinate of the centre of the glyph.
+	 *  @param key Key used to select the variant to draw.
+	 */
+	private void drawVariant(PGraphics g, float x, float y, int key)
+	{
+		int variant = (key & 0x7fffffff) % numVariants;
+		if (currentShapes != null)
+		{
+			g.pushMatrix();
+			g.translate(x,y);
+			g.scale(currentScale);
+			g.shape(currentShapes[variant]);
+			g.popMatrix();
+		}
+		else
+		{
+			currentRecordings[variant].replayScaled(g,x,y,currentScale);
+		}
+	}
+
+	/** Provides the recorded variants of the glyph with the given key, generating them if necessary.
+	 *  @param glyphKey Glyph type, size bucket and style.
+	 *  @param bucketSize Size at which to generate the glyph.
+	 *  @return Recorded variants of the glyph centred on the origin.
+	 */
+	private Recording[] getVariants(GlyphKey glyphKey, float bucketSize)
+	{
+		Recording[] recordings = variants.get(glyphKey);
+		if (recordings != null)
+		{
+			return recordings;
+		}
+
+		if (variants.size() >= MAX_CACHED_STYLES)
+		{
+			clear();
+		}
+
+		recordings = new Recording[numVariants];
+		PGraphics target = handy.getGraphics();
+		handy.setGraphics(recorder);
+		float r = bucketSize/2;
+
+		for (int i=0; i<numVariants; i++)
+		{
+			recorder.clear(target);
+			recorder.ellipseMode(PConstants.CENTER);
+			recorder.rectMode(PConstants.CENTER);
+
+			// Distinguishes variants when the renderer uses keyed seeding; has no effect otherwise.
+			long variantKey = 31L*glyphKey.hashCode() + i;
+			handy.setMarkKey(variantKey);
+
+			switch (glyphKey.type)
+			{
+				case CIRCLE:
+					handy.ellipse(0,0,bucketSize,bucketSize);
+					break;
+				case SQUARE:
+					handy.rect(0,0,bucketSize,bucketSize);
+					break;
+				case TRIANGLE:
+					handy.triangle(0,-r, r*0.866f,r*0.5f, -r*0.866f,r*0.5f);
+					break;
+				default:
+					handy.line(-r,-r,r,r);
+					handy.setMarkKey(~variantKey);
+					handy.line(-r,r,r,-r);
+					break;
+			}
+			recordings[i] = recorder.getRecording();
+		}
+		handy.setGraphics(target);
+		variants.put(new GlyphKey(glyphKey),recordings);
+		return recordings;
+	}
+
+	/** Provides a hash value for the given location.
+	 *  @param x x coordinate of the location.
+	 *  @param y y coordinate of the location.
+	 *  @return Hash value based on the location.
+	 */
+	private static int hash(float x, float y)
+	{
+		int h = Float.floatToIntBits(x)*31 + Float.floatToIntBits(y);
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	/** Calculates the base 2 logarithm of the given value.
+	 *  @param value Value to transform.
+	 *  @return Log to base 2 of the given value.
+	 */
+	private static float log2(float value)
+	{
+		return (float)(Math.log(value)/Math.log(2));
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** Identifies a glyph type, size bucket, sketchy style and drawing style. A single key can be updated
+	 *  and reused to look up each glyph, but keys stored in a map are copies that are never changed.
+	 */
+	private static class GlyphKey
+	{
+		int type, bucket;
+		boolean isFill, isStroke;
+		int fillColour, strokeColour;
+		float weight;
+		HandyStyle style;
+
+		GlyphKey()
+		{
+			// Values are provided by set().
+		}
+
+		GlyphKey(GlyphKey other)
+		{
+			this.type = other.type;
+			this.bucket = other.bucket;
+			this.isFill = other.isFill;
+			this.isStroke = other.isStroke;
+			this.fillColour = other.fillColour;
+			this.strokeColour = other.strokeColour;
+			this.weight = other.weight;
+			this.style = other.style;
+		}
+
+		void set(int type, int bucket, PGraphics g, HandyStyle style)
+		{
+			this.type = type;
+			this.bucket = bucket;
+			this.isFill = g.fill;
+			this.isStroke = g.stroke;
+			this.fillColour = g.fillColor;
+			this.strokeColour = g.strokeColor;
+			this.weight = g.strokeWeight;
+			this.style = style;
+		}
+
+		boolean matches(int type, int bucket, PGraphics g, HandyStyle style)
+		{
+			return (this.type == type) && (this.bucket == bucket) && (this.style == style) &&
+				   (isFill == g.fill) && (!isFill || (fillColour == g.fillColor)) &&
+				   (isStroke == g.stroke) && (!isStroke || (strokeColour == g.strokeColor)) &&
+				   (weight == g.strokeWeight);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int h = type;
+			h = 31*h + bucket;
+			h = 31*h + (isFill ? fillColour : 1);
+			h = 31*h + (isStroke ? strokeColour : 1);
+			h = 31*h + Float.floatToIntBits(weight);
+			h = 31*h + style.hashCode();
+			return h;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof GlyphKey))
+			{
+				return false;
+			}
+			GlyphKey other = (GlyphKey)obj;
+			return (type == other.type) && (bucket == other.bucket) &&
+				   (isFill == other.isFill) && (!isFill || (fillColour == other.fillColour)) &&
+				   (isStroke == other.isStroke) && (!isStroke || (strokeColour == other.strokeColour)) &&
+				   (weight == other.weight) && (style.equals(other.style));
+		}
+	}
+}
@@ -26,6 +26,24 @@ import processing.core.PApplet;
 
 public class HandyPresets
 {
+	// Shared immutable styles for each preset. Colours are ARGB equivalents of the grey levels and transparencies.
+	private static final HandyStyle PENCIL = new HandyStyle().withOverrideStrokeColour(true).withStrokeColour(0xb4787878)
+			.withOverrideFillColour(true).withFillColour(0xdc808080)
+			.withFillWeight(0.3f).withFillGap(0.8f)
+			.withUseSecondaryColour(true).withBackgroundColour(0x32ffffff)
+			.withSecondaryColour(0x64ffffff).withHachurePerturbationAngle(5);
+
+	private static final HandyStyle COLOURED_PENCIL = new HandyStyle().withFillWeight(1.5f).withFillGap(1)
+			.withStrokeColour(0x00ffffff).withOverrideStrokeColour(true)
+			.withHachurePerturbationAngle(5);
+
+	private static final HandyStyle WATER_AND_INK = new HandyStyle().withOverrideStrokeColour(true).withStrokeColour(0xff000000)
+			.withOverrideFillColour(false).withFillGap(0).withRoughness(3);
+
+	private static final HandyStyle MARKER = new HandyStyle().withOverrideStrokeColour(true).withStrokeColour(0xa0000000)
+			.withFillWeight(5).withStrokeWeight(3).withFillGap(7)
+			.withHachurePerturbationAngle(5).withRoughness(1.5f);
+
 	/** Prevents this class from being instantiated.
 	 */
 	private HandyPresets()
@@ -40,17 +58,7 @@ public class HandyPresets
 	public static HandyRenderer createPencil(PApplet parent)
 	{
 		HandyRenderer handy = new HandyRenderer(parent);
-		
-		handy.setOverrideStrokeColour(true);
-		handy.setStrokeColour(parent.color(120,180));
-		handy.setOverrideFillColour(true);
-		handy.setFillColour(parent.color(128,220));
-		handy.setFillWeight(0.3f);
-		handy.setFillGap(0.8f);
-		handy.setUseSecondaryColour(true);
-		handy.setBackgroundColour(parent.color(255,50));
-		handy.setSecondaryColour(parent.color(255,100));		
-		handy.setHachurePerturbationAngle(5);
+		handy.setStyle(PENCIL);
 		return handy;
 	}
 	
@@ -61,12 +69,7 @@ public class HandyPresets
 	public static HandyRenderer createColouredPencil(PApplet parent)
 	{
 		HandyRenderer handy = new HandyRenderer(parent);
-		handy.setFillWeight(1.5f);
-		handy.setFillGap(1f);
-		handy.setStrokeColour(parent.color(255,0));
-		handy.setOverrideStrokeColour(true);
-		//handy.setBackgroundColour(parent.color(25,50));
-		handy.setHachurePerturbationAngle(5);
+		handy.setStyle(COLOURED_PENCIL);
 		return handy;
 	}
 	
@@ -77,11 +80,7 @@ public class HandyPresets
 	public static HandyRenderer createWaterAndInk(PApplet parent)
 	{
 		HandyRenderer handy = new HandyRenderer(parent);
-		handy.setOverrideStrokeColour(true);
-		handy.setStrokeColour(parent.color(0));
-		handy.setOverrideFillColour(false);
-		handy.setFillGap(0);
-		handy.setRoughness(3);
+		handy.setStyle(WATER_AND_INK);
 		return handy;
 	}
 	
@@ -92,13 +91,39 @@ public class HandyPresets
 	public static HandyRenderer createMarker(PApplet parent)
 	{
 		HandyRenderer handy = new HandyRenderer(parent);
-		handy.setOverrideStrokeColour(true);
-		handy.setStrokeColour(parent.color(0,160));		
-		handy.setFillWeight(5);
-		handy.setStrokeWeight(3);
-		handy.setFillGap(7);
-		handy.setHachurePerturbationAngle(5);
-		handy.setRoughness(1.5f);
+		handy.setStyle(MARKER);
 		return handy;
 	}
+
+	/** Provides a shared style that draws in a pencil sketch style.
+	 *  @return Pencil sketch style.
+	 */
+	public static HandyStyle getPencilStyle()
+	{
+		return PENCIL;
+	}
+
+	/** Provides a shared style that draws in a coloured pencil sketch style.
+	 *  @return Coloured pencil sketch style.
+	 */
+	public static HandyStyle getColouredPencilStyle()
+	{
+		return COLOURED_PENCIL;
+	}
+
+	/** Provides a shared style that draws in a watercolour and ink style.
+	 *  @return Watercolour and ink style.
+	 */
+	public static HandyStyle getWaterAndInkStyle()
+	{
+		return WATER_AND_INK;
+	}
+
+	/** Provides a shared style that draws in a felt-tip marker ('Sharpie') style.
+	 *  @return Marker style.
+	 */
+	public static HandyStyle getMarkerStyle()
+	{
+		return MARKER;
+	}
 }
\ No newline at end of file
@@ -1,14 +1,23 @@
 package org.gicentre.handy;
 
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
 import java.util.TreeMap;
 
 import processing.core.PApplet;
 import processing.core.PConstants;
+import processing.core.PFont;
 import processing.core.PGraphics;
+import processing.core.PGraphicsJava2D;
+import processing.core.PMatrix2D;
 import processing.core.PVector;
 
 // *****************************************************************************************
@@ -42,11 +51,27 @@ public class HandyRenderer
 	private PApplet parent;						// Parent class invoking the renderer.
 	private PGraphics graphics;					// Graphics context in which this class is to render.
 	private Random rand;						// Random number generator for random but repeatable offsets.
+	private long seed;							// Seed of the random number generator.
+	private KeyedRandom keyedRand;				// Generator used when each mark is seeded by its key, or null if not keyed.
+	private long markKey;						// Key of the current mark when keyed seeding is used.
+	private long nextMarkKey;					// Key supplied for the next mark to be drawn.
+	private boolean hasNextMarkKey;				// Indicates if a key has been supplied for the next mark.
+	private int styleVersion;					// Incremented whenever a sketchy style setting changes.
 	private float cosAngle,sinAngle,tanAngle;	// Lookups for quick calculations.
-	private List<float[]> vertices;				// Temporary store of shape or polyline vertices.
-	private HashSet<Integer>curveIndices;		// Pointer to vertices that refer to curves
+	private float baseCos,baseSin,baseTan;		// Lookups for the unperturbed hachure angle.
+	private VertexBuffer vertices;				// Reusable store of shape or polyline vertices.
+	private float[] quadX, quadY, quadZ;		// Reusable vertices of a single quad or triangle.
+	private BitSet curveIndices;				// Flags vertices that refer to curves.
+	private int[] ringStarts;					// Index of the first vertex of each ring (outer boundary or contour) of a shape.
+	private int numRings;						// Number of rings in the current shape.
 	private int shapeMode;						// Type of setting for shape drawing.
 	private boolean is3DShape;					// Indicates if shape defined with vertices is 2d or 3d.
+	private float[] flatX, flatY;				// Reusable buffer of flattened curved shape vertices.
+	private int numFlat;						// Number of vertices in the flattened shape buffer.
+	private float[] spanControls;				// Control points of the curve span being flattened.
+	private float[] textX, textY;				// Reusable buffer of laid out glyph contours.
+	private int[] textStarts;					// Index of the first vertex of each laid out glyph contour.
+	private int numText, numTextRings;			// Number of vertices and contours in the laid out text buffer.
 
 	private enum Plane2d {XY, XZ, YZ}			// Used to identify plane onto which textures may be mapped for 3d faces.
 
@@ -64,11 +89,48 @@ public class HandyRenderer
 	private float strokeWeight;					// Stroke weight for lines.
 	private float roughness;					// Scaling for random perturbations.
 	private float bowing;						// Scaling of the 'bowing' of lines at their midpoint.
+	private float textFlatness;					// Maximum distance between glyph curves and their flattened outlines.
 
 	private int numEllipseSteps;
 	private float ellipseInc;					// Incremental steps along an ellipse.
 
+	private SpriteAtlas spriteAtlas;			// Pre-rasterised marks used when sprite drawing is enabled.
+	private boolean useSprites;					// Determines whether simple marks are drawn by copying sprites.
+	private boolean simplifyBoundaries;			// Determines whether detailed shape and line boundaries are simplified.
+	private BoundaryCache boundaryCache;		// Simplified boundaries of shapes and lines already drawn.
+	private PMatrix2D scaleMatrix;				// Used to find the scale at which boundaries are drawn.
+	private boolean coalesceStrokes;			// Determines whether runs of short or collinear edges are drawn as single strokes.
+	private int[] runIndices;					// Reusable buffer of the vertices retained when coalescing strokes.
+	private float[] knotOffsets;				// Reusable buffer of random offsets along a coalesced stroke.
+	private float[] chainParams;				// Reusable buffer of the random variation of each segment of a chained stroke.
+	private int clipFillThreshold;				// Number of vertices above which Java2D shapes are hachured through a clip.
+	private int numHachureDirections;			// Number of hachure angles used to cross-hatch shapes.
+	private VertexBuffer hatchLines;			// Reusable buffer of the end points of hachure lines.
+	private BulkKernels kernels;				// Scalar or vector implementation of bulk operations on vertices.
+	private float[] extent;						// Reusable minimum and maximum of a set of coordinates.
+	private VertexBuffer gathered;				// Reusable vertices gathered from a coordinate buffer.
+	private boolean[] gatheredKeep;				// Reusable flags identifying vertices retained when simplifying a coordinate buffer.
+	private DeferredFrame frame;				// Collects output between beginFrame() and endFrame().
+	private boolean isDeferring;				// Indicates output is currently being collected by the frame.
+	private float spriteTolerance;				// Proportional size difference within which a sprite may be rescaled.
+	private double[] spriteSettings;			// Renderer settings that determine the appearance of sprites.
+
 	private static final float MIN_ROUGHNESS = 0.1f;	// Roughess less than this value will be consisidered 0.
+	private static final int NUM_SPRITE_VARIANTS = 4;	// Number of random variants of each sprite.
+	private static final int MAX_SPRITE_SIZE = 128;		// Marks larger than this are never drawn as sprites.
+	private static final int[] SINGLE_RING = new int[] {0};	// Ring start of a shape with no contours.
+	private static final int FILL_PHASE = 1;			// Phase of a keyed mark's random stream used for its fill.
+	private static final int OUTLINE_PHASE = 2;			// Phase of a keyed mark's random stream used for its outline.
+	private static final float FLATNESS = 0.5f;			// Maximum distance in pixels between a curve and its flattened approximation.
+	private static final int MIN_FLATTEN_DEPTH = 2;		// Minimum number of times each curve span is subdivided.
+	private static final int MAX_FLATTEN_DEPTH = 8;		// Maximum number of times each curve span is subdivided.
+	private static final float SIMPLIFY_PIXELS = 0.5f;	// Boundary simplification tolerance in pixels when roughness is 0.
+	private static final int MIN_SIMPLIFY_COORDS = 32;	// Boundaries with fewer vertices than this are never simplified.
+	private static final int NO_SIMPLIFICATION = Integer.MIN_VALUE;	// Scale bucket indicating boundaries are not simplified.
+	private static final float COALESCE_SPACING = 1;	// Minimum distance in pixels between vertices of a coalesced stroke.
+	private static final float COS_CORNER = 0.82f;		// Cosine of the smallest turn (about 35 degrees) treated as a corner.
+	private static final float KNOT_SPACING = 50;		// Approximate distance between random offsets along a coalesced stroke.
+	private static final int CLIP_FILL_THRESHOLD = 256;	// Default number of vertices above which Java2D shapes are hachured through a clip.
 
 
 	// ----------------------------------- Constructor -----------------------------------
@@ -79,22 +141,78 @@ public class HandyRenderer
 	 */
 	public HandyRenderer(PApplet parent)
 	{
+		this(parent.g);
 		this.parent = parent;
-		this.graphics = parent.g;
+	}
+
+	/** Creates a new HandyRenderer that draws directly into the given graphics context. This allows
+	 *  sketchy output to be produced without a running sketch, for example into an offscreen Java2D
+	 *  context in a headless application. If the graphics context has no parent sketch, sprite atlases 
+	 *  and hachured 3d faces, which need a sketch to create their offscreen images, are not available.
+	 *  @param graphics Graphics context that will be drawn to.
+	 */
+	public HandyRenderer(PGraphics graphics)
+	{
+		this.parent = graphics.parent;
+		this.graphics = graphics;
 
 		numEllipseSteps = 9;
 		ellipseInc = PConstants.TWO_PI/numEllipseSteps;
-		vertices = new ArrayList<float[]>();
-		curveIndices = new HashSet<Integer>();
-		is3DShape = false;
+		spriteTolerance = 0.1f;
+		textFlatness = 0.5f;
+		clipFillThreshold = CLIP_FILL_THRESHOLD;
+		numHachureDirections = 1;
+		createBuffers();
 
 		// Set initial configuration options.
 		setIsHandy(true);
 		resetStyles();		
 	}
 
+	/** Creates a renderer with the same configuration as the given one but with its own random number
+	 *  generator, working buffers and graphics context. The style is shared as an immutable
+	 *  <code>HandyStyle</code> and other settings are applied through their setters so that any state
+	 *  they need is created.
+	 *  @param source Renderer whose configuration is to be copied.
+	 *  @param seed Random number seed for the new renderer.
+	 *  @param graphics Graphics context that the new renderer will draw to.
+	 */
+	private HandyRenderer(HandyRenderer source, long seed, PGraphics graphics)
+	{
+		this(graphics);
+		this.parent = source.parent;
+
+		setStyle(source.getStyle());
+		setIsHandy(source.isHandy);
+		setUseKeyedSeeds(source.keyedRand != null);
+		setSeed(seed);
+		setSpriteTolerance(source.spriteTolerance);
+		setTextFlatness(source.textFlatness);
+		setSimplifyBoundaries(source.simplifyBoundaries);
+		setCoalesceStrokes(source.coalesceStrokes);
+		setClipFillThreshold(source.clipFillThreshold);
+		setCrossHatch(source.numHachureDirections);
+	}
+
 	// ------------------------------------- Methods ------------------------------------- 
 
+	/** Creates a lightweight copy of this renderer that draws into the given graphics context. The copy has
+	 *  the same sketchy style and settings as this renderer but its own random number generator and working
+	 *  buffers, so this renderer and any number of copies can be used at the same time on different threads,
+	 *  provided each draws into its own graphics context. This is much cheaper than creating and configuring a
+	 *  new renderer, for example when drawing each panel of a grid of small multiples on a separate thread.
+	 *  Later changes to the settings of either renderer do not affect the other. Sprite atlases and deferred
+	 *  frames are not shared, so the copy draws all marks individually until <code>setUseSpriteAtlas()</code>
+	 *  is called on it.
+	 *  @param seed Random number seed for the copy's random variation.
+	 *  @param graphics Graphics context into which the copy draws.
+	 *  @return New renderer with this renderer's settings.
+	 */
+	public HandyRenderer fork(long seed, PGraphics graphics)
+	{
+		return new HandyRenderer(this,seed,graphics);
+	}
+
 	/** Sets the graphics context into which all output is directed. This method allows
 	 *  output to be redirected to print output, offscreen buffers etc.
 	 *  @param graphics New graphics context in which to render.
@@ -104,6 +222,56 @@ public class HandyRenderer
 		this.graphics = graphics;
 	}
 
+	/** Starts collecting all output from this renderer for the rest of the frame instead of drawing it
+	 *  immediately. When <code>endFrame()</code> is called, any hachures, outlines or complete shapes that
+	 *  would be entirely covered by the opaque interior of shapes drawn later in the frame are discarded
+	 *  and the remainder drawn in the order in which it was created. This avoids the cost of drawing hidden
+	 *  detail in layered scenes such as stacked charts or overlapping map symbols. Interiors are opaque if
+	 *  they are filled with an opaque colour or, when hachured, the background colour is opaque. All drawing
+	 *  between <code>beginFrame()</code> and <code>endFrame()</code> should be done with this renderer and
+	 *  only 2d graphics contexts are supported.
+	 */
+	public void beginFrame()
+	{
+		if (isDeferring)
+		{
+			System.err.println("beginFrame() called before the previous frame was ended.");
+			return;
+		}
+		if (graphics.is3D())
+		{
+			System.err.println("Deferred frames are only supported by 2d renderers.");
+			return;
+		}
+		if (frame == null)
+		{
+			frame = new DeferredFrame();
+		}
+		graphics = frame.begin(graphics);
+		isDeferring = true;
+	}
+
+	/** Draws all the visible output collected since the last call to <code>beginFrame()</code>.
+	 */
+	public void endFrame()
+	{
+		if (isDeferring == false)
+		{
+			System.err.println("endFrame() called without a matching beginFrame().");
+			return;
+		}
+		isDeferring = false;
+		graphics = frame.end();
+	}
+
+	/** Reports the graphics context into which all output is currently directed.
+	 *  @return Graphics context in which this renderer draws.
+	 */
+	public PGraphics getGraphics()
+	{
+		return graphics;
+	}
+
 	/** Copies the settings from one graphics context to another. This can be useful when creating an offscreen
 	 *  buffer that needs to have the same appearance settings as the current context.
 	 *  @param gSrc Source graphics context.
@@ -137,9 +305,53 @@ public class HandyRenderer
 	 */
 	public void setSeed(long seed)
 	{
+		this.seed = seed;
 		rand.setSeed(seed);
 	}
 
+	/** Determines whether the random variation of each mark depends only on the seed and the mark itself. By
+	 *  default random offsets are taken in turn from a single sequence, so the appearance of a mark depends on
+	 *  how many marks were drawn before it since the seed was set. If keyed seeding is used, each primitive
+	 *  instead takes its random variation from its own stream keyed by the seed and either a key provided with
+	 *  <code>setMarkKey()</code> or, if none is provided, its type and coordinates. A mark then looks the same
+	 *  whatever is drawn before it, so drawing can be reordered, culled, cached or split between threads without
+	 *  changing its appearance. Identical marks drawn in the same place will look identical unless given
+	 *  different keys.
+	 *  @param useKeys Each mark seeded by its key if true, or all marks seeded in sequence if false.
+	 */
+	public void setUseKeyedSeeds(boolean useKeys)
+	{
+		if (useKeys == (keyedRand != null))
+		{
+			return;
+		}
+		if (useKeys)
+		{
+			keyedRand = new KeyedRandom(seed);
+			rand = keyedRand;
+		}
+		else
+		{
+			keyedRand = null;
+			rand = new Random(seed);
+		}
+		hasNextMarkKey = false;
+	}
+
+	/** Sets the key that identifies the next mark to be drawn when keyed seeding is in use. This allows a mark
+	 *  to keep the same appearance when its geometry changes, for example while it is being animated, or allows
+	 *  otherwise identical marks to be distinguished. The key applies only to the next call of a single mark
+	 *  drawing method such as <code>rect()</code>, <code>ellipse()</code> or <code>shape()</code>. Marks drawn
+	 *  in batches with <code>rects()</code> or <code>ellipses()</code> are always keyed by their geometry.
+	 *  Has no effect unless <code>setUseKeyedSeeds()</code> has been enabled.
+	 *  @param key Key identifying the next mark, such as the index of a data item.
+	 */
+	public void setMarkKey(long key)
+	{
+		nextMarkKey = key;
+		hasNextMarkKey = true;
+	}
+
 	// ----------------------------------- Configuration methods -----------------------------------
 
 	/** Determines whether or not the renderer applies a hand-drawn sketchy appearance.
@@ -158,9 +370,10 @@ public class HandyRenderer
 	public void setHachureAngle(float degrees)
 	{
 		hachureAngle = PApplet.radians(degrees%180);
-		cosAngle = (float)Math.cos(hachureAngle);
-		sinAngle = (float)Math.sin(hachureAngle);
-		tanAngle = (float)Math.tan(hachureAngle);
+		baseCos = cosAngle = (float)Math.cos(hachureAngle);
+		baseSin = sinAngle = (float)Math.sin(hachureAngle);
+		baseTan = tanAngle = (float)Math.tan(hachureAngle);
+		styleVersion++;
 	}
 
 	/** Sets the maximum random perturbation in hachure angle per object. This allows a hachure angle to
@@ -170,6 +383,7 @@ public class HandyRenderer
 	public void setHachurePerturbationAngle(float degrees)
 	{
 		this.anglePerturbation = degrees;
+		styleVersion++;
 	}
 
 	/** Sets the background colour for closed shapes. 
@@ -178,6 +392,7 @@ public class HandyRenderer
 	public void setBackgroundColour(int colour)
 	{
 		this.bgColour = colour;
+		styleVersion++;
 	}
 
 	/** Sets the fill colour for closed shapes. Note this will only have an effect if
@@ -187,6 +402,7 @@ public class HandyRenderer
 	public void setFillColour(int colour)
 	{
 		this.fillColour = colour;
+		styleVersion++;
 	}
 
 	/** Determines whether or not to override the fill colour that would otherwise be determined by
@@ -198,6 +414,7 @@ public class HandyRenderer
 	public void setOverrideFillColour(boolean override)
 	{
 		this.overrideFillColour = override;
+		styleVersion++;
 	}
 
 	/** Sets the stroke colour for rendering features. Note this will only have an effect if
@@ -207,6 +424,7 @@ public class HandyRenderer
 	public void setStrokeColour(int colour)
 	{
 		this.strokeColour = colour;
+		styleVersion++;
 	}
 
 	/** Determines whether or not to override the stroke colour that would otherwise be determined by
@@ -218,6 +436,7 @@ public class HandyRenderer
 	public void setOverrideStrokeColour(boolean override)
 	{
 		this.overrideStrokeColour = override;
+		styleVersion++;
 	}
 
 	/** Determines whether or not a secondary colour is used for filling lines.
@@ -226,6 +445,7 @@ public class HandyRenderer
 	public void setUseSecondaryColour(boolean useSecondary)
 	{
 		this.useSecondary = useSecondary;
+		styleVersion++;
 	}
 
 	/** Sets the secondary colour for line filling. Note this will only have an effect if
@@ -235,6 +455,7 @@ public class HandyRenderer
 	public void setSecondaryColour(int colour)
 	{
 		this.secondaryColour = colour;
+		styleVersion++;
 	}
 
 	/** Determines the thickness of fill lines. If zero or negative, the thickness is
@@ -244,6 +465,7 @@ public class HandyRenderer
 	public void setFillWeight(float weight)
 	{
 		this.fillWeight = weight;
+		styleVersion++;
 	}
 
 	/** Determines the thickness of outer lines. If zero or negative, the thickness is
@@ -253,6 +475,7 @@ public class HandyRenderer
 	public void setStrokeWeight(float weight)
 	{
 		this.strokeWeight = weight;
+		styleVersion++;
 	}
 
 	/** Determines the gap between fill lines. If zero, standard solid fill is used. If negative,
@@ -262,15 +485,19 @@ public class HandyRenderer
 	public void setFillGap(float gap)
 	{
 		this.fillGap = gap;
+		styleVersion++;
 	}
 
 	/** Determines whether or not an alternating fill stroke is used to shade shapes. If true, shading appears
-	 *  as one long zig-zag stroke rather than many approximately parallel lines.
+	 *  as one long zig-zag stroke rather than many approximately parallel lines. Concave shapes and shapes
+	 *  with holes are shaded with one zig-zag for each part of the shape that the stroke can cross without
+	 *  leaving the shape.
 	 *  @param alternate Zig-zag filling used if true, parallel lines if not.
 	 */
 	public void setIsAlternating(boolean alternate)
 	{
 		this.isAlternating = alternate;
+		styleVersion++;
 	}
 
 	/** Sets the general roughness of the sketch. 1 is a typically neat sketchiness, 0 is very precise, 5 
@@ -281,6 +508,7 @@ public class HandyRenderer
 	{
 		// Cap roughness between 0 and 10.
 		this.roughness = Math.max(0,Math.min(roughness, 10));
+		styleVersion++;
 	}
 
 	/** Sets the amount of 'bowing' of lines (contols the degree to which a straigh line appears as an 'I' or 'C'). Applies to
@@ -294,6 +522,169 @@ public class HandyRenderer
 	{
 		// Cap roughness between 0 and 10.
 		this.bowing = Math.max(0,Math.min(bowing, 10));
+		styleVersion++;
+	}
+
+	/** Sets the accuracy with which the curved outlines of glyphs are approximated when drawing sketchy text.
+	 *  Smaller values give smoother glyphs made up of more line segments. The default is 0.5 pixels.
+	 *  @param flatness Maximum distance in pixels between a glyph's curves and their straight-edged approximation.
+	 */
+	public void setTextFlatness(float flatness)
+	{
+		this.textFlatness = Math.max(0.01f,flatness);
+	}
+
+	/** Determines whether or not sketchy ellipses, rectangles and points are drawn by copying pre-rasterised
+	 *  sprites. Sprites are generated at the current style settings the first time a mark of a given size is
+	 *  drawn and are only regenerated when the style or size changes. This can considerably speed up the drawing
+	 *  of many small marks but only applies when drawing to a Java2D graphics context.
+	 *  @param useSprites Marks drawn by copying sprites if true, or drawn individually if false.
+	 */
+	public void setUseSpriteAtlas(boolean useSprites)
+	{
+		if ((useSprites) && (parent == null))
+		{
+			System.err.println("Sprite atlas cannot be used without a parent sketch.");
+			return;
+		}
+		this.useSprites = useSprites;
+		if ((useSprites) && (spriteAtlas == null))
+		{
+			spriteAtlas = new SpriteAtlas(parent);
+		}
+	}
+
+	/** Determines whether the boundaries of detailed shapes and lines drawn with <code>shape()</code> and
+	 *  <code>polyLine()</code> are simplified before they are drawn. Each edge of a boundary is drawn with two
+	 *  sketchy strokes, so a boundary with many vertices less than a pixel apart, such as a detailed coastline,
+	 *  generates a great many strokes whose detail is hidden by their random variation. If simplification is
+	 *  enabled, vertices within a tolerance of the simplified boundary are removed with Douglas-Peucker
+	 *  simplification. The tolerance is half a pixel at the current transformation's scale, increased in
+	 *  proportion to the roughness. Simplified boundaries are cached for each coordinate array and scale. A
+	 *  hash of the coordinates is checked each time a boundary is drawn, so arrays that are modified in place
+	 *  or a change in roughness cause the boundary to be simplified again. Boundaries with fewer than 32 vertices and 3d shapes are not simplified.
+	 *  @param simplify Detailed boundaries simplified if true, or drawn with every vertex if false.
+	 */
+	public void setSimplifyBoundaries(boolean simplify)
+	{
+		this.simplifyBoundaries = simplify;
+		if ((simplify) && (boundaryCache == null))
+		{
+			boundaryCache = new BoundaryCache();
+		}
+	}
+
+	/** Determines whether the outlines of shapes drawn with <code>shape()</code> and lines drawn with
+	 *  <code>polyLine()</code> are drawn with one sketchy stroke per edge or by coalescing runs of edges into
+	 *  longer strokes. When coalescing, vertices less than a pixel from the previous one are skipped and each
+	 *  run of edges between corners, where the boundary turns by more than about 35 degrees, is drawn as a
+	 *  single continuous curve through its vertices with smoothly varying random offsets. This greatly reduces
+	 *  the number of strokes needed for densely sampled lines such as long time series while keeping corners
+	 *  sharp. Edges that meet at corners are drawn exactly as they would be without coalescing.
+	 *  @param coalesce Runs of short or collinear edges drawn as single strokes if true, or each edge drawn
+	 *                  separately if false.
+	 */
+	public void setCoalesceStrokes(boolean coalesce)
+	{
+		this.coalesceStrokes = coalesce;
+	}
+
+	/** Removes any cached simplified boundaries. Changed boundaries are detected automatically, so this is
+	 *  only needed to release the memory used by boundaries that will not be drawn again.
+	 */
+	public void clearSimplifiedBoundaries()
+	{
+		if (boundaryCache != null)
+		{
+			boundaryCache.clear();
+		}
+	}
+
+	/** Sets the number of vertices above which the hachures of shapes drawn into a Java2D graphics context are
+	 *  clipped by the graphics context rather than calculated. Normally the parts of each hachure line inside a
+	 *  shape are found by sweeping across the shape's edges, which becomes slow for shapes with many vertices.
+	 *  Instead, the shape can be set as the clipping region of the Java2D context and hachures drawn right across
+	 *  its bounding box, leaving Java2D to remove the parts outside. Clipped hachures end exactly on the shape's
+	 *  boundary rather than with a sketchy overshoot. Drawing clipped lines is slower than drawing unclipped ones,
+	 *  so this is only faster for shapes with many vertices. The default is 256 vertices, about where clipping
+	 *  becomes faster than the sweep (see <code>ClipFillBenchmark</code> in the tests package to measure the
+	 *  crossover on a given machine). Has no effect on other graphics contexts.
+	 *  @param numVertices Minimum number of vertices for clipped hachuring. 0 clips all shapes, and
+	 *                     <code>Integer.MAX_VALUE</code> never clips.
+	 */
+	public void setClipFillThreshold(int numVertices)
+	{
+		this.clipFillThreshold = Math.max(0,numVertices);
+	}
+
+	/** Sets the number of directions in which shapes drawn with <code>shape()</code> are hachured. A value of 2
+	 *  cross-hatches shapes with hachures at the current hachure angle and at right angles to it, 3 adds hachures
+	 *  every 60 degrees and so on. The shape's edges are prepared once and hachures in every direction generated
+	 *  from them in a single pass, which is much faster than drawing the same shape several times with different
+	 *  hachure angles. Cross-hatching always uses parallel strokes, even if alternating fill is set.
+	 *  @param numDirections Number of hachure directions. Values less than 2 give normal single direction hachuring.
+	 */
+	public void setCrossHatch(int numDirections)
+	{
+		this.numHachureDirections = Math.max(1,numDirections);
+	}
+
+	/** Sets the proportional difference in size within which a sprite may be rescaled rather than generating a new one.
+	 *  Larger values reduce the number of sprites generated at the cost of some scaling of line widths.
+	 *  @param tolerance Proportional size tolerance. For example 0.1 allows marks within about 10% of each other's size
+	 *                   to share the same sprite.
+	 */
+	public void setSpriteTolerance(float tolerance)
+	{
+		this.spriteTolerance = Math.max(0.01f,tolerance);
+	}
+
+	/** Applies all the settings of the given style to this renderer. Since all values derived from the style are
+	 *  already calculated, this is a cheap way of switching between styles, for example when drawing several
+	 *  differently styled data series.
+	 *  @param style Style to apply.
+	 */
+	public void setStyle(HandyStyle style)
+	{
+		fillColour           = style.fillColour;
+		strokeColour         = style.strokeColour;
+		bgColour             = style.bgColour;
+		secondaryColour      = style.secondaryColour;
+		overrideFillColour   = style.overrideFillColour;
+		overrideStrokeColour = style.overrideStrokeColour;
+		useSecondary         = style.useSecondary;
+		isAlternating        = style.isAlternating;
+		hachureAngle         = style.hachureAngle;
+		baseCos = cosAngle   = style.cosAngle;
+		baseSin = sinAngle   = style.sinAngle;
+		baseTan = tanAngle   = style.tanAngle;
+		anglePerturbation    = style.anglePerturbation;
+		fillWeight           = style.fillWeight;
+		fillGap              = style.fillGap;
+		strokeWeight         = style.strokeWeight;
+		roughness            = style.roughness;
+		bowing               = style.bowing;
+		styleVersion++;
+	}
+
+	/** Provides an immutable copy of this renderer's current style settings. This can be used to restore the
+	 *  settings later with <code>setStyle()</code> or to share them with other renderers.
+	 *  @return Current style settings.
+	 */
+	public HandyStyle getStyle()
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,
+							  useSecondary,isAlternating,PApplet.degrees(hachureAngle),anglePerturbation,fillWeight,fillGap,
+							  strokeWeight,roughness,bowing);
+	}
+
+	/** Reports a number that changes whenever any of the settings making up this renderer's style are changed.
+	 *  This allows a cached copy of the style to be checked cheaply before it is used.
+	 *  @return Version number of the current style settings.
+	 */
+	int getStyleVersion()
+	{
+		return styleVersion;
 	}
 
 	/** Resets the sketchy styles to default values.
@@ -304,7 +695,13 @@ public class HandyRenderer
 		anglePerturbation = 0;
 		roughness = 1;
 		bowing = 1;
-		rand = new Random(12345);
+		seed = 12345;
+		rand = new Random(seed);
+		if (keyedRand != null)
+		{
+			keyedRand = new KeyedRandom(seed);
+			rand = keyedRand;
+		}
 		setStrokeColour(graphics.strokeColor);
 		setFillColour(graphics.fillColor);
 		setBackgroundColour(graphics.color(255));
@@ -316,18 +713,23 @@ public class HandyRenderer
 		setHachureAngle(-41);
 		setHachurePerturbationAngle(0);
 		setOverrideFillColour(false);
-		setOverrideStrokeColour(false);
+		setOverrideStrokeColour(false);		styleVersion++;
 	}
 
 	// -------------------------------------- Drawing methods --------------------------------------
 
 	/** Draws 2D point at the given location. Currently this draws the point in the same style as the
-	 *  default Processing renderer.
+	 *  default Processing renderer, although it may be copied from a sprite if <code>setUseSpriteAtlas()</code>
+	 *  is enabled.
 	 *  @param x x coordinate of the point.
 	 *  @param y y coordinate of the point.
 	 */
 	public void point(float x, float y)
 	{
+		if ((isHandy) && (graphics.stroke) && (drawSprite(PConstants.POINT,x,y,graphics.strokeWeight,graphics.strokeWeight)))
+		{
+			return;
+		}
 		graphics.point(x, y);
 	}
 
@@ -358,8 +760,6 @@ public class HandyRenderer
 			return;
 		}
 
-		graphics.pushStyle();
-
 		// Default is to use 'CENTER' mode for defining ellipse
 		float cx = x;
 		float cy = y;
@@ -408,6 +808,14 @@ public class HandyRenderer
 			return;
 		}	
 
+		if (drawSprite(PConstants.ELLIPSE,cx,cy,2*rx,2*ry))
+		{
+			return;
+		}
+
+		graphics.pushStyle();
+		startMark(boundsKey(PConstants.ELLIPSE,cx,cy,rx,ry));
+
 		// Add small proportionate perturbation to dimensions of ellipse
 		rx += getOffset(-rx*0.05f, rx*0.05f);
 		ry += getOffset(-ry*0.05f, ry*0.05f);
@@ -419,8 +827,8 @@ public class HandyRenderer
 		float oWeight = graphics.strokeWeight;
 		boolean oIsStroke = graphics.stroke;
 		boolean oIsFill = graphics.fill;
-		float originalAngle = PApplet.degrees(hachureAngle);
 
+		setMarkPhase(FILL_PHASE);
 		if (oIsFill)
 		{
 			// Erase interior of ellipse if not completely transparent
@@ -428,11 +836,12 @@ public class HandyRenderer
 			{
 				int oEllipseMode = graphics.ellipseMode;
 				graphics.ellipseMode(PConstants.RADIUS);
-				graphics.noStroke();
-				graphics.fill(bgColour);
+				StyleEmitter.noStroke(graphics);
+				StyleEmitter.fill(graphics,bgColour);
+				occludeEllipse(cx,cy,rx,ry);
 				graphics.ellipse(cx,cy,rx,ry);
 				graphics.ellipseMode(oEllipseMode);
-				graphics.noFill();
+				StyleEmitter.noFill(graphics);
 			}
 
 			// Only fill interior if the fill colour is distinct from the background.
@@ -443,47 +852,43 @@ public class HandyRenderer
 					// Fill with solid colour
 					if (overrideFillColour)
 					{
-						graphics.fill(fillColour);
+						StyleEmitter.fill(graphics,fillColour);
 					}
 					int oEllipseMode = graphics.ellipseMode;
 					graphics.ellipseMode(PConstants.RADIUS);
-					graphics.noStroke();
+					StyleEmitter.noStroke(graphics);
+					occludeEllipse(cx,cy,rx,ry);
 					graphics.ellipse(cx,cy,rx,ry);
 					graphics.ellipseMode(oEllipseMode);
-					graphics.noFill();
+					StyleEmitter.noFill(graphics);
 				}
 				else
 				{
 					// We will be using strokes to fill, so change stroke to fill colour.
 					if (overrideFillColour)
 					{
-						graphics.stroke(fillColour);
+						StyleEmitter.stroke(graphics,fillColour);
 					}
 					else
 					{
-						graphics.stroke(oFill);
+						StyleEmitter.stroke(graphics,oFill);
 					}
 
 					// Perturb hachure angle if requested.
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle + (2*rand.nextFloat()-1)*anglePerturbation);
+						perturbHachureAngle();
 					}
 
 					if (fillWeight <=0)
 					{
-						graphics.strokeWeight(oWeight/2f);
+						StyleEmitter.strokeWeight(graphics,oWeight/2f);
 					}
 					else
 					{
-						graphics.strokeWeight(fillWeight);
+						StyleEmitter.strokeWeight(graphics,fillWeight);
 					}
 
-					double aspectRatio = ry/rx;
-					double hyp = (float)Math.sqrt(aspectRatio*tanAngle*aspectRatio*tanAngle+1);
-					double sinAnglePrime = aspectRatio*tanAngle / hyp;
-					double cosAnglePrime = 1 / hyp;
-
 					float gap = fillGap;	// Gap between adjacent lines.
 					if (gap < 0)
 					{
@@ -494,29 +899,12 @@ public class HandyRenderer
 						// If zig-zag filling, increase gap to give approximately similar density.
 						gap *= 1.41f;
 					}
-					double gapPrime = gap/((rx*ry/Math.sqrt((ry*cosAnglePrime)*(ry*cosAnglePrime) + (rx*sinAnglePrime)*(rx*sinAnglePrime)))/rx);
-					double halfLen = (float)Math.sqrt((rx*rx) - (cx-rx+gapPrime)*(cx-rx+gapPrime));
-					float[] prevP2 = affine(cx-rx+gapPrime,cy+halfLen,cx,cy,sinAnglePrime,cosAnglePrime,aspectRatio);
-
-					for (double xPos=cx-rx+gapPrime; xPos<cx+rx; xPos+=gapPrime)
-					{
-						halfLen = (float)Math.sqrt((rx*rx) - (cx-xPos)*(cx-xPos));
-						float[] p1 = affine(xPos,cy-halfLen,cx,cy,sinAnglePrime,cosAnglePrime,aspectRatio);
-						float[] p2 = affine(xPos,cy+halfLen,cx,cy,sinAnglePrime,cosAnglePrime,aspectRatio);
-
-						if (isAlternating)
-						{
-							line(prevP2[0],prevP2[1],p1[0],p1[1],2);	
-						}
-						line(p1[0],p1[1],p2[0],p2[1],2);
-
-						prevP2 = p2;
-					}
+					hachureEllipse(cx,cy,rx,ry,gap,tanAngle);
 
 					// Perturb hachure angle if requested.
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle);
+						restoreHachureAngle();
 					}
 				}
 			}
@@ -527,30 +915,31 @@ public class HandyRenderer
 		{
 			if (overrideStrokeColour)
 			{
-				graphics.stroke(strokeColour);
+				StyleEmitter.stroke(graphics,strokeColour);
 			}
 			else
 			{
-				graphics.stroke(oStroke);	
+				StyleEmitter.stroke(graphics,oStroke);	
 			}
 			if (strokeWeight > 0)
 			{
-				graphics.strokeWeight(strokeWeight);
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
 			}
 			else
 			{
-				graphics.strokeWeight(oWeight);
+				StyleEmitter.strokeWeight(graphics,oWeight);
 			}
 		}
 		else
 		{
-			graphics.noStroke();
+			StyleEmitter.noStroke(graphics);
 		}
 
 		// Draw outline if requested
+		setMarkPhase(OUTLINE_PHASE);
 		if ((oIsStroke) || (overrideStrokeColour))
 		{
-			graphics.noFill();
+			StyleEmitter.noFill(graphics);
 			if (roughness < MIN_ROUGHNESS)
 			{
 				graphics.ellipse(cx,cy,2*rx,2*ry);
@@ -583,7 +972,6 @@ public class HandyRenderer
 			return;
 		}
 
-		graphics.pushStyle();
 		// Default is to use 'CORNER' mode for defining rectangle
 		float left   = Math.min(x,x+w);
 		float top    = Math.min(y,y+h);
@@ -616,12 +1004,21 @@ public class HandyRenderer
 			bottom = Math.max(y-h,y+h);
 		}
 
+		if (drawSprite(PConstants.RECT,(left+right)/2,(top+bottom)/2,right-left,bottom-top))
+		{
+			return;
+		}
+
+		graphics.pushStyle();
+		startMark(boundsKey(PConstants.RECT,left,top,right,bottom));
+
 		// Store the original stroke and fill colours.
 		int oStroke = graphics.strokeColor;
 		int oFill   = graphics.fillColor;
 		float oWeight = graphics.strokeWeight;
 		boolean oIsStroke = graphics.stroke;
 
+		setMarkPhase(FILL_PHASE);
 		if (graphics.fill)
 		{
 			// Erase interior of rectangle if background colour is not completely transparent.
@@ -629,11 +1026,12 @@ public class HandyRenderer
 			{
 				int oRectMode = graphics.rectMode;
 				graphics.rectMode(PConstants.CORNERS);
-				graphics.fill(bgColour);
-				graphics.noStroke();
+				StyleEmitter.fill(graphics,bgColour);
+				StyleEmitter.noStroke(graphics);
+				occludeRect(left,top,right,bottom);
 				graphics.rect(left,top,right,bottom);
 				graphics.rectMode(oRectMode);
-				graphics.noFill();
+				StyleEmitter.noFill(graphics);
 			}
 
 			// Only fill interior if the fill colour is distinct from the background.
@@ -644,41 +1042,41 @@ public class HandyRenderer
 					// Fill with solid colour
 					if (overrideFillColour)
 					{
-						graphics.fill(fillColour);
+						StyleEmitter.fill(graphics,fillColour);
 					}
 					int oRectMode = graphics.rectMode;
 					graphics.rectMode(PConstants.CORNERS);
-					graphics.noStroke();
+					StyleEmitter.noStroke(graphics);
+					occludeRect(left,top,right,bottom);
 					graphics.rect(left,top,right,bottom);
 					graphics.rectMode(oRectMode);
-					graphics.noFill();
+					StyleEmitter.noFill(graphics);
 				}
 				else
 				{
 					// We will be using strokes to fill, so change stroke to fill colour.
 					if (overrideFillColour)
 					{
-						graphics.stroke(fillColour);
+						StyleEmitter.stroke(graphics,fillColour);
 					}
 					else
 					{
-						graphics.stroke(oFill);
+						StyleEmitter.stroke(graphics,oFill);
 					}
 
 					// Perturb hachure angle if requested.
-					float originalAngle = PApplet.degrees(hachureAngle);
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle + (2*rand.nextFloat()-1)*anglePerturbation);
+						perturbHachureAngle();
 					}
 
 					if (fillWeight <=0)
 					{
-						graphics.strokeWeight(oWeight/2f);
+						StyleEmitter.strokeWeight(graphics,oWeight/2f);
 					}
 					else
 					{
-						graphics.strokeWeight(fillWeight);
+						StyleEmitter.strokeWeight(graphics,fillWeight);
 					}
 
 					float gap = fillGap;	// Gap between adjacent lines.
@@ -692,29 +1090,12 @@ public class HandyRenderer
 						gap *= 1.41f;
 					}
 
-					HachureIterator i = new HachureIterator(top, bottom, left, right, gap, sinAngle, cosAngle, tanAngle);
-					float[] coords;
-					float[] prevCoords = i.getNextLine();
-
-					if (prevCoords != null)
-					{
-						line(prevCoords[0],prevCoords[1],prevCoords[2],prevCoords[3],2);
-
-						while ((coords=i.getNextLine()) != null)
-						{
-							if (isAlternating)
-							{
-								line(prevCoords[2],prevCoords[3],coords[0],coords[1],2);
-							}
-							line(coords[0],coords[1],coords[2],coords[3],2);
-							prevCoords = coords;
-						}
-					}
+					drawHachures(new HachureIterator(top, bottom, left, right, gap, sinAngle, cosAngle, tanAngle));
 
 					// Restore original hachure angle if requested.
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle);
+						restoreHachureAngle();
 					}
 				}
 			}
@@ -724,31 +1105,32 @@ public class HandyRenderer
 			{
 				if (overrideStrokeColour)
 				{
-					graphics.stroke(strokeColour);
+					StyleEmitter.stroke(graphics,strokeColour);
 				}
 				else
 				{
-					graphics.stroke(oStroke);	
+					StyleEmitter.stroke(graphics,oStroke);	
 				}
 
 				if (strokeWeight > 0)
 				{
-					graphics.strokeWeight(strokeWeight);
+					StyleEmitter.strokeWeight(graphics,strokeWeight);
 				}
 				else
 				{
-					graphics.strokeWeight(oWeight);
+					StyleEmitter.strokeWeight(graphics,oWeight);
 				}
 			}
 			else
 			{
-				graphics.noStroke();
+				StyleEmitter.noStroke(graphics);
 			}
 
-			graphics.fill(oFill);
+			StyleEmitter.fill(graphics,oFill);
 		}
 
 		// Draw boundary of the rectangle.
+		setMarkPhase(OUTLINE_PHASE);
 		if ((oIsStroke) || (overrideStrokeColour))
 		{
 			line(left,top, right, top,2);
@@ -761,44 +1143,99 @@ public class HandyRenderer
 		graphics.popStyle();
 	}
 
-	/** Draws a triangle through the three pairs of coordinates.
-	 *  @param x1 x coordinate of the first triangle vertex.
-	 *  @param y1 y coordinate of the first triangle vertex.
-	 *  @param x2 x coordinate of the second triangle vertex.
-	 *  @param y2 y coordinate of the second triangle vertex.
-	 *  @param x3 x coordinate of the third triangle vertex.
-	 *  @param y3 y coordinate of the third triangle vertex.
+	/** Draws a batch of rectangles using the given locations and dimensions. This produces the same
+	 *  appearance as calling <code>rect()</code> for each rectangle in turn but is considerably faster
+	 *  for large numbers of rectangles such as the bars of a chart or the cells of a heatmap. The style
+	 *  is resolved once for the whole batch, and all background erasing, hachuring and outlining is
+	 *  emitted in three successive passes. Rectangles in a batch are therefore assumed not to overlap.
+	 *  Coordinates are interpreted according to Processing's current <code>rectMode()</code>.
+	 *  @param xs x coordinates of the rectangle positions.
+	 *  @param ys y coordinates of the rectangle positions.
+	 *  @param ws Widths of the rectangles.
+	 *  @param hs Heights of the rectangles.
 	 */
-	public void triangle(float x1, float y1, float x2, float y2, float x3, float y3)
+	public void rects(float[] xs, float[] ys, float[] ws, float[] hs)
 	{
+		if ((xs == null) || (ys == null) || (ws == null) || (hs == null) ||
+			(ys.length != xs.length) || (ws.length != xs.length) || (hs.length != xs.length))
+		{
+			System.err.println("rects() requires four coordinate arrays of the same length.");
+			return;
+		}
+
 		if (isHandy == false)
 		{
-			graphics.triangle(x1,y1,x2,y2,x3,y3);
+			for (int i=0; i<xs.length; i++)
+			{
+				graphics.rect(xs[i],ys[i],ws[i],hs[i]);
+			}
 			return;
 		}
-		graphics.pushStyle();
 
-		// Bounding rectangle of the triangle.
-		float left   = Math.min(x1,Math.min(x2, x3));
-		float right  = Math.max(x1,Math.max(x2, x3));
-		float top    = Math.min(y1,Math.min(y2, y3));
-		float bottom = Math.max(y1,Math.max(y2, y3));
+		// Convert all rectangles into left, top, right, bottom bounds.
+		int numRects = xs.length;
+		float[] bounds = new float[numRects*4];
+		for (int i=0; i<numRects; i++)
+		{
+			float x = xs[i];
+			float y = ys[i];
+			float w = ws[i];
+			float h = hs[i];
+			int j = i*4;
+
+			if (graphics.rectMode == PConstants.CORNERS)
+			{
+				bounds[j]   = Math.min(x,w);
+				bounds[j+1] = Math.min(y,h);
+				bounds[j+2] = Math.max(x,w);
+				bounds[j+3] = Math.max(y,h);
+			}
+			else if (graphics.rectMode == PConstants.CENTER)
+			{
+				bounds[j]   = x-Math.abs(w)/2f;
+				bounds[j+1] = y-Math.abs(h)/2f;
+				bounds[j+2] = x+Math.abs(w)/2f;
+				bounds[j+3] = y+Math.abs(h)/2f;
+			}
+			else if (graphics.rectMode == PConstants.RADIUS)
+			{
+				bounds[j]   = x-Math.abs(w);
+				bounds[j+1] = y-Math.abs(h);
+				bounds[j+2] = x+Math.abs(w);
+				bounds[j+3] = y+Math.abs(h);
+			}
+			else
+			{
+				bounds[j]   = Math.min(x,x+w);
+				bounds[j+1] = Math.min(y,y+h);
+				bounds[j+2] = Math.max(x,x+w);
+				bounds[j+3] = Math.max(y,y+h);
+			}
+		}
+
+		graphics.pushStyle();
 
 		// Store the original stroke and fill colours.
 		int oStroke = graphics.strokeColor;
 		int oFill   = graphics.fillColor;
 		float oWeight = graphics.strokeWeight;
 		boolean oIsStroke = graphics.stroke;
+		boolean oIsFill = graphics.fill;
 
-		if (graphics.fill)
+		if (oIsFill)
 		{
-			// Erase interior of rectangle if background colour is not completely transparent.
+			graphics.rectMode(PConstants.CORNERS);
+
+			// Erase interior of all rectangles if background colour is not completely transparent.
 			if ((fillGap != 0) && (graphics.alpha(bgColour) > 0))
 			{
-				graphics.fill(bgColour);
-				graphics.noStroke();
-				graphics.triangle(x1,y1,x2,y2,x3,y3);
-				graphics.noFill();
+				StyleEmitter.fill(graphics,bgColour);
+				StyleEmitter.noStroke(graphics);
+				for (int j=0; j<bounds.length; j+=4)
+				{
+					graphics.rect(bounds[j],bounds[j+1],bounds[j+2],bounds[j+3]);
+				}
+				StyleEmitter.noFill(graphics);
 			}
 
 			// Only fill interior if the fill colour is distinct from the background.
@@ -807,616 +1244,329 @@ public class HandyRenderer
 				if (fillGap == 0)
 				{
 					// Fill with solid colour
-					if (overrideFillColour)
+					StyleEmitter.fill(graphics,overrideFillColour?fillColour:oFill);
+					StyleEmitter.noStroke(graphics);
+					for (int j=0; j<bounds.length; j+=4)
 					{
-						graphics.fill(fillColour);
+						graphics.rect(bounds[j],bounds[j+1],bounds[j+2],bounds[j+3]);
 					}
-					graphics.noStroke();
-					graphics.triangle(x1,y1,x2,y2,x3,y3);
-					graphics.noFill();
+					StyleEmitter.noFill(graphics);
 				}
 				else
 				{
 					// We will be using strokes to fill, so change stroke to fill colour.
-					if (overrideFillColour)
-					{
-						graphics.stroke(fillColour);
-					}
-					else
-					{
-						graphics.stroke(oFill);
-					}
-
-					// Perturb hachure angle if requested.
-					float originalAngle = PApplet.degrees(hachureAngle);
-					if (anglePerturbation > 0)
-					{
-						setHachureAngle(originalAngle + (2*rand.nextFloat()-1)*anglePerturbation);
-					}
-
-					if (fillWeight <=0)
-					{
-						graphics.strokeWeight(oWeight/2f);
-					}
-					else
-					{
-						graphics.strokeWeight(fillWeight);
-					}
+					StyleEmitter.stroke(graphics,overrideFillColour?fillColour:oFill);
+					StyleEmitter.strokeWeight(graphics,fillWeight <= 0 ? oWeight/2f : fillWeight);
 
 					float gap = fillGap;	// Gap between adjacent lines.
 					if (gap < 0)
 					{
 						gap = oWeight*4;					
 					}
-
 					if (isAlternating)
 					{
 						// If zig-zag filling, increase gap to give approximately similar density.
 						gap *= 1.41f;
 					}
 
-					float[] prevCoords=null;
-
-					HachureIterator i = new HachureIterator(top-1, bottom+1, left-1, right+1, gap, sinAngle, cosAngle, tanAngle);
-					float[] rectCoords;
-					while ((rectCoords=i.getNextLine()) != null)
+					HachureIterator it = null;
+					for (int j=0; j<bounds.length; j+=4)
 					{
-						// line within rectangle can only intersect triangle two times at most.
-						float[] triCoords = new float[4];
-						int nextPoint = 0;
-
-						Segment s = new Segment(rectCoords[0],rectCoords[1],rectCoords[2],rectCoords[3]);
-						if (s.compare(new Segment(x1,y1,x2,y2)) == Segment.Relation.INTERSECTS)
+						if (keyedRand != null)
 						{
-							triCoords[nextPoint] = s.getIntersectionX();
-							triCoords[nextPoint+1] = s.getIntersectionY();
-							nextPoint+=2;
+							keyedRand.setKey(boundsKey(PConstants.RECT,bounds[j],bounds[j+1],bounds[j+2],bounds[j+3]),FILL_PHASE);
 						}
-						if (s.compare(new Segment(x2,y2,x3,y3)) == Segment.Relation.INTERSECTS)
+
+						// Perturb hachure angle if requested.
+						if (anglePerturbation > 0)
 						{
-							triCoords[nextPoint] = s.getIntersectionX();
-							triCoords[nextPoint+1] = s.getIntersectionY();
-							nextPoint+=2;
+							perturbHachureAngle();
 						}
-						if ((nextPoint <=2) && (s.compare(new Segment(x3,y3,x1,y1)) == Segment.Relation.INTERSECTS))
+
+						if (it == null)
 						{
-							triCoords[nextPoint] = s.getIntersectionX();
-							triCoords[nextPoint+1] = s.getIntersectionY();
-							nextPoint+=2;
+							it = new HachureIterator(bounds[j+1],bounds[j+3],bounds[j],bounds[j+2],gap,sinAngle,cosAngle,tanAngle);
 						}
-
-						if (nextPoint == 4)
+						else
 						{
-							if (isAlternating) 
-							{
-								// Ensure coordinates are ordered consistently
-								if (distSq(triCoords[0],triCoords[1],rectCoords[0],rectCoords[1]) > 
-								distSq(triCoords[2],triCoords[3],rectCoords[0],rectCoords[1]))
-								{
-									float tempX = triCoords[2];
-									float tempY = triCoords[3];
-									triCoords[2] = triCoords[0];
-									triCoords[3] = triCoords[1];
-									triCoords[0] = tempX;
-									triCoords[1] = tempY;
-								}
-
-								if (prevCoords != null)
-								{
-									line(prevCoords[0],prevCoords[1],triCoords[0],triCoords[1],2);
-								}
-								prevCoords = new float[] {triCoords[2],triCoords[3]};
-							}
-							line(triCoords[0],triCoords[1],triCoords[2],triCoords[3],2);
+							it.reset(bounds[j+1],bounds[j+3],bounds[j],bounds[j+2],gap,sinAngle,cosAngle,tanAngle);
 						}
+						drawHachures(it);
 					}
 
-					// Restore original hachure angle if requested.
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle);
+						restoreHachureAngle();
 					}
 				}
 			}
-
-			// Restore original fill settings.
-			graphics.fill(oFill);
 		}
 
-		// Draw boundary of the triangle.
-		if ((oIsStroke) || (overrideStrokeColour))
+		// Set stroke colour and weight as rect() does, which only changes them for filled rectangles.
+		if (oIsFill)
 		{
-			if (overrideStrokeColour)
+			if ((oIsStroke) || (strokeWeight > 0))
 			{
-				graphics.stroke(strokeColour);
+				StyleEmitter.stroke(graphics,overrideStrokeColour?strokeColour:oStroke);
+				StyleEmitter.strokeWeight(graphics,strokeWeight > 0 ? strokeWeight : oWeight);
 			}
 			else
 			{
-				graphics.stroke(oStroke);	
+				StyleEmitter.noStroke(graphics);
 			}
+		}
 
-			if (strokeWeight > 0)
-			{
-				graphics.strokeWeight(strokeWeight);
-			}
-			else
+		// Draw boundaries of the rectangles.
+		if ((oIsStroke) || (overrideStrokeColour))
+		{
+			for (int j=0; j<bounds.length; j+=4)
 			{
-				graphics.strokeWeight(oWeight);
+				float left   = bounds[j];
+				float top    = bounds[j+1];
+				float right  = bounds[j+2];
+				float bottom = bounds[j+3];
+				if (keyedRand != null)
+				{
+					keyedRand.setKey(boundsKey(PConstants.RECT,left,top,right,bottom),OUTLINE_PHASE);
+				}
+				line(left,top, right, top,2);
+				line(right,top,right,bottom,2);
+				line(right,bottom,left,bottom,2);
+				line(left,bottom,left,top,2);
 			}
-			line(x1,y1, x2, y2,2);
-			line(x2,y2, x3,y3,2);
-			line(x3,y3, x1,y1,2);
 		}
 
-		// Restore original stroke settings.
+		// Restore original style settings.
 		graphics.popStyle();
 	}
 
-	/** Draws a quadrilateral shape. Similar to a rectangle but angles not constrained to 90 degrees.
-	 *  Coordinates can proceed in either a clockwise or anti-clockwise direction.
-	 *  @param x1 x coordinate of the first quadrilateral vertex.
-	 *  @param y1 y coordinate of the first quadrilateral vertex.
-	 *  @param x2 x coordinate of the second quadrilateral vertex.
-	 *  @param y2 y coordinate of the second quadrilateral vertex.
-	 *  @param x3 x coordinate of the third quadrilateral vertex.
-	 *  @param y3 y coordinate of the third quadrilateral vertex.
-	 *  @param x4 x coordinate of the fourth quadrilateral vertex.
-	 *  @param y4 y coordinate of the fourth quadrilateral vertex.
-	 */
-	public void quad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4)
-	{
-		shape(new float[] {x1,x2,x3,x4}, new float[] {y1,y2,y3,y4}, true);
-	}
-
-	/** Draws an arc along the outer edge of an ellipse defined by the x,y, w and h parameters.
-	 *  This version allows the maximum random offset of the arc to be set explicitly.
-	 *  @param x x coordinate of the ellipse's position around which this arc is defined.
-	 *  @param y y coordinate of the ellipse's position around which this arc is defined
-	 *  @param w Width of the ellipse around which this arc is defined (but see modifications possible with ellipseMode())
-	 *  @param h Height of the ellipse around which this arc is defined (but see modifications possible with ellipseMode())
-	 *  @param start Angle to start the arc in radians.
-	 *  @param stop Angle to stop the arc in radians.
+	/** Draws a batch of ellipses using the given locations and dimensions. This produces the same
+	 *  appearance as calling <code>ellipse()</code> for each ellipse in turn but is considerably faster
+	 *  for large numbers of ellipses such as the symbols of a scatterplot. The style is resolved once
+	 *  for the whole batch, and all background erasing, hachuring and outlining is emitted in three
+	 *  successive passes. Ellipses in a batch are therefore assumed not to overlap. Coordinates are
+	 *  interpreted according to Processing's current <code>ellipseMode()</code>.
+	 *  @param xs x coordinates of the ellipse positions.
+	 *  @param ys y coordinates of the ellipse positions.
+	 *  @param ws Widths of the ellipses.
+	 *  @param hs Heights of the ellipses.
 	 */
-	public void arc(float x, float y, float w, float h, float start, float stop)
+	public void ellipses(float[] xs, float[] ys, float[] ws, float[] hs)
 	{
-		if (isHandy == false)
+		if ((xs == null) || (ys == null) || (ws == null) || (hs == null) ||
+			(ys.length != xs.length) || (ws.length != xs.length) || (hs.length != xs.length))
 		{
-			graphics.arc(x,y,w,h,start,stop);
+			System.err.println("ellipses() requires four coordinate arrays of the same length.");
 			return;
 		}
 
-		// Default is to use 'CENTER' mode for defining ellipse
-		float cx = x;
-		float cy = y;
-		float rx = Math.abs(w/2);
-		float ry = Math.abs(h/2);
-
-		// Adjust bounds for other ellipse modes.
-		if (graphics.ellipseMode == PConstants.CORNER)
-		{
-			float left   = Math.min(x,x+w);
-			float top    = Math.min(y,y+h);
-			float right  = Math.max(x,x+w);
-			float bottom = Math.max(y,y+h);
-			rx = (right-left)/2;
-			ry = (bottom-top)/2;
-			cx = left + rx;
-			cy = top  + ry;
-
-		}
-		if (graphics.ellipseMode == PConstants.CORNERS)
-		{
-			float left   = Math.min(x,w);
-			float top    = Math.min(y,h);
-			float right  = Math.max(x,w);
-			float bottom = Math.max(y,h);
-			rx = (right-left)/2;
-			ry = (bottom-top)/2;
-			cx = left + rx;
-			cy = top  + ry;
-		}
-		else if (graphics.ellipseMode == PConstants.RADIUS)
-		{
-			rx = Math.abs(w);
-			ry = Math.abs(h);
-		}
-
-		if ((rx == 0) && (ry == 0))
+		if (isHandy == false)
 		{
-			// Never draw circles of radius 0.
+			for (int i=0; i<xs.length; i++)
+			{
+				graphics.ellipse(xs[i],ys[i],ws[i],hs[i]);
+			}
 			return;
 		}
 
-		if ((rx < roughness/4) || (ry < roughness/4))
+		// Convert all ellipses into centre and radius values, ignoring any that are too small to draw.
+		float[] ellipses = new float[xs.length*4];
+		long[] keys = (keyedRand == null) ? null : new long[xs.length];
+		int numValues = 0;
+		for (int i=0; i<xs.length; i++)
 		{
-			// Don't draw anything with a radius less than a quarter of the roughness value
-			return;
-		}	
-
-		// Add small proportionate perturbation to dimensions of ellipse
-		rx += getOffset(-rx*0.01f, rx*0.01f);
-		ry += getOffset(-ry*0.01f, ry*0.01f);
-
-		// Ensure start and stop angles are positive and sensible.
-		float strt = start;
-		float stp = stop;
+			float x = xs[i];
+			float y = ys[i];
+			float w = ws[i];
+			float h = hs[i];
+			float cx = x;
+			float cy = y;
+			float rx = Math.abs(w/2);
+			float ry = Math.abs(h/2);
+
+			if (graphics.ellipseMode == PConstants.CORNER)
+			{
+				rx = Math.abs(w)/2;
+				ry = Math.abs(h)/2;
+				cx = Math.min(x,x+w) + rx;
+				cy = Math.min(y,y+h) + ry;
+			}
+			else if (graphics.ellipseMode == PConstants.CORNERS)
+			{
+				rx = Math.abs(w-x)/2;
+				ry = Math.abs(h-y)/2;
+				cx = Math.min(x,w) + rx;
+				cy = Math.min(y,h) + ry;
+			}
+			else if (graphics.ellipseMode == PConstants.RADIUS)
+			{
+				rx = Math.abs(w);
+				ry = Math.abs(h);
+			}
 
-		while (strt < 0)
-		{
-			strt += PConstants.TWO_PI;
-			stp += PConstants.TWO_PI;
-		}
+			if (((rx == 0) && (ry == 0)) || (rx < roughness/4) || (ry < roughness/4))
+			{
+				// Don't draw anything with a radius less than a quarter of the roughness value
+				continue;
+			}
 
-		if (stp - strt > PConstants.TWO_PI) 
-		{
-			strt = 0;
-			stp = PConstants.TWO_PI;
+			// Add small proportionate perturbation to dimensions of ellipse
+			if (keys != null)
+			{
+				keys[numValues/4] = boundsKey(PConstants.ELLIPSE,cx,cy,rx,ry);
+				keyedRand.setKey(keys[numValues/4],0);
+			}
+			ellipses[numValues++] = cx;
+			ellipses[numValues++] = cy;
+			ellipses[numValues++] = rx + getOffset(-rx*0.05f, rx*0.05f);
+			ellipses[numValues++] = ry + getOffset(-ry*0.05f, ry*0.05f);
 		}
 
-		float arcInc = Math.min(ellipseInc/2,(stp-strt)/2);
+		graphics.pushStyle();
 
-		// Create a curved polygon to represent the sector.
-		boolean oIsStroke = graphics.stroke;
-		boolean oIsFill  = graphics.fill;
+		// Store the original stroke and fill colours.
 		int oStroke = graphics.strokeColor;
 		int oFill   = graphics.fillColor;
+		float oWeight = graphics.strokeWeight;
+		boolean oIsStroke = graphics.stroke;
 
-		graphics.noStroke();
-
-		beginShape();
-		curveVertex(cx+rx*(float)Math.cos(strt), cy+ry*(float)Math.sin(strt));
-
-		for (float theta=strt; theta<=stp; theta+=arcInc)
-		{
-			curveVertex(cx+rx*(float)Math.cos(theta), cy+ry*(float)Math.sin(theta));
-		}
-
-		// Last control point should be duplicate the last point of the arc.	
-		curveVertex(cx+rx*(float)Math.cos(stp), cy+ry*(float)Math.sin(stp));
-		curveVertex(cx+rx*(float)Math.cos(stp), cy+ry*(float)Math.sin(stp));
-		vertex(cx+rx*(float)Math.cos(stp), cy+ry*(float)Math.sin(stp));
-
-		vertex(cx,cy);
-		endShape();
-
-
-		// Draw outside edge of arc if we have a stroke.
-		if (oIsStroke)
+		if (graphics.fill)
 		{
-			graphics.stroke(oStroke);
-			graphics.noFill();
+			graphics.ellipseMode(PConstants.RADIUS);
 
-			beginShape();
-			curveVertex(cx+rx*(float)Math.cos(strt), cy+ry*(float)Math.sin(strt));
-
-			for (float theta=strt; theta<=stp; theta+=arcInc)
+			// Erase interior of all ellipses if not completely transparent
+			if ((fillGap != 0) && (graphics.alpha(bgColour) > 0))
 			{
-				curveVertex(cx+rx*(float)Math.cos(theta), cy+ry*(float)Math.sin(theta));
+				StyleEmitter.noStroke(graphics);
+				StyleEmitter.fill(graphics,bgColour);
+				for (int j=0; j<numValues; j+=4)
+				{
+					graphics.ellipse(ellipses[j],ellipses[j+1],ellipses[j+2],ellipses[j+3]);
+				}
+				StyleEmitter.noFill(graphics);
 			}
 
-			// Last control point should be duplicate the last point of the arc.	
-			curveVertex(cx+rx*(float)Math.cos(stp), cy+ry*(float)Math.sin(stp));
-			curveVertex(cx+rx*(float)Math.cos(stp), cy+ry*(float)Math.sin(stp));
+			// Only fill interior if the fill colour is distinct from the background.
+			if (bgColour != (overrideFillColour?fillColour:oFill))
+			{
+				if (fillGap == 0)
+				{
+					// Fill with solid colour
+					StyleEmitter.fill(graphics,overrideFillColour?fillColour:oFill);
+					StyleEmitter.noStroke(graphics);
+					for (int j=0; j<numValues; j+=4)
+					{
+						graphics.ellipse(ellipses[j],ellipses[j+1],ellipses[j+2],ellipses[j+3]);
+					}
+					StyleEmitter.noFill(graphics);
+				}
+				else
+				{
+					// We will be using strokes to fill, so change stroke to fill colour.
+					StyleEmitter.stroke(graphics,overrideFillColour?fillColour:oFill);
+					StyleEmitter.strokeWeight(graphics,fillWeight <= 0 ? oWeight/2f : fillWeight);
 
-			endShape();
-		}
+					float gap = fillGap;	// Gap between adjacent lines.
+					if (gap < 0)
+					{
+						gap = oWeight*4;					
+					}
+					if (isAlternating)
+					{
+						// If zig-zag filling, increase gap to give approximately similar density.
+						gap *= 1.41f;
+					}
 
-		// Restore original stroke and fill settings.
-		graphics.strokeColor = oStroke;
-		graphics.stroke = oIsStroke;
-		graphics.fillColor = oFill;
-		graphics.fill = oIsFill;
-	}
+					for (int j=0; j<numValues; j+=4)
+					{
+						if (keys != null)
+						{
+							keyedRand.setKey(keys[j/4],FILL_PHASE);
+						}
 
-	/** Starts a new shape of type <code>POLYGON</code>. This must be paired with a call to 
-	 *  <code>endShape()</code> or one of its variants.
-	 */
-	public void beginShape()
-	{
-		beginShape(PConstants.POLYGON);
-	}
+						// Perturb hachure angle if requested.
+						if (anglePerturbation > 0)
+						{
+							perturbHachureAngle();
+						}
+						hachureEllipse(ellipses[j],ellipses[j+1],ellipses[j+2],ellipses[j+3],gap,tanAngle);
+					}
 
-	/** Starts a new shape of the type specified in the mode parameter. This must be paired
-	 *  with a call to <code>endShape()</code> or one of its variants.
-	 *	@param mode either POINTS, LINES, TRIANGLES, TRIANGLE_FAN, TRIANGLE_STRIP, QUADS, QUAD_STRIP	 
-	 */	
-	public void beginShape(int mode)
-	{
-		if (isHandy == false)
-		{
-			graphics.beginShape(mode);
-		}
-		else
-		{
-			this.shapeMode=mode;
-			vertices.clear();
-			curveIndices.clear();
-			is3DShape = false;
+					if (anglePerturbation > 0)
+					{
+						restoreHachureAngle();
+					}
+				}
+			}
 		}
-	}
 
-	/** Adds a 2d vertex to a shape that was started with a call to <code>beginShape()</code> 
-	 *  or one of its variants.
-	 *  @param x x coordinate of vertex to add.
-	 *  @param y y coordinate of vertex to add.
-	 */
-	public void vertex(float x, float y)
-	{
-		if (isHandy == false)
+		// Set stroke colour and weight as ellipse() does.
+		if ((oIsStroke) || (strokeWeight > 0))
 		{
-			graphics.vertex(x,y);
+			StyleEmitter.stroke(graphics,overrideStrokeColour?strokeColour:oStroke);
+			StyleEmitter.strokeWeight(graphics,strokeWeight > 0 ? strokeWeight : oWeight);
 		}
 		else
 		{
-			vertices.add(new float[] {x,y});
+			StyleEmitter.noStroke(graphics);
 		}
-	}
 
-	/** Adds a 3d vertex to a shape that was started with a call to <code>beginShape()</code> 
-	 *  or one of its variants.
-	 *  @param x x coordinate of vertex to add.
-	 *  @param y y coordinate of vertex to add.
-	 *  @param z z coordinate of vertex to add.
-	 */
-	public void vertex(float x, float y, float z)
-	{
-		is3DShape = true;
-		if (isHandy == false)
-		{
-			graphics.vertex(x,y,z);
-		}
-		else
+		// Draw outlines if requested
+		if ((oIsStroke) || (overrideStrokeColour))
 		{
-			vertices.add(new float[] {x,y,z});
+			StyleEmitter.noFill(graphics);
+			graphics.ellipseMode(PConstants.RADIUS);
+
+			for (int j=0; j<numValues; j+=4)
+			{
+				float cx = ellipses[j];
+				float cy = ellipses[j+1];
+				float rx = ellipses[j+2];
+				float ry = ellipses[j+3];
+				if (keys != null)
+				{
+					keyedRand.setKey(keys[j/4],OUTLINE_PHASE);
+				}
+
+				if (roughness < MIN_ROUGHNESS)
+				{
+					graphics.ellipse(cx,cy,rx,ry);
+				}
+				else
+				{
+					buildEllipse(cx,cy,rx,ry,1,ellipseInc*getOffset(0.1f,getOffset(0.4f, 1f)));
+					buildEllipse(cx,cy,rx,ry,1.5f,0);
+				}
+			}
 		}
+
+		// Restore original style settings.
+		graphics.popStyle();
 	}
 
-	/** Adds a 2d vertex to a shape or line that has curved edges. That shape should have been
-	 *  started with a call to <code>beginShape()</code> without any parameter.
-	 *  @param x x coordinate of vertex to add.
-	 *  @param y y coordinate of vertex to add.
+	/** Draws a triangle through the three pairs of coordinates.
+	 *  @param x1 x coordinate of the first triangle vertex.
+	 *  @param y1 y coordinate of the first triangle vertex.
+	 *  @param x2 x coordinate of the second triangle vertex.
+	 *  @param y2 y coordinate of the second triangle vertex.
+	 *  @param x3 x coordinate of the third triangle vertex.
+	 *  @param y3 y coordinate of the third triangle vertex.
 	 */
-	public void curveVertex(float x, float y)
+	public void triangle(float x1, float y1, float x2, float y2, float x3, float y3)
 	{
 		if (isHandy == false)
 		{
-			graphics.curveVertex(x,y);
+			graphics.triangle(x1,y1,x2,y2,x3,y3);
+			return;
 		}
-		else
-		{
-			// Log this position in the vertex list as being a curve
-			curveIndices.add(new Integer(vertices.size()));
-
-			// Store the vertex geometry.
-			vertices.add(new float[] {x,y});			
-		}
-	}
-
-	/** Adds a 3d vertex to a shape or line that has curved edges. That shape should have been
-	 *  started with a call to <code>beginShape()</code> without any parameter.
-	 *  @param x x coordinate of vertex to add.
-	 *  @param y y coordinate of vertex to add.
-	 *  @param z z coordinate of vertex to add.
-	 */
-	public void curveVertex(float x, float y, float z)
-	{
-		is3DShape = true;
-		if (isHandy == false)
-		{
-			graphics.curveVertex(x,y,z);
-		}
-		else
-		{
-			// Log this position in the vertex list as being a curve
-			curveIndices.add(new Integer(vertices.size()));
-
-			// Store the vertex geometry.
-			vertices.add(new float[] {x,y,z});			
-		}
-	}
-
-	/** Ends a shape definition. This should have been paired with a call to <code>beginShape()</code>
-	 *  or one of its variants. Note that this version will not close the shape if the last vertex does 
-	 *  not match the first one.
-	 */
-	public void endShape()
-	{
-		if (isHandy == false)
-		{
-			graphics.endShape();
-		}
-		else
-		{
-			if (is3DShape)
-			{
-				drawShape3d(false);
-				is3DShape = false;
-			}
-			else
-			{
-				drawShape2d(false);
-			}
-
-			vertices.clear();
-			curveIndices.clear();
-		}
-	}
-
-	/** Ends a shape definition. This should have been paired with a call to <code>beginShape()</code> 
-	 *  or one of its variants. If the mode parameter <code>CLOSE</code> the shape will be closed.
-	 */
-	public void endShape(int mode) 
-	{
-		if (isHandy == false)
-		{
-			graphics.endShape(mode);
-		}
-		else
-		{
-			if (is3DShape)
-			{
-				drawShape3d(mode==PConstants.CLOSE);
-				is3DShape = false;
-			}
-			else
-			{
-				drawShape2d(mode==PConstants.CLOSE);
-			}
-		}
-		vertices.clear();
-		curveIndices.clear();
-	}
-
-	/** Draws 3D cube with the given unit dimension.
-	 *  @param bSize Size of each dimension of the cube.
-	 */
-	public void box(float bSize)
-	{
-		box(bSize, bSize, bSize);
-	}
-
-	/** Draws 3D box with the given dimensions.
-	 *  @param bW Width of the box.
-	 *  @param hH Height of the box.
-	 *  @param bD Depth of the box.
-	 */
-	public void box(float bWidth, float hHeight, float bDepth)
-	{
-		if (isHandy == false)
-		{
-			graphics.box(bWidth,hHeight,bDepth);
-		}
-		else
-		{
-			// Create a box without any strokes first.
-			float bW = bWidth/2f;
-			float bH = hHeight/2f;
-			float bD = bDepth/2f;
-			graphics.pushStyle();
-			boolean isStrokeOverridden = overrideStrokeColour;
-			setOverrideStrokeColour(false);
-			graphics.noStroke();
-			
-			beginShape(PConstants.QUADS);
-			  vertex(-bW,  bH,  bD);
-			  vertex( bW,  bH,  bD);
-			  vertex( bW, -bH,  bD);
-			  vertex(-bW, -bH,  bD);
-
-			  vertex( bW,  bH,  bD);
-			  vertex( bW,  bH, -bD);
-			  vertex( bW, -bH, -bD);
-			  vertex( bW, -bH,  bD);
-			  
-			  vertex( bW,  bH, -bD);
-			  vertex(-bW,  bH, -bD);
-			  vertex(-bW, -bH, -bD);
-			  vertex( bW, -bH, -bD);
-			  
-			  vertex(-bW,  bH, -bD);
-			  vertex(-bW,  bH,  bD);
-			  vertex(-bW, -bH,  bD);
-			  vertex(-bW, -bH, -bD);
-
-			  vertex(-bW,  bH, -bD);
-			  vertex( bW,  bH, -bD);
-			  vertex( bW,  bH,  bD);
-			  vertex(-bW,  bH,  bD);
-			  
-			  vertex(-bW, -bH, -bD);
-			  vertex( bW, -bH, -bD);
-			  vertex( bW, -bH,  bD);
-			  vertex(-bW, -bH,  bD);
-			 endShape();
-			 
-			 graphics.popStyle();
-			 setOverrideStrokeColour(isStrokeOverridden);
-			 
-			 // Finally draw lines along each of the box edges.
-			 line(-bW,  bH,  bD, bW,  bH,  bD);
-			 line( bW,  bH,  bD, bW, -bH,  bD);
-			 line( bW, -bH,  bD,-bW, -bH,  bD);
-			 line(-bW, -bH,  bD,-bW,  bH,  bD);
-
-			 line( bW,  bH,  bD, bW,  bH, -bD);
-			 line( bW,  bH, -bD, bW, -bH, -bD);
-			 line( bW, -bH, -bD, bW, -bH,  bD);
-
-			 line( bW,  bH, -bD,-bW,  bH, -bD);
-			 line(-bW,  bH, -bD,-bW, -bH, -bD);
-			 line(-bW, -bH, -bD, bW, -bH, -bD);
-
-			 line(-bW,  bH, -bD,-bW,  bH,  bD);
-			 line(-bW, -bH,  bD,-bW, -bH, -bD);
-		}
-
-	}
-
-	/** Draws a closed 2d polygon based on the given arrays of vertices.
-	 *  @param xCoords x coordinates of the shape.
-	 *  @param yCoords y coordinates of the shape.
-	 */
-	public void shape(float[] xCoords, float[] yCoords)
-	{
-		shape(xCoords,yCoords,true);
-	}
-
-	/** Draws a closed 3d polygon based on the given arrays of vertices.
-	 *  @param xCoords x coordinates of the shape.
-	 *  @param yCoords y coordinates of the shape.
-	 *  @param zCoords z coordinates of the shape.
-	 */
-	public void shape(float[] xCoords, float[] yCoords, float[] zCoords)
-	{
-		shape(xCoords,yCoords,zCoords,true);
-	}
-
-	/** Draws a 3d polygon based on the given arrays of vertices. This version can 
-	 *  draw either open or closed shapes.
-	 *  @param xCoords x coordinates of the shape.
-	 *  @param yCoords y coordinates of the shape.
-	 *  @param closeShape Boundary of shape will be closed if true.
-	 */
-	public void shape(float[] xCoords, float[] yCoords, boolean closeShape)
-	{
-		if ((xCoords == null) || (yCoords == null) || (xCoords.length ==0) || (yCoords.length == 0))
-		{
-			System.err.println("No coordinates provided to shape().");
-			return;
-		}			
-
-		if (isHandy == false)
-		{
-			graphics.beginShape();
-			for (int i=0; i<xCoords.length; i++)
-			{
-				graphics.vertex(xCoords[i],yCoords[i]);
-			}
-			if (closeShape)
-			{
-				graphics.endShape(PConstants.CLOSE);
-			}
-			else
-			{
-				graphics.endShape();
-			}
-			return;
-		}
-
 		graphics.pushStyle();
+		startMark(pointsKey(PConstants.TRIANGLE,x1,y1,x2,y2,x3,y3));
 
-		// Bounding rectangle of the shape.
-		float left   = xCoords[0];
-		float right  = xCoords[0];
-		float top    = yCoords[0];
-		float bottom = yCoords[0];
-		for (int i=1; i<xCoords.length; i++)
-		{
-			left   = Math.min(left, xCoords[i]);
-			right  = Math.max(right, xCoords[i]);
-			top    = Math.min(top, yCoords[i]);
-			bottom = Math.max(bottom, yCoords[i]);
-		}
+		// Bounding rectangle of the triangle.
+		float left   = Math.min(x1,Math.min(x2, x3));
+		float right  = Math.max(x1,Math.max(x2, x3));
+		float top    = Math.min(y1,Math.min(y2, y3));
+		float bottom = Math.max(y1,Math.max(y2, y3));
 
 		// Store the original stroke and fill colours.
 		int oStroke = graphics.strokeColor;
@@ -1426,18 +1576,14 @@ public class HandyRenderer
 
 		if (graphics.fill)
 		{
-			// Erase interior of shape if background colour is not completely transparent.
+			// Erase interior of rectangle if background colour is not completely transparent.
 			if ((fillGap != 0) && (graphics.alpha(bgColour) > 0))
 			{
-				graphics.fill(bgColour);
-				graphics.noStroke();
-				graphics.beginShape();
-				for (int i=0; i<xCoords.length; i++)
-				{
-					graphics.vertex(xCoords[i],yCoords[i]);
-				}
-				graphics.endShape(PConstants.CLOSE);				
-				graphics.noFill();
+				StyleEmitter.fill(graphics,bgColour);
+				StyleEmitter.noStroke(graphics);
+				occludeTriangle(x1,y1,x2,y2,x3,y3);
+				graphics.triangle(x1,y1,x2,y2,x3,y3);
+				StyleEmitter.noFill(graphics);
 			}
 
 			// Only fill interior if the fill colour is distinct from the background.
@@ -1448,43 +1594,38 @@ public class HandyRenderer
 					// Fill with solid colour
 					if (overrideFillColour)
 					{
-						graphics.fill(fillColour);
-					}
-					graphics.noStroke();
-					graphics.beginShape();
-					for (int i=0; i<xCoords.length; i++)
-					{
-						graphics.vertex(xCoords[i],yCoords[i]);
+						StyleEmitter.fill(graphics,fillColour);
 					}
-					graphics.endShape(PConstants.CLOSE);
-					graphics.noFill();
+					StyleEmitter.noStroke(graphics);
+					occludeTriangle(x1,y1,x2,y2,x3,y3);
+					graphics.triangle(x1,y1,x2,y2,x3,y3);
+					StyleEmitter.noFill(graphics);
 				}
 				else
 				{
 					// We will be using strokes to fill, so change stroke to fill colour.
 					if (overrideFillColour)
 					{
-						graphics.stroke(fillColour);
+						StyleEmitter.stroke(graphics,fillColour);
 					}
 					else
 					{
-						graphics.stroke(oFill);
+						StyleEmitter.stroke(graphics,oFill);
 					}
 
 					// Perturb hachure angle if requested.
-					float originalAngle = PApplet.degrees(hachureAngle);
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle + (2*rand.nextFloat()-1)*anglePerturbation);
+						perturbHachureAngle();
 					}
 
 					if (fillWeight <=0)
 					{
-						graphics.strokeWeight(oWeight/2f);
+						StyleEmitter.strokeWeight(graphics,oWeight/2f);
 					}
 					else
 					{
-						graphics.strokeWeight(fillWeight);
+						StyleEmitter.strokeWeight(graphics,fillWeight);
 					}
 
 					float gap = fillGap;	// Gap between adjacent lines.
@@ -1493,127 +1634,242 @@ public class HandyRenderer
 						gap = oWeight*4;					
 					}
 
-					// TODO: Implement alternating shading for arbitrary shapes.
-					//				if (isAlternating)
-					//				{
-					//					// If zig-zag filling, increase gap to give approximately similar density.
-					//					gap *= 1.41f;
-					//				}
-
-					//				ArrayList<float[]> prevCoords= new ArrayList<float[]>();
-
-					// Iterate through each line that could intersect with the shape.
-					HachureIterator it = new HachureIterator(top-1, bottom+1, left-1, right+1, gap, sinAngle, cosAngle, tanAngle);
+					if (isAlternating)
+					{
+						// If zig-zag filling, increase gap to give approximately similar density.
+						gap *= 1.41f;
+					}
 
-					float[] rectCoords = null;
+					float[] prevCoords=null;
 
-					while ((rectCoords=it.getNextLine()) != null)
+					HachureIterator i = new HachureIterator(top-1, bottom+1, left-1, right+1, gap, sinAngle, cosAngle, tanAngle);
+					float[] rectCoords;
+					while ((rectCoords=i.getNextLine()) != null)
 					{
-						ArrayList<float[]> lines = getIntersectingLines(rectCoords,xCoords,yCoords);
+						// line within rectangle can only intersect triangle two times at most.
+						float[] triCoords = new float[4];
+						int nextPoint = 0;
 
-						for (int i=0; i<lines.size(); i+=2)
+						Segment s = new Segment(rectCoords[0],rectCoords[1],rectCoords[2],rectCoords[3]);
+						if (s.compare(new Segment(x1,y1,x2,y2)) == Segment.Relation.INTERSECTS)
 						{
-							if (i < lines.size()-1)
-							{
-								float[] p1 = lines.get(i);
-								float[] p2 = lines.get(i+1);
-								line(p1[0],p1[1],p2[0],p2[1],2);
-
-								//							if (isAlternating)
-								//							{
-								//								if (prevCoords.size() == lines.size())
-								//								{
-								//									line(prevCoords.get(i/2)[0],prevCoords.get(i/2)[1],p1[0],p1[1],2);
-								//								}
-								//								prevCoords.add(new float[] {p2[0],p2[1]});
-								//							}
-							}
+							triCoords[nextPoint] = s.getIntersectionX();
+							triCoords[nextPoint+1] = s.getIntersectionY();
+							nextPoint+=2;
+						}
+						if (s.compare(new Segment(x2,y2,x3,y3)) == Segment.Relation.INTERSECTS)
+						{
+							triCoords[nextPoint] = s.getIntersectionX();
+							triCoords[nextPoint+1] = s.getIntersectionY();
+							nextPoint+=2;
+						}
+						if ((nextPoint <=2) && (s.compare(new Segment(x3,y3,x1,y1)) == Segment.Relation.INTERSECTS))
+						{
+							triCoords[nextPoint] = s.getIntersectionX();
+							triCoords[nextPoint+1] = s.getIntersectionY();
+							nextPoint+=2;
 						}
-					}
 
-					// Restore hachure angle if requested.
+						if (nextPoint == 4)
+						{
+							if (isAlternating) 
+							{
+								// Ensure coordinates are ordered consistently
+								if (distSq(triCoords[0],triCoords[1],rectCoords[0],rectCoords[1]) > 
+								distSq(triCoords[2],triCoords[3],rectCoords[0],rectCoords[1]))
+								{
+									float tempX = triCoords[2];
+									float tempY = triCoords[3];
+									triCoords[2] = triCoords[0];
+									triCoords[3] = triCoords[1];
+									triCoords[0] = tempX;
+									triCoords[1] = tempY;
+								}
+
+								if (prevCoords != null)
+								{
+									line(prevCoords[0],prevCoords[1],triCoords[0],triCoords[1],2);
+								}
+								prevCoords = new float[] {triCoords[2],triCoords[3]};
+							}
+							line(triCoords[0],triCoords[1],triCoords[2],triCoords[3],2);
+						}
+					}
+
+					// Restore original hachure angle if requested.
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle);
+						restoreHachureAngle();
 					}
 				}
 			}
 
-			// Restore original fill and stroke weight settings.
-			graphics.fill(oFill);
-			graphics.strokeWeight(oWeight);
+			// Restore original fill settings.
+			StyleEmitter.fill(graphics,oFill);
 		}
 
-		// Draw boundary of the shape.
+		// Draw boundary of the triangle.
 		if ((oIsStroke) || (overrideStrokeColour))
 		{
 			if (overrideStrokeColour)
 			{
-				graphics.stroke(strokeColour);
+				StyleEmitter.stroke(graphics,strokeColour);
 			}
 			else
 			{
-				graphics.stroke(oStroke);	
+				StyleEmitter.stroke(graphics,oStroke);	
 			}
 
 			if (strokeWeight > 0)
 			{
-				graphics.strokeWeight(strokeWeight);
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
 			}
 			else
 			{
-				graphics.strokeWeight(oWeight);
-			}
-
-			for (int i=0; i<xCoords.length-1; i++)
-			{
-				line(xCoords[i],yCoords[i],xCoords[i+1],yCoords[i+1],2);
-			}
-			if (closeShape)
-			{
-				line(xCoords[xCoords.length-1],yCoords[xCoords.length-1],xCoords[0],yCoords[0],2);
+				StyleEmitter.strokeWeight(graphics,oWeight);
 			}
+			line(x1,y1, x2, y2,2);
+			line(x2,y2, x3,y3,2);
+			line(x3,y3, x1,y1,2);
 		}
 
-		// Restore styles.
+		// Restore original stroke settings.
 		graphics.popStyle();
 	}
 
-	/** Draws a 3d polygon based on the given arrays of vertices. This version can 
-	 *  draw either open or closed shapes.
-	 *  @param xCoords x coordinates of the shape.
-	 *  @param yCoords y coordinates of the shape.
-	 *  @param zCoords z coordinates of the shape.
-	 *  @param closeShape Boundary of shape will be closed if true.
+	/** Draws a quadrilateral shape. Similar to a rectangle but angles not constrained to 90 degrees.
+	 *  Coordinates can proceed in either a clockwise or anti-clockwise direction.
+	 *  @param x1 x coordinate of the first quadrilateral vertex.
+	 *  @param y1 y coordinate of the first quadrilateral vertex.
+	 *  @param x2 x coordinate of the second quadrilateral vertex.
+	 *  @param y2 y coordinate of the second quadrilateral vertex.
+	 *  @param x3 x coordinate of the third quadrilateral vertex.
+	 *  @param y3 y coordinate of the third quadrilateral vertex.
+	 *  @param x4 x coordinate of the fourth quadrilateral vertex.
+	 *  @param y4 y coordinate of the fourth quadrilateral vertex.
 	 */
-	public void shape(float[] xCoords, float[] yCoords, float[] zCoords, boolean closeShape)
+	public void quad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4)
 	{
-		if ((xCoords == null) || (yCoords == null) || (zCoords == null) || (xCoords.length ==0) || (yCoords.length == 0) || (zCoords.length == 0))
+		shape(new float[] {x1,x2,x3,x4}, new float[] {y1,y2,y3,y4}, true);
+	}
+
+	/** Draws an arc along the outer edge of an ellipse defined by the x,y, w and h parameters.
+	 *  If the sketch's fill is on, the sector enclosed by the arc and the centre of the ellipse
+	 *  is filled.
+	 *  @param x x coordinate of the ellipse's position around which this arc is defined.
+	 *  @param y y coordinate of the ellipse's position around which this arc is defined
+	 *  @param w Width of the ellipse around which this arc is defined (but see modifications possible with ellipseMode())
+	 *  @param h Height of the ellipse around which this arc is defined (but see modifications possible with ellipseMode())
+	 *  @param start Angle to start the arc in radians.
+	 *  @param stop Angle to stop the arc in radians.
+	 */
+	public void arc(float x, float y, float w, float h, float start, float stop)
+	{
+		arc(x,y,w,h,start,stop,0);
+	}
+
+	/** Draws an arc along the outer edge of an ellipse defined by the x,y, w and h parameters, with an
+	 *  optional inner edge. This allows segments of a ring to be drawn, such as those in a donut chart.
+	 *  If the sketch's fill is on, the region between the inner and outer edges is filled.
+	 *  @param x x coordinate of the ellipse's position around which this arc is defined.
+	 *  @param y y coordinate of the ellipse's position around which this arc is defined
+	 *  @param w Width of the ellipse around which this arc is defined (but see modifications possible with ellipseMode())
+	 *  @param h Height of the ellipse around which this arc is defined (but see modifications possible with ellipseMode())
+	 *  @param start Angle to start the arc in radians.
+	 *  @param stop Angle to stop the arc in radians.
+	 *  @param innerRatio Radius of the inner edge as a proportion of the outer radius. If 0, a sector
+	 *                    extending to the centre of the ellipse is drawn.
+	 */
+	public void arc(float x, float y, float w, float h, float start, float stop, float innerRatio)
+	{
+		if ((isHandy == false) && (innerRatio <= 0))
 		{
-			System.err.println("No coordinates provided to shape().");
+			graphics.arc(x,y,w,h,start,stop);
 			return;
-		}			
+		}
+
+		// Default is to use 'CENTER' mode for defining ellipse
+		float cx = x;
+		float cy = y;
+		float rx = Math.abs(w/2);
+		float ry = Math.abs(h/2);
+
+		// Adjust bounds for other ellipse modes.
+		if (graphics.ellipseMode == PConstants.CORNER)
+		{
+			float left   = Math.min(x,x+w);
+			float top    = Math.min(y,y+h);
+			float right  = Math.max(x,x+w);
+			float bottom = Math.max(y,y+h);
+			rx = (right-left)/2;
+			ry = (bottom-top)/2;
+			cx = left + rx;
+			cy = top  + ry;
+
+		}
+		if (graphics.ellipseMode == PConstants.CORNERS)
+		{
+			float left   = Math.min(x,w);
+			float top    = Math.min(y,h);
+			float right  = Math.max(x,w);
+			float bottom = Math.max(y,h);
+			rx = (right-left)/2;
+			ry = (bottom-top)/2;
+			cx = left + rx;
+			cy = top  + ry;
+		}
+		else if (graphics.ellipseMode == PConstants.RADIUS)
+		{
+			rx = Math.abs(w);
+			ry = Math.abs(h);
+		}
+
+		// Ensure start and stop angles are positive and sensible.
+		float strt = start;
+		float stp = stop;
+
+		while (strt < 0)
+		{
+			strt += PConstants.TWO_PI;
+			stp += PConstants.TWO_PI;
+		}
+
+		if (stp - strt > PConstants.TWO_PI) 
+		{
+			strt = 0;
+			stp = PConstants.TWO_PI;
+		}
+
+		float inner = Math.max(0,Math.min(innerRatio,0.99f));
 
 		if (isHandy == false)
 		{
+			// Standard rendering of a ring segment.
 			graphics.beginShape();
-			for (int i=0; i<xCoords.length; i++)
-			{
-				graphics.vertex(xCoords[i],yCoords[i],zCoords[i]);
-			}
-			if (closeShape)
-			{
-				graphics.endShape(PConstants.CLOSE);
-			}
-			else
-			{
-				graphics.endShape();
-			}
+			arcVertices(cx,cy,rx,ry,inner,strt,stp);
+			graphics.endShape(PConstants.CLOSE);
 			return;
 		}
 
-		graphics.pushStyle();
+		if ((rx == 0) && (ry == 0))
+		{
+			// Never draw circles of radius 0.
+			return;
+		}
+
+		if ((rx < roughness/4) || (ry < roughness/4))
+		{
+			// Don't draw anything with a radius less than a quarter of the roughness value
+			return;
+		}	
+
+		startMark(KeyedRandom.hash(pointsKey(PConstants.ARC,cx,cy,rx,ry,strt,stp),inner));
+
+		// Add small proportionate perturbation to dimensions of ellipse
+		rx += getOffset(-rx*0.01f, rx*0.01f);
+		ry += getOffset(-ry*0.01f, ry*0.01f);
 
+		graphics.pushStyle();
 
 		// Store the original stroke and fill colours.
 		int oStroke = graphics.strokeColor;
@@ -1623,18 +1879,15 @@ public class HandyRenderer
 
 		if (graphics.fill)
 		{
-			// Erase interior of shape if background colour is not completely transparent.
+			// Erase interior of arc if not completely transparent
 			if ((fillGap != 0) && (graphics.alpha(bgColour) > 0))
 			{
-				graphics.fill(bgColour);
-				graphics.noStroke();
+				StyleEmitter.fill(graphics,bgColour);
+				StyleEmitter.noStroke(graphics);
 				graphics.beginShape();
-				for (int i=0; i<xCoords.length; i++)
-				{
-					graphics.vertex(xCoords[i],yCoords[i],zCoords[i]);
-				}
-				graphics.endShape(PConstants.CLOSE);				
-				graphics.noFill();
+				arcVertices(cx,cy,rx,ry,inner,strt,stp);
+				graphics.endShape(PConstants.CLOSE);
+				StyleEmitter.noFill(graphics);
 			}
 
 			// Only fill interior if the fill colour is distinct from the background.
@@ -1643,54 +1896,31 @@ public class HandyRenderer
 				if (fillGap == 0)
 				{
 					// Fill with solid colour
-					if (overrideFillColour)
-					{
-						graphics.fill(fillColour);
-					}
-					graphics.noStroke();
+					StyleEmitter.fill(graphics,overrideFillColour?fillColour:oFill);
+					StyleEmitter.noStroke(graphics);
 					graphics.beginShape();
-					for (int i=0; i<xCoords.length; i++)
-					{
-						graphics.vertex(xCoords[i],yCoords[i],zCoords[i]);
-					}
+					arcVertices(cx,cy,rx,ry,inner,strt,stp);
 					graphics.endShape(PConstants.CLOSE);
-					graphics.noFill();
+					StyleEmitter.noFill(graphics);
 				}
 				else
-				{				
+				{
 					// We will be using strokes to fill, so change stroke to fill colour.
-					if (overrideFillColour)
-					{
-						graphics.stroke(fillColour);
-					}
-					else
-					{
-						graphics.stroke(oFill);
-					}
-
-					if (fillWeight <=0)
-					{
-						graphics.strokeWeight(oWeight/2f);
-					}
-					else
-					{
-						graphics.strokeWeight(fillWeight);
-					}
+					StyleEmitter.stroke(graphics,overrideFillColour?fillColour:oFill);
 
 					// Perturb hachure angle if requested.
-					float originalAngle = PApplet.degrees(hachureAngle);
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle + (2*rand.nextFloat()-1)*anglePerturbation);
+						perturbHachureAngle();
 					}
 
 					if (fillWeight <=0)
 					{
-						graphics.strokeWeight(oWeight/2f);
+						StyleEmitter.strokeWeight(graphics,oWeight/2f);
 					}
 					else
 					{
-						graphics.strokeWeight(fillWeight);
+						StyleEmitter.strokeWeight(graphics,fillWeight);
 					}
 
 					float gap = fillGap;	// Gap between adjacent lines.
@@ -1703,77 +1933,976 @@ public class HandyRenderer
 						// If zig-zag filling, increase gap to give approximately similar density.
 						gap *= 1.41f;
 					}
+					hachureArc(cx,cy,rx,ry,inner,strt,stp,gap);
 
-					// Do the drawing.
-					drawHachuredFace(xCoords, yCoords, zCoords, gap);
-
-					// Restore hachure angle if requested.
+					// Restore original hachure angle if requested.
 					if (anglePerturbation > 0)
 					{
-						setHachureAngle(originalAngle);
+						restoreHachureAngle();
 					}
 				}
 			}
-
-			// Restore original fill and stroke weight settings.
-			graphics.fill(oFill);
-			graphics.strokeWeight(oWeight);
-
 		}
 
-		// Draw boundary of the shape.
+		// Draw outer and any inner edge of the arc.
 		if ((oIsStroke) || (overrideStrokeColour))
 		{
-			if (overrideStrokeColour)
-			{
-				graphics.stroke(strokeColour);
-			}
-			else
-			{
-				graphics.stroke(oStroke);	
-			}
-
-			if (strokeWeight > 0)
-			{
-				graphics.strokeWeight(strokeWeight);
-			}
-			else
-			{
-				graphics.strokeWeight(oWeight);
-			}
+			StyleEmitter.stroke(graphics,overrideStrokeColour?strokeColour:oStroke);
+			StyleEmitter.strokeWeight(graphics,strokeWeight>0?strokeWeight:oWeight);
+			StyleEmitter.noFill(graphics);
 
-			for (int i=0; i<xCoords.length-1; i++)
+			buildArc(cx,cy,rx,ry,strt,stp,1);
+			buildArc(cx,cy,rx,ry,strt,stp,1.5f);
+			if (inner > 0)
 			{
-				line(xCoords[i],yCoords[i],zCoords[i],xCoords[i+1],yCoords[i+1],zCoords[i+1],2);
-			}
-			if (closeShape)
-			{
-				line(xCoords[xCoords.length-1],yCoords[xCoords.length-1],zCoords[xCoords.length-1],xCoords[0],yCoords[0],zCoords[0],2);
+				buildArc(cx,cy,rx*inner,ry*inner,strt,stp,1);
+				buildArc(cx,cy,rx*inner,ry*inner,strt,stp,1.5f);
 			}
 		}
 
-		// Restore styles.
+		// Restore original style settings.
 		graphics.popStyle();
 	}
 
-	/** Draws a complex line that links the given coordinates. 
-	 *  @param xCoords x coordinates of the line.
-	 *  @param yCoords y coordinates of the line.
+	/** Starts a new shape of type <code>POLYGON</code>. This must be paired with a call to 
+	 *  <code>endShape()</code> or one of its variants.
 	 */
-	public void polyLine(float[] xCoords, float[] yCoords)
+	public void beginShape()
 	{
-		if ((xCoords == null) || (yCoords == null) || (xCoords.length ==0) || (yCoords.length == 0))
-		{
-			System.err.println("No coordinates provided to polyLine().");
-			return;
-		}
+		beginShape(PConstants.POLYGON);
+	}
 
-		if ((graphics.stroke) || (overrideStrokeColour))
-		{
-			if (isHandy == false)
-			{
+	/** Starts a new shape of the type specified in the mode parameter. This must be paired
+	 *  with a call to <code>endShape()</code> or one of its variants.
+	 *	@param mode either POINTS, LINES, TRIANGLES, TRIANGLE_FAN, TRIANGLE_STRIP, QUADS, QUAD_STRIP	 
+	 */	
+	public void beginShape(int mode)
+	{
+		if (isHandy == false)
+		{
+			graphics.beginShape(mode);
+		}
+		else
+		{
+			this.shapeMode=mode;
+			vertices.clear();
+			curveIndices.clear();
+			ringStarts[0] = 0;
+			numRings = 1;
+			is3DShape = false;
+		}
+	}
+
+	/** Starts a contour within a shape that was started with a call to <code>beginShape()</code>.
+	 *  Vertices added before the first contour define the outer boundary of the shape. Each contour
+	 *  may be a hole, such as a lake within a region, or a separate part, such as an island. All
+	 *  rings are filled together using the even-odd rule so a point is inside the shape if it is
+	 *  enclosed by an odd number of rings, regardless of the direction in which each ring is defined.
+	 *  Contours are only supported by 2d <code>POLYGON</code> shapes made from straight edges.
+	 */
+	public void beginContour()
+	{
+		if (isHandy == false)
+		{
+			graphics.beginContour();
+		}
+		else
+		{
+			if (numRings == ringStarts.length)
+			{
+				ringStarts = Arrays.copyOf(ringStarts,numRings*2);
+			}
+			ringStarts[numRings++] = vertices.size;
+		}
+	}
+
+	/** Ends a contour that was started with a call to <code>beginContour()</code>.
+	 */
+	public void endContour()
+	{
+		if (isHandy == false)
+		{
+			graphics.endContour();
+		}
+	}
+
+	/** Adds a 2d vertex to a shape that was started with a call to <code>beginShape()</code> 
+	 *  or one of its variants.
+	 *  @param x x coordinate of vertex to add.
+	 *  @param y y coordinate of vertex to add.
+	 */
+	public void vertex(float x, float y)
+	{
+		if (isHandy == false)
+		{
+			graphics.vertex(x,y);
+		}
+		else
+		{
+			vertices.add(x,y);
+		}
+	}
+
+	/** Adds a 3d vertex to a shape that was started with a call to <code>beginShape()</code> 
+	 *  or one of its variants.
+	 *  @param x x coordinate of vertex to add.
+	 *  @param y y coordinate of vertex to add.
+	 *  @param z z coordinate of vertex to add.
+	 */
+	public void vertex(float x, float y, float z)
+	{
+		is3DShape = true;
+		if (isHandy == false)
+		{
+			graphics.vertex(x,y,z);
+		}
+		else
+		{
+			vertices.add(x,y,z);
+		}
+	}
+
+	/** Adds a 2d vertex to a shape or line that has curved edges. That shape should have been
+	 *  started with a call to <code>beginShape()</code> without any parameter.
+	 *  @param x x coordinate of vertex to add.
+	 *  @param y y coordinate of vertex to add.
+	 */
+	public void curveVertex(float x, float y)
+	{
+		if (isHandy == false)
+		{
+			graphics.curveVertex(x,y);
+		}
+		else
+		{
+			// Log this position in the vertex list as being a curve
+			curveIndices.set(vertices.size);
+
+			// Store the vertex geometry.
+			vertices.add(x,y);			
+		}
+	}
+
+	/** Adds a 3d vertex to a shape or line that has curved edges. That shape should have been
+	 *  started with a call to <code>beginShape()</code> without any parameter.
+	 *  @param x x coordinate of vertex to add.
+	 *  @param y y coordinate of vertex to add.
+	 *  @param z z coordinate of vertex to add.
+	 */
+	public void curveVertex(float x, float y, float z)
+	{
+		is3DShape = true;
+		if (isHandy == false)
+		{
+			graphics.curveVertex(x,y,z);
+		}
+		else
+		{
+			// Log this position in the vertex list as being a curve
+			curveIndices.set(vertices.size);
+
+			// Store the vertex geometry.
+			vertices.add(x,y,z);			
+		}
+	}
+
+	/** Ends a shape definition. This should have been paired with a call to <code>beginShape()</code>
+	 *  or one of its variants. Note that this version will not close the shape if the last vertex does 
+	 *  not match the first one.
+	 */
+	public void endShape()
+	{
+		if (isHandy == false)
+		{
+			graphics.endShape();
+		}
+		else
+		{
+			if (is3DShape)
+			{
+				drawShape3d(false);
+				is3DShape = false;
+			}
+			else
+			{
+				drawShape2d(false);
+			}
+
+			vertices.clear();
+			curveIndices.clear();
+			numRings = 1;
+		}
+	}
+
+	/** Ends a shape definition. This should have been paired with a call to <code>beginShape()</code> 
+	 *  or one of its variants. If the mode parameter <code>CLOSE</code> the shape will be closed.
+	 */
+	public void endShape(int mode) 
+	{
+		if (isHandy == false)
+		{
+			graphics.endShape(mode);
+		}
+		else
+		{
+			if (is3DShape)
+			{
+				drawShape3d(mode==PConstants.CLOSE);
+				is3DShape = false;
+			}
+			else
+			{
+				drawShape2d(mode==PConstants.CLOSE);
+			}
+		}
+		vertices.clear();
+		curveIndices.clear();
+		numRings = 1;
+	}
+
+	/** Draws 3D cube with the given unit dimension.
+	 *  @param bSize Size of each dimension of the cube.
+	 */
+	public void box(float bSize)
+	{
+		box(bSize, bSize, bSize);
+	}
+
+	/** Draws 3D box with the given dimensions.
+	 *  @param bW Width of the box.
+	 *  @param hH Height of the box.
+	 *  @param bD Depth of the box.
+	 */
+	public void box(float bWidth, float hHeight, float bDepth)
+	{
+		if (isHandy == false)
+		{
+			graphics.box(bWidth,hHeight,bDepth);
+		}
+		else
+		{
+			// Create a box without any strokes first.
+			float bW = bWidth/2f;
+			float bH = hHeight/2f;
+			float bD = bDepth/2f;
+			graphics.pushStyle();
+			boolean isStrokeOverridden = overrideStrokeColour;
+			setOverrideStrokeColour(false);
+			StyleEmitter.noStroke(graphics);
+			
+			beginShape(PConstants.QUADS);
+			  vertex(-bW,  bH,  bD);
+			  vertex( bW,  bH,  bD);
+			  vertex( bW, -bH,  bD);
+			  vertex(-bW, -bH,  bD);
+
+			  vertex( bW,  bH,  bD);
+			  vertex( bW,  bH, -bD);
+			  vertex( bW, -bH, -bD);
+			  vertex( bW, -bH,  bD);
+			  
+			  vertex( bW,  bH, -bD);
+			  vertex(-bW,  bH, -bD);
+			  vertex(-bW, -bH, -bD);
+			  vertex( bW, -bH, -bD);
+			  
+			  vertex(-bW,  bH, -bD);
+			  vertex(-bW,  bH,  bD);
+			  vertex(-bW, -bH,  bD);
+			  vertex(-bW, -bH, -bD);
+
+			  vertex(-bW,  bH, -bD);
+			  vertex( bW,  bH, -bD);
+			  vertex( bW,  bH,  bD);
+			  vertex(-bW,  bH,  bD);
+			  
+			  vertex(-bW, -bH, -bD);
+			  vertex( bW, -bH, -bD);
+			  vertex( bW, -bH,  bD);
+			  vertex(-bW, -bH,  bD);
+			 endShape();
+			 
+			 graphics.popStyle();
+			 setOverrideStrokeColour(isStrokeOverridden);
+			 
+			 // Finally draw lines along each of the box edges.
+			 line(-bW,  bH,  bD, bW,  bH,  bD);
+			 line( bW,  bH,  bD, bW, -bH,  bD);
+			 line( bW, -bH,  bD,-bW, -bH,  bD);
+			 line(-bW, -bH,  bD,-bW,  bH,  bD);
+
+			 line( bW,  bH,  bD, bW,  bH, -bD);
+			 line( bW,  bH, -bD, bW, -bH, -bD);
+			 line( bW, -bH, -bD, bW, -bH,  bD);
+
+			 line( bW,  bH, -bD,-bW,  bH, -bD);
+			 line(-bW,  bH, -bD,-bW, -bH, -bD);
+			 line(-bW, -bH, -bD, bW, -bH, -bD);
+
+			 line(-bW,  bH, -bD,-bW,  bH,  bD);
+			 line(-bW, -bH,  bD,-bW, -bH, -bD);
+		}
+
+	}
+
+	/** Draws a closed 2d polygon based on the given arrays of vertices.
+	 *  @param xCoords x coordinates of the shape.
+	 *  @param yCoords y coordinates of the shape.
+	 */
+	public void shape(float[] xCoords, float[] yCoords)
+	{
+		shape(xCoords,yCoords,true);
+	}
+
+	/** Draws a closed 3d polygon based on the given arrays of vertices.
+	 *  @param xCoords x coordinates of the shape.
+	 *  @param yCoords y coordinates of the shape.
+	 *  @param zCoords z coordinates of the shape.
+	 */
+	public void shape(float[] xCoords, float[] yCoords, float[] zCoords)
+	{
+		shape(xCoords,yCoords,zCoords,true);
+	}
+
+	/** Draws a 3d polygon based on the given arrays of vertices. This version can 
+	 *  draw either open or closed shapes.
+	 *  @param xCoords x coordinates of the shape.
+	 *  @param yCoords y coordinates of the shape.
+	 *  @param closeShape Boundary of shape will be closed if true.
+	 */
+	public void shape(float[] xCoords, float[] yCoords, boolean closeShape)
+	{
+		if ((xCoords == null) || (yCoords == null) || (xCoords.length ==0) || (yCoords.length == 0))
+		{
+			System.err.println("No coordinates provided to shape().");
+			return;
+		}			
+
+		int numCoords = Math.min(xCoords.length,yCoords.length);
+		BoundaryCache.Boundary boundary = getSimplifiedBoundary(xCoords,yCoords,numCoords,closeShape);
+		if (boundary != null)
+		{
+			shape(boundary.xs,boundary.ys,boundary.numCoords,boundary.starts,boundary.numParts,closeShape);
+			return;
+		}
+		shape(xCoords,yCoords,numCoords,closeShape);
+	}
+
+	/** Draws a 2d polygon whose vertices are read directly from a buffer of interleaved coordinates, such as a
+	 *  memory-mapped file loaded with <code>MappedGeometry</code>. The x coordinate of vertex i is at index
+	 *  <code>offset+i*stride</code> of the buffer and its y coordinate immediately follows it, so buffers that
+	 *  store further values with each vertex can be drawn without first being copied into separate arrays.
+	 *  Normally the fill and outline are generated straight from the buffer. If boundary simplification,
+	 *  coalesced strokes, alternating hachures or clipped hachuring apply to the shape, its vertices (only those
+	 *  retained if simplifying) are first gathered into a reusable internal buffer. Simplified boundaries of
+	 *  buffers are not cached.
+	 *  @param coords Buffer containing the shape's coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices in the shape.
+	 *  @param stride Number of buffer values between the start of one vertex and the next. 2 for buffers
+	 *                containing only x,y pairs.
+	 *  @param closeShape Boundary of shape will be closed if true.
+	 */
+	public void shape(FloatBuffer coords, int offset, int numVertices, int stride, boolean closeShape)
+	{
+		if (isValidBuffer(coords,offset,numVertices,stride) == false)
+		{
+			System.err.println("Invalid coordinate buffer provided to shape().");
+			return;
+		}
+		if (isHandy == false)
+		{
+			drawBuffer(coords,offset,numVertices,stride,closeShape);
+			return;
+		}
+
+		int bucket = getSimplificationBucket(numVertices);
+		if ((bucket != NO_SIMPLIFICATION) || (coalesceStrokes) || (isAlternating) || (useClipFill(numVertices)))
+		{
+			// These options need random access to separate coordinate arrays.
+			VertexBuffer vertices = gatherVertices(coords,offset,numVertices,stride,closeShape,bucket);
+			shape(vertices.xs,vertices.ys,vertices.size,closeShape);
+			return;
+		}
+
+		graphics.pushStyle();
+		startMark(bufferKey(PConstants.POLYGON,coords,offset,numVertices,stride));
+
+		// Store the original stroke and fill colours.
+		int oStroke = graphics.strokeColor;
+		int oFill   = graphics.fillColor;
+		float oWeight = graphics.strokeWeight;
+		boolean oIsStroke = graphics.stroke;
+
+		if (graphics.fill)
+		{
+			// Erase interior of shape if background colour is not completely transparent.
+			if ((fillGap != 0) && (graphics.alpha(bgColour) > 0))
+			{
+				StyleEmitter.fill(graphics,bgColour);
+				StyleEmitter.noStroke(graphics);
+				occludeBuffer(coords,offset,numVertices,stride);
+				drawBuffer(coords,offset,numVertices,stride,true);
+				StyleEmitter.noFill(graphics);
+			}
+
+			// Only fill interior if the fill colour is distinct from the background.
+			if (bgColour != (overrideFillColour?fillColour:oFill))
+			{
+				if (fillGap == 0)
+				{
+					// Fill with solid colour
+					if (overrideFillColour)
+					{
+						StyleEmitter.fill(graphics,fillColour);
+					}
+					StyleEmitter.noStroke(graphics);
+					occludeBuffer(coords,offset,numVertices,stride);
+					drawBuffer(coords,offset,numVertices,stride,true);
+					StyleEmitter.noFill(graphics);
+				}
+				else
+				{
+					// We will be using strokes to fill, so change stroke to fill colour.
+					if (overrideFillColour)
+					{
+						StyleEmitter.stroke(graphics,fillColour);
+					}
+					else
+					{
+						StyleEmitter.stroke(graphics,oFill);
+					}
+
+					// Perturb hachure angle if requested.
+					if (anglePerturbation > 0)
+					{
+						perturbHachureAngle();
+					}
+
+					if (fillWeight <=0)
+					{
+						StyleEmitter.strokeWeight(graphics,oWeight/2f);
+					}
+					else
+					{
+						StyleEmitter.strokeWeight(graphics,fillWeight);
+					}
+
+					float gap = fillGap;	// Gap between adjacent lines.
+					if (gap < 0)
+					{
+						gap = oWeight*4;					
+					}
+
+					crossHatches(new HachureEdges(coords,offset,numVertices,stride),gap);
+
+					// Restore hachure angle if requested.
+					if (anglePerturbation > 0)
+					{
+						restoreHachureAngle();
+					}
+				}
+			}
+
+			// Restore original fill and stroke weight settings.
+			StyleEmitter.fill(graphics,oFill);
+			StyleEmitter.strokeWeight(graphics,oWeight);
+		}
+
+		// Draw boundary of the shape.
+		if ((oIsStroke) || (overrideStrokeColour))
+		{
+			if (overrideStrokeColour)
+			{
+				StyleEmitter.stroke(graphics,strokeColour);
+			}
+			else
+			{
+				StyleEmitter.stroke(graphics,oStroke);	
+			}
+
+			if (strokeWeight > 0)
+			{
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
+			}
+			else
+			{
+				StyleEmitter.strokeWeight(graphics,oWeight);
+			}
+			bufferLines(coords,offset,numVertices,stride,closeShape);
+		}
+
+		// Restore styles.
+		graphics.popStyle();
+	}
+
+	/** Draws a 2d polygon from the first <code>numCoords</code> elements of the given arrays of vertices.
+	 *  This allows shapes to be drawn directly from reusable buffers that may be longer than the shape.
+	 *  @param xCoords x coordinates of the shape.
+	 *  @param yCoords y coordinates of the shape.
+	 *  @param numCoords Number of vertices in the shape.
+	 *  @param closeShape Boundary of shape will be closed if true.
+	 */
+	private void shape(float[] xCoords, float[] yCoords, int numCoords, boolean closeShape)
+	{
+		shape(xCoords,yCoords,numCoords,SINGLE_RING,1,closeShape);
+	}
+
+	/** Draws a closed 2d polygon made up of several rings. The first ring is usually the outer boundary
+	 *  of the shape and the remainder holes within it or separate parts of it, but rings may be given in
+	 *  any order and direction. The shape is filled using the even-odd rule so that a point is inside the
+	 *  shape if it is enclosed by an odd number of rings. This allows, for example, a map region containing
+	 *  lakes and islands to be drawn and hachured in a single pass.
+	 *  @param xCoords x coordinates of each ring of the shape.
+	 *  @param yCoords y coordinates of each ring of the shape.
+	 */
+	public void shape(float[][] xCoords, float[][] yCoords)
+	{
+		if ((xCoords == null) || (yCoords == null) || (xCoords.length == 0) || (xCoords.length != yCoords.length))
+		{
+			System.err.println("No coordinates provided to shape().");
+			return;
+		}
+
+		int numCoords = 0;
+		for (int r=0; r<xCoords.length; r++)
+		{
+			if ((xCoords[r] == null) || (yCoords[r] == null) || (xCoords[r].length != yCoords[r].length))
+			{
+				System.err.println("Each ring provided to shape() requires x and y coordinate arrays of the same length.");
+				return;
+			}
+			numCoords += xCoords[r].length;
+		}
+		if (numCoords == 0)
+		{
+			System.err.println("No coordinates provided to shape().");
+			return;
+		}
+
+		int bucket = getSimplificationBucket(numCoords);
+		BoundaryCache.Boundary boundary = null;
+		long hash = 0;
+		if (bucket != NO_SIMPLIFICATION)
+		{
+			hash = BoundaryCache.hash(xCoords,yCoords);
+			boundary = boundaryCache.get(xCoords,bucket,true,numCoords,hash,getSimplificationTolerance(bucket));
+			if (boundary != null)
+			{
+				shape(boundary.xs,boundary.ys,boundary.numCoords,boundary.starts,boundary.numParts,true);
+				return;
+			}
+		}
+
+		float[] xs = new float[numCoords];
+		float[] ys = new float[numCoords];
+		int[] starts = new int[xCoords.length];
+		int numParts = 0;
+		int i = 0;
+		for (int r=0; r<xCoords.length; r++)
+		{
+			if (xCoords[r].length > 0)
+			{
+				starts[numParts++] = i;
+				System.arraycopy(xCoords[r],0,xs,i,xCoords[r].length);
+				System.arraycopy(yCoords[r],0,ys,i,yCoords[r].length);
+				i += xCoords[r].length;
+			}
+		}
+
+		if (bucket != NO_SIMPLIFICATION)
+		{
+			boundary = boundaryCache.add(xCoords,bucket,true,xs,ys,numCoords,starts,numParts,hash,getSimplificationTolerance(bucket));
+			shape(boundary.xs,boundary.ys,boundary.numCoords,boundary.starts,boundary.numParts,true);
+			return;
+		}
+		shape(xs,ys,numCoords,starts,numParts,true);
+	}
+
+	/** Draws a 2d polygon made up of one or more rings stored consecutively in the given arrays. The
+	 *  interior is hachured with the even-odd rule in a single pass over all ring edges.
+	 *  @param xCoords x coordinates of all rings.
+	 *  @param yCoords y coordinates of all rings.
+	 *  @param numCoords Total number of vertices in all rings.
+	 *  @param starts Index of the first vertex of each ring.
+	 *  @param numParts Number of rings.
+	 *  @param closeShape Boundary of the first ring will be closed if true. Others are always closed.
+	 */
+	private void shape(float[] xCoords, float[] yCoords, int numCoords, int[] starts, int numParts, boolean closeShape)
+	{
+		if (isHandy == false)
+		{
+			drawRings(xCoords,yCoords,numCoords,starts,numParts,closeShape);
+			return;
+		}
+
+		graphics.pushStyle();
+		startMark(coordsKey(PConstants.POLYGON,xCoords,yCoords,null,numCoords));
+
+		// Bounding rectangle of the shape.
+		kernels.range(xCoords,0,numCoords,extent);
+		float left   = extent[0];
+		float right  = extent[1];
+		kernels.range(yCoords,0,numCoords,extent);
+		float top    = extent[0];
+		float bottom = extent[1];
+
+		// Store the original stroke and fill colours.
+		int oStroke = graphics.strokeColor;
+		int oFill   = graphics.fillColor;
+		float oWeight = graphics.strokeWeight;
+		boolean oIsStroke = graphics.stroke;
+
+		if (graphics.fill)
+		{
+			// Erase interior of shape if background colour is not completely transparent.
+			if ((fillGap != 0) && (graphics.alpha(bgColour) > 0))
+			{
+				StyleEmitter.fill(graphics,bgColour);
+				StyleEmitter.noStroke(graphics);
+				occludePolygon(xCoords,yCoords,numCoords,numParts);
+				drawRings(xCoords,yCoords,numCoords,starts,numParts,true);
+				StyleEmitter.noFill(graphics);
+			}
+
+			// Only fill interior if the fill colour is distinct from the background.
+			if (bgColour != (overrideFillColour?fillColour:oFill))
+			{
+				if (fillGap == 0)
+				{
+					// Fill with solid colour
+					if (overrideFillColour)
+					{
+						StyleEmitter.fill(graphics,fillColour);
+					}
+					StyleEmitter.noStroke(graphics);
+					occludePolygon(xCoords,yCoords,numCoords,numParts);
+					drawRings(xCoords,yCoords,numCoords,starts,numParts,true);
+					StyleEmitter.noFill(graphics);
+				}
+				else
+				{
+					// We will be using strokes to fill, so change stroke to fill colour.
+					if (overrideFillColour)
+					{
+						StyleEmitter.stroke(graphics,fillColour);
+					}
+					else
+					{
+						StyleEmitter.stroke(graphics,oFill);
+					}
+
+					// Perturb hachure angle if requested.
+					if (anglePerturbation > 0)
+					{
+						perturbHachureAngle();
+					}
+
+					if (fillWeight <=0)
+					{
+						StyleEmitter.strokeWeight(graphics,oWeight/2f);
+					}
+					else
+					{
+						StyleEmitter.strokeWeight(graphics,fillWeight);
+					}
+
+					float gap = fillGap;	// Gap between adjacent lines.
+					if (gap < 0)
+					{
+						gap = oWeight*4;					
+					}
+
+					if ((isAlternating) && (numHachureDirections < 2))
+					{
+						// If zig-zag filling, increase gap to give approximately similar density.
+						gap *= 1.41f;
+					}
+
+					if ((numHachureDirections < 2) && ((useClipFill(numCoords)) || (isAlternating)))
+					{
+						// Iterate through each line that could intersect with the shape.
+						HachureIterator it = new HachureIterator(top-1, bottom+1, left-1, right+1, gap, sinAngle, cosAngle, tanAngle);
+						if (useClipFill(numCoords))
+						{
+							clipHachures(it,xCoords,yCoords,numCoords,starts,numParts);
+						}
+						else
+						{
+							alternatingHachures(it,xCoords,yCoords,numCoords,starts,numParts);
+						}
+					}
+					else
+					{
+						// Sweep the shape's edges, as is done for shapes drawn from coordinate buffers.
+						crossHatches(new HachureEdges(xCoords,yCoords,numCoords,starts,numParts),gap);
+					}
+
+					// Restore hachure angle if requested.
+					if (anglePerturbation > 0)
+					{
+						restoreHachureAngle();
+					}
+				}
+			}
+
+			// Restore original fill and stroke weight settings.
+			StyleEmitter.fill(graphics,oFill);
+			StyleEmitter.strokeWeight(graphics,oWeight);
+		}
+
+		// Draw boundary of the shape.
+		if ((oIsStroke) || (overrideStrokeColour))
+		{
+			if (overrideStrokeColour)
+			{
+				StyleEmitter.stroke(graphics,strokeColour);
+			}
+			else
+			{
+				StyleEmitter.stroke(graphics,oStroke);	
+			}
+
+			if (strokeWeight > 0)
+			{
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
+			}
+			else
+			{
+				StyleEmitter.strokeWeight(graphics,oWeight);
+			}
+
+			for (int r=0; r<numParts; r++)
+			{
+				int first = starts[r];
+				int last = (r < numParts-1) ? starts[r+1]-1 : numCoords-1;
+				if (coalesceStrokes)
+				{
+					coalescedLines(xCoords,yCoords,first,last,(closeShape) || (r > 0),2);
+					continue;
+				}
+				for (int i=first; i<last; i++)
+				{
+					line(xCoords[i],yCoords[i],xCoords[i+1],yCoords[i+1],2);
+				}
+				if ((closeShape) || (r > 0))
+				{
+					line(xCoords[last],yCoords[last],xCoords[first],yCoords[first],2);
+				}
+			}
+		}
+
+		// Restore styles.
+		graphics.popStyle();
+	}
+
+	/** Draws a 3d polygon based on the given arrays of vertices. This version can 
+	 *  draw either open or closed shapes.
+	 *  @param xCoords x coordinates of the shape.
+	 *  @param yCoords y coordinates of the shape.
+	 *  @param zCoords z coordinates of the shape.
+	 *  @param closeShape Boundary of shape will be closed if true.
+	 */
+	public void shape(float[] xCoords, float[] yCoords, float[] zCoords, boolean closeShape)
+	{
+		if ((xCoords == null) || (yCoords == null) || (zCoords == null) || (xCoords.length ==0) || (yCoords.length == 0) || (zCoords.length == 0))
+		{
+			System.err.println("No coordinates provided to shape().");
+			return;
+		}			
+
+		shape(xCoords,yCoords,zCoords,Math.min(xCoords.length,Math.min(yCoords.length,zCoords.length)),closeShape);
+	}
+
+	/** Draws a 3d polygon from the first <code>numCoords</code> elements of the given arrays of vertices.
+	 *  @param xCoords x coordinates of the shape.
+	 *  @param yCoords y coordinates of the shape.
+	 *  @param zCoords z coordinates of the shape.
+	 *  @param numCoords Number of vertices in the shape.
+	 *  @param closeShape Boundary of shape will be closed if true.
+	 */
+	private void shape(float[] xCoords, float[] yCoords, float[] zCoords, int numCoords, boolean closeShape)
+	{
+		if (isHandy == false)
+		{
+			graphics.beginShape();
+			for (int i=0; i<numCoords; i++)
+			{
+				graphics.vertex(xCoords[i],yCoords[i],zCoords[i]);
+			}
+			if (closeShape)
+			{
+				graphics.endShape(PConstants.CLOSE);
+			}
+			else
+			{
+				graphics.endShape();
+			}
+			return;
+		}
+
+		graphics.pushStyle();
+		startMark(coordsKey(PConstants.POLYGON,xCoords,yCoords,zCoords,numCoords));
+
+
+		// Store the original stroke and fill colours.
+		int oStroke = graphics.strokeColor;
+		int oFill   = graphics.fillColor;
+		float oWeight = graphics.strokeWeight;
+		boolean oIsStroke = graphics.stroke;
+
+		if (graphics.fill)
+		{
+			// Erase interior of shape if background colour is not completely transparent.
+			if ((fillGap != 0) && (graphics.alpha(bgColour) > 0))
+			{
+				StyleEmitter.fill(graphics,bgColour);
+				StyleEmitter.noStroke(graphics);
+				graphics.beginShape();
+				for (int i=0; i<numCoords; i++)
+				{
+					graphics.vertex(xCoords[i],yCoords[i],zCoords[i]);
+				}
+				graphics.endShape(PConstants.CLOSE);				
+				StyleEmitter.noFill(graphics);
+			}
+
+			// Only fill interior if the fill colour is distinct from the background.
+			if (bgColour != (overrideFillColour?fillColour:oFill))
+			{
+				if (fillGap == 0)
+				{
+					// Fill with solid colour
+					if (overrideFillColour)
+					{
+						StyleEmitter.fill(graphics,fillColour);
+					}
+					StyleEmitter.noStroke(graphics);
+					graphics.beginShape();
+					for (int i=0; i<numCoords; i++)
+					{
+						graphics.vertex(xCoords[i],yCoords[i],zCoords[i]);
+					}
+					graphics.endShape(PConstants.CLOSE);
+					StyleEmitter.noFill(graphics);
+				}
+				else
+				{				
+					// We will be using strokes to fill, so change stroke to fill colour.
+					if (overrideFillColour)
+					{
+						StyleEmitter.stroke(graphics,fillColour);
+					}
+					else
+					{
+						StyleEmitter.stroke(graphics,oFill);
+					}
+
+					if (fillWeight <=0)
+					{
+						StyleEmitter.strokeWeight(graphics,oWeight/2f);
+					}
+					else
+					{
+						StyleEmitter.strokeWeight(graphics,fillWeight);
+					}
+
+					// Perturb hachure angle if requested.
+					if (anglePerturbation > 0)
+					{
+						perturbHachureAngle();
+					}
+
+					if (fillWeight <=0)
+					{
+						StyleEmitter.strokeWeight(graphics,oWeight/2f);
+					}
+					else
+					{
+						StyleEmitter.strokeWeight(graphics,fillWeight);
+					}
+
+					float gap = fillGap;	// Gap between adjacent lines.
+					if (gap < 0)
+					{
+						gap = oWeight*4;					
+					}
+					if (isAlternating)
+					{
+						// If zig-zag filling, increase gap to give approximately similar density.
+						gap *= 1.41f;
+					}
+
+					// Do the drawing.
+					drawHachuredFace(xCoords, yCoords, zCoords, numCoords, gap);
+
+					// Restore hachure angle if requested.
+					if (anglePerturbation > 0)
+					{
+						restoreHachureAngle();
+					}
+				}
+			}
+
+			// Restore original fill and stroke weight settings.
+			StyleEmitter.fill(graphics,oFill);
+			StyleEmitter.strokeWeight(graphics,oWeight);
+
+		}
+
+		// Draw boundary of the shape.
+		if ((oIsStroke) || (overrideStrokeColour))
+		{
+			if (overrideStrokeColour)
+			{
+				StyleEmitter.stroke(graphics,strokeColour);
+			}
+			else
+			{
+				StyleEmitter.stroke(graphics,oStroke);	
+			}
+
+			if (strokeWeight > 0)
+			{
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
+			}
+			else
+			{
+				StyleEmitter.strokeWeight(graphics,oWeight);
+			}
+
+			for (int i=0; i<numCoords-1; i++)
+			{
+				line(xCoords[i],yCoords[i],zCoords[i],xCoords[i+1],yCoords[i+1],zCoords[i+1],2);
+			}
+			if (closeShape)
+			{
+				line(xCoords[numCoords-1],yCoords[numCoords-1],zCoords[numCoords-1],xCoords[0],yCoords[0],zCoords[0],2);
+			}
+		}
+
+		// Restore styles.
+		graphics.popStyle();
+	}
+
+	/** Draws a complex line that links the given coordinates. 
+	 *  @param xCoords x coordinates of the line.
+	 *  @param yCoords y coordinates of the line.
+	 */
+	public void polyLine(float[] xCoords, float[] yCoords)
+	{
+		if ((xCoords == null) || (yCoords == null) || (xCoords.length ==0) || (yCoords.length == 0))
+		{
+			System.err.println("No coordinates provided to polyLine().");
+			return;
+		}
+
+		if ((graphics.stroke) || (overrideStrokeColour))
+		{
+			if (isHandy == false)
+			{
 				graphics.pushStyle();
-				graphics.noFill();
+				StyleEmitter.noFill(graphics);
 				graphics.beginShape();
 				for (int i=0; i<xCoords.length; i++)
 				{
@@ -1784,732 +2913,2180 @@ public class HandyRenderer
 				return;
 			}
 
-			graphics.pushStyle();
-			int oStroke = graphics.strokeColor;
+			float[] xs = xCoords;
+			float[] ys = yCoords;
+			int numCoords = Math.min(xCoords.length,yCoords.length);
+			BoundaryCache.Boundary boundary = getSimplifiedBoundary(xCoords,yCoords,numCoords,false);
+			if (boundary != null)
+			{
+				xs = boundary.xs;
+				ys = boundary.ys;
+				numCoords = boundary.numCoords;
+			}
+
+			graphics.pushStyle();
+			startMark(coordsKey(PConstants.LINES,xs,ys,null,numCoords));
+			int oStroke = graphics.strokeColor;
+
+			if (overrideStrokeColour)
+			{
+				StyleEmitter.stroke(graphics,strokeColour);
+			}
+			else
+			{
+				StyleEmitter.stroke(graphics,oStroke);	
+			}
+			if (strokeWeight > 0)
+			{
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
+			}
+
+			if (coalesceStrokes)
+			{
+				coalescedLines(xs,ys,0,numCoords-1,false,2);
+			}
+			else
+			{
+				for (int i=0; i<numCoords-1; i++)
+				{
+					line(xs[i],ys[i],xs[i+1],ys[i+1],2);
+				}
+			}
+
+			// Restore style settings.
+			graphics.popStyle();
+		}
+	}
+
+	/** Draws a complex line whose vertices are read directly from a buffer of interleaved coordinates, such as a
+	 *  memory-mapped file loaded with <code>MappedGeometry</code>. The x coordinate of vertex i is at index
+	 *  <code>offset+i*stride</code> of the buffer and its y coordinate immediately follows it. Strokes are
+	 *  generated straight from the buffer unless boundary simplification or coalesced strokes apply to the
+	 *  line, in which case its vertices (only those retained if simplifying) are first gathered into a reusable
+	 *  internal buffer.
+	 *  @param coords Buffer containing the line's coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices in the line.
+	 *  @param stride Number of buffer values between the start of one vertex and the next. 2 for buffers
+	 *                containing only x,y pairs.
+	 */
+	public void polyLine(FloatBuffer coords, int offset, int numVertices, int stride)
+	{
+		if (isValidBuffer(coords,offset,numVertices,stride) == false)
+		{
+			System.err.println("Invalid coordinate buffer provided to polyLine().");
+			return;
+		}
+
+		if ((graphics.stroke) || (overrideStrokeColour))
+		{
+			if (isHandy == false)
+			{
+				graphics.pushStyle();
+				StyleEmitter.noFill(graphics);
+				drawBuffer(coords,offset,numVertices,stride,false);
+				graphics.popStyle();
+				return;
+			}
+
+			int bucket = getSimplificationBucket(numVertices);
+			boolean isGathered = (bucket != NO_SIMPLIFICATION) || (coalesceStrokes);
+			VertexBuffer vertices = null;
+			graphics.pushStyle();
+			if (isGathered)
+			{
+				vertices = gatherVertices(coords,offset,numVertices,stride,false,bucket);
+				startMark(coordsKey(PConstants.LINES,vertices.xs,vertices.ys,null,vertices.size));
+			}
+			else
+			{
+				startMark(bufferKey(PConstants.LINES,coords,offset,numVertices,stride));
+			}
+
+			if (overrideStrokeColour)
+			{
+				StyleEmitter.stroke(graphics,strokeColour);
+			}
+			if (strokeWeight > 0)
+			{
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
+			}
+
+			if (isGathered == false)
+			{
+				bufferLines(coords,offset,numVertices,stride,false);
+			}
+			else if (coalesceStrokes)
+			{
+				coalescedLines(vertices.xs,vertices.ys,0,vertices.size-1,false,2);
+			}
+			else
+			{
+				for (int i=0; i<vertices.size-1; i++)
+				{
+					line(vertices.xs[i],vertices.ys[i],vertices.xs[i+1],vertices.ys[i+1],2);
+				}
+			}
+
+			// Restore style settings.
+			graphics.popStyle();
+		}
+	}
+
+	/** Draws a 2D line between the given coordinate pairs. 
+	 *  @param x1 x coordinate of the start of the line.
+	 *  @param y1 y coordinate of the start of the line.
+	 *  @param x2 x coordinate of the end of the line.
+	 *  @param y2 y coordinate of the end of the line.
+	 */
+	public void line(float x1, float y1, float x2, float y2)
+	{	
+		if ((graphics.stroke) || (overrideStrokeColour))
+		{
+			if (isHandy == false)
+			{
+				graphics.line(x1,y1,x2,y2);
+				return;
+			}
+
+			graphics.pushStyle();
+			if (overrideStrokeColour)
+			{
+				StyleEmitter.stroke(graphics,strokeColour);
+			}
+
+			if (strokeWeight > 0)
+			{
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
+			}
+
+			startMark(boundsKey(PConstants.LINE,x1,y1,x2,y2));
+			line(x1,y1,x2,y2,2);
+
+			// Restore original stroke settings.
+			graphics.popStyle();
+		}
+	}
+
+	/** Draws a 3D line between the given coordinate triplets. 
+	 *  @param x1 x coordinate of the start of the line.
+	 *  @param y1 y coordinate of the start of the line.
+	 *  @param z1 z coordinate of the start of the line.
+	 *  @param x2 x coordinate of the end of the line.
+	 *  @param y2 y coordinate of the end of the line.
+	 *  @param z2 z coordinate of the end of the line.
+	 */
+	public void line(float x1, float y1, float z1, float x2, float y2, float z2)
+	{	
+		if ((graphics.stroke) || (overrideStrokeColour))
+		{
+			if (isHandy == false)
+			{
+				graphics.line(x1,y1,z1,x2,y2,z2);
+				return;
+			}
+
+			graphics.pushStyle();
+			if (overrideStrokeColour)
+			{
+				StyleEmitter.stroke(graphics,strokeColour);
+			}
+
+			if (strokeWeight > 0)
+			{
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
+			}
+
+			startMark(pointsKey(PConstants.LINE,x1,y1,z1,x2,y2,z2));
+			line(x1,y1,z1,x2,y2,z2,2);
+
+			// Restore original stroke settings.
+			graphics.popStyle();
+		}
+	}
+
+	/** Draws the given text in a sketchy style using the text font, size, leading and alignment of the graphics
+	 *  context. The outline of each glyph is flattened only once for each font, size and text flatness and then
+	 *  cached, so labels drawn on every frame only need to be laid out. All the glyphs of the text are drawn as a
+	 *  single mark, so are hachured in one pass with holes such as those in 'o' or 'e' left unfilled, and are
+	 *  outlined in the current stroke colour. Lines of text may be separated with newline characters. If the
+	 *  font has no outlines, as is the case with fonts loaded from <code>.vlw</code> files, or if sketchy drawing
+	 *  is turned off, the text is drawn normally.
+	 *  @param text Text to draw.
+	 *  @param x x coordinate of the text, interpreted according to the horizontal text alignment.
+	 *  @param y y coordinate of the text, interpreted according to the vertical text alignment.
+	 */
+	public void text(String text, float x, float y)
+	{
+		if ((text == null) || (text.length() == 0))
+		{
+			return;
+		}
+		PFont pFont = graphics.textFont;
+		Font font = (pFont == null) ? null : (Font)pFont.getNative();
+		if ((isHandy == false) || (font == null))
+		{
+			graphics.text(text,x,y);
+			return;
+		}
+
+		float size = (graphics.textSize > 0) ? graphics.textSize : pFont.getSize();
+		GlyphCache glyphs = GlyphCache.get(font,size,textFlatness);
+		float ascent  = glyphs.getAscent();
+		float descent = glyphs.getDescent();
+		float leading = (graphics.textLeading > 0) ? graphics.textLeading : (ascent+descent)*1.275f;
+
+		int numLines = 1;
+		for (int i=0; i<text.length(); i++)
+		{
+			if (text.charAt(i) == '\n')
+			{
+				numLines++;
+			}
+		}
+
+		float baseline = y;
+		if (graphics.textAlignY == PConstants.TOP)
+		{
+			baseline = y + ascent;
+		}
+		else if (graphics.textAlignY == PConstants.CENTER)
+		{
+			baseline = y + (ascent-descent)/2 - leading*(numLines-1)/2;
+		}
+		else if (graphics.textAlignY == PConstants.BOTTOM)
+		{
+			baseline = y - descent - leading*(numLines-1);
+		}
+
+		numText = 0;
+		numTextRings = 0;
+		int lineStart = 0;
+		while (lineStart <= text.length())
+		{
+			int lineEnd = text.indexOf('\n',lineStart);
+			if (lineEnd < 0)
+			{
+				lineEnd = text.length();
+			}
+
+			float lineWidth = 0;
+			for (int i=lineStart; i<lineEnd; )
+			{
+				int codePoint = text.codePointAt(i);
+				lineWidth += glyphs.getGlyph(codePoint).advance;
+				i += Character.charCount(codePoint);
+			}
+
+			float left = x;
+			if (graphics.textAlign == PConstants.CENTER)
+			{
+				left = x - lineWidth/2;
+			}
+			else if (graphics.textAlign == PConstants.RIGHT)
+			{
+				left = x - lineWidth;
+			}
+
+			for (int i=lineStart; i<lineEnd; )
+			{
+				int codePoint = text.codePointAt(i);
+				GlyphCache.Glyph glyph = glyphs.getGlyph(codePoint);
+				addGlyph(glyph,left,baseline);
+				left += glyph.advance;
+				i += Character.charCount(codePoint);
+			}
+
+			baseline += leading;
+			lineStart = lineEnd+1;
+		}
+
+		if (numTextRings > 0)
+		{
+			shape(textX,textY,numText,textStarts,numTextRings,true);
+		}
+	}
+
+	/** Converts an array list of numeric values into a floating point array.
+	 *  Useful for methods that require primitive arrays of floats based on a dynamic collection.
+	 *  @param list List of numbers to convert.
+	 *  @return Array of floats representing the list.
+	 */
+	public static float[] toArray(List<Float> list)
+	{
+		float[] array = new float[list.size()];
+		for (int i=0; i< list.size(); i++)
+		{
+			array[i] = list.get(i).floatValue();
+		}
+		return array;
+	}
+
+	// --------------------------------- Private methods --------------------------------- 
+
+	/** Starts the random variation of a new mark if keyed seeding is in use. The mark is identified by the key
+	 *  supplied with <code>setMarkKey()</code> if there is one, otherwise by the given key derived from its geometry.
+	 *  @param geometryKey Key derived from the type and coordinates of the mark.
+	 */
+	private void startMark(long geometryKey)
+	{
+		if (keyedRand != null)
+		{
+			markKey = hasNextMarkKey ? nextMarkKey : geometryKey;
+			hasNextMarkKey = false;
+			keyedRand.setKey(markKey,0);
+		}
+	}
+
+	/** Switches to the random stream for the given phase of the current mark if keyed seeding is in use.
+	 *  Giving each phase its own stream allows the fill and outline of a mark to be drawn in separate passes
+	 *  while keeping the same appearance as when drawn together.
+	 *  @param phase Phase of the mark about to be drawn.
+	 */
+	private void setMarkPhase(int phase)
+	{
+		if (keyedRand != null)
+		{
+			keyedRand.setKey(markKey,phase);
+		}
+	}
+
+	/** Provides a key identifying a mark defined by four values, such as its bounds.
+	 *  @param type Type of mark.
+	 *  @param a First value defining the mark.
+	 *  @param b Second value defining the mark.
+	 *  @param c Third value defining the mark.
+	 *  @param d Fourth value defining the mark.
+	 *  @return Key derived from the mark's geometry, or 0 if keyed seeding is not in use.
+	 */
+	private long boundsKey(int type, float a, float b, float c, float d)
+	{
+		if (keyedRand == null)
+		{
+			return 0;
+		}
+		return KeyedRandom.hash(KeyedRandom.hash(KeyedRandom.hash(KeyedRandom.hash(type,a),b),c),d);
+	}
+
+	/** Provides a key identifying a mark defined by six values, such as the vertices of a triangle.
+	 *  @param type Type of mark.
+	 *  @param a First value defining the mark.
+	 *  @param b Second value defining the mark.
+	 *  @param c Third value defining the mark.
+	 *  @param d Fourth value defining the mark.
+	 *  @param e Fifth value defining the mark.
+	 *  @param f Sixth value defining the mark.
+	 *  @return Key derived from the mark's geometry, or 0 if keyed seeding is not in use.
+	 */
+	private long pointsKey(int type, float a, float b, float c, float d, float e, float f)
+	{
+		if (keyedRand == null)
+		{
+			return 0;
+		}
+		return KeyedRandom.hash(KeyedRandom.hash(boundsKey(type,a,b,c,d),e),f);
+	}
+
+	/** Provides a key identifying a mark defined by a sequence of vertices stored in a buffer of interleaved
+	 *  coordinates. This is the same as the key of the same vertices stored in separate arrays.
+	 *  @param type Type of mark.
+	 *  @param coords Buffer containing the coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 *  @return Key derived from the mark's geometry, or 0 if keyed seeding is not in use.
+	 */
+	private long bufferKey(int type, FloatBuffer coords, int offset, int numVertices, int stride)
+	{
+		if (keyedRand == null)
+		{
+			return 0;
+		}
+		long key = type;
+		for (int i=0; i<numVertices; i++)
+		{
+			key = KeyedRandom.hash(KeyedRandom.hash(key,coords.get(offset+i*stride)),coords.get(offset+i*stride+1));
+		}
+		return key;
+	}
+
+	/** Provides a key identifying a mark defined by a sequence of vertices.
+	 *  @param type Type of mark.
+	 *  @param xCoords x coordinates of the vertices.
+	 *  @param yCoords y coordinates of the vertices.
+	 *  @param zCoords z coordinates of the vertices or null if the mark is 2d.
+	 *  @param numCoords Number of vertices.
+	 *  @return Key derived from the mark's geometry, or 0 if keyed seeding is not in use.
+	 */
+	private long coordsKey(int type, float[] xCoords, float[] yCoords, float[] zCoords, int numCoords)
+	{
+		if (keyedRand == null)
+		{
+			return 0;
+		}
+		long key = type;
+		for (int i=0; i<numCoords; i++)
+		{
+			key = KeyedRandom.hash(KeyedRandom.hash(key,xCoords[i]),yCoords[i]);
+			if (zCoords != null)
+			{
+				key = KeyedRandom.hash(key,zCoords[i]);
+			}
+		}
+		return key;
+	}
+
+	/** Creates the working buffers used when building and drawing shapes. These are never shared between
+	 *  renderers so that each renderer may be used on its own thread.
+	 */
+	private void createBuffers()
+	{
+		runIndices = new int[64];
+		knotOffsets = new float[16];
+		chainParams = new float[64];
+		hatchLines = new VertexBuffer(256);
+		kernels = BulkKernels.getInstance();
+		extent = new float[2];
+		gathered = new VertexBuffer(256);
+		gatheredKeep = new boolean[256];
+		scaleMatrix = new PMatrix2D();
+		textX = new float[256];
+		textY = new float[256];
+		textStarts = new int[16];
+		vertices = new VertexBuffer(64);
+		quadX = new float[4];
+		quadY = new float[4];
+		quadZ = new float[4];
+		curveIndices = new BitSet();
+		ringStarts = new int[8];
+		numRings = 1;
+		flatX = new float[64];
+		flatY = new float[64];
+		spanControls = new float[8];
+		is3DShape = false;
+		useSprites = false;
+		spriteSettings = new double[15];
+	}
+
+	/** Provides the simplified version of a single ring or line if boundaries are being simplified, simplifying
+	 *  and caching it if it has not been drawn at the current scale before.
+	 *  @param xCoords x coordinates of the boundary.
+	 *  @param yCoords y coordinates of the boundary.
+	 *  @param numCoords Number of vertices in the boundary.
+	 *  @param isClosed True if the boundary is drawn as a closed shape, false if as an open line.
+	 *  @return Simplified boundary or null if the boundary should be drawn without simplification.
+	 */
+	private BoundaryCache.Boundary getSimplifiedBoundary(float[] xCoords, float[] yCoords, int numCoords, boolean isClosed)
+	{
+		int bucket = getSimplificationBucket(numCoords);
+		if (bucket == NO_SIMPLIFICATION)
+		{
+			return null;
+		}
+		long hash = BoundaryCache.hash(xCoords,yCoords,numCoords);
+		float tolerance = getSimplificationTolerance(bucket);
+		BoundaryCache.Boundary boundary = boundaryCache.get(xCoords,bucket,isClosed,numCoords,hash,tolerance);
+		if (boundary == null)
+		{
+			boundary = boundaryCache.add(xCoords,bucket,isClosed,xCoords,yCoords,numCoords,SINGLE_RING,1,hash,tolerance);
+		}
+		return boundary;
+	}
+
+	/** Finds the scale bucket at which a boundary should be simplified given the current transformation.
+	 *  @param numCoords Number of vertices in the boundary.
+	 *  @return Scale bucket or NO_SIMPLIFICATION if the boundary should not be simplified.
+	 */
+	private int getSimplificationBucket(int numCoords)
+	{
+		if ((simplifyBoundaries == false) || (isHandy == false) || (numCoords < MIN_SIMPLIFY_COORDS))
+		{
+			return NO_SIMPLIFICATION;
+		}
+
+		float scale = getTransformScale();
+		if (scale <= 0)
+		{
+			return NO_SIMPLIFICATION;
+		}
+		return BoundaryCache.getBucket(scale);
+	}
+
+	/** Reports the scale from shape coordinates to pixels of the current 2d transformation.
+	 *  @return Scale factor, or 0 if the scale is not known.
+	 */
+	private float getTransformScale()
+	{
+		PGraphics target = isDeferring ? frame.getTarget() : graphics;
+		if (target.is3D())
+		{
+			return 0;
+		}
+		if (target instanceof RecordingGraphics)
+		{
+			// Recorded output is not transformed until it is replayed.
+			return 1;
+		}
+
+		target.getMatrix(scaleMatrix);
+		float scale = (float)Math.sqrt(Math.abs(scaleMatrix.m00*scaleMatrix.m11 - scaleMatrix.m01*scaleMatrix.m10));
+		if ((Float.isInfinite(scale)) || (Float.isNaN(scale)))
+		{
+			return 0;
+		}
+		return scale;
+	}
+
+	/** Reports the simplification tolerance in shape coordinates for boundaries drawn at the given scale.
+	 *  @param bucket Scale bucket at which the boundary is drawn.
+	 *  @return Douglas-Peucker tolerance in shape coordinates.
+	 */
+	private float getSimplificationTolerance(int bucket)
+	{
+		return SIMPLIFY_PIXELS*(1+roughness)/BoundaryCache.getScale(bucket);
+	}
+
+	/** Adds the contours of the given glyph, translated to the given position, to the laid out text buffer.
+	 *  @param glyph Glyph to add.
+	 *  @param x x coordinate of the glyph's origin.
+	 *  @param y y coordinate of the glyph's baseline.
+	 */
+	private void addGlyph(GlyphCache.Glyph glyph, float x, float y)
+	{
+		int numCoords = glyph.xs.length;
+		if (numText+numCoords > textX.length)
+		{
+			int newLength = Math.max(textX.length*2,numText+numCoords);
+			textX = Arrays.copyOf(textX,newLength);
+			textY = Arrays.copyOf(textY,newLength);
+		}
+		if (numTextRings+glyph.starts.length > textStarts.length)
+		{
+			textStarts = Arrays.copyOf(textStarts,Math.max(textStarts.length*2,numTextRings+glyph.starts.length));
+		}
+
+		for (int r=0; r<glyph.starts.length; r++)
+		{
+			textStarts[numTextRings++] = numText+glyph.starts[r];
+		}
+		for (int i=0; i<numCoords; i++)
+		{
+			textX[numText+i] = glyph.xs[i]+x;
+			textY[numText+i] = glyph.ys[i]+y;
+		}
+		numText += numCoords;
+	}
+
+	/** Draws a 2D line between the given coordinate pairs. This version allows the random offset of the 
+	 *  two end points to be set explicitly.
+	 *  @param x1 x coordinate of the start of the line.
+	 *  @param y1 y coordinate of the start of the line.
+	 *  @param x2 x coordinate of the end of the line.
+	 *  @param y2 y coordinate of the end of the line.
+	 *  @param maxOffset Maximum random offset in pixel coordinates.
+	 */
+	private void line(float x1, float y1, float x2, float y2, float maxOffset)
+	{				
+		if (graphics.stroke)
+		{
+			if (isHandy == false)
+			{
+				graphics.line(x1,y1,x2,y2);
+				return;
+			}
+
+			// Ensure random perturbation is no more than 10% of line length.
+			float lenSq = (x1-x2)*(x1-x2) + (y1-y2)*(y1-y2);
+			float offset = maxOffset;
+
+			if (maxOffset*maxOffset*100 > lenSq)
+			{
+				offset = (float)Math.sqrt(lenSq)/10;
+			}
+
+			float halfOffset = offset/2;
+			float divergePoint = 0.2f + rand.nextFloat()*0.2f;
+
+
+			if (useSecondary)
+			{
+				StyleEmitter.fill(graphics,secondaryColour);
+			}
+			else
+			{
+				StyleEmitter.noFill(graphics);
+			}
+
+			// This is the midpoint displacement value to give slightly bowed lines.
+			float midDispX = bowing*maxOffset*(y2-y1)/200;
+			float midDispY = bowing*maxOffset*(x1-x2)/200;
+
+			midDispX = getOffset(-midDispX,midDispX);
+			midDispY = getOffset(-midDispY,midDispY);
+
+			graphics.beginShape();
+			addStrokeVertices(x1,y1,x2,y2,offset,divergePoint,midDispX,midDispY);
+			graphics.endShape();  
+
+			graphics.beginShape();
+			addStrokeVertices(x1,y1,x2,y2,halfOffset,divergePoint,midDispX,midDispY);
+			graphics.endShape();
+		}
+	}
+
+	/** Adds the vertices of a single sketchy stroke between two points to the shape currently being drawn.
+	 *  @param x1 x coordinate of the start of the stroke.
+	 *  @param y1 y coordinate of the start of the stroke.
+	 *  @param x2 x coordinate of the end of the stroke.
+	 *  @param y2 y coordinate of the end of the stroke.
+	 *  @param offset Maximum random offset of each vertex.
+	 *  @param divergePoint Proportion of the distance along the stroke at which it diverges from the straight line.
+	 *  @param midDispX Horizontal displacement of the middle of the stroke to give a bowed appearance.
+	 *  @param midDispY Vertical displacement of the middle of the stroke to give a bowed appearance.
+	 */
+	private void addStrokeVertices(float x1, float y1, float x2, float y2, float offset, float divergePoint, float midDispX, float midDispY)
+	{
+		graphics.vertex(x1 + getOffset(-offset,offset), y1 +getOffset(-offset,offset));
+		graphics.curveVertex(x1 + getOffset(-offset,offset), y1 +getOffset(-offset,offset));
+		graphics.curveVertex(midDispX+x1+(x2 -x1)*divergePoint + getOffset(-offset,offset), midDispY+y1 + (y2-y1)*divergePoint +getOffset(-offset,offset));
+		graphics.curveVertex(midDispX+x1+2*(x2-x1)*divergePoint + getOffset(-offset,offset), midDispY+y1+ 2*(y2-y1)*divergePoint +getOffset(-offset,offset)); 
+		graphics.curveVertex(x2 + getOffset(-offset,offset), y2 +getOffset(-offset,offset));
+		graphics.vertex(x2 + getOffset(-offset,offset), y2 +getOffset(-offset,offset));
+	}
+
+	/** Draws a chain of connected straight segments, such as a zig-zag hachure, as a single continuous sketchy
+	 *  path. Each segment has the same appearance as one drawn with <code>line()</code>, but the segments are
+	 *  joined so that the whole chain needs only one shape for each of its two passes.
+	 *  @param chain Vertices at the ends of each segment in the chain.
+	 *  @param maxOffset Maximum random offset in pixel coordinates.
+	 */
+	private void chainedLines(VertexBuffer chain, float maxOffset)
+	{
+		if ((graphics.stroke == false) || (chain.size < 2))
+		{
+			return;
+		}
+		int numSegments = chain.size-1;
+		if (numSegments == 1)
+		{
+			line(chain.xs[0],chain.ys[0],chain.xs[1],chain.ys[1],maxOffset);
+			return;
+		}
+
+		// Random variation of each segment is shared by both passes, as it is by line().
+		if (chainParams.length < numSegments*4)
+		{
+			chainParams = new float[Math.max(chainParams.length*2,numSegments*4)];
+		}
+		for (int s=0; s<numSegments; s++)
+		{
+			float x1 = chain.xs[s];
+			float y1 = chain.ys[s];
+			float x2 = chain.xs[s+1];
+			float y2 = chain.ys[s+1];
+
+			// Ensure random perturbation is no more than 10% of segment length.
+			float lenSq = (x1-x2)*(x1-x2) + (y1-y2)*(y1-y2);
+			float offset = maxOffset;
+			if (maxOffset*maxOffset*100 > lenSq)
+			{
+				offset = (float)Math.sqrt(lenSq)/10;
+			}
+			chainParams[s*4]   = offset;
+			chainParams[s*4+1] = 0.2f + rand.nextFloat()*0.2f;
+
+			float midDispX = bowing*maxOffset*(y2-y1)/200;
+			float midDispY = bowing*maxOffset*(x1-x2)/200;
+			chainParams[s*4+2] = getOffset(-midDispX,midDispX);
+			chainParams[s*4+3] = getOffset(-midDispY,midDispY);
+		}
 
-			if (overrideStrokeColour)
+		if (useSecondary)
+		{
+			StyleEmitter.fill(graphics,secondaryColour);
+		}
+		else
+		{
+			StyleEmitter.noFill(graphics);
+		}
+
+		for (int pass=0; pass<2; pass++)
+		{
+			graphics.beginShape();
+			for (int s=0; s<numSegments; s++)
 			{
-				graphics.stroke(strokeColour);
+				float offset = (pass == 0) ? chainParams[s*4] : chainParams[s*4]/2;
+				addStrokeVertices(chain.xs[s],chain.ys[s],chain.xs[s+1],chain.ys[s+1],offset,
+								  chainParams[s*4+1],chainParams[s*4+2],chainParams[s*4+3]);
 			}
-			else
+			graphics.endShape();
+		}
+	}
+
+
+	/** Draws the edges between consecutive vertices of part of a 2d line, coalescing runs of short or nearly
+	 *  collinear edges into single sketchy strokes. Vertices closer than a pixel to the previous retained vertex
+	 *  are skipped and the retained vertices divided into runs at corners. Runs of a single edge are drawn with
+	 *  <code>line()</code>, longer ones as a continuous curve by <code>coalescedStroke()</code>.
+	 *  @param xCoords x coordinates of the line.
+	 *  @param yCoords y coordinates of the line.
+	 *  @param first Index of the first vertex to draw.
+	 *  @param last Index of the last vertex to draw.
+	 *  @param isClosed Edge from the last vertex back to the first is also drawn if true.
+	 *  @param maxOffset Maximum random offset in pixel coordinates.
+	 */
+	private void coalescedLines(float[] xCoords, float[] yCoords, int first, int last, boolean isClosed, float maxOffset)
+	{
+		if (runIndices.length < last-first+2)
+		{
+			runIndices = new int[Math.max(runIndices.length*2,last-first+2)];
+		}
+
+		// Skip vertices that are less than a pixel from the previous retained vertex.
+		float scale = getTransformScale();
+		float minSpacing = COALESCE_SPACING/(scale > 0 ? scale : 1);
+		float minSpacingSq = minSpacing*minSpacing;
+		int numKept = 0;
+		runIndices[numKept++] = first;
+		for (int i=first+1; i<=last; i++)
+		{
+			int prev = runIndices[numKept-1];
+			float dx = xCoords[i]-xCoords[prev];
+			float dy = yCoords[i]-yCoords[prev];
+			if ((dx*dx + dy*dy >= minSpacingSq) || (i == last))
 			{
-				graphics.stroke(oStroke);	
+				runIndices[numKept++] = i;
 			}
-			if (strokeWeight > 0)
+		}
+		if (isClosed && (last > first))
+		{
+			runIndices[numKept++] = first;
+		}
+
+		// Divide retained vertices into runs at each corner.
+		int runStart = 0;
+		for (int k=1; k<numKept; k++)
+		{
+			boolean isCorner = (k == numKept-1);
+			if (isCorner == false)
 			{
-				graphics.strokeWeight(strokeWeight);
+				int a = runIndices[k-1];
+				int b = runIndices[k];
+				int c = runIndices[k+1];
+				float dx1 = xCoords[b]-xCoords[a];
+				float dy1 = yCoords[b]-yCoords[a];
+				float dx2 = xCoords[c]-xCoords[b];
+				float dy2 = yCoords[c]-yCoords[b];
+				float lenSq = (dx1*dx1 + dy1*dy1)*(dx2*dx2 + dy2*dy2);
+				float dot = dx1*dx2 + dy1*dy2;
+				isCorner = (lenSq == 0) || (dot <= 0) || (dot*dot < COS_CORNER*COS_CORNER*lenSq);
 			}
 
-			for (int i=0; i<xCoords.length-1; i++)
+			if (isCorner)
 			{
-				line(xCoords[i],yCoords[i],xCoords[i+1],yCoords[i+1],2);
+				if (k-runStart == 1)
+				{
+					int a = runIndices[runStart];
+					int b = runIndices[k];
+					line(xCoords[a],yCoords[a],xCoords[b],yCoords[b],maxOffset);
+				}
+				else
+				{
+					coalescedStroke(xCoords,yCoords,runStart,k,maxOffset);
+				}
+				runStart = k;
 			}
+		}
+	}
 
-			// Restore style settings.
-			graphics.popStyle();
+	/** Draws a run of retained vertices as a single sketchy stroke. As with <code>line()</code>, the run is drawn
+	 *  twice with different random offsets and bowed slightly away from its chord, but the offsets are taken at
+	 *  knots spaced along the run and interpolated between them so that the stroke remains smooth however closely
+	 *  its vertices are spaced.
+	 *  @param xCoords x coordinates of the line.
+	 *  @param yCoords y coordinates of the line.
+	 *  @param from Position in the retained vertex buffer of the first vertex of the run.
+	 *  @param to Position in the retained vertex buffer of the last vertex of the run.
+	 *  @param maxOffset Maximum random offset in pixel coordinates.
+	 */
+	private void coalescedStroke(float[] xCoords, float[] yCoords, int from, int to, float maxOffset)
+	{
+		if (graphics.stroke == false)
+		{
+			return;
+		}
+
+		float length = 0;
+		for (int k=from; k<to; k++)
+		{
+			float dx = xCoords[runIndices[k+1]]-xCoords[runIndices[k]];
+			float dy = yCoords[runIndices[k+1]]-yCoords[runIndices[k]];
+			length += (float)Math.sqrt(dx*dx + dy*dy);
+		}
+		if (length == 0)
+		{
+			return;
+		}
+
+		// Ensure random perturbation is no more than 10% of the run length.
+		float offset = Math.min(maxOffset,length/10);
+		int numKnots = Math.max(1,Math.round(length/KNOT_SPACING));
+		if (knotOffsets.length < (numKnots+1)*2)
+		{
+			knotOffsets = new float[(numKnots+1)*2];
+		}
+
+		if (useSecondary)
+		{
+			StyleEmitter.fill(graphics,secondaryColour);
+		}
+		else
+		{
+			StyleEmitter.noFill(graphics);
+		}
+
+		float x1 = xCoords[runIndices[from]];
+		float y1 = yCoords[runIndices[from]];
+		float x2 = xCoords[runIndices[to]];
+		float y2 = yCoords[runIndices[to]];
+
+		for (int pass=0; pass<2; pass++)
+		{
+			float o = (pass == 0) ? offset : offset/2;
+
+			// Midpoint displacement to give slightly bowed strokes.
+			float midDispX = bowing*maxOffset*(y2-y1)/200;
+			float midDispY = bowing*maxOffset*(x1-x2)/200;
+			midDispX = getOffset(-midDispX,midDispX);
+			midDispY = getOffset(-midDispY,midDispY);
+
+			for (int n=0; n<(numKnots+1)*2; n++)
+			{
+				knotOffsets[n] = rand.nextFloat();
+			}
+			kernels.offsets(knotOffsets,0,(numKnots+1)*2,-o,o,roughness);
+
+			graphics.beginShape();
+			graphics.vertex(x1 + knotOffsets[0] + getOffset(-o,o), y1 + knotOffsets[1] + getOffset(-o,o));
+			graphics.curveVertex(x1 + knotOffsets[0], y1 + knotOffsets[1]);
+
+			float distance = 0;
+			for (int k=from; k<=to; k++)
+			{
+				int v = runIndices[k];
+				if (k > from)
+				{
+					float dx = xCoords[v]-xCoords[runIndices[k-1]];
+					float dy = yCoords[v]-yCoords[runIndices[k-1]];
+					distance += (float)Math.sqrt(dx*dx + dy*dy);
+				}
+				float t = distance/length;
+				float knot = t*numKnots;
+				int n = Math.min((int)knot,numKnots-1);
+				float f = knot-n;
+				float bow = (float)Math.sin(Math.PI*t);
+				graphics.curveVertex(xCoords[v] + knotOffsets[n*2]*(1-f)   + knotOffsets[n*2+2]*f + midDispX*bow,
+									 yCoords[v] + knotOffsets[n*2+1]*(1-f) + knotOffsets[n*2+3]*f + midDispY*bow);
+			}
+
+			int end = numKnots*2;
+			graphics.curveVertex(x2 + knotOffsets[end], y2 + knotOffsets[end+1]);
+			graphics.vertex(x2 + knotOffsets[end] + getOffset(-o,o), y2 + knotOffsets[end+1] + getOffset(-o,o));
+			graphics.endShape();
 		}
 	}
 
-	/** Draws a 2D line between the given coordinate pairs. 
+	/** Draws a 3D line between the given coordinate triplet. This version allows the random offset of the 
+	 *  two end points to be set explicitly.
 	 *  @param x1 x coordinate of the start of the line.
 	 *  @param y1 y coordinate of the start of the line.
+	 *  @param z1 z coordinate of the start of the line.
 	 *  @param x2 x coordinate of the end of the line.
 	 *  @param y2 y coordinate of the end of the line.
+	 *  @param z2 z coordinate of the end of the line.
+	 *  @param maxOffset Maximum random offset in pixel coordinates.
 	 */
-	public void line(float x1, float y1, float x2, float y2)
-	{	
-		if ((graphics.stroke) || (overrideStrokeColour))
+	private void line(float x1, float y1, float z1, float x2, float y2, float z2, float maxOffset)
+	{		
+		if (graphics.stroke)
+		{
+			if (isHandy == false)
+			{
+				graphics.line(x1,y1,z2,x2,y2,z2);
+				return;
+			}
+
+			PVector v1 = new PVector(x2-x1,y2-y1,z2-z1);
+			PVector vn = new PVector(x2-x1,y2-y1,z2-z1);
+			vn.normalize();
+
+
+			// Ensure random perturbation is no more than 10% of line length.
+			float lenSq = v1.x*v1.x + v1.y*v1.y + v1.z*v1.z;
+			float offset = maxOffset;
+
+			if (maxOffset*maxOffset*100 > lenSq)
+			{
+				offset = (float)Math.sqrt(lenSq)/10;
+			}
+
+			float halfOffset = offset/2;
+			float divergePoint = 0.2f + rand.nextFloat()*0.2f;
+
+			if (useSecondary)
+			{
+				StyleEmitter.fill(graphics,secondaryColour);
+			}
+			else
+			{
+				StyleEmitter.noFill(graphics);
+			}
+
+			// This is the midpoint displacement value to give slightly bowed lines.
+			PVector v2 = new PVector(1,1,1);
+			PVector vCross = vn.cross(v2);
+			float v1Len = v1.mag();
+
+			float midDispX = v1Len*vCross.x/200;
+			float midDispY = v1Len*vCross.y/200;
+			float midDispZ = v1Len*vCross.z/200;
+
+			midDispX = getOffset(-midDispX,midDispX);
+			midDispY = getOffset(-midDispY,midDispY);
+			midDispZ = getOffset(-midDispZ,midDispZ);
+
+			graphics.beginShape();
+			graphics.vertex(x1 + getOffset(-offset,offset),      y1 +getOffset(-offset,offset), z1+getOffset(-offset,offset));
+			graphics.curveVertex(x1 + getOffset(-offset,offset), y1 +getOffset(-offset,offset), z1+getOffset(-offset,offset));
+			graphics.curveVertex(midDispX+x1 + v1.x*divergePoint + getOffset(-offset,offset),  midDispY+y1 + v1.y*divergePoint +getOffset(-offset,offset),   midDispZ+z1 + v1.z*divergePoint +getOffset(-offset,offset));
+			graphics.curveVertex(midDispX+x1 +2*v1.x*divergePoint + getOffset(-offset,offset), midDispY+y1+ 2*v1.y*divergePoint +getOffset(-offset,offset),  midDispZ+z1+ 2*v1.z*divergePoint +getOffset(-offset,offset)); 
+			graphics.curveVertex(x2 + getOffset(-offset,offset), y2 +getOffset(-offset,offset), z2 +getOffset(-offset,offset));
+			graphics.vertex(x2 + getOffset(-offset,offset), y2 +getOffset(-offset,offset), z2 +getOffset(-offset,offset));
+			graphics.endShape();  
+
+			graphics.beginShape();
+			graphics.vertex(x1 + getOffset(-halfOffset,halfOffset),      y1 +getOffset(-halfOffset,halfOffset), z1 +getOffset(-halfOffset,halfOffset));
+			graphics.curveVertex(x1 + getOffset(-halfOffset,halfOffset), y1 +getOffset(-halfOffset,halfOffset), z1 +getOffset(-halfOffset,halfOffset));
+			graphics.curveVertex(midDispX+x1+v1.x*divergePoint + getOffset(-halfOffset,halfOffset),   midDispY+y1 + v1.y*divergePoint +getOffset(-halfOffset,halfOffset),   midDispZ+z1 + v1.z*divergePoint +getOffset(-halfOffset,halfOffset));
+			graphics.curveVertex(midDispX+x1+2*v1.x*divergePoint + getOffset(-halfOffset,halfOffset), midDispY+y1+ 2*v1.y*divergePoint +getOffset(-halfOffset,halfOffset),  midDispZ+z1+ 2*v1.z*divergePoint +getOffset(-halfOffset,halfOffset)); 
+			graphics.curveVertex(x2 + getOffset(-halfOffset,halfOffset), y2 +getOffset(-halfOffset,halfOffset), z2 +getOffset(-halfOffset,halfOffset));
+			graphics.vertex(x2 + getOffset(-halfOffset,halfOffset), y2 +getOffset(-halfOffset,halfOffset), z2 +getOffset(-halfOffset,halfOffset));
+			graphics.endShape();
+		}
+	}
+
+	/** Draws a 2D shape after it has been finished with <code>endShape()</code>.
+	 *  @param closeShape True if the shape is to be closed.
+	 */
+	private void drawShape2d(boolean closeShape)
+	{
+		// Shapes with at least one curve vertex are a special case.
+		if (curveIndices.isEmpty() == false)
+		{
+			curvedShape();
+			return;
+		}
+
+		// Read directly from the reusable vertex buffer to avoid copying.
+		float[] xs = vertices.xs;
+		float[] ys = vertices.ys;
+		int n = vertices.size;
+		int i;
+
+		if (this.shapeMode==PConstants.POLYGON)
+		{
+			// Discard any empty contours.
+			int parts = 0;
+			for (i=0; i<numRings; i++)
+			{
+				int end = (i < numRings-1) ? ringStarts[i+1] : n;
+				if (end > ringStarts[i])
+				{
+					ringStarts[parts++] = ringStarts[i];
+				}
+			}
+			if (parts > 0)
+			{
+				shape(xs,ys,n,ringStarts,parts,closeShape);
+			}
+		}
+		else if (this.shapeMode==PConstants.LINES)
+		{
+			for (i=0;i<n-1;i+=2)
+			{
+				line(xs[i],ys[i],xs[i+1],ys[i+1]);
+			}
+		}
+		else if (this.shapeMode==PConstants.POINTS)
+		{
+			for (i=0;i<n;i++)
+			{
+				point(xs[i],ys[i]);
+			}
+		}
+		else if (this.shapeMode==PConstants.TRIANGLES)
+		{
+			for (i=0;i<n-2;i+=3)
+			{
+				triangle(xs[i],ys[i],xs[i+1],ys[i+1],xs[i+2],ys[i+2]);
+			}
+		}
+		else if (this.shapeMode==PConstants.TRIANGLE_STRIP)
+		{
+			for (i=0;i<n-2;i++)
+			{
+				triangle(xs[i],ys[i],xs[i+1],ys[i+1],xs[i+2],ys[i+2]);
+			}
+		}
+		else if (this.shapeMode==PConstants.TRIANGLE_FAN)
+		{
+			for (i=1;i<n-1;i++)
+			{
+				triangle(xs[0],ys[0],xs[i],ys[i],xs[i+1],ys[i+1]);
+			}
+		}
+		else if (this.shapeMode==PConstants.QUADS)
+		{
+			for (i=0;i<n-3;i+=4)
+			{
+				setQuad(i,i+1,i+2,i+3);
+				shape(quadX,quadY,4,true);
+			}
+		}
+		else if (this.shapeMode==PConstants.QUAD_STRIP)
+		{
+			for (i=0;i<n-3;i+=2)
+			{
+				setQuad(i,i+1,i+3,i+2);
+				shape(quadX,quadY,4,true);
+			}
+		}
+	}
+
+
+	/** Draws a 3D shape after it has been finished with <code>endShape()</code>.
+	 *  @param closeShape True if the shape is to be closed.
+	 */
+	private void drawShape3d(boolean closeShape)
+	{
+		// Shapes with at least one curve vertex are a special case.
+		if (curveIndices.isEmpty() == false)
+		{
+			curvedShape();
+			return;
+		}
+
+		// Read directly from the reusable vertex buffer to avoid copying.
+		float[] xs = vertices.xs;
+		float[] ys = vertices.ys;
+		float[] zs = vertices.zs;
+		int n = vertices.size;
+		int i;
+
+		if (this.shapeMode==PConstants.POLYGON)
+		{
+			if (numRings > 1)
+			{
+				System.err.println("Contours are only supported in 2d shapes, so will be joined to the shape boundary.");
+			}
+			if (n > 0)
+			{
+				shape(xs,ys,zs,n,closeShape);
+			}
+		}
+		else if (this.shapeMode==PConstants.LINES)
+		{
+			for (i=0;i<n-1;i+=2)
+			{
+				line(xs[i],ys[i],zs[i],xs[i+1],ys[i+1],zs[i+1]);
+			}
+		}
+		else if (this.shapeMode==PConstants.POINTS)
 		{
-			if (isHandy == false)
+			for (i=0;i<n;i++)
 			{
-				graphics.line(x1,y1,x2,y2);
-				return;
+				point(xs[i],ys[i],zs[i]);
 			}
-
-			graphics.pushStyle();
-			if (overrideStrokeColour)
+		}
+		else if (this.shapeMode==PConstants.TRIANGLES)
+		{
+			for (i=0;i<n-2;i+=3)
 			{
-				graphics.stroke(strokeColour);
+				setQuad(i,i+1,i+2,i+2);
+				shape(quadX,quadY,quadZ,3,true);
 			}
-
-			if (strokeWeight > 0)
+		}
+		else if (this.shapeMode==PConstants.TRIANGLE_STRIP)
+		{
+			for (i=0;i<n-2;i++)
 			{
-				graphics.strokeWeight(strokeWeight);
+				setQuad(i,i+1,i+2,i+2);
+				shape(quadX,quadY,quadZ,3,true);
 			}
-
-			line(x1,y1,x2,y2,2);
-
-			// Restore original stroke settings.
-			graphics.popStyle();
 		}
-	}
-
-	/** Draws a 3D line between the given coordinate triplets. 
-	 *  @param x1 x coordinate of the start of the line.
-	 *  @param y1 y coordinate of the start of the line.
-	 *  @param z1 z coordinate of the start of the line.
-	 *  @param x2 x coordinate of the end of the line.
-	 *  @param y2 y coordinate of the end of the line.
-	 *  @param z2 z coordinate of the end of the line.
-	 */
-	public void line(float x1, float y1, float z1, float x2, float y2, float z2)
-	{	
-		if ((graphics.stroke) || (overrideStrokeColour))
+		else if (this.shapeMode==PConstants.TRIANGLE_FAN)
 		{
-			if (isHandy == false)
+			for (i=1;i<n-1;i++)
 			{
-				graphics.line(x1,y1,z1,x2,y2,z2);
-				return;
+				setQuad(0,i,i+1,i+1);
+				shape(quadX,quadY,quadZ,3,true);
 			}
-
-			graphics.pushStyle();
-			if (overrideStrokeColour)
+		}
+		else if (this.shapeMode==PConstants.QUADS)
+		{
+			for (i=0;i<n-3;i+=4)
 			{
-				graphics.stroke(strokeColour);
+				setQuad(i,i+1,i+2,i+3);
+				shape(quadX,quadY,quadZ,4,true);
 			}
-
-			if (strokeWeight > 0)
+		}
+		else if (this.shapeMode==PConstants.QUAD_STRIP)
+		{
+			for (i=0;i<n-3;i+=2)
 			{
-				graphics.strokeWeight(strokeWeight);
+				setQuad(i,i+1,i+3,i+2);
+				shape(quadX,quadY,quadZ,4,true);
 			}
-
-			line(x1,y1,z1,x2,y2,z2,2);
-
-			// Restore original stroke settings.
-			graphics.popStyle();
 		}
 	}
 
-	/** Converts an array list of numeric values into a floating point array.
-	 *  Useful for methods that require primitive arrays of floats based on a dynamic collection.
-	 *  @param list List of numbers to convert.
-	 *  @return Array of floats representing the list.
+	/** Copies four vertices from the shape vertex buffer into the reusable quad arrays. 
+	 *  @param i0 Index of the first vertex to copy.
+	 *  @param i1 Index of the second vertex to copy.
+	 *  @param i2 Index of the third vertex to copy.
+	 *  @param i3 Index of the fourth vertex to copy.
 	 */
-	public static float[] toArray(List<Float> list)
+	private void setQuad(int i0, int i1, int i2, int i3)
 	{
-		float[] array = new float[list.size()];
-		for (int i=0; i< list.size(); i++)
-		{
-			array[i] = list.get(i).floatValue();
-		}
-		return array;
+		quadX[0] = vertices.xs[i0];
+		quadX[1] = vertices.xs[i1];
+		quadX[2] = vertices.xs[i2];
+		quadX[3] = vertices.xs[i3];
+		quadY[0] = vertices.ys[i0];
+		quadY[1] = vertices.ys[i1];
+		quadY[2] = vertices.ys[i2];
+		quadY[3] = vertices.ys[i3];
+		quadZ[0] = vertices.zs[i0];
+		quadZ[1] = vertices.zs[i1];
+		quadZ[2] = vertices.zs[i2];
+		quadZ[3] = vertices.zs[i3];
 	}
 
-	// --------------------------------- Private methods --------------------------------- 
-
-	/** Draws a 2D line between the given coordinate pairs. This version allows the random offset of the 
-	 *  two end points to be set explicitly.
-	 *  @param x1 x coordinate of the start of the line.
-	 *  @param y1 y coordinate of the start of the line.
-	 *  @param x2 x coordinate of the end of the line.
-	 *  @param y2 y coordinate of the end of the line.
-	 *  @param maxOffset Maximum random offset in pixel coordinates.
+	/** Fills the face implied by the given 3d geometry with a hachured texture.
+	 *  @param xCoords x Coordinates of the face to fill.
+	 *  @param yCoords y Coordinates of the face to fill.
+	 *  @param zCoords z Coordinates of the face to fill.
+	 *  @param numCoords Number of vertices in the face.
+	 *  @param gap Gap between hachures.
 	 */
-	private void line(float x1, float y1, float x2, float y2, float maxOffset)
-	{				
-		if (graphics.stroke)
+	private void drawHachuredFace(float[] xCoords, float[] yCoords, float[] zCoords, int numCoords, float gap)
+	{
+		if (parent == null)
 		{
-			if (isHandy == false)
-			{
-				graphics.line(x1,y1,x2,y2);
-				return;
-			}
-			graphics.pushStyle();
+			System.err.println("Hachured 3d faces cannot be drawn without a parent sketch.");
+			return;
+		}
 
-			// Ensure random perturbation is no more than 10% of line length.
-			float lenSq = (x1-x2)*(x1-x2) + (y1-y2)*(y1-y2);
-			float offset = maxOffset;
+		// Bounding rectangle of the shape. For the 3d case, we use a fudge that attempts to find the 
+		// axis plane with most variation. This will work well for sides of a cuboid for example where each
+		// face is 2 dimensional and parallel to two axes. If a face varies in 3 dimensions, results may be distorted.
+		kernels.range(xCoords,0,numCoords,extent);
+		float minX = extent[0];
+		float maxX = extent[1];
+		kernels.range(yCoords,0,numCoords,extent);
+		float minY = extent[0];
+		float maxY = extent[1];
+		kernels.range(zCoords,0,numCoords,extent);
+		float minZ = extent[0];
+		float maxZ = extent[1];
 
-			if (maxOffset*maxOffset*100 > lenSq)
-			{
-				offset = (float)Math.sqrt(lenSq)/10;
-			}
+		float xRange = maxX-minX;
+		float yRange = maxY-minY;
+		float zRange = maxZ-minZ;
 
-			float halfOffset = offset/2;
-			float divergePoint = 0.2f + rand.nextFloat()*0.2f;
+		float left = minX;
+		float right = maxX;
+		float top = maxY;
+		float bottom = minY;
+		Plane2d projectedPlane = Plane2d.XY;
 
+		if ((yRange < zRange) && (yRange < xRange))
+		{
+			top = maxZ;
+			bottom = minZ;
+			projectedPlane = Plane2d.XZ;
+		}
+		else if ((xRange < zRange) && (xRange < yRange))
+		{
+			top = maxZ;
+			bottom = minZ;
+			left = minY;
+			right = maxY;
+			projectedPlane = Plane2d.YZ;
+		}
 
-			if (useSecondary)
-			{
-				graphics.fill(secondaryColour);
-			}
-			else
-			{
-				graphics.noFill();
-			}
+		// Create hachured image and map it as a texture onto the shape.
+		HachureIterator hi = new HachureIterator(0, top-bottom, 0, right-left, gap, sinAngle, cosAngle, tanAngle);
 
-			// This is the midpoint displacement value to give slightly bowed lines.
-			float midDispX = bowing*maxOffset*(y2-y1)/200;
-			float midDispY = bowing*maxOffset*(x1-x2)/200;
+		PGraphics origGraphics = graphics;
 
-			midDispX = getOffset(-midDispX,midDispX);
-			midDispY = getOffset(-midDispY,midDispY);
+		PGraphics textureImg = parent.createGraphics((int)(right-left), (int)(top-bottom), PConstants.JAVA2D);	
 
-			graphics.beginShape();
-			graphics.vertex(x1 + getOffset(-offset,offset), y1 +getOffset(-offset,offset));
-			graphics.curveVertex(x1 + getOffset(-offset,offset), y1 +getOffset(-offset,offset));
-			graphics.curveVertex(midDispX+x1+(x2 -x1)*divergePoint + getOffset(-offset,offset), midDispY+y1 + (y2-y1)*divergePoint +getOffset(-offset,offset));
-			graphics.curveVertex(midDispX+x1+2*(x2-x1)*divergePoint + getOffset(-offset,offset), midDispY+y1+ 2*(y2-y1)*divergePoint +getOffset(-offset,offset)); 
-			graphics.curveVertex(+x2 + getOffset(-offset,offset), +y2 +getOffset(-offset,offset));
-			graphics.vertex(x2 + getOffset(-offset,offset), y2 +getOffset(-offset,offset));
-			graphics.endShape();  
+		textureImg.beginDraw();				
+		copyGraphics(graphics,textureImg);
+		textureImg.smooth();			// Needed because 3D renderers may not allow smoothing.
+		setGraphics(textureImg);
 
-			graphics.beginShape();
-			graphics.vertex(x1 + getOffset(-halfOffset,halfOffset), y1 +getOffset(-halfOffset,halfOffset));
-			graphics.curveVertex(x1 + getOffset(-halfOffset,halfOffset), y1 +getOffset(-halfOffset,halfOffset));
-			graphics.curveVertex(midDispX+x1+(x2 -x1)*divergePoint + getOffset(-halfOffset,halfOffset), midDispY+y1 + (y2-y1)*divergePoint +getOffset(-halfOffset,halfOffset));
-			graphics.curveVertex(midDispX+x1+2*(x2-x1)*divergePoint + getOffset(-halfOffset,halfOffset), midDispY+y1+ 2*(y2-y1)*divergePoint +getOffset(-halfOffset,halfOffset)); 
-			graphics.curveVertex(x2 + getOffset(-halfOffset,halfOffset), y2 +getOffset(-halfOffset,halfOffset));
-			graphics.vertex(x2 + getOffset(-halfOffset,halfOffset), y2 +getOffset(-halfOffset,halfOffset));
-			graphics.endShape();
+		// Copied style settings have not yet been applied to the texture so must be set explicitly.
+		graphics.fill(graphics.strokeColor);
+		graphics.stroke(graphics.strokeColor);
+		graphics.strokeWeight(graphics.strokeWeight);
 
-			graphics.popStyle();
-		}
-	}
+		drawHachures(hi);
 
+		textureImg.endDraw();		
+		setGraphics(origGraphics);
 
-	/** Draws a 3D line between the given coordinate triplet. This version allows the random offset of the 
-	 *  two end points to be set explicitly.
-	 *  @param x1 x coordinate of the start of the line.
-	 *  @param y1 y coordinate of the start of the line.
-	 *  @param z1 z coordinate of the start of the line.
-	 *  @param x2 x coordinate of the end of the line.
-	 *  @param y2 y coordinate of the end of the line.
-	 *  @param z2 z coordinate of the end of the line.
-	 *  @param maxOffset Maximum random offset in pixel coordinates.
-	 */
-	private void line(float x1, float y1, float z1, float x2, float y2, float z2, float maxOffset)
-	{		
-		if (graphics.stroke)
+		StyleEmitter.noFill(graphics);
+		StyleEmitter.noStroke(graphics);
+		graphics.beginShape();
+		graphics.texture(textureImg);
+
+		if (projectedPlane == Plane2d.XY)
 		{
-			if (isHandy == false)
+			for (int i=0; i<numCoords; i++)
 			{
-				graphics.line(x1,y1,z2,x2,y2,z2);
-				return;
+				float u = PApplet.map(xCoords[i],left,right,0,right-left);
+				float v = PApplet.map(yCoords[i],bottom,top,0,top-bottom);
+				graphics.vertex(xCoords[i],yCoords[i],zCoords[i],u,v);
+			}
+		}
+		else if (projectedPlane == Plane2d.XZ)
+		{
+			for (int i=0; i<numCoords; i++)
+			{
+				float u = PApplet.map(xCoords[i],left,right,right-left,0);
+				float v = PApplet.map(zCoords[i],bottom,top,0,top-bottom);
+				graphics.vertex(xCoords[i],yCoords[i],zCoords[i],u,v);
+			}
+		}
+		else if (projectedPlane == Plane2d.YZ)
+		{
+			for (int i=0; i<numCoords; i++)
+			{
+				float u = PApplet.map(yCoords[i],left,right,right-left,0);
+				float v = PApplet.map(zCoords[i],bottom,top,0,top-bottom);
+				graphics.vertex(xCoords[i],yCoords[i],zCoords[i],u,v);
 			}
+		}
+		graphics.endShape(PConstants.CLOSE);
+	}
 
-			PVector v1 = new PVector(x2-x1,y2-y1,z2-z1);
-			PVector vn = new PVector(x2-x1,y2-y1,z2-z1);
-			vn.normalize();
 
+	/** Draws a shape that includes curved edges.
+	 */
+	private void curvedShape()
+	{
+		float x0,y0,x1=0,y1=0,x2=0,y2=0,x3=0,y3=0;				// Last four vertices
+		float x0Prime,y0Prime,x1Prime=0,y1Prime=0,x2Prime=0,y2Prime=0,x3Prime=0,y3Prime=0;	// Minor variation in curve.
 
-			// Ensure random perturbation is no more than 10% of line length.
-			float lenSq = v1.x*v1.x + v1.y*v1.y + v1.z*v1.z;
-			float offset = maxOffset;
+		graphics.pushStyle();
+		startMark(coordsKey(PConstants.POLYGON,vertices.xs,vertices.ys,is3DShape?vertices.zs:null,vertices.size));
+		long curveKey = markKey;
 
-			if (maxOffset*maxOffset*100 > lenSq)
+		setMarkPhase(FILL_PHASE);
+		if (graphics.fill)
+		{
+			// Build a straight line approximation of the shape, flattening each curved span to within
+			// a fixed tolerance. This is necessary to calculate the interior shape reasonably quickly.
+			numFlat = 0;
+
+			x0 = vertices.xs[0] + getOffset(-2, 2);
+			y0 = vertices.ys[0] + getOffset(-2, 2);
+
+			for (int i=0; i<vertices.size; i++)
 			{
-				offset = (float)Math.sqrt(lenSq)/10;
+				float vx = vertices.xs[i];
+				float vy = vertices.ys[i];
+
+				// Advance vertices along by 1.
+				x3 = x2;
+				y3 = y2;
+				x2 = x1;
+				y2 = y1;
+				x1 = x0;
+				y1 = y0;
+				x0 = vx+getOffset(-2, 2);
+				y0 = vy+getOffset(-2, 2);
+
+				if (curveIndices.get(i) == false)
+				{
+					// Store normal coordinate.
+					addFlatVertex(vx,vy);
+				}
+				else if (i >=3)
+				{
+					// Add enough vertices to approximate curve with a straight line.
+					flattenCurve(x3,y3,x2,y2,x1,y1,x0,y0);
+				}
 			}
 
-			float halfOffset = offset/2;
-			float divergePoint = 0.2f + rand.nextFloat()*0.2f;
+			// Temporarily disable stroke settings while we draw the interior.
+			boolean isOStroke = graphics.stroke;
+			boolean oOverrideStroke = overrideStrokeColour;
+			int oStroke = graphics.strokeColor;
 
-			graphics.pushStyle();
+			StyleEmitter.noStroke(graphics);
+			overrideStrokeColour = false;
 
-			if (useSecondary)
+			// Send flattened coordinates to shape to fill. This is keyed as a mark in its own right, so restore
+			// the key of the curved shape afterwards.
+			if (numFlat > 0)
 			{
-				graphics.fill(secondaryColour);
+				shape(flatX,flatY,numFlat,true);
+				markKey = curveKey;
 			}
-			else
+
+			graphics.stroke = isOStroke;
+			overrideStrokeColour = oOverrideStroke;
+			if (overrideStrokeColour)
 			{
-				graphics.noFill();
+				StyleEmitter.stroke(graphics,strokeColour);
 			}
+			else if (graphics.stroke)
+			{
+				StyleEmitter.stroke(graphics,oStroke);	
+			}
+		}
 
-			// This is the midpoint displacement value to give slightly bowed lines.
-			PVector v2 = new PVector(1,1,1);
-			PVector vCross = vn.cross(v2);
-			float v1Len = v1.mag();
-
-			float midDispX = v1Len*vCross.x/200;
-			float midDispY = v1Len*vCross.y/200;
-			float midDispZ = v1Len*vCross.z/200;
+		// Draw the outlines as curved lines.
+		setMarkPhase(OUTLINE_PHASE);
+		if ((graphics.stroke) || (overrideStrokeColour))
+		{
+			boolean oOverrideFill = overrideFillColour;
 
-			midDispX = getOffset(-midDispX,midDispX);
-			midDispY = getOffset(-midDispY,midDispY);
-			midDispZ = getOffset(-midDispZ,midDispZ);
+			StyleEmitter.noFill(graphics);
+			overrideFillColour = false;
+			if (strokeWeight > 0)
+			{
+				StyleEmitter.strokeWeight(graphics,strokeWeight);
+			}
 
-			graphics.beginShape();
-			graphics.vertex(x1 + getOffset(-offset,offset),      y1 +getOffset(-offset,offset), z1+getOffset(-offset,offset));
-			graphics.curveVertex(x1 + getOffset(-offset,offset), y1 +getOffset(-offset,offset), z1+getOffset(-offset,offset));
-			graphics.curveVertex(midDispX+x1 + v1.x*divergePoint + getOffset(-offset,offset),  midDispY+y1 + v1.y*divergePoint +getOffset(-offset,offset),   midDispZ+z1 + v1.z*divergePoint +getOffset(-offset,offset));
-			graphics.curveVertex(midDispX+x1 +2*v1.x*divergePoint + getOffset(-offset,offset), midDispY+y1+ 2*v1.y*divergePoint +getOffset(-offset,offset),  midDispZ+z1+ 2*v1.z*divergePoint +getOffset(-offset,offset)); 
-			graphics.curveVertex(x2 + getOffset(-offset,offset), y2 +getOffset(-offset,offset), z2 +getOffset(-offset,offset));
-			graphics.vertex(x2 + getOffset(-offset,offset), y2 +getOffset(-offset,offset), z2 +getOffset(-offset,offset));
-			graphics.endShape();  
+			x0 = vertices.xs[0] + getOffset(-2, 2);
+			y0 = vertices.ys[0] + getOffset(-2, 2);
+			x0Prime = vertices.xs[0] + getOffset(-2, 2);
+			y0Prime = vertices.ys[0] + getOffset(-2, 2);
 
-			graphics.beginShape();
-			graphics.vertex(x1 + getOffset(-halfOffset,halfOffset),      y1 +getOffset(-halfOffset,halfOffset), z1 +getOffset(-halfOffset,halfOffset));
-			graphics.curveVertex(x1 + getOffset(-halfOffset,halfOffset), y1 +getOffset(-halfOffset,halfOffset), z1 +getOffset(-halfOffset,halfOffset));
-			graphics.curveVertex(midDispX+x1+v1.x*divergePoint + getOffset(-halfOffset,halfOffset),   midDispY+y1 + v1.y*divergePoint +getOffset(-halfOffset,halfOffset),   midDispZ+z1 + v1.z*divergePoint +getOffset(-halfOffset,halfOffset));
-			graphics.curveVertex(midDispX+x1+2*v1.x*divergePoint + getOffset(-halfOffset,halfOffset), midDispY+y1+ 2*v1.y*divergePoint +getOffset(-halfOffset,halfOffset),  midDispZ+z1+ 2*v1.z*divergePoint +getOffset(-halfOffset,halfOffset)); 
-			graphics.curveVertex(x2 + getOffset(-halfOffset,halfOffset), y2 +getOffset(-halfOffset,halfOffset), z2 +getOffset(-halfOffset,halfOffset));
-			graphics.vertex(x2 + getOffset(-halfOffset,halfOffset), y2 +getOffset(-halfOffset,halfOffset), z2 +getOffset(-halfOffset,halfOffset));
-			graphics.endShape();
+			for (int i=0; i<vertices.size; i++)
+			{
+				float vx = vertices.xs[i];
+				float vy = vertices.ys[i];
 
-			graphics.popStyle();
+				// Advance vertices along by 1.
+				x3 = x2;
+				y3 = y2;
+				x2 = x1;
+				y2 = y1;
+				x1 = x0;
+				y1 = y0;
+
+				x3Prime = x2Prime;
+				y3Prime = y2Prime;
+				x2Prime = x1Prime;
+				y2Prime = y1Prime;
+				x1Prime = x0Prime;
+				y1Prime = y0Prime;
+
+				x0 = vx+getOffset(-2, 2);
+				y0 = vy+getOffset(-2, 2);
+				x0Prime = vx+getOffset(-2, 2);
+				y0Prime = vy+getOffset(-2, 2);
+
+				if (curveIndices.get(i) == false)
+				{
+					// Draw any straight line segments.
+					if (i > 0)
+					{
+						line(x1,y1,x0,y0);
+					}
+				}
+				else
+				{
+					if (i >=3)
+					{
+						// We have enough to generate a curve.
+						graphics.curve(x3, y3, x2, y2, x1, y1, x0, y0);
+						graphics.curve(x3Prime, y3Prime, x2Prime, y2Prime, x1Prime, y1Prime, x0Prime, y0Prime);
+					}
+				}
+			}
+
+			overrideFillColour = oOverrideFill;
 		}
+
+		// Restore styles.
+		graphics.popStyle();
 	}
 
-	/** Draws a 2D shape after it has been finished with <code>endShape()</code>.
-	 *  @param closeShape True if the shape is to be closed.
+	/** Adds a straight line approximation of a Catmull-Rom curve span to the flattened shape buffer. The start
+	 *  of the span is added, followed by as many intermediate points as are needed to keep the approximation
+	 *  within <code>FLATNESS</code> pixels of the curve. The end of the span is not added as it will be the start
+	 *  of the next span or an explicit vertex.
+	 *  @param cx1 x coordinate of the control point before the start of the span.
+	 *  @param cy1 y coordinate of the control point before the start of the span.
+	 *  @param sx x coordinate of the start of the span.
+	 *  @param sy y coordinate of the start of the span.
+	 *  @param ex x coordinate of the end of the span.
+	 *  @param ey y coordinate of the end of the span.
+	 *  @param cx2 x coordinate of the control point after the end of the span.
+	 *  @param cy2 y coordinate of the control point after the end of the span.
 	 */
-	private void drawShape2d(boolean closeShape)
+	private void flattenCurve(float cx1, float cy1, float sx, float sy, float ex, float ey, float cx2, float cy2)
 	{
-		// Shapes with at least one curve vertex are a special case.
-		if (curveIndices.size() > 0)
-		{
-			curvedShape();
-			return;
-		}
+		spanControls[0] = cx1;
+		spanControls[1] = cy1;
+		spanControls[2] = sx;
+		spanControls[3] = sy;
+		spanControls[4] = ex;
+		spanControls[5] = ey;
+		spanControls[6] = cx2;
+		spanControls[7] = cy2;
+
+		addFlatVertex(graphics.curvePoint(cx1,sx,ex,cx2,0), graphics.curvePoint(cy1,sy,ey,cy2,0));
+		flattenSpan(0,flatX[numFlat-1],flatY[numFlat-1],1,graphics.curvePoint(cx1,sx,ex,cx2,1),graphics.curvePoint(cy1,sy,ey,cy2,1),0);
+	}
 
-		float[] xs=new float[vertices.size()];
-		float[] ys=new float[vertices.size()];
+	/** Recursively subdivides part of the current curve span until each part is within the flatness tolerance,
+	 *  adding the intermediate points to the flattened shape buffer in order.
+	 *  @param t0 Curve parameter at the start of the part.
+	 *  @param ax x coordinate of the start of the part.
+	 *  @param ay y coordinate of the start of the part.
+	 *  @param t1 Curve parameter at the end of the part.
+	 *  @param bx x coordinate of the end of the part.
+	 *  @param by y coordinate of the end of the part.
+	 *  @param depth Number of subdivisions made so far.
+	 */
+	private void flattenSpan(float t0, float ax, float ay, float t1, float bx, float by, int depth)
+	{
+		float t = (t0+t1)/2;
+		float mx = graphics.curvePoint(spanControls[0],spanControls[2],spanControls[4],spanControls[6],t);
+		float my = graphics.curvePoint(spanControls[1],spanControls[3],spanControls[5],spanControls[7],t);
 
-		int i=0;
-		for (float[] coords : vertices)
+		if (depth >= MAX_FLATTEN_DEPTH)
 		{
-			xs[i]=coords[0];
-			ys[i]=coords[1];
-			i++;
+			addFlatVertex(mx,my);
+			return;
 		}
 
-		if (this.shapeMode==PConstants.POLYGON)
+		if (depth >= MIN_FLATTEN_DEPTH)
 		{
-			shape(xs,ys,closeShape);
-		}
-		else if (this.shapeMode==PConstants.LINES)
-		{
-			for (i=0;i<xs.length-1;i+=2)
+			// Distance of the midpoint from the chord joining the ends of this part.
+			float chordX = bx-ax;
+			float chordY = by-ay;
+			float chordLenSq = chordX*chordX + chordY*chordY;
+			float cross = chordX*(my-ay) - chordY*(mx-ax);
+			if (cross*cross <= FLATNESS*FLATNESS*chordLenSq)
 			{
-				line(xs[i],ys[i],xs[i+1],ys[i+1]);
+				if ((chordLenSq > 0) || (distSq(ax,ay,mx,my) <= FLATNESS*FLATNESS))
+				{
+					return;
+				}
 			}
 		}
-		else if (this.shapeMode==PConstants.POINTS)
+
+		flattenSpan(t0,ax,ay,t,mx,my,depth+1);
+		addFlatVertex(mx,my);
+		flattenSpan(t,mx,my,t1,bx,by,depth+1);
+	}
+
+	/** Adds a vertex to the flattened shape buffer, enlarging it if necessary.
+	 *  @param x x coordinate of the vertex.
+	 *  @param y y coordinate of the vertex.
+	 */
+	private void addFlatVertex(float x, float y)
+	{
+		if (numFlat == flatX.length)
 		{
-			for (i=0;i<xs.length;i++)
-			{
-				point(xs[i],ys[i]);
-			}
+			flatX = Arrays.copyOf(flatX,numFlat*2);
+			flatY = Arrays.copyOf(flatY,numFlat*2);
 		}
-		else if (this.shapeMode==PConstants.TRIANGLES)
+		flatX[numFlat] = x;
+		flatY[numFlat] = y;
+		numFlat++;
+	}
+
+	/** Draws continuous zig-zag hachures within a shape. The spans of each hachure line that lie inside the shape
+	 *  are found as for normal hachuring. A span is joined to the end of a span on the previous hachure line if
+	 *  each overlaps only the other along the hachure direction, which is the case within each part of the shape
+	 *  that is monotone across the hachures. Where the shape branches or merges, or a part ends, the chain is ended
+	 *  and new ones started. Each chain is then drawn as a single sketchy path.
+	 *  @param it Iterator providing hachure lines that span the shape's bounding box.
+	 *  @param xCoords x coordinates of all rings.
+	 *  @param yCoords y coordinates of all rings.
+	 *  @param numCoords Total number of vertices in all rings.
+	 *  @param starts Index of the first vertex of each ring.
+	 *  @param numParts Number of rings.
+	 */
+	private void alternatingHachures(HachureIterator it, float[] xCoords, float[] yCoords, int numCoords, int[] starts, int numParts)
+	{
+		List<float[]> prevSpans = new ArrayList<float[]>();			// Position along the hachure and coordinates of each span.
+		List<VertexBuffer> prevChains = new ArrayList<VertexBuffer>();
+		List<float[]> spans = new ArrayList<float[]>();
+		List<VertexBuffer> chains = new ArrayList<VertexBuffer>();
+
+		float[] rectCoords;
+		while ((rectCoords=it.getNextLine()) != null)
 		{
-			for (i=0;i<xs.length-2;i+=3)
+			float dx = rectCoords[2]-rectCoords[0];
+			float dy = rectCoords[3]-rectCoords[1];
+			float len = (float)Math.sqrt(dx*dx + dy*dy);
+			if (len == 0)
 			{
-				triangle(xs[i],ys[i],xs[i+1],ys[i+1],xs[i+2],ys[i+2]);
+				continue;
 			}
-		}
-		else if (this.shapeMode==PConstants.TRIANGLE_STRIP)
-		{
-			for (i=0;i<xs.length-2;i++)
+			dx /= len;
+			dy /= len;
+
+			ArrayList<float[]> points = getIntersectingLines(rectCoords,xCoords,yCoords,numCoords,starts,numParts);
+			spans.clear();
+			chains.clear();
+			for (int i=0; i<points.size()-1; i+=2)
 			{
-				triangle(xs[i],ys[i],xs[i+1],ys[i+1],xs[i+2],ys[i+2]);
+				float[] p1 = points.get(i);
+				float[] p2 = points.get(i+1);
+				float t1 = p1[0]*dx + p1[1]*dy;
+				float t2 = p2[0]*dx + p2[1]*dy;
+				spans.add(new float[] {Math.min(t1,t2),Math.max(t1,t2),p1[0],p1[1],p2[0],p2[1]});
 			}
-		}
-		else if (this.shapeMode==PConstants.TRIANGLE_FAN)
-		{
-			for (i=1;i<xs.length-1;i++)
+
+			for (float[] span : spans)
 			{
-				triangle(xs[0],ys[0],xs[i],ys[i],xs[i+1],ys[i+1]);
+				int match = -1;
+				int numMatches = 0;
+				for (int p=0; p<prevSpans.size(); p++)
+				{
+					if (overlaps(span,prevSpans.get(p)))
+					{
+						match = p;
+						numMatches++;
+					}
+				}
+
+				VertexBuffer chain = null;
+				if ((numMatches == 1) && (prevChains.get(match) != null))
+				{
+					int numReverseMatches = 0;
+					for (float[] other : spans)
+					{
+						if (overlaps(other,prevSpans.get(match)))
+						{
+							numReverseMatches++;
+						}
+					}
+					if (numReverseMatches == 1)
+					{
+						chain = prevChains.get(match);
+						prevChains.set(match,null);
+					}
+				}
+				if (chain == null)
+				{
+					chain = new VertexBuffer(16);
+				}
+				chain.add(span[2],span[3]);
+				chain.add(span[4],span[5]);
+				chains.add(chain);
 			}
-		}
-		else if (this.shapeMode==PConstants.QUADS)
-		{
-			for (i=0;i<xs.length-3;i+=4)
+
+			// Draw chains that have not been continued.
+			for (VertexBuffer chain : prevChains)
 			{
-				float[] quadXs=new float[]{xs[i],xs[i+1],xs[i+2],xs[i+3]};
-				float[] quadYs=new float[]{ys[i],ys[i+1],ys[i+2],ys[i+3]};
-				shape(quadXs,quadYs);
+				if (chain != null)
+				{
+					chainedLines(chain,2);
+				}
 			}
+
+			List<float[]> tempSpans = prevSpans;
+			prevSpans = spans;
+			spans = tempSpans;
+			List<VertexBuffer> tempChains = prevChains;
+			prevChains = chains;
+			chains = tempChains;
 		}
-		else if (this.shapeMode==PConstants.QUAD_STRIP)
+
+		for (VertexBuffer chain : prevChains)
 		{
-			for (i=0;i<xs.length-3;i+=2)
+			if (chain != null)
 			{
-				float[] quadXs=new float[]{xs[i],xs[i+1],xs[i+3],xs[i+2]};
-				float[] quadYs=new float[]{ys[i],ys[i+1],ys[i+3],ys[i+2]};
-				shape(quadXs,quadYs);
+				chainedLines(chain,2);
 			}
 		}
 	}
 
-
-	/** Draws a 3D shape after it has been finished with <code>endShape()</code>.
-	 *  @param closeShape True if the shape is to be closed.
+	/** Reports whether two spans along parallel hachure lines overlap in the hachure direction.
+	 *  @param span1 First span, starting with its minimum and maximum positions along the hachure direction.
+	 *  @param span2 Second span, starting with its minimum and maximum positions along the hachure direction.
+	 *  @return True if the spans overlap.
 	 */
-	private void drawShape3d(boolean closeShape)
+	private static boolean overlaps(float[] span1, float[] span2)
 	{
-		// Shapes with at least one curve vertex are a special case.
-		if (curveIndices.size() > 0)
-		{
-			curvedShape();
-			return;
-		}
+		return (span1[0] <= span2[1]) && (span2[0] <= span1[1]);
+	}
 
-		float[] xs=new float[vertices.size()];
-		float[] ys=new float[vertices.size()];
-		float[] zs=new float[vertices.size()];
+	/** Hachures a shape in each of the current number of hachure directions. The shape's edges are extracted
+	 *  once and shared by all directions, and the hachures of every direction are then drawn together.
+	 *  @param edges Edges of the shape to hachure.
+	 *  @param gap Gap between adjacent hachures in each direction.
+	 */
+	private void crossHatches(HachureEdges edges, float gap)
+	{
+		hatchLines.clear();
 
-		int i=0;
-		for (float[] coords : vertices)
+		// Directions are spread evenly over 180 degrees starting at the (possibly perturbed) hachure angle.
+		double angle = Math.atan2(sinAngle,cosAngle);
+		for (int d=0; d<numHachureDirections; d++)
 		{
-			xs[i]=coords[0];
-			ys[i]=coords[1];
-			zs[i]=coords[2];
-			i++;
+			double dirAngle = angle + d*Math.PI/numHachureDirections;
+			edges.addHachures((float)Math.sin(dirAngle),(float)Math.cos(dirAngle),gap,hatchLines);
 		}
 
-		if (this.shapeMode==PConstants.POLYGON)
-		{
-			shape(xs,ys,zs,closeShape);
-		}
-		else if (this.shapeMode==PConstants.LINES)
+		for (int i=0; i<hatchLines.size-1; i+=2)
 		{
-			for (i=0;i<xs.length-1;i+=2)
-			{
-				line(xs[i],ys[i],zs[i],xs[i+1],ys[i+1],zs[i+1]);
-			}
+			line(hatchLines.xs[i],hatchLines.ys[i],hatchLines.xs[i+1],hatchLines.ys[i+1],2);
 		}
-		else if (this.shapeMode==PConstants.POINTS)
+	}
+
+	/** Reports whether a shape with the given number of vertices should be hachured through a Java2D clip.
+	 *  @param numCoords Number of vertices in the shape.
+	 *  @return True if hachures should be clipped by the graphics context.
+	 */
+	private boolean useClipFill(int numCoords)
+	{
+		return (numCoords >= clipFillThreshold) && (graphics instanceof PGraphicsJava2D) &&
+			   (((PGraphicsJava2D)graphics).g2 != null);
+	}
+
+	/** Draws hachure lines across the whole of a shape's bounding box with the shape set as the Java2D clipping
+	 *  region, so that only the parts inside the shape are drawn. The clip uses the even-odd rule, as does the
+	 *  calculated fill, so that holes are left unfilled.
+	 *  @param it Iterator providing hachure lines that span the shape's bounding box.
+	 *  @param xCoords x coordinates of all rings.
+	 *  @param yCoords y coordinates of all rings.
+	 *  @param numCoords Total number of vertices in all rings.
+	 *  @param starts Index of the first vertex of each ring.
+	 *  @param numParts Number of rings.
+	 */
+	private void clipHachures(HachureIterator it, float[] xCoords, float[] yCoords, int numCoords, int[] starts, int numParts)
+	{
+		Path2D.Float boundary = new Path2D.Float(Path2D.WIND_EVEN_ODD,numCoords+numParts);
+		for (int r=0; r<numParts; r++)
 		{
-			for (i=0;i<xs.length;i++)
+			int first = starts[r];
+			int last = (r < numParts-1) ? starts[r+1]-1 : numCoords-1;
+			boundary.moveTo(xCoords[first],yCoords[first]);
+			for (int i=first+1; i<=last; i++)
 			{
-				point(xs[i],ys[i],zs[i]);
+				boundary.lineTo(xCoords[i],yCoords[i]);
 			}
+			boundary.closePath();
 		}
-		else if (this.shapeMode==PConstants.TRIANGLES)
+
+		Graphics2D g2 = ((PGraphicsJava2D)graphics).g2;
+		Shape oldClip = g2.getClip();
+		g2.clip(boundary);
+
+		if (isAlternating)
 		{
-			for (i=0;i<xs.length-2;i+=3)
+			// Zig-zag spans the whole bounding box so its parts outside the shape are clipped too.
+			VertexBuffer chain = new VertexBuffer(64);
+			float[] coords;
+			while ((coords=it.getNextLine()) != null)
 			{
-				float[] triXs = new float[] {xs[i],xs[i+1],xs[i+2]};
-				float[] triYs = new float[] {ys[i],ys[i+1],ys[i+2]};
-				float[] triZs = new float[] {zs[i],zs[i+1],zs[i+2]};
-				shape(triXs,triYs,triZs);
+				chain.add(coords[0],coords[1]);
+				chain.add(coords[2],coords[3]);
 			}
+			chainedLines(chain,2);
 		}
-		else if (this.shapeMode==PConstants.TRIANGLE_STRIP)
+		else
 		{
-			for (i=0;i<xs.length-2;i++)
+			float[] coords;
+			while ((coords=it.getNextLine()) != null)
 			{
-				float[] triXs = new float[] {xs[i],xs[i+1],xs[i+2]};
-				float[] triYs = new float[] {ys[i],ys[i+1],ys[i+2]};
-				float[] triZs = new float[] {zs[i],zs[i+1],zs[i+2]};
-				shape(triXs,triYs,triZs);
+				line(coords[0],coords[1],coords[2],coords[3],2);
 			}
 		}
-		else if (this.shapeMode==PConstants.TRIANGLE_FAN)
+		g2.setClip(oldClip);
+	}
+
+	/** Draws the sequence of hachure lines provided by the given iterator. If alternating hachures are
+	 *  used, successive lines are joined to give a continuous zig-zag stroke.
+	 *  @param it Iterator providing the hachure lines to draw.
+	 */
+	private void drawHachures(HachureIterator it)
+	{
+		float[] coords;
+		float[] prevCoords = it.getNextLine();
+
+		if (prevCoords != null)
 		{
-			for (i=1;i<xs.length-1;i++)
+			line(prevCoords[0],prevCoords[1],prevCoords[2],prevCoords[3],2);
+
+			while ((coords=it.getNextLine()) != null)
 			{
-				float[] triXs = new float[] {xs[0],xs[i],xs[i+1]};
-				float[] triYs = new float[] {ys[0],ys[i],ys[i+1]};
-				float[] triZs = new float[] {zs[0],zs[i],zs[i+1]};
-				shape(triXs,triYs,triZs);
+				if (isAlternating)
+				{
+					line(prevCoords[2],prevCoords[3],coords[0],coords[1],2);
+				}
+				line(coords[0],coords[1],coords[2],coords[3],2);
+				prevCoords = coords;
 			}
 		}
-		else if (this.shapeMode==PConstants.QUADS)
+	}
+
+	/** Fills the interior of an ellipse with hachures. Hachures are calculated for a circle and then
+	 *  transformed to fit the ellipse so that they remain parallel.
+	 *  @param cx x coordinate of the centre of the ellipse.
+	 *  @param cy y coordinate of the centre of the ellipse.
+	 *  @param rx Radius in the x direction of the ellipse.
+	 *  @param ry Radius in the y direction of the ellipse.
+	 *  @param gap Gap between adjacent hachure lines.
+	 *  @param tanA Tangent of the hachure angle.
+	 */
+	private void hachureEllipse(float cx, float cy, float rx, float ry, float gap, float tanA)
+	{
+		double aspectRatio = ry/rx;
+		double hyp = (float)Math.sqrt(aspectRatio*tanA*aspectRatio*tanA+1);
+		double sinAnglePrime = aspectRatio*tanA / hyp;
+		double cosAnglePrime = 1 / hyp;
+
+		double gapPrime = gap/((rx*ry/Math.sqrt((ry*cosAnglePrime)*(ry*cosAnglePrime) + (rx*sinAnglePrime)*(rx*sinAnglePrime)))/rx);
+		double halfLen = (float)Math.sqrt((rx*rx) - (cx-rx+gapPrime)*(cx-rx+gapPrime));
+
+		// Find the ends of every hachure of an unrotated circle and then transform them all at once.
+		hatchLines.clear();
+		hatchLines.add((float)(cx-rx+gapPrime),(float)(cy+halfLen));
+		for (double xPos=cx-rx+gapPrime; xPos<cx+rx; xPos+=gapPrime)
 		{
-			for (i=0;i<xs.length-3;i+=4)
-			{
-				float[] quadXs=new float[]{xs[i],xs[i+1],xs[i+2],xs[i+3]};
-				float[] quadYs=new float[]{ys[i],ys[i+1],ys[i+2],ys[i+3]};
-				float[] quadZs=new float[]{zs[i],zs[i+1],zs[i+2],zs[i+3]};
-				shape(quadXs,quadYs,quadZs);
-			}
+			halfLen = (float)Math.sqrt((rx*rx) - (cx-xPos)*(cx-xPos));
+			hatchLines.add((float)xPos,(float)(cy-halfLen));
+			hatchLines.add((float)xPos,(float)(cy+halfLen));
 		}
-		else if (this.shapeMode==PConstants.QUAD_STRIP)
+		transformHachures(hatchLines,cx,cy,sinAnglePrime,cosAnglePrime,aspectRatio);
+
+		float[] xs = hatchLines.xs;
+		float[] ys = hatchLines.ys;
+		for (int i=1; i<hatchLines.size-1; i+=2)
 		{
-			for (i=0;i<xs.length-3;i+=2)
+			if (isAlternating)
 			{
-				float[] quadXs=new float[]{xs[i],xs[i+1],xs[i+3],xs[i+2]};
-				float[] quadYs=new float[]{ys[i],ys[i+1],ys[i+3],ys[i+2]};
-				float[] quadZs=new float[]{zs[i],zs[i+1],zs[i+3],zs[i+2]};
-				shape(quadXs,quadYs,quadZs);
+				line(xs[i-1],ys[i-1],xs[i],ys[i],2);	
 			}
+			line(xs[i],ys[i],xs[i+1],ys[i+1],2);
 		}
 	}
 
-	/** Fills the face implied by the given 3d geometry with a hachured texture.
-	 *  @param xCoords x Coordinates of the face to fill.
-	 *  @param yCoords y Coordinates of the face to fill.
-	 *  @param zCoords z Coordinates of the face to fill.
-	 *  @param gap Gap between hachures.
+	/** Fills a sector or ring segment of an ellipse with hachures. Each hachure line is intersected directly
+	 *  with the outer and inner ellipses and the two radial edges of the arc, so the cost of each line does
+	 *  not depend on the size of the arc.
+	 *  @param cx x coordinate of the centre of the ellipse.
+	 *  @param cy y coordinate of the centre of the ellipse.
+	 *  @param rx Radius in the x direction of the ellipse.
+	 *  @param ry Radius in the y direction of the ellipse.
+	 *  @param inner Radius of the inner edge as a proportion of the outer radius, or 0 for a sector.
+	 *  @param strt Start angle of the arc in radians.
+	 *  @param stp Stop angle of the arc in radians, no more than 2 pi greater than the start angle.
+	 *  @param gap Gap between adjacent hachure lines.
 	 */
-	private void drawHachuredFace(float[] xCoords, float[] yCoords, float[] zCoords, float gap)
+	private void hachureArc(float cx, float cy, float rx, float ry, float inner, float strt, float stp, float gap)
 	{
-		// Bounding rectangle of the shape. For the 3d case, we use a fudge that attempts to find the 
-		// axis plane with most variation. This will work well for sides of a cuboid for example where each
-		// face is 2 dimensional and parallel to two axes. If a face varies in 3 dimensions, results may be distorted.
-		float minX = xCoords[0];
-		float maxX = xCoords[0];
-		float minY = yCoords[0];
-		float maxY = yCoords[0];
-		float minZ = zCoords[0];
-		float maxZ = zCoords[0];
-
-		for (int i=1; i<xCoords.length; i++)
+		// Hachures run in the direction (dx,dy) and are spaced along the normal (nx,ny).
+		float dx = sinAngle;
+		float dy = cosAngle;
+		float nx = cosAngle;
+		float ny = -sinAngle;
+		float span = stp-strt;
+		boolean isFullCircle = span >= PConstants.TWO_PI-0.0001f;
+
+		// Find the range of normal offsets covered by the arc from the ends of its radial edges and the
+		// extreme points of the ellipse in the normal direction.
+		float sMin = Float.MAX_VALUE;
+		float sMax = -Float.MAX_VALUE;
+		double extremeAngle = Math.atan2(ry*ny,rx*nx);
+		float[] angles = new float[] {strt, stp, (float)extremeAngle, (float)(extremeAngle+Math.PI)};
+		for (int i=0; i<angles.length; i++)
 		{
-			minX = Math.min(minX, xCoords[i]);
-			maxX = Math.max(maxX, xCoords[i]);
-			minY = Math.min(minY, yCoords[i]);
-			maxY = Math.max(maxY, yCoords[i]);
-			minZ = Math.min(minZ, zCoords[i]);
-			maxZ = Math.max(maxZ, zCoords[i]);
+			if ((i < 2) || (isFullCircle) || (isInArc(angles[i],strt,span)))
+			{
+				float s = rx*(float)Math.cos(angles[i])*nx + ry*(float)Math.sin(angles[i])*ny;
+				sMin = Math.min(sMin,Math.min(s,s*inner));
+				sMax = Math.max(sMax,Math.max(s,s*inner));
+			}
 		}
 
-		float xRange = maxX-minX;
-		float yRange = maxY-minY;
-		float zRange = maxZ-minZ;
-
-		float left = minX;
-		float right = maxX;
-		float top = maxY;
-		float bottom = minY;
-		Plane2d projectedPlane = Plane2d.XY;
-
-		if ((yRange < zRange) && (yRange < xRange))
-		{
-			top = maxZ;
-			bottom = minZ;
-			projectedPlane = Plane2d.XZ;
-		}
-		else if ((xRange < zRange) && (xRange < yRange))
-		{
-			top = maxZ;
-			bottom = minZ;
-			left = minY;
-			right = maxY;
-			projectedPlane = Plane2d.YZ;
-		}
+		// Coefficients of the quadratic giving the intersection of a line with the outer ellipse.
+		float a = (dx*dx)/(rx*rx) + (dy*dy)/(ry*ry);
+		float innerSq = inner*inner;
 
-		// Create hachured image and map it as a texture onto the shape.
-		HachureIterator hi = new HachureIterator(0, top-bottom, 0, right-left, gap, sinAngle, cosAngle, tanAngle);
+		// Radial edges as vectors from the centre to the outer ellipse.
+		float e1x = rx*(float)Math.cos(strt);
+		float e1y = ry*(float)Math.sin(strt);
+		float e2x = rx*(float)Math.cos(stp);
+		float e2y = ry*(float)Math.sin(stp);
 
-		float[] coords;
-		float[] prevCoords = hi.getNextLine();
-		PGraphics origGraphics = graphics;
+		float[] ts = new float[6];
+		float prevX = 0, prevY = 0;
+		boolean hasPrev = false;
 
-		PGraphics textureImg = parent.createGraphics((int)(right-left), (int)(top-bottom), PConstants.JAVA2D);	
+		for (float s=sMin+gap/2; s<sMax; s+=gap)
+		{
+			// Origin of the line relative to the centre of the ellipse.
+			float ox = s*nx;
+			float oy = s*ny;
+			float b = 2*((ox*dx)/(rx*rx) + (oy*dy)/(ry*ry));
+			float c = (ox*ox)/(rx*rx) + (oy*oy)/(ry*ry) - 1;
+			float disc = b*b - 4*a*c;
+			if (disc <= 0)
+			{
+				continue;
+			}
+			float root = (float)Math.sqrt(disc);
+			float tMin = (-b-root)/(2*a);
+			float tMax = (-b+root)/(2*a);
+			ts[0] = tMin;
+			ts[1] = tMax;
+			int numTs = 2;
+
+			if (inner > 0)
+			{
+				// Inner ellipse is the outer one scaled by the inner ratio.
+				float discInner = b*b - 4*a*(c+1-innerSq);
+				if (discInner > 0)
+				{
+					float rootInner = (float)Math.sqrt(discInner);
+					ts[numTs++] = (-b-rootInner)/(2*a);
+					ts[numTs++] = (-b+rootInner)/(2*a);
+				}
+			}
 
-		textureImg.beginDraw();				
-		copyGraphics(graphics,textureImg);
-		textureImg.smooth();			// Needed because 3D renderers may not allow smoothing.
-		setGraphics(textureImg);
-		graphics.fill(graphics.strokeColor);
+			if (isFullCircle == false)
+			{
+				numTs = addRayIntersection(ts,numTs,ox,oy,dx,dy,e1x,e1y,tMin,tMax);
+				numTs = addRayIntersection(ts,numTs,ox,oy,dx,dy,e2x,e2y,tMin,tMax);
+			}
 
-		if (prevCoords != null)
-		{
-			line(prevCoords[0],prevCoords[1],prevCoords[2],prevCoords[3],2);		
+			// Sort the few intersections along the line.
+			for (int i=1; i<numTs; i++)
+			{
+				float t = ts[i];
+				int j = i-1;
+				while ((j >= 0) && (ts[j] > t))
+				{
+					ts[j+1] = ts[j];
+					j--;
+				}
+				ts[j+1] = t;
+			}
 
-			while ((coords=hi.getNextLine()) != null)
+			// Draw each run of intervals whose midpoints lie inside the arc.
+			float runStart = Float.NaN;
+			for (int i=0; i<numTs; i++)
 			{
-				if (isAlternating)
+				boolean isInside = false;
+				if (i < numTs-1)
 				{
-					line(prevCoords[2],prevCoords[3],coords[0],coords[1],2);
+					float tMid = (ts[i]+ts[i+1])/2;
+					float px = (ox + tMid*dx)/rx;
+					float py = (oy + tMid*dy)/ry;
+					float rSq = px*px + py*py;
+					isInside = (rSq <= 1) && (rSq >= innerSq) &&
+							   ((isFullCircle) || (isInArc((float)Math.atan2(py,px),strt,span)));
+				}
+
+				if ((isInside) && (Float.isNaN(runStart)))
+				{
+					runStart = ts[i];
+				}
+				else if ((isInside == false) && (Float.isNaN(runStart) == false))
+				{
+					float x1 = cx + ox + runStart*dx;
+					float y1 = cy + oy + runStart*dy;
+					float x2 = cx + ox + ts[i]*dx;
+					float y2 = cy + oy + ts[i]*dy;
+					if ((isAlternating) && (hasPrev))
+					{
+						line(prevX,prevY,x1,y1,2);
+					}
+					line(x1,y1,x2,y2,2);
+					prevX = x2;
+					prevY = y2;
+					hasPrev = true;
+					runStart = Float.NaN;
 				}
-				line(coords[0],coords[1],coords[2],coords[3],2);
-				prevCoords = coords;
 			}
 		}
+	}
 
-		textureImg.endDraw();		
-		setGraphics(origGraphics);
+	/** Adds the intersection of a hachure line with a radial edge of an arc to the given list of line
+	 *  parameters if the intersection lies within the outer ellipse.
+	 *  @param ts Line parameters of intersections found so far.
+	 *  @param numTs Number of intersections found so far.
+	 *  @param ox x coordinate of the origin of the line relative to the centre of the ellipse.
+	 *  @param oy y coordinate of the origin of the line relative to the centre of the ellipse.
+	 *  @param dx x component of the direction of the line.
+	 *  @param dy y component of the direction of the line.
+	 *  @param ex x component of the vector from the centre of the ellipse to the end of the radial edge.
+	 *  @param ey y component of the vector from the centre of the ellipse to the end of the radial edge.
+	 *  @param tMin Line parameter where the line enters the outer ellipse.
+	 *  @param tMax Line parameter where the line leaves the outer ellipse.
+	 *  @return New number of intersections.
+	 */
+	private static int addRayIntersection(float[] ts, int numTs, float ox, float oy, float dx, float dy,
+										  float ex, float ey, float tMin, float tMax)
+	{
+		float cross = dx*ey - dy*ex;
+		if (Math.abs(cross) < 0.000001f)
+		{
+			// Line is parallel to the radial edge.
+			return numTs;
+		}
+		float t = (ey*ox - ex*oy)/-cross;
+		float u = ((ox + t*dx)*ex + (oy + t*dy)*ey)/(ex*ex + ey*ey);
+		if ((u > 0) && (t > tMin) && (t < tMax))
+		{
+			ts[numTs++] = t;
+		}
+		return numTs;
+	}
 
-		graphics.noFill();
-		graphics.noStroke();
-		graphics.beginShape();
-		graphics.texture(textureImg);
+	/** Reports whether the given angle lies within the given angular range.
+	 *  @param angle Angle to test in radians.
+	 *  @param strt Start of the angular range in radians.
+	 *  @param span Angular extent of the range in radians.
+	 *  @return True if the angle lies within the range.
+	 */
+	private static boolean isInArc(float angle, float strt, float span)
+	{
+		float offset = (angle-strt) % PConstants.TWO_PI;
+		if (offset < 0)
+		{
+			offset += PConstants.TWO_PI;
+		}
+		return offset <= span;
+	}
 
-		if (projectedPlane == Plane2d.XY)
+	/** Adds the vertices of a polygon approximating a sector or ring segment of an ellipse to the current shape.
+	 *  @param cx x coordinate of the centre of the ellipse.
+	 *  @param cy y coordinate of the centre of the ellipse.
+	 *  @param rx Radius in the x direction of the ellipse.
+	 *  @param ry Radius in the y direction of the ellipse.
+	 *  @param inner Radius of the inner edge as a proportion of the outer radius, or 0 for a sector.
+	 *  @param strt Start angle of the arc in radians.
+	 *  @param stp Stop angle of the arc in radians.
+	 */
+	private void arcVertices(float cx, float cy, float rx, float ry, float inner, float strt, float stp)
+	{
+		int numSteps = Math.max(2,(int)Math.ceil(64*(stp-strt)/PConstants.TWO_PI));
+		float inc = (stp-strt)/numSteps;
+		for (int i=0; i<=numSteps; i++)
 		{
-			for (int i=0; i<xCoords.length; i++)
-			{
-				float u = PApplet.map(xCoords[i],left,right,0,right-left);
-				float v = PApplet.map(yCoords[i],bottom,top,0,top-bottom);
-				graphics.vertex(xCoords[i],yCoords[i],zCoords[i],u,v);
-			}
+			float theta = strt + i*inc;
+			graphics.vertex(cx+rx*(float)Math.cos(theta), cy+ry*(float)Math.sin(theta));
 		}
-		else if (projectedPlane == Plane2d.XZ)
+		if (inner > 0)
 		{
-			for (int i=0; i<xCoords.length; i++)
+			for (int i=numSteps; i>=0; i--)
 			{
-				float u = PApplet.map(xCoords[i],left,right,right-left,0);
-				float v = PApplet.map(zCoords[i],bottom,top,0,top-bottom);
-				graphics.vertex(xCoords[i],yCoords[i],zCoords[i],u,v);
+				float theta = strt + i*inc;
+				graphics.vertex(cx+inner*rx*(float)Math.cos(theta), cy+inner*ry*(float)Math.sin(theta));
 			}
 		}
-		else if (projectedPlane == Plane2d.YZ)
+		else
 		{
-			for (int i=0; i<xCoords.length; i++)
-			{
-				float u = PApplet.map(yCoords[i],left,right,right-left,0);
-				float v = PApplet.map(zCoords[i],bottom,top,0,top-bottom);
-				graphics.vertex(xCoords[i],yCoords[i],zCoords[i],u,v);
-			}
+			graphics.vertex(cx,cy);
 		}
-		graphics.endShape(PConstants.CLOSE);
 	}
 
-
-	/** Draws a shape that includes curved edges.
+	/** Draws a sketchy curved line along part of the boundary of an ellipse.
+	 *  @param cx x coordinate of the centre of the ellipse.
+	 *  @param cy y coordinate of the centre of the ellipse.
+	 *  @param rx Radius in the x direction of the ellipse.
+	 *  @param ry Radius in the y direction of the ellipse.
+	 *  @param strt Start angle of the arc in radians.
+	 *  @param stp Stop angle of the arc in radians.
+	 *  @param offset Maximum random offset of each control point.
 	 */
-	private void curvedShape()
+	private void buildArc(float cx, float cy, float rx, float ry, float strt, float stp, float offset)
 	{
-		float[] v0,v1=null,v2=null,v3=null;						// Last four vertices
-		float[] v0Prime,v1Prime=null,v2Prime=null,v3Prime=null;	// Minor variation in curve.
-
-		graphics.pushStyle();
-
-		if (graphics.fill)
-		{
-			// Build a straight line approximation of the shape.
-			// This is necessary to calculate the interior shape reasonably quickly.
-			List<float[]> coords = new ArrayList<float[]>();
+		float arcInc = Math.min(ellipseInc/2,(stp-strt)/2);
 
-			v0 = vertices.get(0);
-			v0[0] += getOffset(-2, 2);
-			v0[1] += getOffset(-2, 2);
+		graphics.beginShape();
 
-			v0Prime = vertices.get(0);
-			v0Prime[0] += getOffset(-2, 2);
-			v0Prime[1] += getOffset(-2, 2);
+		// First and last control points duplicate the end points of the arc.
+		graphics.curveVertex(getOffset(-offset,offset)+cx+rx*(float)Math.cos(strt),
+							 getOffset(-offset,offset)+cy+ry*(float)Math.sin(strt));
 
-			for (int i=0; i<vertices.size(); i++)
-			{
-				boolean isCurveVertex = curveIndices.contains(new Integer(i));
+		for (float theta=strt; theta<stp; theta+=arcInc)
+		{
+			graphics.curveVertex(getOffset(-offset,offset)+cx+rx*(float)Math.cos(theta),
+								 getOffset(-offset,offset)+cy+ry*(float)Math.sin(theta));
+		}
 
-				// Advance vertices along by 1.
-				v3 = v2;
-				v2 = v1;
-				v1 = v0;
+		float endX = getOffset(-offset,offset)+cx+rx*(float)Math.cos(stp);
+		float endY = getOffset(-offset,offset)+cy+ry*(float)Math.sin(stp);
+		graphics.curveVertex(endX,endY);
+		graphics.curveVertex(endX,endY);
 
-				v0 = new float[2];
-				v0[0] = vertices.get(i)[0]+getOffset(-2, 2);
-				v0[1] = vertices.get(i)[1]+getOffset(-2, 2);
+		graphics.endShape();
+	}
 
-				if (isCurveVertex == false)
-				{
-					// Store normal coordinate.
-					coords.add(vertices.get(i));
-				}
-				else
-				{
-					if (i >=3)
-					{
-						// Add enough vertices to approximate curve with a straight line.
-						float dist = distSq(v2[0], v2[1], v1[0], v1[1]);
-						float step = (25 + 300*roughness)/dist;
+	/** Draws a mark by copying a pre-rasterised sprite of it from the sprite atlas, generating the sprite
+	 *  first if necessary. Sprites are only used if enabled, when drawing to a Java2D context and when the
+	 *  mark is small enough.
+	 *  @param type Type of mark (<code>POINT</code>, <code>RECT</code> or <code>ELLIPSE</code>).
+	 *  @param cx x coordinate of the centre of the mark.
+	 *  @param cy y coordinate of the centre of the mark.
+	 *  @param w Width of the mark.
+	 *  @param h Height of the mark.
+	 *  @return True if the mark was drawn as a sprite, false if it should be drawn normally.
+	 */
+	private boolean drawSprite(int type, float cx, float cy, float w, float h)
+	{
+		if ((useSprites == false) || !(graphics instanceof PGraphicsJava2D) || (graphics == spriteAtlas.getImage()))
+		{
+			return false;
+		}
+		if ((w <= 0) || (h <= 0) || (w > MAX_SPRITE_SIZE) || (h > MAX_SPRITE_SIZE))
+		{
+			return false;
+		}
 
-						for (float t=0; t<1; t+= step)
-						{
-							float x = graphics.curvePoint(v3[0], v2[0], v1[0], v0[0], t);  
-							float y = graphics.curvePoint(v3[1], v2[1], v1[1], v0[1], t);
-							coords.add(new float[] {x,y});
-						}
-					}
-				}
+		// Any change in the renderer's settings invalidates all sprites.
+		spriteSettings[0]  = overrideFillColour ? 1 : 0;
+		spriteSettings[1]  = overrideStrokeColour ? 1 : 0;
+		spriteSettings[2]  = useSecondary ? 1 : 0;
+		spriteSettings[3]  = isAlternating ? 1 : 0;
+		spriteSettings[4]  = fillColour;
+		spriteSettings[5]  = strokeColour;
+		spriteSettings[6]  = bgColour;
+		spriteSettings[7]  = secondaryColour;
+		spriteSettings[8]  = hachureAngle;
+		spriteSettings[9]  = anglePerturbation;
+		spriteSettings[10] = fillWeight;
+		spriteSettings[11] = fillGap;
+		spriteSettings[12] = strokeWeight;
+		spriteSettings[13] = roughness;
+		spriteSettings[14] = bowing;
+		spriteAtlas.checkSettings(spriteSettings);
+
+		// Marks of similar size share the same sprite.
+		double logBase = Math.log(1+spriteTolerance);
+		int wBucket = (int)Math.round(Math.log(w)/logBase);
+		int hBucket = (int)Math.round(Math.log(h)/logBase);
+		float bw = (float)Math.exp(wBucket*logBase);
+		float bh = (float)Math.exp(hBucket*logBase);
+
+		// Choose a variant based on location so that a mark always has the same appearance.
+		int hash = Float.floatToIntBits(cx)*31 + Float.floatToIntBits(cy);
+		hash ^= (hash >>> 16);
+		hash *= 0x85ebca6b;
+		hash ^= (hash >>> 13);
+		int variant = (hash & 0x7fffffff) % NUM_SPRITE_VARIANTS;
+
+		SpriteAtlas.Key key = new SpriteAtlas.Key(type,wBucket,hBucket,variant,graphics);
+		SpriteAtlas.Sprite sprite = spriteAtlas.get(key);
+		PGraphics atlas = spriteAtlas.getImage();
+
+		if (sprite == null)
+		{
+			// Leave room for the random offsets and line width around the mark.
+			int pad = (int)Math.ceil(Math.max(graphics.strokeWeight,strokeWeight) + 4*roughness) + 2;
+			sprite = spriteAtlas.allocate(key,(int)Math.ceil(bw)+2*pad,(int)Math.ceil(bh)+2*pad);
+			if (sprite == null)
+			{
+				return false;
 			}
 
-			// Convert coordinates into array and send to shape to fill.
-			float[] xs=new float[coords.size()];
-			float[] ys=new float[coords.size()];
-			int i=0;
-			for (float[] vertex : coords)
+			PGraphics target = graphics;
+			atlas.beginDraw();
+			atlas.colorMode(PConstants.RGB,255);
+			if (target.fill)
 			{
-				xs[i]=vertex[0];
-				ys[i]=vertex[1];
-				i++;
+				Recording.setFill(atlas,target.fillColor);
 			}
-
-			// Temporarily disable stroke settings while we draw the interior.
-			boolean isOStroke = graphics.stroke;
-			boolean oOverrideStroke = overrideStrokeColour;
-			int oStroke = graphics.strokeColor;
-
-			graphics.noStroke();
-			overrideStrokeColour = false;
-
-			shape(xs, ys);
-
-			graphics.stroke = isOStroke;
-			overrideStrokeColour = oOverrideStroke;
-			if (overrideStrokeColour)
+			else
 			{
-				graphics.stroke(strokeColour);
+				atlas.noFill();
 			}
-			else if (graphics.stroke)
+			if (target.stroke)
 			{
-				graphics.stroke(oStroke);	
+				Recording.setStroke(atlas,target.strokeColor);
 			}
-		}
-
-		// Draw the outlines as curved lines.
-		if ((graphics.stroke) || (overrideStrokeColour))
-		{
-			boolean oOverrideFill = overrideFillColour;
-
-			graphics.noFill();
-			overrideFillColour = false;
-			if (strokeWeight > 0)
+			else
 			{
-				graphics.strokeWeight(strokeWeight);
+				atlas.noStroke();
 			}
-
-			v0 = vertices.get(0);
-			v0[0] += getOffset(-2, 2);
-			v0[1] += getOffset(-2, 2);
-
-			v0Prime = vertices.get(0);
-			v0Prime[0] += getOffset(-2, 2);
-			v0Prime[1] += getOffset(-2, 2);
-
-			for (int i=0; i<vertices.size(); i++)
+			atlas.strokeWeight(target.strokeWeight);
+			atlas.ellipseMode(PConstants.RADIUS);
+			atlas.rectMode(PConstants.CORNERS);
+
+			float sx = sprite.u + sprite.width/2f;
+			float sy = sprite.v + sprite.height/2f;
+			graphics = atlas;
+			if (type == PConstants.ELLIPSE)
 			{
-				boolean isCurveVertex = curveIndices.contains(new Integer(i));
-
-				// Advance vertices along by 1.
-				v3 = v2;
-				v2 = v1;
-				v1 = v0;
-
-				v3Prime = v2Prime;
-				v2Prime = v1Prime;
-				v1Prime = v0Prime;
-
-				v0 = new float[2];
-				v0[0] = vertices.get(i)[0]+getOffset(-2, 2);
-				v0[1] = vertices.get(i)[1]+getOffset(-2, 2);
-
-				v0Prime = new float[2];
-				v0Prime[0] = vertices.get(i)[0]+getOffset(-2, 2);
-				v0Prime[1] = vertices.get(i)[1]+getOffset(-2, 2);
-
-				if (isCurveVertex == false)
-				{
-					// Draw any straight line segments.
-					if (i > 0)
-					{
-						line(v1[0],v1[1],v0[0],v0[1]);
-					}
-				}
-				else
-				{
-					if (i >=3)
-					{
-						// We have enough to generate a curve.
-						graphics.curve(v3[0], v3[1], v2[0], v2[1], v1[0], v1[1], v0[0], v0[1]);
-						graphics.curve(v3Prime[0], v3Prime[1], v2Prime[0], v2Prime[1], v1Prime[0], v1Prime[1], v0Prime[0], v0Prime[1]);
-					}
-				}
+				ellipse(sx,sy,bw/2,bh/2);
+			}
+			else if (type == PConstants.RECT)
+			{
+				rect(sx-bw/2,sy-bh/2,sx+bw/2,sy+bh/2);
+			}
+			else
+			{
+				atlas.point(sx,sy);
 			}
+			graphics = target;
+			atlas.endDraw();
+		}
 
-			overrideFillColour = oOverrideFill;
+		// Copy the sprite, scaling it to the exact size of the mark.
+		float scaleX = w/bw;
+		float scaleY = h/bh;
+		int oImageMode = graphics.imageMode;
+		boolean oIsTint = graphics.tint;
+		int oTint = graphics.tintColor;
+		graphics.imageMode(PConstants.CORNER);
+		graphics.noTint();
+		graphics.image(atlas,cx-scaleX*sprite.width/2f,cy-scaleY*sprite.height/2f,scaleX*sprite.width,scaleY*sprite.height,
+				       sprite.u,sprite.v,sprite.u+sprite.width,sprite.v+sprite.height);
+		graphics.imageMode(oImageMode);
+		if (oIsTint)
+		{
+			graphics.tint(oTint);
 		}
+		return true;
+	}
 
-		// Restore styles.
-		graphics.popStyle();
+	/** Randomly perturbs the hachure angle of the next shape to be drawn by up to the current angle perturbation.
+	 *  This modifies the trigonometric lookups but not the underlying hachure angle so that the original can
+	 *  be restored without recalculation by calling <code>restoreHachureAngle()</code>.
+	 */
+	private void perturbHachureAngle()
+	{
+		float angle = PApplet.radians((PApplet.degrees(hachureAngle) + (2*rand.nextFloat()-1)*anglePerturbation)%180);
+		cosAngle = (float)Math.cos(angle);
+		sinAngle = (float)Math.sin(angle);
+		tanAngle = (float)Math.tan(angle);
 	}
 
+	/** Restores the trigonometric lookups of the unperturbed hachure angle after drawing a perturbed shape.
+	 */
+	private void restoreHachureAngle()
+	{
+		cosAngle = baseCos;
+		sinAngle = baseSin;
+		tanAngle = baseTan;
+	}
 
 	/** Generates a random offset scaled around the given range. Note that the offset can exceed
 	 *  the given maximum or minimum depending on the sketchiness of the renderer settings.
@@ -2556,17 +5133,15 @@ public class HandyRenderer
 	}
 
 	/** Applies a combined affine transformation that translates (cx,cy) to origin, rotates it, scales it
-	 *  according to the given aspect ratio and then translates back to (cx,cy)
-	 *  @param x x coordinate of the point to transform.
-	 *  @param y y coordinate of the point to transform.
+	 *  according to the given aspect ratio and then translates back to (cx,cy) to a set of points in place.
+	 *  @param points Points to transform.
 	 *  @param cx x coordinate of the centre point to translate to origin.
 	 *  @param cy y coordinate of the centre point to translate to origin.
 	 *  @param sinAnglePrime sine of modified angle that accounts for scaling.
 	 *  @param cosAnglePrime cosine of modified angle that accoints for scaling.
 	 *  @param R aspect ratio of ellipse (y/x).
-	 *  @return Transformed coordinate pair.
 	 */
-	private static float[] affine(double x, double y, double cx, double cy, double sinAnglePrime, double cosAnglePrime,double R)
+	private void transformHachures(VertexBuffer points, double cx, double cy, double sinAnglePrime, double cosAnglePrime,double R)
 	{		
 		double A = -cx*cosAnglePrime-cy*sinAnglePrime+cx;
 		double B = R*(cx*sinAnglePrime - cy*cosAnglePrime)+cy;
@@ -2574,7 +5149,283 @@ public class HandyRenderer
 		double D = sinAnglePrime;
 		double E = -R*sinAnglePrime;
 		double F = R*cosAnglePrime;
-		return new float[] {(float)(A+ C*x + D*y), (float)(B + E*x + F*y)};
+		kernels.transform(points.xs,points.ys,0,points.size,(float)C,(float)D,(float)A,(float)E,(float)F,(float)B);
+	}
+
+	/** Records the given rectangle as hiding earlier output in a deferred frame if it is about to be
+	 *  filled with an opaque colour.
+	 *  @param left Left-hand edge of the rectangle.
+	 *  @param top Top edge of the rectangle.
+	 *  @param right Right-hand edge of the rectangle.
+	 *  @param bottom Bottom edge of the rectangle.
+	 */
+	private void occludeRect(float left, float top, float right, float bottom)
+	{
+		if (isDeferring && ((graphics.fillColor >>> 24) == 0xff))
+		{
+			frame.addOccluder(new float[] {left,right,right,left}, new float[] {top,top,bottom,bottom}, 4);
+		}
+	}
+
+	/** Records the given triangle as hiding earlier output in a deferred frame if it is about to be
+	 *  filled with an opaque colour.
+	 *  @param x1 x coordinate of the first triangle vertex.
+	 *  @param y1 y coordinate of the first triangle vertex.
+	 *  @param x2 x coordinate of the second triangle vertex.
+	 *  @param y2 y coordinate of the second triangle vertex.
+	 *  @param x3 x coordinate of the third triangle vertex.
+	 *  @param y3 y coordinate of the third triangle vertex.
+	 */
+	private void occludeTriangle(float x1, float y1, float x2, float y2, float x3, float y3)
+	{
+		if (isDeferring && ((graphics.fillColor >>> 24) == 0xff))
+		{
+			frame.addOccluder(new float[] {x1,x2,x3}, new float[] {y1,y2,y3}, 3);
+		}
+	}
+
+	/** Records the given ellipse as hiding earlier output in a deferred frame if it is about to be
+	 *  filled with an opaque colour.
+	 *  @param cx x coordinate of the centre of the ellipse.
+	 *  @param cy y coordinate of the centre of the ellipse.
+	 *  @param rx Radius of the ellipse in the x direction.
+	 *  @param ry Radius of the ellipse in the y direction.
+	 */
+	private void occludeEllipse(float cx, float cy, float rx, float ry)
+	{
+		if (isDeferring && ((graphics.fillColor >>> 24) == 0xff))
+		{
+			frame.addOccluderEllipse(cx,cy,rx,ry);
+		}
+	}
+
+	/** Records the given polygon as hiding earlier output in a deferred frame if it is about to be
+	 *  filled with an opaque colour. Polygons with holes or several parts are not treated as occluders.
+	 *  @param xCoords x coordinates of the polygon.
+	 *  @param yCoords y coordinates of the polygon.
+	 *  @param numCoords Number of vertices in the polygon.
+	 *  @param numParts Number of rings making up the polygon.
+	 */
+	private void occludePolygon(float[] xCoords, float[] yCoords, int numCoords, int numParts)
+	{
+		if (isDeferring && (numParts == 1) && (numCoords >= 3) && ((graphics.fillColor >>> 24) == 0xff))
+		{
+			frame.addOccluder(xCoords,yCoords,numCoords);
+		}
+	}
+
+	/** Records the polygon stored in the given buffer as hiding earlier output in a deferred frame if it is
+	 *  about to be filled with an opaque colour.
+	 *  @param coords Buffer containing the polygon's coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices in the polygon.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 */
+	private void occludeBuffer(FloatBuffer coords, int offset, int numVertices, int stride)
+	{
+		if (isDeferring && (numVertices >= 3) && ((graphics.fillColor >>> 24) == 0xff))
+		{
+			frame.addOccluder(coords,offset,numVertices,stride);
+		}
+	}
+
+	/** Reports whether the given buffer contains the interleaved coordinates of the given number of vertices.
+	 *  @param coords Buffer to check.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 *  @return True if all the vertices' coordinates lie within the buffer.
+	 */
+	private static boolean isValidBuffer(FloatBuffer coords, int offset, int numVertices, int stride)
+	{
+		if ((coords == null) || (offset < 0) || (numVertices < 1) || (stride < 2))
+		{
+			return false;
+		}
+		return offset + (long)(numVertices-1)*stride + 1 < coords.limit();
+	}
+
+	/** Sends the vertices stored in the given buffer to the graphics context as a single shape.
+	 *  @param coords Buffer containing the shape's coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices in the shape.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 *  @param closeShape Shape is closed if true.
+	 */
+	private void drawBuffer(FloatBuffer coords, int offset, int numVertices, int stride, boolean closeShape)
+	{
+		graphics.beginShape();
+		int last = offset + (numVertices-1)*stride;
+		for (int i=offset; i<=last; i+=stride)
+		{
+			graphics.vertex(coords.get(i),coords.get(i+1));
+		}
+		if (closeShape)
+		{
+			graphics.endShape(PConstants.CLOSE);
+		}
+		else
+		{
+			graphics.endShape();
+		}
+	}
+
+	/** Draws a sketchy line along each edge between the vertices stored in the given buffer.
+	 *  @param coords Buffer containing the vertices' coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 *  @param closeShape Last vertex is joined to the first if true.
+	 */
+	private void bufferLines(FloatBuffer coords, int offset, int numVertices, int stride, boolean closeShape)
+	{
+		int last = offset + (numVertices-1)*stride;
+		for (int i=offset; i<last; i+=stride)
+		{
+			line(coords.get(i),coords.get(i+1),coords.get(i+stride),coords.get(i+stride+1),2);
+		}
+		if ((closeShape) && (numVertices > 1))
+		{
+			line(coords.get(last),coords.get(last+1),coords.get(offset),coords.get(offset+1),2);
+		}
+	}
+
+	/** Gathers the vertices stored in the given buffer into a reusable vertex buffer so that they can be drawn
+	 *  by methods that need separate coordinate arrays. If the boundary should be simplified, only the retained
+	 *  vertices are gathered, unless a closed boundary would collapse, in which case all are.
+	 *  @param coords Buffer containing the vertices' coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex.
+	 *  @param numVertices Number of vertices.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 *  @param isClosed True if the vertices form a closed boundary.
+	 *  @param bucket Scale bucket at which the boundary is simplified, or NO_SIMPLIFICATION.
+	 *  @return Vertex buffer containing the gathered vertices.
+	 */
+	private VertexBuffer gatherVertices(FloatBuffer coords, int offset, int numVertices, int stride, boolean isClosed, int bucket)
+	{
+		boolean[] keep = null;
+		if (bucket != NO_SIMPLIFICATION)
+		{
+			if (gatheredKeep.length < numVertices)
+			{
+				gatheredKeep = new boolean[numVertices];
+			}
+			int numKept = Simplifier.simplify(coords,offset,numVertices,stride,getSimplificationTolerance(bucket),gatheredKeep);
+			if ((isClosed == false) || (numKept >= 3))
+			{
+				keep = gatheredKeep;
+			}
+		}
+
+		gathered.clear();
+		for (int i=0; i<numVertices; i++)
+		{
+			if ((keep == null) || (keep[i]))
+			{
+				gathered.add(coords.get(offset+i*stride),coords.get(offset+i*stride+1));
+			}
+		}
+		return gathered;
+	}
+
+	/** Sends the given rings to the graphics context as a single shape with contours. So that the
+	 *  graphics context's own fill rule gives the same result as the even-odd rule, each ring is sent
+	 *  in a direction that alternates with its depth of nesting within the other rings.
+	 *  @param xCoords x coordinates of all rings.
+	 *  @param yCoords y coordinates of all rings.
+	 *  @param numCoords Total number of vertices in all rings.
+	 *  @param starts Index of the first vertex of each ring.
+	 *  @param numParts Number of rings.
+	 *  @param closeShape Shape is closed if true.
+	 */
+	private void drawRings(float[] xCoords, float[] yCoords, int numCoords, int[] starts, int numParts, boolean closeShape)
+	{
+		graphics.beginShape();
+		for (int r=0; r<numParts; r++)
+		{
+			int first = starts[r];
+			int last = (r < numParts-1) ? starts[r+1]-1 : numCoords-1;
+			boolean reverse = false;
+
+			if (numParts > 1)
+			{
+				int depth = 0;
+				for (int other=0; other<numParts; other++)
+				{
+					if ((other != r) && (isInRing(xCoords[first],yCoords[first],xCoords,yCoords,numCoords,starts,numParts,other)))
+					{
+						depth++;
+					}
+				}
+				reverse = (ringArea(xCoords,yCoords,first,last) > 0) != (depth%2 == 0);
+			}
+
+			if (r > 0)
+			{
+				graphics.beginContour();
+			}
+			for (int i=0; i<=last-first; i++)
+			{
+				int v = reverse ? last-i : first+i;
+				graphics.vertex(xCoords[v],yCoords[v]);
+			}
+			if (r > 0)
+			{
+				graphics.endContour();
+			}
+		}
+		if (closeShape)
+		{
+			graphics.endShape(PConstants.CLOSE);
+		}
+		else
+		{
+			graphics.endShape();
+		}
+	}
+
+	/** Reports whether the given point lies inside the given ring.
+	 *  @param px x coordinate of the point to test.
+	 *  @param py y coordinate of the point to test.
+	 *  @param xCoords x coordinates of all rings.
+	 *  @param yCoords y coordinates of all rings.
+	 *  @param numCoords Total number of vertices in all rings.
+	 *  @param starts Index of the first vertex of each ring.
+	 *  @param numParts Number of rings.
+	 *  @param ring Index of the ring to test.
+	 *  @return True if the point is inside the ring.
+	 */
+	private static boolean isInRing(float px, float py, float[] xCoords, float[] yCoords, int numCoords, int[] starts, int numParts, int ring)
+	{
+		int first = starts[ring];
+		int last = (ring < numParts-1) ? starts[ring+1]-1 : numCoords-1;
+		boolean isInside = false;
+		for (int i=first, j=last; i<=last; j=i++)
+		{
+			if (((yCoords[i] > py) != (yCoords[j] > py)) && 
+				(px < (xCoords[j]-xCoords[i])*(py-yCoords[i])/(yCoords[j]-yCoords[i]) + xCoords[i]))
+			{
+				isInside = !isInside;
+			}
+		}
+		return isInside;
+	}
+
+	/** Calculates the signed area of a ring, which is positive if its vertices are clockwise on screen.
+	 *  @param xCoords x coordinates of all rings.
+	 *  @param yCoords y coordinates of all rings.
+	 *  @param first Index of the first vertex of the ring.
+	 *  @param last Index of the last vertex of the ring.
+	 *  @return Signed area of the ring.
+	 */
+	private static float ringArea(float[] xCoords, float[] yCoords, int first, int last)
+	{
+		float area = 0;
+		for (int i=first, j=last; i<=last; j=i++)
+		{
+			area += xCoords[j]*yCoords[i] - xCoords[i]*yCoords[j];
+		}
+		return area/2;
 	}
 
 	/** Provides a list of the coordinates of interior lines that represent the intersections
@@ -2582,17 +5433,29 @@ public class HandyRenderer
 	 * @param lineCoords The endpoints of the line to intersect.
 	 * @param xCoords The x coordinates of the boundary of the shape to be intersected with the line.
 	 * @param yCoords The y coordinates of the boundary of the shape to be intersected with the line.
+	 * @param numCoords The number of vertices in the boundary of the shape.
+	 * @param starts The index of the first vertex of each ring making up the boundary.
+	 * @param numParts The number of rings making up the boundary.
 	 * @return List of coordinates representing the intersecting lines.
 	 */
-	private ArrayList<float[]> getIntersectingLines(float[] lineCoords, float[]xCoords, float[]yCoords)
+	private ArrayList<float[]> getIntersectingLines(float[] lineCoords, float[]xCoords, float[]yCoords, int numCoords, int[] starts, int numParts)
 	{
 		TreeMap<Float,float[]> intersections = new TreeMap<Float,float[]>();
 		Segment s1 = new Segment(lineCoords[0],lineCoords[1],lineCoords[2],lineCoords[3]);
 
-		// Final all points of intersection between line and shape boundary and ensure they are ordered from the start of the line.
-		for (int i=0; i<xCoords.length; i++)
+		// Final all points of intersection between line and every ring of the shape boundary and ensure they are 
+		// ordered from the start of the line. Consecutive pairs of intersections then span the interior (even-odd rule).
+		int ring = 0;
+		int ringEnd = (numParts > 1) ? starts[1] : numCoords;
+		for (int i=0; i<numCoords; i++)
 		{
-			Segment s2 = new Segment(xCoords[i],yCoords[i],xCoords[(i+1)%xCoords.length],yCoords[(i+1)%xCoords.length]);
+			if (i == ringEnd)
+			{
+				ring++;
+				ringEnd = (ring < numParts-1) ? starts[ring+1] : numCoords;
+			}
+			int next = (i+1 < ringEnd) ? i+1 : starts[ring];
+			Segment s2 = new Segment(xCoords[i],yCoords[i],xCoords[next],yCoords[next]);
 
 			if (s1.compare(s2) == Segment.Relation.INTERSECTS)
 			{
@@ -0,0 +1,467 @@
+package org.gicentre.handy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+
+//*****************************************************************************************
+/** Retained scene of sketchy marks drawn into a persistent offscreen buffer. Each mark added
+ *  to the scene is drawn once by a handy renderer and its jittered geometry recorded, along
+ *  with its bounding box, in a spatial index. When marks are added, moved or removed, only
+ *  the areas of the buffer they affect are redrawn, replaying any other marks that overlap
+ *  those areas. This allows interactive sketches to be updated at a cost proportional to
+ *  the size of the change rather than the size of the scene.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class HandyScene
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private PApplet parent;						// Sketch in which the scene is displayed.
+	private HandyRenderer handy;				// Renderer used to create each mark.
+	private PGraphics buffer;					// Persistent offscreen buffer holding the drawn scene.
+	private RecordingGraphics recorder;			// Captures the geometry of each new mark.
+	private PGraphics target;					// Renderer's graphics context while a mark is recorded.
+	private RTree<Mark> index;					// Spatial index of marks.
+	private Map<Integer,Mark> marks;			// Marks indexed by their ID.
+	private List<float[]> dirtyRects;			// Areas of the buffer that need redrawing.
+	private boolean redrawAll;					// Indicates entire buffer should be redrawn.
+	private int nextID;							// ID (and drawing order) of next mark to be added.
+	private int bgColour;						// Colour of the scene background.
+
+	// Redraw whole scene if dirty area exceeds this proportion of the buffer.
+	private static final float MAX_DIRTY_PROPORTION = 0.5f;
+
+	private static final Comparator<Mark> DRAW_ORDER = new Comparator<Mark>()
+	{
+		public int compare(Mark m1, Mark m2)
+		{
+			return m1.id < m2.id ? -1 : (m1.id == m2.id ? 0 : 1);
+		}
+	};
+
+	// ----------------------------------- Constructors ----------------------------------
+
+	/** Creates a scene the same size as the parent sketch.
+	 *  @param parent Sketch in which the scene is to be displayed.
+	 *  @param handy Renderer used to draw marks added to the scene.
+	 */
+	public HandyScene(PApplet parent, HandyRenderer handy)
+	{
+		this(parent,handy,parent.width,parent.height);
+	}
+
+	/** Creates a scene of the given size.
+	 *  @param parent Sketch in which the scene is to be displayed.
+	 *  @param handy Renderer used to draw marks added to the scene.
+	 *  @param width Width of the scene in pixels.
+	 *  @param height Height of the scene in pixels.
+	 */
+	public HandyScene(PApplet parent, HandyRenderer handy, int width, int height)
+	{
+		this.parent = parent;
+		this.handy = handy;
+		this.buffer = parent.createGraphics(width, height, PConstants.JAVA2D);
+		this.recorder = new RecordingGraphics();
+		this.index = new RTree<Mark>();
+		this.marks = new HashMap<Integer,Mark>();
+		this.dirtyRects = new ArrayList<float[]>();
+		this.redrawAll = true;
+		this.nextID = 0;
+		this.bgColour = parent.color(255);
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Sets the colour of the scene background. This will cause the entire scene to be redrawn.
+	 *  @param colour Background colour.
+	 */
+	public void setBackgroundColour(int colour)
+	{
+		this.bgColour = colour;
+		redrawAll = true;
+	}
+
+	/** Provides the offscreen buffer into which the scene is drawn. Note that the buffer is only
+	 *  brought up to date with calls to <code>update()</code> or <code>draw()</code>.
+	 *  @return Buffer holding the drawn scene.
+	 */
+	public PGraphics getBuffer()
+	{
+		return buffer;
+	}
+
+	/** Reports the number of marks in the scene.
+	 *  @return Number of marks in the scene.
+	 */
+	public int getNumMarks()
+	{
+		return marks.size();
+	}
+
+	/** Adds a sketchy rectangle to the scene using the current style of the renderer and its
+	 *  graphics context. Parameters are interpreted as for <code>HandyRenderer.rect()</code>.
+	 *  @param x x coordinate of the rectangle position
+	 *  @param y y coordinate of the rectangle position.
+	 *  @param w Width of the rectangle.
+	 *  @param h Height of the rectangle.
+	 *  @return ID of the new mark.
+	 */
+	public int rect(float x, float y, float w, float h)
+	{
+		startMark();
+		handy.rect(x,y,w,h);
+		return endMark();
+	}
+
+	/** Adds a sketchy ellipse to the scene using the current style of the renderer and its
+	 *  graphics context. Parameters are interpreted as for <code>HandyRenderer.ellipse()</code>.
+	 *  @param x x coordinate of the ellipse's position
+	 *  @param y y coordinate of the ellipse's position.
+	 *  @param w Width of the ellipse.
+	 *  @param h Height of the ellipse.
+	 *  @return ID of the new mark.
+	 */
+	public int ellipse(float x, float y, float w, float h)
+	{
+		startMark();
+		handy.ellipse(x,y,w,h);
+		return endMark();
+	}
+
+	/** Adds a sketchy triangle to the scene using the current style of the renderer and its
+	 *  graphics context.
+	 *  @param x1 x coordinate of the first triangle vertex.
+	 *  @param y1 y coordinate of the first triangle vertex.
+	 *  @param x2 x coordinate of the second triangle vertex.
+	 *  @param y2 y coordinate of the second triangle vertex.
+	 *  @param x3 x coordinate of the third triangle vertex.
+	 *  @param y3 y coordinate of the third triangle vertex.
+	 *  @return ID of the new mark.
+	 */
+	public int triangle(float x1, float y1, float x2, float y2, float x3, float y3)
+	{
+		startMark();
+		handy.triangle(x1,y1,x2,y2,x3,y3);
+		return endMark();
+	}
+
+	/** Adds a sketchy arc to the scene using the current style of the renderer and its
+	 *  graphics context. Parameters are interpreted as for <code>HandyRenderer.arc()</code>.
+	 *  @param x x coordinate of the ellipse's position around which this arc is defined.
+	 *  @param y y coordinate of the ellipse's position around which this arc is defined
+	 *  @param w Width of the ellipse around which this arc is defined.
+	 *  @param h Height of the ellipse around which this arc is defined.
+	 *  @param start Angle to start the arc in radians.
+	 *  @param stop Angle to stop the arc in radians.
+	 *  @return ID of the new mark.
+	 */
+	public int arc(float x, float y, float w, float h, float start, float stop)
+	{
+		startMark();
+		handy.arc(x,y,w,h,start,stop);
+		return endMark();
+	}
+
+	/** Adds a sketchy line to the scene using the current style of the renderer and its
+	 *  graphics context.
+	 *  @param x1 x coordinate of the start of the line.
+	 *  @param y1 y coordinate of the start of the line.
+	 *  @param x2 x coordinate of the end of the line.
+	 *  @param y2 y coordinate of the end of the line.
+	 *  @return ID of the new mark.
+	 */
+	public int line(float x1, float y1, float x2, float y2)
+	{
+		startMark();
+		handy.line(x1,y1,x2,y2);
+		return endMark();
+	}
+
+	/** Adds a closed sketchy polygon to the scene using the current style of the renderer and its
+	 *  graphics context.
+	 *  @param xCoords x coordinates of the shape.
+	 *  @param yCoords y coordinates of the shape.
+	 *  @return ID of the new mark.
+	 */
+	public int shape(float[] xCoords, float[] yCoords)
+	{
+		startMark();
+		handy.shape(xCoords,yCoords);
+		return endMark();
+	}
+
+	/** Adds a sketchy polyline to the scene using the current style of the renderer and its
+	 *  graphics context.
+	 *  @param xCoords x coordinates of the line.
+	 *  @param yCoords y coordinates of the line.
+	 *  @return ID of the new mark.
+	 */
+	public int polyLine(float[] xCoords, float[] yCoords)
+	{
+		startMark();
+		handy.polyLine(xCoords,yCoords);
+		return endMark();
+	}
+
+	/** Moves the mark with the given ID by the given amount. The mark retains its sketchy appearance
+	 *  and its position in the drawing order.
+	 *  @param id ID of the mark to move.
+	 *  @param dx Distance to move in the x direction.
+	 *  @param dy Distance to move in the y direction.
+	 */
+	public void translate(int id, float dx, float dy)
+	{
+		Mark mark = marks.get(Integer.valueOf(id));
+		if (mark == null)
+		{
+			System.err.println("No mark with ID "+id+" to translate.");
+			return;
+		}
+		index.remove(mark.getMinX(),mark.getMinY(),mark.getMaxX(),mark.getMaxY(),mark);
+		addDirtyRect(mark);
+		mark.dx += dx;
+		mark.dy += dy;
+		index.insert(mark.getMinX(),mark.getMinY(),mark.getMaxX(),mark.getMaxY(),mark);
+		addDirtyRect(mark);
+	}
+
+	/** Removes the mark with the given ID from the scene.
+	 *  @param id ID of the mark to remove.
+	 */
+	public void remove(int id)
+	{
+		Mark mark = marks.remove(Integer.valueOf(id));
+		if (mark == null)
+		{
+			System.err.println("No mark with ID "+id+" to remove.");
+			return;
+		}
+		index.remove(mark.getMinX(),mark.getMinY(),mark.getMaxX(),mark.getMaxY(),mark);
+		addDirtyRect(mark);
+	}
+
+	/** Removes all marks from the scene.
+	 */
+	public void clear()
+	{
+		marks.clear();
+		index.clear();
+		dirtyRects.clear();
+		redrawAll = true;
+	}
+
+	/** Redraws those parts of the offscreen buffer affected by changes since the last update.
+	 *  @return True if any part of the buffer was redrawn.
+	 */
+	public boolean update()
+	{
+		if ((redrawAll == false) && (dirtyRects.isEmpty()))
+		{
+			return false;
+		}
+
+		mergeDirtyRects();
+
+		// Redraw everything if the changed area covers much of the buffer.
+		float dirtyArea = 0;
+		for (float[] rect : dirtyRects)
+		{
+			dirtyArea += (rect[2]-rect[0])*(rect[3]-rect[1]);
+		}
+		if (dirtyArea > MAX_DIRTY_PROPORTION*buffer.width*buffer.height)
+		{
+			redrawAll = true;
+		}
+
+		buffer.beginDraw();
+		if (redrawAll)
+		{
+			buffer.background(bgColour);
+			List<Mark> allMarks = new ArrayList<Mark>(marks.values());
+			Collections.sort(allMarks,DRAW_ORDER);
+			for (Mark mark : allMarks)
+			{
+				mark.draw(buffer);
+			}
+		}
+		else
+		{
+			List<Mark> overlaps = new ArrayList<Mark>();
+			buffer.pushStyle();
+			for (float[] rect : dirtyRects)
+			{
+				// Erase and redraw only the marks that overlap the dirty rectangle.
+				buffer.imageMode(PConstants.CORNER);
+				buffer.clip(rect[0],rect[1],rect[2]-rect[0],rect[3]-rect[1]);
+				buffer.noStroke();
+				buffer.fill(bgColour);
+				buffer.rectMode(PConstants.CORNERS);
+				buffer.rect(rect[0],rect[1],rect[2],rect[3]);
+
+				overlaps.clear();
+				index.search(rect[0],rect[1],rect[2],rect[3],overlaps);
+				Collections.sort(overlaps,DRAW_ORDER);
+				for (Mark mark : overlaps)
+				{
+					mark.draw(buffer);
+				}
+				buffer.noClip();
+			}
+			buffer.popStyle();
+		}
+		buffer.endDraw();
+
+		dirtyRects.clear();
+		redrawAll = false;
+		return true;
+	}
+
+	/** Brings the offscreen buffer up to date and draws it in the parent sketch.
+	 */
+	public void draw()
+	{
+		update();
+		parent.image(buffer,0,0);
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Redirects the renderer's output so that the next primitive is recorded.
+	 */
+	private void startMark()
+	{
+		target = handy.getGraphics();
+		recorder.clear(target);
+		recorder.parent = target.parent;
+		handy.setGraphics(recorder);
+	}
+
+	/** Restores the renderer's output and stores the recorded primitive as a new mark.
+	 *  @return ID of the new mark.
+	 */
+	private int endMark()
+	{
+		handy.setGraphics(target);
+		Mark mark = new Mark(nextID++,recorder.getRecording());
+		if (mark.recording.isEmpty() == false)
+		{
+			marks.put(Integer.valueOf(mark.id),mark);
+			index.insert(mark.getMinX(),mark.getMinY(),mark.getMaxX(),mark.getMaxY(),mark);
+			addDirtyRect(mark);
+		}
+		return mark.id;
+	}
+
+	/** Adds the area occupied by the given mark to the list of areas to be redrawn.
+	 *  @param mark Mark whose area is to be redrawn.
+	 */
+	private void addDirtyRect(Mark mark)
+	{
+		// Snap to whole pixels so that anti-aliased edges are fully redrawn.
+		float left   = Math.max(0,(float)Math.floor(mark.getMinX()));
+		float top    = Math.max(0,(float)Math.floor(mark.getMinY()));
+		float right  = Math.min(buffer.width,(float)Math.ceil(mark.getMaxX()));
+		float bottom = Math.min(buffer.height,(float)Math.ceil(mark.getMaxY()));
+
+		if ((left < right) && (top < bottom))
+		{
+			dirtyRects.add(new float[] {left,top,right,bottom});
+		}
+	}
+
+	/** Combines any overlapping dirty rectangles so that no area is redrawn more than once.
+	 */
+	private void mergeDirtyRects()
+	{
+		boolean isMerged = true;
+		while (isMerged)
+		{
+			isMerged = false;
+			for (int i=0; i<dirtyRects.size() && !isMerged; i++)
+			{
+				float[] r1 = dirtyRects.get(i);
+				for (int j=i+1; j<dirtyRects.size(); j++)
+				{
+					float[] r2 = dirtyRects.get(j);
+					if ((r1[0] <= r2[2]) && (r1[2] >= r2[0]) && (r1[1] <= r2[3]) && (r1[3] >= r2[1]))
+					{
+						r1[0] = Math.min(r1[0],r2[0]);
+						r1[1] = Math.min(r1[1],r2[1]);
+						r1[2] = Math.max(r1[2],r2[2]);
+						r1[3] = Math.max(r1[3],r2[3]);
+						dirtyRects.remove(j);
+						isMerged = true;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** A single recorded mark in the scene.
+	 */
+	private static class Mark
+	{
+		final int id;					// Unique ID that also determines drawing order.
+		final Recording recording;		// Recorded sketchy geometry.
+		float dx,dy;					// Offset applied to the recorded geometry.
+
+		Mark(int id, Recording recording)
+		{
+			this.id = id;
+			this.recording = recording;
+		}
+
+		float getMinX()
+		{
+			return recording.getMinX()+dx;
+		}
+
+		float getMinY()
+		{
+			return recording.getMinY()+dy;
+		}
+
+		float getMaxX()
+		{
+			return recording.getMaxX()+dx;
+		}
+
+		float getMaxY()
+		{
+			return recording.getMaxY()+dy;
+		}
+
+		void draw(PGraphics g)
+		{
+			recording.replay(g,dx,dy);
+		}
+	}
+}
@@ -0,0 +1,410 @@
+package org.gicentre.handy;
+
+import processing.core.PApplet;
+
+//*****************************************************************************************
+/** Immutable set of sketchy style settings that can be applied to a handy renderer in a single
+ *  call. Because a style cannot be changed once created, the same instance may be shared between
+ *  renderers, threads and data series, and any values derived from the settings, such as the
+ *  trigonometric functions of the hachure angle, are calculated only once when the style is
+ *  created. Modified styles are created with the <code>with...()</code> methods, each of which
+ *  returns a new style leaving the original unchanged.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public final class HandyStyle
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	/** Default style matching that of a newly created handy renderer. */
+	public static final HandyStyle DEFAULT = new HandyStyle();
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	final int fillColour, strokeColour;			// Main fill and stroke colours.
+	final int bgColour, secondaryColour;		// Background colour and secondary fill colour.
+	final boolean overrideFillColour;			// Determines whether the fill colour overrides the sketch's fill colour.
+	final boolean overrideStrokeColour;			// Determines whether the stroke colour overrides the sketch's stroke colour.
+	final boolean useSecondary;					// Determines whether secondary colour is to be used.
+	final boolean isAlternating;				// Determines whether hachuring alternates in direction in continuous stroke.
+	final float hachureDegrees;					// Angle of diagonal hachuring in degrees.
+	final float hachureAngle;					// Angle of diagonal hachuring in radians.
+	final float cosAngle, sinAngle, tanAngle;	// Precalculated trigonometric functions of the hachure angle.
+	final float anglePerturbation;				// Random perturbation in hachure angle per object drawn.
+	final float fillWeight, fillGap;			// Hachure filling characteristics.
+	final float strokeWeight;					// Stroke weight for lines.
+	final float roughness;						// Scaling for random perturbations.
+	final float bowing;							// Scaling of the 'bowing' of lines at their midpoint.
+
+	// ---------------------------------- Constructors -----------------------------------
+
+	/** Creates a style with default settings. Fill and stroke colours are taken from the sketch
+	 *  rather than the style, the outline and hachure weights and hachure gap are based on the
+	 *  sketch's stroke weight, the hachure angle is -41 degrees and the roughness and bowing are 1.
+	 */
+	public HandyStyle()
+	{
+		this(0xffffffff,0xff000000,0xffffffff,0xffffffff,false,false,false,false,-41,0,-1,-1,-1,1,1);
+	}
+
+	/** Creates a style with the given settings, calculating any derived values.
+	 */
+	HandyStyle(int fillColour, int strokeColour, int bgColour, int secondaryColour,
+			   boolean overrideFillColour, boolean overrideStrokeColour, boolean useSecondary, boolean isAlternating,
+			   float hachureDegrees, float anglePerturbation, float fillWeight, float fillGap, float strokeWeight,
+			   float roughness, float bowing)
+	{
+		this.fillColour           = fillColour;
+		this.strokeColour         = strokeColour;
+		this.bgColour             = bgColour;
+		this.secondaryColour      = secondaryColour;
+		this.overrideFillColour   = overrideFillColour;
+		this.overrideStrokeColour = overrideStrokeColour;
+		this.useSecondary         = useSecondary;
+		this.isAlternating        = isAlternating;
+		this.hachureDegrees       = hachureDegrees%180;
+		this.hachureAngle         = PApplet.radians(this.hachureDegrees);
+		this.cosAngle             = (float)Math.cos(hachureAngle);
+		this.sinAngle             = (float)Math.sin(hachureAngle);
+		this.tanAngle             = (float)Math.tan(hachureAngle);
+		this.anglePerturbation    = anglePerturbation;
+		this.fillWeight           = fillWeight;
+		this.fillGap              = fillGap;
+		this.strokeWeight         = strokeWeight;
+		this.roughness            = Math.max(0,Math.min(roughness, 10));
+		this.bowing               = Math.max(0,Math.min(bowing, 10));
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Creates a copy of this style with the given fill colour. Note this will only have an effect if
+	 *  the fill colour is set to override that of the sketch.
+	 *  @param colour Fill colour to use.
+	 *  @return New style with the given fill colour.
+	 */
+	public HandyStyle withFillColour(int colour)
+	{
+		return new HandyStyle(colour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given stroke colour. Note this will only have an effect if
+	 *  the stroke colour is set to override that of the sketch.
+	 *  @param colour Stroke colour to use.
+	 *  @return New style with the given stroke colour.
+	 */
+	public HandyStyle withStrokeColour(int colour)
+	{
+		return new HandyStyle(fillColour,colour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given background colour for closed shapes.
+	 *  @param colour Background colour.
+	 *  @return New style with the given background colour.
+	 */
+	public HandyStyle withBackgroundColour(int colour)
+	{
+		return new HandyStyle(fillColour,strokeColour,colour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given secondary colour for line filling. Note this will only have an
+	 *  effect if the secondary colour is used.
+	 *  @param colour Colour to tint line filling.
+	 *  @return New style with the given secondary colour.
+	 */
+	public HandyStyle withSecondaryColour(int colour)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,colour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style that does or does not override the sketch's fill colour.
+	 *  @param override If true the interior colour of features is determined by the style's fill colour,
+	 *                  if not, it is determined by the sketch's fill colour setting.
+	 *  @return New style with the given fill colour override.
+	 */
+	public HandyStyle withOverrideFillColour(boolean override)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,override,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style that does or does not override the sketch's stroke colour.
+	 *  @param override If true the stroke colour of features is determined by the style's stroke colour,
+	 *                  if not, it is determined by the sketch's stroke colour setting.
+	 *  @return New style with the given stroke colour override.
+	 */
+	public HandyStyle withOverrideStrokeColour(boolean override)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,override,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style that does or does not use the secondary colour for filling lines.
+	 *  @param useSecondary If true a secondary colour is used.
+	 *  @return New style with the given secondary colour setting.
+	 */
+	public HandyStyle withUseSecondaryColour(boolean useSecondary)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style that does or does not use alternating (zig-zag) hachures.
+	 *  @param alternate Zig-zag filling used if true, parallel lines if not.
+	 *  @return New style with the given hachure alternation.
+	 */
+	public HandyStyle withIsAlternating(boolean alternate)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  alternate,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given hachure angle.
+	 *  @param degrees Angle of hachures in degrees where 0 is vertical, 45 is NE-SW and 90 is horizontal.
+	 *  @return New style with the given hachure angle.
+	 */
+	public HandyStyle withHachureAngle(float degrees)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,degrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given maximum random perturbation in hachure angle per object.
+	 *  @param degrees Maximum hachure perturbation angle.
+	 *  @return New style with the given hachure perturbation.
+	 */
+	public HandyStyle withHachurePerturbationAngle(float degrees)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,degrees,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given thickness of fill lines.
+	 *  @param weight Fill weight in pixel units. If zero or negative, fill weight is based on the sketch's strokeWeight setting.
+	 *  @return New style with the given fill weight.
+	 */
+	public HandyStyle withFillWeight(float weight)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,weight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given gap between fill lines.
+	 *  @param gap Gap between fill lines in pixel units. If zero, solid fill used; if negative, gap based on strokeWeight setting.
+	 *  @return New style with the given fill gap.
+	 */
+	public HandyStyle withFillGap(float gap)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,gap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given thickness of outer lines.
+	 *  @param weight Stroke weight in pixel units. If zero or negative, stroke weight is based on the sketch's strokeWeight setting.
+	 *  @return New style with the given stroke weight.
+	 */
+	public HandyStyle withStrokeWeight(float weight)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,weight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given roughness. 1 is a typically neat sketchiness, 0 is very precise,
+	 *  5 is very sketchy. Values are capped at 10.
+	 *  @param roughness The sketchiness of the rendering.
+	 *  @return New style with the given roughness.
+	 */
+	public HandyStyle withRoughness(float roughness)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Creates a copy of this style with the given amount of line 'bowing'. Values are capped at 10.
+	 *  @param bowing The degree of bowing in the rendering of straight lines.
+	 *  @return New style with the given bowing.
+	 */
+	public HandyStyle withBowing(float bowing)
+	{
+		return new HandyStyle(fillColour,strokeColour,bgColour,secondaryColour,overrideFillColour,overrideStrokeColour,useSecondary,
+							  isAlternating,hachureDegrees,anglePerturbation,fillWeight,fillGap,strokeWeight,roughness,bowing);
+	}
+
+	/** Reports the fill colour of this style.
+	 *  @return Fill colour.
+	 */
+	public int getFillColour()
+	{
+		return fillColour;
+	}
+
+	/** Reports the stroke colour of this style.
+	 *  @return Stroke colour.
+	 */
+	public int getStrokeColour()
+	{
+		return strokeColour;
+	}
+
+	/** Reports the background colour used for closed shapes.
+	 *  @return Background colour.
+	 */
+	public int getBackgroundColour()
+	{
+		return bgColour;
+	}
+
+	/** Reports the secondary colour used for line filling.
+	 *  @return Secondary colour.
+	 */
+	public int getSecondaryColour()
+	{
+		return secondaryColour;
+	}
+
+	/** Reports whether the style's fill colour overrides that of the sketch.
+	 *  @return True if the fill colour is overridden.
+	 */
+	public boolean getOverrideFillColour()
+	{
+		return overrideFillColour;
+	}
+
+	/** Reports whether the style's stroke colour overrides that of the sketch.
+	 *  @return True if the stroke colour is overridden.
+	 */
+	public boolean getOverrideStrokeColour()
+	{
+		return overrideStrokeColour;
+	}
+
+	/** Reports whether the secondary colour is used for filling lines.
+	 *  @return True if the secondary colour is used.
+	 */
+	public boolean getUseSecondaryColour()
+	{
+		return useSecondary;
+	}
+
+	/** Reports whether hachures are drawn as a single zig-zag stroke.
+	 *  @return True if hachuring alternates in direction.
+	 */
+	public boolean getIsAlternating()
+	{
+		return isAlternating;
+	}
+
+	/** Reports the hachure angle of this style.
+	 *  @return Hachure angle in degrees.
+	 */
+	public float getHachureAngle()
+	{
+		return hachureDegrees;
+	}
+
+	/** Reports the maximum random perturbation in hachure angle per object.
+	 *  @return Maximum hachure perturbation angle in degrees.
+	 */
+	public float getHachurePerturbationAngle()
+	{
+		return anglePerturbation;
+	}
+
+	/** Reports the thickness of fill lines.
+	 *  @return Fill weight in pixel units, or a zero or negative value if based on the sketch's strokeWeight.
+	 */
+	public float getFillWeight()
+	{
+		return fillWeight;
+	}
+
+	/** Reports the gap between fill lines.
+	 *  @return Gap in pixel units, 0 for solid fill or a negative value if based on the sketch's strokeWeight.
+	 */
+	public float getFillGap()
+	{
+		return fillGap;
+	}
+
+	/** Reports the thickness of outer lines.
+	 *  @return Stroke weight in pixel units, or a zero or negative value if based on the sketch's strokeWeight.
+	 */
+	public float getStrokeWeight()
+	{
+		return strokeWeight;
+	}
+
+	/** Reports the roughness of this style.
+	 *  @return Roughness of the sketchy rendering.
+	 */
+	public float getRoughness()
+	{
+		return roughness;
+	}
+
+	/** Reports the degree of bowing of straight lines.
+	 *  @return Bowing of the sketchy rendering.
+	 */
+	public float getBowing()
+	{
+		return bowing;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int h = fillColour;
+		h = 31*h + strokeColour;
+		h = 31*h + bgColour;
+		h = 31*h + secondaryColour;
+		h = 31*h + (overrideFillColour ? 1 : 0) + (overrideStrokeColour ? 2 : 0) + (useSecondary ? 4 : 0) + (isAlternating ? 8 : 0);
+		h = 31*h + Float.floatToIntBits(hachureDegrees);
+		h = 31*h + Float.floatToIntBits(anglePerturbation);
+		h = 31*h + Float.floatToIntBits(fillWeight);
+		h = 31*h + Float.floatToIntBits(fillGap);
+		h = 31*h + Float.floatToIntBits(strokeWeight);
+		h = 31*h + Float.floatToIntBits(roughness);
+		h = 31*h + Float.floatToIntBits(bowing);
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (obj == this)
+		{
+			return true;
+		}
+		if (!(obj instanceof HandyStyle))
+		{
+			return false;
+		}
+		HandyStyle other = (HandyStyle)obj;
+		return (fillColour == other.fillColour) && (strokeColour == other.strokeColour) &&
+			   (bgColour == other.bgColour) && (secondaryColour == other.secondaryColour) &&
+			   (overrideFillColour == other.overrideFillColour) && (overrideStrokeColour == other.overrideStrokeColour) &&
+			   (useSecondary == other.useSecondary) && (isAlternating == other.isAlternating) &&
+			   (hachureDegrees == other.hachureDegrees) && (anglePerturbation == other.anglePerturbation) &&
+			   (fillWeight == other.fillWeight) && (fillGap == other.fillGap) && (strokeWeight == other.strokeWeight) &&
+			   (roughness == other.roughness) && (bowing == other.bowing);
+	}
+}
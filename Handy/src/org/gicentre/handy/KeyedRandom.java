@@ -0,0 +1,110 @@
+package org.gicentre.handy;
+
+import java.util.Random;
+
+//*****************************************************************************************
+/** Counter-based random number generator whose output depends only on a global seed and a
+ *  key identifying the mark being drawn. Unlike a sequential generator, the numbers used for
+ *  one mark do not depend on how many were consumed by the marks drawn before it, so a mark
+ *  looks the same whatever else is drawn and in whatever order. Each number is produced by
+ *  mixing the seed, key, phase and position in the stream with the SplitMix64 finaliser.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class KeyedRandom extends Random
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private static final long serialVersionUID = 1L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;	// Weyl sequence increment.
+
+	private long globalSeed;		// Seed shared by all marks.
+	private long streamBase;		// Start of the stream for the current mark and phase.
+	private long counter;			// Position within the current stream.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a keyed generator with the given global seed.
+	 *  @param seed Seed shared by all marks.
+	 */
+	KeyedRandom(long seed)
+	{
+		super(seed);
+		setKey(0,0);
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Sets the global seed shared by all marks and restarts the stream of the current key.
+	 *  @param seed Seed shared by all marks.
+	 */
+	@Override
+	public void setSeed(long seed)
+	{
+		// Called by the superclass constructor before this class is initialised, so avoid relying on any state.
+		globalSeed = seed;
+		streamBase = mix(seed);
+		counter = 0;
+	}
+
+	/** Starts the stream of random numbers for the given mark. Separate phases of the same mark, such as
+	 *  its fill and its outline, have independent streams so that each can be generated separately.
+	 *  @param key Key identifying the mark.
+	 *  @param phase Phase of the mark being drawn.
+	 */
+	void setKey(long key, int phase)
+	{
+		streamBase = mix(mix(globalSeed ^ mix(key)) + phase*GOLDEN_GAMMA);
+		counter = 0;
+	}
+
+	/** Combines a hash with a coordinate value. Used to build keys from the geometry of a mark.
+	 *  @param hash Hash built from earlier values.
+	 *  @param value Value to add to the hash.
+	 *  @return New hash.
+	 */
+	static long hash(long hash, float value)
+	{
+		return mix(hash + GOLDEN_GAMMA + Float.floatToIntBits(value + 0f));
+	}
+
+	/** Generates the next random number in the current stream.
+	 *  @param bits Number of random bits required.
+	 *  @return Random bits.
+	 */
+	@Override
+	protected int next(int bits)
+	{
+		counter++;
+		return (int)(mix(streamBase + counter*GOLDEN_GAMMA) >>> (64-bits));
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Scrambles the bits of the given value using the SplitMix64 finaliser.
+	 *  @param z Value to scramble.
+	 *  @return Scrambled value.
+	 */
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,85 @@
+package org.gicentre.handy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+//*****************************************************************************************
+/** Loads coordinates stored as 32 bit floating point numbers in a binary file by mapping the
+ *  file into memory. The resulting buffer can be passed directly to the <code>FloatBuffer</code>
+ *  versions of <code>HandyRenderer.shape()</code> and <code>HandyRenderer.polyLine()</code> and to
+ *  <code>Simplifier.simplify()</code>, which read interleaved coordinates without copying them. The
+ *  operating system loads parts of the file only as they are read, so very large files can be used
+ *  without reading them into the Java heap.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class MappedGeometry
+{
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Prevents instantiation of this class of static methods.
+	 */
+	private MappedGeometry()
+	{
+		// Nothing to do here.
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Maps the whole of the given file of coordinates into memory.
+	 *  @param file File containing 32 bit floating point values.
+	 *  @param order Byte order in which the values are stored.
+	 *  @return Read-only buffer of the file's values.
+	 *  @throws IOException If the file cannot be read or mapped.
+	 */
+	public static FloatBuffer map(File file, ByteOrder order) throws IOException
+	{
+		return map(file,0,file.length(),order);
+	}
+
+	/** Maps part of the given file of coordinates into memory. A single mapping can be at most 2Gb in size,
+	 *  so larger files should be mapped in several parts.
+	 *  @param file File containing 32 bit floating point values.
+	 *  @param position Position in bytes within the file at which the mapped part starts.
+	 *  @param size Number of bytes to map. Any partial value at the end is ignored.
+	 *  @param order Byte order in which the values are stored.
+	 *  @return Read-only buffer of the mapped values.
+	 *  @throws IOException If the file cannot be read or mapped.
+	 */
+	public static FloatBuffer map(File file, long position, long size, ByteOrder order) throws IOException
+	{
+		RandomAccessFile input = new RandomAccessFile(file,"r");
+		try
+		{
+			// The mapping remains valid after the channel is closed.
+			MappedByteBuffer bytes = input.getChannel().map(FileChannel.MapMode.READ_ONLY,position,size);
+			bytes.order(order);
+			return bytes.asFloatBuffer();
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+}
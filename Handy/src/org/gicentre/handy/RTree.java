@@ -0,0 +1,463 @@
+package org.gicentre.handy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//*****************************************************************************************
+/** Simple R-tree spatial index for storing items with rectangular bounds. Uses Guttman's
+ *  quadratic split algorithm and supports insertion, deletion and rectangular range queries.
+ *  @param <T> Type of item stored in the tree.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class RTree<T>
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private static final int MAX_ENTRIES = 8;	// Maximum number of children per node.
+	private static final int MIN_ENTRIES = 3;	// Minimum number of children of a non-root node.
+
+	private Node root;							// Root of the tree.
+	private int size;							// Number of items stored in the tree.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates an empty R-tree.
+	 */
+	RTree()
+	{
+		clear();
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Removes all items from the tree.
+	 */
+	void clear()
+	{
+		root = new Node(true);
+		size = 0;
+	}
+
+	/** Reports the number of items stored in the tree.
+	 *  @return Number of items in the tree.
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/** Adds the given item with the given bounds to the tree.
+	 *  @param minX Minimum x coordinate of the item's bounds.
+	 *  @param minY Minimum y coordinate of the item's bounds.
+	 *  @param maxX Maximum x coordinate of the item's bounds.
+	 *  @param maxY Maximum y coordinate of the item's bounds.
+	 *  @param item Item to store.
+	 */
+	void insert(float minX, float minY, float maxX, float maxY, T item)
+	{
+		Node entry = new Node(false);
+		entry.item = item;
+		entry.setBounds(minX,minY,maxX,maxY);
+		insert(entry,chooseLeaf(entry));
+		size++;
+	}
+
+	/** Removes the given item from the tree. The bounds must be the same as those used when the item
+	 *  was inserted.
+	 *  @param minX Minimum x coordinate of the item's bounds.
+	 *  @param minY Minimum y coordinate of the item's bounds.
+	 *  @param maxX Maximum x coordinate of the item's bounds.
+	 *  @param maxY Maximum y coordinate of the item's bounds.
+	 *  @param item Item to remove.
+	 *  @return True if the item was found and removed.
+	 */
+	boolean remove(float minX, float minY, float maxX, float maxY, T item)
+	{
+		Node entry = findEntry(root,minX,minY,maxX,maxY,item);
+		if (entry == null)
+		{
+			return false;
+		}
+		Node leaf = entry.parent;
+		leaf.children.remove(entry);
+		size--;
+		condense(leaf);
+		return true;
+	}
+
+	/** Finds all items whose bounds intersect the given rectangle.
+	 *  @param minX Minimum x coordinate of the query rectangle.
+	 *  @param minY Minimum y coordinate of the query rectangle.
+	 *  @param maxX Maximum x coordinate of the query rectangle.
+	 *  @param maxY Maximum y coordinate of the query rectangle.
+	 *  @param results List to which intersecting items are added.
+	 */
+	void search(float minX, float minY, float maxX, float maxY, List<T> results)
+	{
+		if (size > 0)
+		{
+			search(root,minX,minY,maxX,maxY,results);
+		}
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Recursively finds the items intersecting the given rectangle.
+	 */
+	private void search(Node node, float minX, float minY, float maxX, float maxY, List<T> results)
+	{
+		for (Node child : node.children)
+		{
+			if (child.intersects(minX,minY,maxX,maxY))
+			{
+				if (node.isLeaf)
+				{
+					results.add(child.item);
+				}
+				else
+				{
+					search(child,minX,minY,maxX,maxY,results);
+				}
+			}
+		}
+	}
+
+	/** Recursively finds the leaf entry storing the given item.
+	 *  @return The entry holding the item or null if not found.
+	 */
+	private Node findEntry(Node node, float minX, float minY, float maxX, float maxY, T item)
+	{
+		for (Node child : node.children)
+		{
+			if (child.contains(minX,minY,maxX,maxY))
+			{
+				if (node.isLeaf)
+				{
+					if (item.equals(child.item))
+					{
+						return child;
+					}
+				}
+				else
+				{
+					Node entry = findEntry(child,minX,minY,maxX,maxY,item);
+					if (entry != null)
+					{
+						return entry;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/** Finds the leaf node whose bounds need least enlargement to accommodate the given entry.
+	 *  @param entry Entry to be inserted.
+	 *  @return Leaf node in which to insert the entry.
+	 */
+	private Node chooseLeaf(Node entry)
+	{
+		Node node = root;
+		while (node.isLeaf == false)
+		{
+			Node bestChild = null;
+			float leastEnlargement = Float.MAX_VALUE;
+			float leastArea = Float.MAX_VALUE;
+
+			for (Node child : node.children)
+			{
+				float area = child.area();
+				float enlargement = child.unionArea(entry) - area;
+				if ((enlargement < leastEnlargement) || ((enlargement == leastEnlargement) && (area < leastArea)))
+				{
+					bestChild = child;
+					leastEnlargement = enlargement;
+					leastArea = area;
+				}
+			}
+			node = bestChild;
+		}
+		return node;
+	}
+
+	/** Adds the given entry to the given node, splitting nodes and adjusting bounds up the tree as necessary.
+	 *  @param entry Entry or subtree to add.
+	 *  @param node Node to which the entry is added.
+	 */
+	private void insert(Node entry, Node node)
+	{
+		node.add(entry);
+		Node current = node;
+		Node sibling = null;
+
+		if (current.children.size() > MAX_ENTRIES)
+		{
+			sibling = split(current);
+		}
+
+		// Propagate changes up the tree.
+		while (current != root)
+		{
+			Node parent = current.parent;
+			parent.updateBounds();
+
+			if (sibling != null)
+			{
+				parent.add(sibling);
+				sibling = (parent.children.size() > MAX_ENTRIES) ? split(parent) : null;
+			}
+			current = parent;
+		}
+
+		if (sibling != null)
+		{
+			// Root has been split, so grow tree upwards.
+			Node newRoot = new Node(false);
+			newRoot.add(root);
+			newRoot.add(sibling);
+			root = newRoot;
+		}
+	}
+
+	/** Splits the children of the given node into two groups using the quadratic split algorithm.
+	 *  The given node retains the first group and a new node containing the second group is returned.
+	 *  @param node Node to split.
+	 *  @return New sibling node containing the second group of children.
+	 */
+	private Node split(Node node)
+	{
+		List<Node> remaining = new ArrayList<Node>(node.children);
+		node.children.clear();
+		Node sibling = new Node(node.isLeaf);
+
+		// Pick the two seeds that would waste most area if grouped together.
+		int seed1 = 0;
+		int seed2 = 1;
+		float maxWaste = -Float.MAX_VALUE;
+		for (int i=0; i<remaining.size()-1; i++)
+		{
+			for (int j=i+1; j<remaining.size(); j++)
+			{
+				Node a = remaining.get(i);
+				Node b = remaining.get(j);
+				float waste = a.unionArea(b) - a.area() - b.area();
+				if (waste > maxWaste)
+				{
+					maxWaste = waste;
+					seed1 = i;
+					seed2 = j;
+				}
+			}
+		}
+		Node first  = remaining.get(seed1);
+		Node second = remaining.get(seed2);
+		remaining.remove(seed2);
+		remaining.remove(seed1);
+		node.add(first);
+		node.setBounds(first.minX,first.minY,first.maxX,first.maxY);
+		sibling.add(second);
+
+		while (remaining.size() > 0)
+		{
+			// If one group needs all the remaining entries to reach the minimum, assign them all.
+			if (node.children.size() + remaining.size() == MIN_ENTRIES)
+			{
+				for (Node entry : remaining)
+				{
+					node.add(entry);
+				}
+				break;
+			}
+			if (sibling.children.size() + remaining.size() == MIN_ENTRIES)
+			{
+				for (Node entry : remaining)
+				{
+					sibling.add(entry);
+				}
+				break;
+			}
+
+			// Pick the entry with the greatest preference for one group.
+			int nextIndex = 0;
+			float maxDiff = -1;
+			float growth1 = 0, growth2 = 0;
+			for (int i=0; i<remaining.size(); i++)
+			{
+				Node entry = remaining.get(i);
+				float d1 = node.unionArea(entry) - node.area();
+				float d2 = sibling.unionArea(entry) - sibling.area();
+				if (Math.abs(d1-d2) > maxDiff)
+				{
+					maxDiff = Math.abs(d1-d2);
+					nextIndex = i;
+					growth1 = d1;
+					growth2 = d2;
+				}
+			}
+
+			Node entry = remaining.remove(nextIndex);
+			if ((growth1 < growth2) ||
+				((growth1 == growth2) && (node.area() < sibling.area())) ||
+				((growth1 == growth2) && (node.area() == sibling.area()) && (node.children.size() <= sibling.children.size())))
+			{
+				node.add(entry);
+			}
+			else
+			{
+				sibling.add(entry);
+			}
+		}
+		return sibling;
+	}
+
+	/** Removes any under-filled nodes on the path from the given leaf to the root, reinserting their items,
+	 *  and updates the bounds of the remaining nodes.
+	 *  @param leaf Leaf node from which an entry has been removed.
+	 */
+	private void condense(Node leaf)
+	{
+		List<Node> orphans = new ArrayList<Node>();
+		Node node = leaf;
+
+		while (node != root)
+		{
+			Node parent = node.parent;
+			if (node.children.size() < MIN_ENTRIES)
+			{
+				parent.children.remove(node);
+				collectEntries(node,orphans);
+			}
+			else
+			{
+				node.updateBounds();
+			}
+			node = parent;
+		}
+		root.updateBounds();
+
+		// Shorten the tree if the root has only one child.
+		while ((root.isLeaf == false) && (root.children.size() == 1))
+		{
+			root = root.children.get(0);
+			root.parent = null;
+		}
+		if ((root.isLeaf == false) && (root.children.isEmpty()))
+		{
+			root = new Node(true);
+		}
+
+		for (Node orphan : orphans)
+		{
+			insert(orphan,chooseLeaf(orphan));
+		}
+	}
+
+	/** Adds all the item entries stored below the given node to the given list.
+	 */
+	private void collectEntries(Node node, List<Node> entries)
+	{
+		for (Node child : node.children)
+		{
+			if (node.isLeaf)
+			{
+				entries.add(child);
+			}
+			else
+			{
+				collectEntries(child,entries);
+			}
+		}
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** A node in the tree. Item entries are stored as childless nodes within leaf nodes.
+	 */
+	private class Node
+	{
+		float minX,minY,maxX,maxY;
+		boolean isLeaf;
+		Node parent;
+		List<Node> children;
+		T item;
+
+		Node(boolean isLeaf)
+		{
+			this.isLeaf = isLeaf;
+			this.children = new ArrayList<Node>(MAX_ENTRIES+1);
+			setBounds(Float.MAX_VALUE,Float.MAX_VALUE,-Float.MAX_VALUE,-Float.MAX_VALUE);
+		}
+
+		void setBounds(float minX, float minY, float maxX, float maxY)
+		{
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+
+		void add(Node child)
+		{
+			children.add(child);
+			child.parent = this;
+			minX = Math.min(minX, child.minX);
+			minY = Math.min(minY, child.minY);
+			maxX = Math.max(maxX, child.maxX);
+			maxY = Math.max(maxY, child.maxY);
+		}
+
+		void updateBounds()
+		{
+			setBounds(Float.MAX_VALUE,Float.MAX_VALUE,-Float.MAX_VALUE,-Float.MAX_VALUE);
+			for (Node child : children)
+			{
+				minX = Math.min(minX, child.minX);
+				minY = Math.min(minY, child.minY);
+				maxX = Math.max(maxX, child.maxX);
+				maxY = Math.max(maxY, child.maxY);
+			}
+		}
+
+		float area()
+		{
+			if (minX > maxX)
+			{
+				return 0;
+			}
+			return (maxX-minX)*(maxY-minY);
+		}
+
+		float unionArea(Node other)
+		{
+			return (Math.max(maxX,other.maxX)-Math.min(minX,other.minX))*
+				   (Math.max(maxY,other.maxY)-Math.min(minY,other.minY));
+		}
+
+		boolean intersects(float qMinX, float qMinY, float qMaxX, float qMaxY)
+		{
+			return (minX <= qMaxX) && (maxX >= qMinX) && (minY <= qMaxY) && (maxY >= qMinY);
+		}
+
+		boolean contains(float qMinX, float qMinY, float qMaxX, float qMaxY)
+		{
+			return (minX <= qMinX) && (maxX >= qMaxX) && (minY <= qMinY) && (maxY >= qMaxY);
+		}
+	}
+}
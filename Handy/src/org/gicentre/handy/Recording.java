@@ -0,0 +1,904 @@
+package org.gicentre.handy;
+
+import java.util.BitSet;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PShape;
+
+//*****************************************************************************************
+/** Stores the geometry and style changes emitted by a handy renderer when drawing one or
+ *  more primitives. Because the random offsets have already been applied, replaying a
+ *  recording produces exactly the same sketchy appearance each time without regenerating
+ *  any of the jittered geometry. Recordings are immutable once created.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class Recording
+{
+	// ---------------------------------- Operation codes ----------------------------------
+
+	static final int FILL         = 1;		// Followed by 1 int (colour).
+	static final int NO_FILL      = 2;
+	static final int STROKE       = 3;		// Followed by 1 int (colour).
+	static final int NO_STROKE    = 4;
+	static final int WEIGHT       = 5;		// 1 float (stroke weight).
+	static final int BEGIN_SHAPE  = 6;		// Followed by 1 int (shape kind).
+	static final int VERTEX       = 7;		// 2 floats.
+	static final int CURVE_VERTEX = 8;		// 2 floats.
+	static final int END_SHAPE    = 9;		// Followed by 1 int (end mode).
+	static final int POINT        = 10;		// 2 floats.
+	static final int LINE         = 11;		// 4 floats.
+	static final int TRIANGLE     = 12;		// 6 floats.
+	static final int QUAD         = 13;		// 8 floats.
+	static final int RECT         = 14;		// 4 floats (left, top, right, bottom).
+	static final int ELLIPSE      = 15;		// 4 floats (centre x, centre y, x radius, y radius).
+	static final int ARC          = 16;		// 6 floats (centre, radii, start and stop angles).
+	static final int CURVE        = 17;		// 8 floats.
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private final int[] ops;					// Operation codes and any integer arguments.
+	private final float[] coords;				// Floating point arguments of each operation.
+	private final float minX,minY,maxX,maxY;	// Bounds of the recorded geometry including stroke width.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a recording from the given operation and coordinate buffers. The arrays are
+	 *  not copied so should not be modified after the recording has been created.
+	 *  @param ops Operation codes and their integer arguments.
+	 *  @param coords Coordinate arguments of each operation.
+	 *  @param minX Minimum x coordinate of the recorded geometry.
+	 *  @param minY Minimum y coordinate of the recorded geometry.
+	 *  @param maxX Maximum x coordinate of the recorded geometry.
+	 *  @param maxY Maximum y coordinate of the recorded geometry.
+	 */
+	Recording(int[] ops, float[] coords, float minX, float minY, float maxX, float maxY)
+	{
+		this.ops    = ops;
+		this.coords = coords;
+		this.minX   = minX;
+		this.minY   = minY;
+		this.maxX   = maxX;
+		this.maxY   = maxY;
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Reports the minimum x coordinate of the recorded geometry, including stroke width.
+	 *  @return Left-hand edge of the recording's bounding box.
+	 */
+	float getMinX()
+	{
+		return minX;
+	}
+
+	/** Reports the minimum y coordinate of the recorded geometry, including stroke width.
+	 *  @return Top edge of the recording's bounding box.
+	 */
+	float getMinY()
+	{
+		return minY;
+	}
+
+	/** Reports the maximum x coordinate of the recorded geometry, including stroke width.
+	 *  @return Right-hand edge of the recording's bounding box.
+	 */
+	float getMaxX()
+	{
+		return maxX;
+	}
+
+	/** Reports the maximum y coordinate of the recorded geometry, including stroke width.
+	 *  @return Bottom edge of the recording's bounding box.
+	 */
+	float getMaxY()
+	{
+		return maxY;
+	}
+
+	/** Reports whether or not anything was drawn in this recording.
+	 *  @return True if the recording contains no geometry.
+	 */
+	boolean isEmpty()
+	{
+		return minX > maxX;
+	}
+
+	/** Draws the recorded geometry into the given graphics context.
+	 *  @param g Graphics context into which the recording is drawn.
+	 */
+	void replay(PGraphics g)
+	{
+		replay(g,0,0,1,1);
+	}
+
+	/** Draws the recorded geometry into the given graphics context after translating it by the
+	 *  given amount.
+	 *  @param g Graphics context into which the recording is drawn.
+	 *  @param tx Translation in the x direction.
+	 *  @param ty Translation in the y direction.
+	 */
+	void replay(PGraphics g, float tx, float ty)
+	{
+		replay(g,tx,ty,1,1);
+	}
+
+	/** Draws the recorded geometry into the given graphics context after scaling and then translating
+	 *  it. Transformation is applied to the coordinates rather than the graphics context so that
+	 *  stroke weights are unaffected by the scaling.
+	 *  @param g Graphics context into which the recording is drawn.
+	 *  @param tx Translation in the x direction.
+	 *  @param ty Translation in the y direction.
+	 *  @param sx Scaling in the x direction.
+	 *  @param sy Scaling in the y direction.
+	 */
+	void replay(PGraphics g, float tx, float ty, float sx, float sy)
+	{
+		replay(g,tx,ty,sx,sy,1,null);
+	}
+
+	/** Draws the recorded geometry into the given graphics context after uniformly scaling and then translating
+	 *  it. Unlike <code>replay()</code>, stroke weights are scaled along with the coordinates, giving the same
+	 *  result as drawing the shape from <code>toShape()</code> with the graphics context transformed. The
+	 *  scaling is nonetheless applied to the coordinates so that graphics contexts that ignore transformations,
+	 *  such as recording ones, are also scaled.
+	 *  @param g Graphics context into which the recording is drawn.
+	 *  @param tx Translation in the x direction.
+	 *  @param ty Translation in the y direction.
+	 *  @param scale Scaling applied to coordinates and stroke weights.
+	 */
+	void replayScaled(PGraphics g, float tx, float ty, float scale)
+	{
+		replay(g,tx,ty,scale,scale,scale,null);
+	}
+
+	/** Draws the recorded geometry into the given graphics context, omitting any of the given parts. A
+	 *  part is a single primitive or a complete shape defined between <code>beginShape()</code> and
+	 *  <code>endShape()</code>, numbered in the order in which they were recorded. Style changes are
+	 *  always applied so that the remaining parts are drawn as they would have been without omission.
+	 *  @param g Graphics context into which the recording is drawn.
+	 *  @param hiddenParts Parts not to draw, or null if all parts are to be drawn.
+	 */
+	void replay(PGraphics g, BitSet hiddenParts)
+	{
+		replay(g,0,0,1,1,1,hiddenParts);
+	}
+
+	/** Provides the bounds of each part of the recording, including stroke width. Parts are numbered
+	 *  as they are for <code>replay()</code>.
+	 *  @return Bounds of each part stored as consecutive (minX,minY,maxX,maxY) values.
+	 */
+	float[] getPartBounds()
+	{
+		int numParts = 0;
+		for (int i=0; i<ops.length; i++)
+		{
+			int op = ops[i];
+			if ((op == FILL) || (op == STROKE) || (op == BEGIN_SHAPE) || (op == END_SHAPE))
+			{
+				i++;		// Skip integer argument.
+			}
+			if ((op == BEGIN_SHAPE) || (op >= POINT))
+			{
+				numParts++;
+			}
+		}
+
+		float[] bounds = new float[numParts*4];
+		float border = 1;
+		boolean isStroke = true;
+		int part = -1;
+		int c=0;
+		int i=0;
+		while (i < ops.length)
+		{
+			int op = ops[i++];
+			int numPoints = 0;
+			switch (op)
+			{
+				case FILL:
+				case END_SHAPE:
+					i++;
+					break;
+				case NO_FILL:
+					break;
+				case STROKE:
+					isStroke = true;
+					i++;
+					break;
+				case NO_STROKE:
+					isStroke = false;
+					break;
+				case WEIGHT:
+					border = coords[c++]/2+1;
+					break;
+				case BEGIN_SHAPE:
+					i++;
+					part++;
+					bounds[part*4]   = Float.MAX_VALUE;
+					bounds[part*4+1] = Float.MAX_VALUE;
+					bounds[part*4+2] = -Float.MAX_VALUE;
+					bounds[part*4+3] = -Float.MAX_VALUE;
+					break;
+				case VERTEX:
+				case CURVE_VERTEX:
+					addToBounds(bounds,part,coords[c],coords[c+1],isStroke?border:1);
+					c+=2;
+					break;
+				case ELLIPSE:
+				case ARC:
+					part++;
+					bounds[part*4]   = coords[c]-coords[c+2];
+					bounds[part*4+1] = coords[c+1]-coords[c+3];
+					bounds[part*4+2] = coords[c]+coords[c+2];
+					bounds[part*4+3] = coords[c+1]+coords[c+3];
+					addToBounds(bounds,part,bounds[part*4],bounds[part*4+1],isStroke?border:1);
+					addToBounds(bounds,part,bounds[part*4+2],bounds[part*4+3],isStroke?border:1);
+					c += (op == ARC) ? 6 : 4;
+					break;
+				default:
+					// Primitives defined by a fixed number of points.
+					numPoints = (op==POINT) ? 1 : (op==LINE) ? 2 : (op==TRIANGLE) ? 3 : (op==RECT) ? 2 : 4;
+					part++;
+					bounds[part*4]   = Float.MAX_VALUE;
+					bounds[part*4+1] = Float.MAX_VALUE;
+					bounds[part*4+2] = -Float.MAX_VALUE;
+					bounds[part*4+3] = -Float.MAX_VALUE;
+					for (int p=0; p<numPoints; p++)
+					{
+						addToBounds(bounds,part,coords[c+p*2],coords[c+p*2+1],isStroke?border:1);
+					}
+					c += numPoints*2;
+					break;
+			}
+		}
+		return bounds;
+	}
+
+	/** Draws the recorded geometry into the given graphics context after scaling and then translating
+	 *  it, omitting any of the given parts.
+	 *  @param g Graphics context into which the recording is drawn.
+	 *  @param tx Translation in the x direction.
+	 *  @param ty Translation in the y direction.
+	 *  @param sx Scaling in the x direction.
+	 *  @param sy Scaling in the y direction.
+	 *  @param weightScale Scaling applied to stroke weights.
+	 *  @param hiddenParts Parts not to draw, or null if all parts are to be drawn.
+	 */
+	private void replay(PGraphics g, float tx, float ty, float sx, float sy, float weightScale, BitSet hiddenParts)
+	{
+		g.pushStyle();
+		g.colorMode(PConstants.RGB,255);
+		g.ellipseMode(PConstants.RADIUS);
+		g.rectMode(PConstants.CORNERS);
+
+		int part = -1;
+		boolean skip = false;
+		int c=0;
+		int i=0;
+		while (i < ops.length)
+		{
+			int op = ops[i++];
+			if ((op == BEGIN_SHAPE) || (op >= POINT))
+			{
+				part++;
+				skip = (hiddenParts != null) && hiddenParts.get(part);
+			}
+
+			switch (op)
+			{
+				case FILL:
+					setFill(g,ops[i++]);
+					break;
+				case NO_FILL:
+					g.noFill();
+					break;
+				case STROKE:
+					setStroke(g,ops[i++]);
+					break;
+				case NO_STROKE:
+					g.noStroke();
+					break;
+				case WEIGHT:
+					g.strokeWeight(coords[c++]*weightScale);
+					break;
+				case BEGIN_SHAPE:
+					if (skip == false)
+					{
+						g.beginShape(ops[i]);
+					}
+					i++;
+					break;
+				case VERTEX:
+					if (skip == false)
+					{
+						g.vertex(tx+sx*coords[c], ty+sy*coords[c+1]);
+					}
+					c+=2;
+					break;
+				case CURVE_VERTEX:
+					if (skip == false)
+					{
+						g.curveVertex(tx+sx*coords[c], ty+sy*coords[c+1]);
+					}
+					c+=2;
+					break;
+				case END_SHAPE:
+					if (skip == false)
+					{
+						g.endShape(ops[i]);
+					}
+					i++;
+					break;
+				case POINT:
+					if (skip == false)
+					{
+						g.point(tx+sx*coords[c], ty+sy*coords[c+1]);
+					}
+					c+=2;
+					break;
+				case LINE:
+					if (skip == false)
+					{
+						g.line(tx+sx*coords[c],   ty+sy*coords[c+1],
+							   tx+sx*coords[c+2], ty+sy*coords[c+3]);
+					}
+					c+=4;
+					break;
+				case TRIANGLE:
+					if (skip == false)
+					{
+						g.triangle(tx+sx*coords[c],   ty+sy*coords[c+1],
+								   tx+sx*coords[c+2], ty+sy*coords[c+3],
+								   tx+sx*coords[c+4], ty+sy*coords[c+5]);
+					}
+					c+=6;
+					break;
+				case QUAD:
+					if (skip == false)
+					{
+						g.quad(tx+sx*coords[c],   ty+sy*coords[c+1],
+							   tx+sx*coords[c+2], ty+sy*coords[c+3],
+							   tx+sx*coords[c+4], ty+sy*coords[c+5],
+							   tx+sx*coords[c+6], ty+sy*coords[c+7]);
+					}
+					c+=8;
+					break;
+				case RECT:
+					if (skip == false)
+					{
+						g.rect(tx+sx*coords[c],   ty+sy*coords[c+1],
+							   tx+sx*coords[c+2], ty+sy*coords[c+3]);
+					}
+					c+=4;
+					break;
+				case ELLIPSE:
+					if (skip == false)
+					{
+						g.ellipse(tx+sx*coords[c], ty+sy*coords[c+1],
+								  Math.abs(sx)*coords[c+2], Math.abs(sy)*coords[c+3]);
+					}
+					c+=4;
+					break;
+				case ARC:
+					if (skip == false)
+					{
+						g.arc(tx+sx*coords[c], ty+sy*coords[c+1],
+							  Math.abs(sx)*coords[c+2], Math.abs(sy)*coords[c+3], coords[c+4], coords[c+5]);
+					}
+					c+=6;
+					break;
+				case CURVE:
+					if (skip == false)
+					{
+						g.curve(tx+sx*coords[c],   ty+sy*coords[c+1],
+								tx+sx*coords[c+2], ty+sy*coords[c+3],
+								tx+sx*coords[c+4], ty+sy*coords[c+5],
+								tx+sx*coords[c+6], ty+sy*coords[c+7]);
+					}
+					c+=8;
+					break;
+				default:
+					System.err.println("Unknown operation in handy recording.");
+					g.popStyle();
+					return;
+			}
+		}
+		g.popStyle();
+	}
+
+	/** Converts the recording into a group shape that can be drawn efficiently by OpenGL renderers.
+	 *  Ellipses, arcs and rectangles are converted into polygons so that the shape does not depend on
+	 *  the ellipse or rectangle mode in force when it is drawn.
+	 *  @param g Graphics context used to create the shape.
+	 *  @return Group shape containing the recorded geometry.
+	 */
+	PShape toShape(PGraphics g)
+	{
+		PShape group = g.createShape(PConstants.GROUP);
+		PShape child = null;
+
+		boolean isFill = true, isStroke = true;
+		int fillColour = 0xffffffff, strokeColour = 0xff000000;
+		float weight = 1;
+
+		int c=0;
+		int i=0;
+		while (i < ops.length)
+		{
+			int op = ops[i++];
+			switch (op)
+			{
+				case FILL:
+					isFill = true;
+					fillColour = ops[i++];
+					break;
+				case NO_FILL:
+					isFill = false;
+					break;
+				case STROKE:
+					isStroke = true;
+					strokeColour = ops[i++];
+					break;
+				case NO_STROKE:
+					isStroke = false;
+					break;
+				case WEIGHT:
+					weight = coords[c++];
+					break;
+				case BEGIN_SHAPE:
+					child = g.createShape();
+					child.beginShape(ops[i++]);
+					setShapeStyle(child,isFill,fillColour,isStroke,strokeColour,weight);
+					break;
+				case VERTEX:
+					child.vertex(coords[c], coords[c+1]);
+					c+=2;
+					break;
+				case CURVE_VERTEX:
+					child.curveVertex(coords[c], coords[c+1]);
+					c+=2;
+					break;
+				case END_SHAPE:
+					child.endShape(ops[i++]);
+					group.addChild(child);
+					child = null;
+					break;
+				case POINT:
+				case LINE:
+				case TRIANGLE:
+				case QUAD:
+				case CURVE:
+				{
+					int numPoints = (op==POINT) ? 1 : (op==LINE) ? 2 : (op==TRIANGLE) ? 3 : 4;
+					PShape primitive = g.createShape();
+					primitive.beginShape((op==POINT) ? PConstants.POINTS : (op==LINE) ? PConstants.LINES : PConstants.POLYGON);
+					setShapeStyle(primitive,isFill,fillColour,isStroke,strokeColour,weight);
+					for (int p=0; p<numPoints; p++)
+					{
+						if (op == CURVE)
+						{
+							primitive.curveVertex(coords[c+p*2], coords[c+p*2+1]);
+						}
+						else
+						{
+							primitive.vertex(coords[c+p*2], coords[c+p*2+1]);
+						}
+					}
+					primitive.endShape(((op==TRIANGLE) || (op==QUAD)) ? PConstants.CLOSE : PConstants.OPEN);
+					group.addChild(primitive);
+					c += numPoints*2;
+					break;
+				}
+				case RECT:
+				{
+					PShape rect = g.createShape();
+					rect.beginShape(PConstants.POLYGON);
+					setShapeStyle(rect,isFill,fillColour,isStroke,strokeColour,weight);
+					rect.vertex(coords[c],coords[c+1]);
+					rect.vertex(coords[c+2],coords[c+1]);
+					rect.vertex(coords[c+2],coords[c+3]);
+					rect.vertex(coords[c],coords[c+3]);
+					rect.endShape(PConstants.CLOSE);
+					group.addChild(rect);
+					c+=4;
+					break;
+				}
+				case ELLIPSE:
+				case ARC:
+				{
+					float cx = coords[c];
+					float cy = coords[c+1];
+					float rx = coords[c+2];
+					float ry = coords[c+3];
+					float start = (op == ARC) ? coords[c+4] : 0;
+					float stop  = (op == ARC) ? coords[c+5] : PConstants.TWO_PI;
+					int numSteps = Math.max(8,(int)(32*(stop-start)/PConstants.TWO_PI));
+
+					PShape ellipse = g.createShape();
+					ellipse.beginShape(PConstants.POLYGON);
+					setShapeStyle(ellipse,isFill,fillColour,isStroke,strokeColour,weight);
+					if (op == ARC)
+					{
+						ellipse.vertex(cx,cy);
+					}
+					for (int step=0; step<=numSteps; step++)
+					{
+						float theta = start + (stop-start)*step/numSteps;
+						ellipse.vertex(cx+rx*(float)Math.cos(theta), cy+ry*(float)Math.sin(theta));
+					}
+					ellipse.endShape(PConstants.CLOSE);
+					group.addChild(ellipse);
+					c += (op == ARC) ? 6 : 4;
+					break;
+				}
+				default:
+					System.err.println("Unknown operation in handy recording.");
+					return group;
+			}
+		}
+		return group;
+	}
+
+	/** Writes the recording as a sequence of SVG elements. Curve vertices are converted into the cubic
+	 *  Bezier segments that Processing's Java2D renderer would draw for them so that the SVG matches the
+	 *  rasterised appearance. Only the elements are written, not the enclosing <code>svg</code> element.
+	 *  @param svg Buffer to which the SVG elements are appended.
+	 */
+	void writeSVG(StringBuilder svg)
+	{
+		boolean isFill = true, isStroke = true;
+		int fillColour = 0xffffffff, strokeColour = 0xff000000;
+		float weight = 1;
+
+		StringBuilder path = new StringBuilder();
+		float[] curvePts = new float[8];			// Last four curve vertices of the current shape.
+		int numCurvePts = 0;
+
+		int c=0;
+		int i=0;
+		while (i < ops.length)
+		{
+			int op = ops[i++];
+			switch (op)
+			{
+				case FILL:
+					isFill = true;
+					fillColour = ops[i++];
+					break;
+				case NO_FILL:
+					isFill = false;
+					break;
+				case STROKE:
+					isStroke = true;
+					strokeColour = ops[i++];
+					break;
+				case NO_STROKE:
+					isStroke = false;
+					break;
+				case WEIGHT:
+					weight = coords[c++];
+					break;
+				case BEGIN_SHAPE:
+					i++;
+					path.setLength(0);
+					numCurvePts = 0;
+					break;
+				case VERTEX:
+					path.append(path.length() == 0 ? 'M' : 'L');
+					appendPoint(path,coords[c],coords[c+1]);
+					c+=2;
+					break;
+				case CURVE_VERTEX:
+				{
+					if (numCurvePts == 4)
+					{
+						System.arraycopy(curvePts,2,curvePts,0,6);
+						numCurvePts--;
+					}
+					curvePts[numCurvePts*2]   = coords[c];
+					curvePts[numCurvePts*2+1] = coords[c+1];
+					numCurvePts++;
+					if (numCurvePts == 4)
+					{
+						appendCurve(path,curvePts);
+					}
+					c+=2;
+					break;
+				}
+				case END_SHAPE:
+					if (ops[i++] == PConstants.CLOSE)
+					{
+						path.append('Z');
+					}
+					if (path.length() > 0)
+					{
+						svg.append("<path d=\"").append(path).append('"');
+						appendStyle(svg,isFill,fillColour,isStroke,strokeColour,weight);
+					}
+					break;
+				case POINT:
+					if (isStroke)
+					{
+						svg.append("<circle cx=\"").append(format(coords[c]))
+						   .append("\" cy=\"").append(format(coords[c+1]))
+						   .append("\" r=\"").append(format(weight/2)).append('"');
+						appendStyle(svg,true,strokeColour,false,0,0);
+					}
+					c+=2;
+					break;
+				case LINE:
+					svg.append("<line x1=\"").append(format(coords[c])).append("\" y1=\"").append(format(coords[c+1]))
+					   .append("\" x2=\"").append(format(coords[c+2])).append("\" y2=\"").append(format(coords[c+3])).append('"');
+					appendStyle(svg,false,0,isStroke,strokeColour,weight);
+					c+=4;
+					break;
+				case TRIANGLE:
+				case QUAD:
+				{
+					int numPoints = (op==TRIANGLE) ? 3 : 4;
+					svg.append("<polygon points=\"");
+					for (int p=0; p<numPoints; p++)
+					{
+						if (p > 0)
+						{
+							svg.append(' ');
+						}
+						appendPoint(svg,coords[c+p*2],coords[c+p*2+1]);
+					}
+					svg.append('"');
+					appendStyle(svg,isFill,fillColour,isStroke,strokeColour,weight);
+					c += numPoints*2;
+					break;
+				}
+				case RECT:
+					svg.append("<rect x=\"").append(format(Math.min(coords[c],coords[c+2])))
+					   .append("\" y=\"").append(format(Math.min(coords[c+1],coords[c+3])))
+					   .append("\" width=\"").append(format(Math.abs(coords[c+2]-coords[c])))
+					   .append("\" height=\"").append(format(Math.abs(coords[c+3]-coords[c+1]))).append('"');
+					appendStyle(svg,isFill,fillColour,isStroke,strokeColour,weight);
+					c+=4;
+					break;
+				case ELLIPSE:
+					svg.append("<ellipse cx=\"").append(format(coords[c])).append("\" cy=\"").append(format(coords[c+1]))
+					   .append("\" rx=\"").append(format(coords[c+2])).append("\" ry=\"").append(format(coords[c+3])).append('"');
+					appendStyle(svg,isFill,fillColour,isStroke,strokeColour,weight);
+					c+=4;
+					break;
+				case ARC:
+				{
+					// Filled as a pie but stroked only along the perimeter, as Processing's default arc mode.
+					float cx = coords[c];
+					float cy = coords[c+1];
+					float rx = coords[c+2];
+					float ry = coords[c+3];
+					float start = coords[c+4];
+					float stop  = Math.min(coords[c+5], start+PConstants.TWO_PI-0.001f);
+					String arcFlags = " 0 "+((stop-start > PConstants.PI) ? 1 : 0)+" 1 ";
+
+					StringBuilder arcPath = new StringBuilder("M");
+					appendPoint(arcPath,cx+rx*(float)Math.cos(start),cy+ry*(float)Math.sin(start));
+					arcPath.append('A').append(format(rx)).append(',').append(format(ry)).append(arcFlags);
+					appendPoint(arcPath,cx+rx*(float)Math.cos(stop),cy+ry*(float)Math.sin(stop));
+					if (isFill)
+					{
+						svg.append("<path d=\"").append(arcPath).append('L');
+						appendPoint(svg,cx,cy);
+						svg.append("Z\"");
+						appendStyle(svg,true,fillColour,false,0,0);
+					}
+					if (isStroke)
+					{
+						svg.append("<path d=\"").append(arcPath).append('"');
+						appendStyle(svg,false,0,true,strokeColour,weight);
+					}
+					c+=6;
+					break;
+				}
+				case CURVE:
+				{
+					StringBuilder curvePath = new StringBuilder("M");
+					appendPoint(curvePath,coords[c+2],coords[c+3]);
+					System.arraycopy(coords,c,curvePts,0,8);
+					appendCurve(curvePath,curvePts);
+					svg.append("<path d=\"").append(curvePath).append('"');
+					appendStyle(svg,isFill,fillColour,isStroke,strokeColour,weight);
+					c+=8;
+					break;
+				}
+				default:
+					System.err.println("Unknown operation in handy recording.");
+					return;
+			}
+		}
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Sets the fill colour of the given graphics context. Colours are always treated as ARGB values,
+	 *  avoiding Processing's interpretation of small integers as grey levels.
+	 *  @param g Graphics context whose fill is to be set.
+	 *  @param colour ARGB colour to use.
+	 */
+	static void setFill(PGraphics g, int colour)
+	{
+		if (((colour & 0xff000000) == 0) && (colour <= 255))
+		{
+			g.fill((colour>>16)&0xff, (colour>>8)&0xff, colour&0xff, 0);
+		}
+		else
+		{
+			g.fill(colour);
+		}
+	}
+
+	/** Sets the stroke colour of the given graphics context. Colours are always treated as ARGB values,
+	 *  avoiding Processing's interpretation of small integers as grey levels.
+	 *  @param g Graphics context whose stroke is to be set.
+	 *  @param colour ARGB colour to use.
+	 */
+	static void setStroke(PGraphics g, int colour)
+	{
+		if (((colour & 0xff000000) == 0) && (colour <= 255))
+		{
+			g.stroke((colour>>16)&0xff, (colour>>8)&0xff, colour&0xff, 0);
+		}
+		else
+		{
+			g.stroke(colour);
+		}
+	}
+
+	/** Expands the bounds of the given part to include a point and the border around it.
+	 *  @param bounds Bounds of all parts.
+	 *  @param part Part whose bounds are to be expanded.
+	 *  @param x x coordinate of the point.
+	 *  @param y y coordinate of the point.
+	 *  @param border Distance around the point to include.
+	 */
+	private static void addToBounds(float[] bounds, int part, float x, float y, float border)
+	{
+		bounds[part*4]   = Math.min(bounds[part*4],   x-border);
+		bounds[part*4+1] = Math.min(bounds[part*4+1], y-border);
+		bounds[part*4+2] = Math.max(bounds[part*4+2], x+border);
+		bounds[part*4+3] = Math.max(bounds[part*4+3], y+border);
+	}
+
+	/** Appends the Bezier segment between the middle two of four Catmull-Rom control points to the
+	 *  given path. If the path is empty, it is started at the second control point.
+	 *  @param path Path to which the segment is added.
+	 *  @param pts Four control points stored as consecutive (x,y) values.
+	 */
+	private static void appendCurve(StringBuilder path, float[] pts)
+	{
+		if (path.length() == 0)
+		{
+			path.append('M');
+			appendPoint(path,pts[2],pts[3]);
+		}
+		path.append('C');
+		appendPoint(path,pts[2]+(pts[4]-pts[0])/6, pts[3]+(pts[5]-pts[1])/6);
+		path.append(' ');
+		appendPoint(path,pts[4]-(pts[6]-pts[2])/6, pts[5]-(pts[7]-pts[3])/6);
+		path.append(' ');
+		appendPoint(path,pts[4],pts[5]);
+	}
+
+	/** Appends a coordinate pair to the given SVG buffer.
+	 *  @param svg Buffer to which the point is appended.
+	 *  @param x x coordinate of the point.
+	 *  @param y y coordinate of the point.
+	 */
+	private static void appendPoint(StringBuilder svg, float x, float y)
+	{
+		svg.append(format(x)).append(',').append(format(y));
+	}
+
+	/** Appends the style attributes of an SVG element and closes the element.
+	 *  @param svg Buffer to which the attributes are appended.
+	 *  @param isFill True if the element is filled.
+	 *  @param fillColour ARGB colour of the fill.
+	 *  @param isStroke True if the element is stroked.
+	 *  @param strokeColour ARGB colour of the stroke.
+	 *  @param weight Stroke weight.
+	 */
+	private static void appendStyle(StringBuilder svg, boolean isFill, int fillColour, boolean isStroke, int strokeColour, float weight)
+	{
+		if (isFill)
+		{
+			svg.append(" fill=\"").append(toHex(fillColour)).append('"');
+			if ((fillColour>>>24) != 0xff)
+			{
+				svg.append(" fill-opacity=\"").append(format((fillColour>>>24)/255f)).append('"');
+			}
+		}
+		else
+		{
+			svg.append(" fill=\"none\"");
+		}
+
+		if (isStroke)
+		{
+			svg.append(" stroke=\"").append(toHex(strokeColour)).append("\" stroke-width=\"").append(format(weight)).append('"');
+			if ((strokeColour>>>24) != 0xff)
+			{
+				svg.append(" stroke-opacity=\"").append(format((strokeColour>>>24)/255f)).append('"');
+			}
+		}
+		svg.append("/>\n");
+	}
+
+	/** Provides the SVG representation of the RGB components of the given colour.
+	 *  @param colour ARGB colour.
+	 *  @return Colour as a hexadecimal #rrggbb string.
+	 */
+	private static String toHex(int colour)
+	{
+		String hex = Integer.toHexString(colour & 0xffffff);
+		return "#000000".substring(0,7-hex.length())+hex;
+	}
+
+	/** Formats the given value to two decimal places, omitting any redundant zeros.
+	 *  @param value Value to format.
+	 *  @return Compact text representation of the value.
+	 */
+	private static String format(float value)
+	{
+		long hundredths = Math.round(value*100.0);
+		if (hundredths%100 == 0)
+		{
+			return Long.toString(hundredths/100);
+		}
+		String sign = hundredths < 0 ? "-" : "";
+		hundredths = Math.abs(hundredths);
+		long fraction = hundredths%100;
+		return sign+(hundredths/100)+(fraction%10 == 0 ? "."+fraction/10 : (fraction < 10 ? ".0" : ".")+fraction);
+	}
+
+	/** Sets the style of a shape that is being defined.
+	 *  @param shape Shape whose style is to be set. Should be between calls to beginShape() and endShape().
+	 *  @param isFill True if the shape is filled.
+	 *  @param fillColour Colour of the fill.
+	 *  @param isStroke True if the shape is stroked.
+	 *  @param strokeColour Colour of the stroke.
+	 *  @param weight Stroke weight.
+	 */
+	private static void setShapeStyle(PShape shape, boolean isFill, int fillColour, boolean isStroke, int strokeColour, float weight)
+	{
+		if (isFill)
+		{
+			shape.fill(fillColour);
+		}
+		else
+		{
+			shape.noFill();
+		}
+
+		if (isStroke)
+		{
+			shape.stroke(strokeColour);
+			shape.strokeWeight(weight);
+		}
+		else
+		{
+			shape.noStroke();
+		}
+	}
+}
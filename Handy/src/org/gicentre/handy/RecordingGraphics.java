@@ -0,0 +1,530 @@
+package org.gicentre.handy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+
+//*****************************************************************************************
+/** Graphics context that records the 2D drawing commands sent to it rather than rendering
+ *  them. By directing a handy renderer's output to this context, the jittered geometry of
+ *  any sketchy primitive can be captured as a <code>Recording</code> and later replayed
+ *  into another graphics context. Only the subset of drawing commands used by the handy
+ *  renderer are recorded.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class RecordingGraphics extends PGraphics
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private int[] ops;							// Operation codes and integer arguments.
+	private int numOps;
+	private float[] coords;						// Floating point arguments.
+	private int numCoords;
+	private float minX,minY,maxX,maxY;			// Bounds of recorded geometry.
+	private float maxWeight;					// Largest stroke weight used when stroking.
+
+	private boolean lastFill, lastStroke;		// Last style settings written to the recording.
+	private int lastFillColour, lastStrokeColour;
+	private float lastWeight;
+	private boolean styleWritten;
+
+	private List<float[]> styleStack;			// Stores pushed styles.
+	private DeferredFrame frame;				// Frame to be notified before each drawing operation, or null.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates an empty recording context with Processing's default style settings.
+	 */
+	RecordingGraphics()
+	{
+		super();
+		ops = new int[256];
+		coords = new float[1024];
+		styleStack = new ArrayList<float[]>();
+
+		colorMode   = PConstants.RGB;
+		colorModeX  = 255;
+		colorModeY  = 255;
+		colorModeZ  = 255;
+		colorModeA  = 255;
+		fill        = true;
+		fillColor   = 0xffffffff;
+		stroke      = true;
+		strokeColor = 0xff000000;
+		strokeWeight= 1;
+		ellipseMode = PConstants.CENTER;
+		rectMode    = PConstants.CORNER;
+		clear(null);
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Clears any recorded geometry and sets the style of this context to match that of the given
+	 *  graphics context.
+	 *  @param source Context whose style is to be copied, or null if the current style is to be retained.
+	 */
+	void clear(PGraphics source)
+	{
+		if (source != null)
+		{
+			HandyRenderer.copyGraphics(source,this);
+			colorModeX = source.colorModeX;
+			colorModeY = source.colorModeY;
+			colorModeZ = source.colorModeZ;
+			colorModeA = source.colorModeA;
+		}
+		numOps = 0;
+		numCoords = 0;
+		minX = Float.MAX_VALUE;
+		minY = Float.MAX_VALUE;
+		maxX = -Float.MAX_VALUE;
+		maxY = -Float.MAX_VALUE;
+		maxWeight = 0;
+		styleWritten = false;
+		styleStack.clear();
+	}
+
+	/** Provides a recording of all the geometry drawn since the last call to <code>clear()</code>.
+	 *  @return Recording of the geometry.
+	 */
+	Recording getRecording()
+	{
+		int[] recordedOps = new int[numOps];
+		System.arraycopy(ops,0,recordedOps,0,numOps);
+		float[] recordedCoords = new float[numCoords];
+		System.arraycopy(coords,0,recordedCoords,0,numCoords);
+
+		if (minX > maxX)
+		{
+			return new Recording(recordedOps,recordedCoords,minX,minY,maxX,maxY);
+		}
+
+		// Allow for stroke width and anti-aliasing when reporting bounds.
+		float border = maxWeight/2+1;
+		return new Recording(recordedOps,recordedCoords,minX-border,minY-border,maxX+border,maxY+border);
+	}
+
+	/** Provides a recording of all the geometry drawn since the last recording was provided and starts
+	 *  a new one. Unlike <code>clear()</code>, the current style and any pushed styles are retained so
+	 *  this can be called part way through drawing a primitive.
+	 *  @return Recording of the geometry drawn since the previous call.
+	 */
+	Recording cut()
+	{
+		Recording recording = getRecording();
+		numOps = 0;
+		numCoords = 0;
+		minX = Float.MAX_VALUE;
+		minY = Float.MAX_VALUE;
+		maxX = -Float.MAX_VALUE;
+		maxY = -Float.MAX_VALUE;
+		maxWeight = 0;
+		styleWritten = false;
+		return recording;
+	}
+
+	/** Reports whether any geometry has been drawn since the recording was last cleared or cut.
+	 *  @return True if nothing has been recorded.
+	 */
+	boolean isEmpty()
+	{
+		return numOps == 0;
+	}
+
+	/** Sets the deferred frame that is to be notified before each drawing operation is recorded.
+	 *  @param frame Frame to notify or null if no notification is required.
+	 */
+	void setFrame(DeferredFrame frame)
+	{
+		this.frame = frame;
+	}
+
+	// ---------------------------- Overridden style methods -----------------------------
+
+	@Override
+	public void pushStyle()
+	{
+		styleStack.add(new float[] {fill?1:0, Float.intBitsToFloat(fillColor), stroke?1:0, Float.intBitsToFloat(strokeColor),
+									strokeWeight, ellipseMode, rectMode});
+	}
+
+	@Override
+	public void popStyle()
+	{
+		if (styleStack.isEmpty())
+		{
+			System.err.println("Too many calls to popStyle() when recording handy geometry.");
+			return;
+		}
+		float[] style = styleStack.remove(styleStack.size()-1);
+		fill         = style[0] > 0;
+		fillColor    = Float.floatToRawIntBits(style[1]);
+		stroke       = style[2] > 0;
+		strokeColor  = Float.floatToRawIntBits(style[3]);
+		strokeWeight = style[4];
+		ellipseMode  = (int)style[5];
+		rectMode     = (int)style[6];
+	}
+
+	@Override
+	public void fill(int rgb)
+	{
+		fill = true;
+		fillColor = rgb;
+	}
+
+	@Override
+	public void noFill()
+	{
+		fill = false;
+	}
+
+	@Override
+	public void stroke(int rgb)
+	{
+		stroke = true;
+		strokeColor = rgb;
+	}
+
+	@Override
+	public void noStroke()
+	{
+		stroke = false;
+	}
+
+	@Override
+	public void strokeWeight(float weight)
+	{
+		strokeWeight = weight;
+	}
+
+	@Override
+	public void ellipseMode(int mode)
+	{
+		ellipseMode = mode;
+	}
+
+	@Override
+	public void rectMode(int mode)
+	{
+		rectMode = mode;
+	}
+
+	// ---------------------------- Overridden drawing methods ---------------------------
+
+	/** Records the background as an unstroked rectangle covering the whole of this context. Has no
+	 *  effect if the context has not been given a size.
+	 *  @param rgb Colour of the background.
+	 */
+	@Override
+	public void background(int rgb)
+	{
+		backgroundColor = rgb;
+		if ((width > 0) && (height > 0))
+		{
+			boolean oldFill = fill, oldStroke = stroke;
+			int oldFillColour = fillColor;
+			fill = true;
+			fillColor = rgb;
+			stroke = false;
+			writeStyle();
+			addOp(Recording.RECT);
+			addCoords(0,0);
+			addCoords(width,height);
+			fill = oldFill;
+			fillColor = oldFillColour;
+			stroke = oldStroke;
+		}
+	}
+
+	@Override
+	public void beginShape()
+	{
+		beginShape(PConstants.POLYGON);
+	}
+
+	@Override
+	public void beginShape(int kind)
+	{
+		writeStyle();
+		addOp(Recording.BEGIN_SHAPE);
+		addOp(kind);
+	}
+
+	@Override
+	public void vertex(float x, float y)
+	{
+		addOp(Recording.VERTEX);
+		addCoords(x,y);
+	}
+
+	@Override
+	public void curveVertex(float x, float y)
+	{
+		addOp(Recording.CURVE_VERTEX);
+		addCoords(x,y);
+	}
+
+	@Override
+	public void endShape()
+	{
+		endShape(PConstants.OPEN);
+	}
+
+	@Override
+	public void endShape(int mode)
+	{
+		addOp(Recording.END_SHAPE);
+		addOp(mode);
+	}
+
+	@Override
+	public void point(float x, float y)
+	{
+		writeStyle();
+		addOp(Recording.POINT);
+		addCoords(x,y);
+	}
+
+	@Override
+	public void line(float x1, float y1, float x2, float y2)
+	{
+		writeStyle();
+		addOp(Recording.LINE);
+		addCoords(x1,y1);
+		addCoords(x2,y2);
+	}
+
+	@Override
+	public void triangle(float x1, float y1, float x2, float y2, float x3, float y3)
+	{
+		writeStyle();
+		addOp(Recording.TRIANGLE);
+		addCoords(x1,y1);
+		addCoords(x2,y2);
+		addCoords(x3,y3);
+	}
+
+	@Override
+	public void quad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4)
+	{
+		writeStyle();
+		addOp(Recording.QUAD);
+		addCoords(x1,y1);
+		addCoords(x2,y2);
+		addCoords(x3,y3);
+		addCoords(x4,y4);
+	}
+
+	@Override
+	public void curve(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4)
+	{
+		writeStyle();
+		addOp(Recording.CURVE);
+		addCoords(x1,y1);
+		addCoords(x2,y2);
+		addCoords(x3,y3);
+		addCoords(x4,y4);
+	}
+
+	@Override
+	public void rect(float a, float b, float c, float d)
+	{
+		// Store all rectangles in CORNERS mode.
+		float left   = Math.min(a,a+c);
+		float top    = Math.min(b,b+d);
+		float right  = Math.max(a,a+c);
+		float bottom = Math.max(b,b+d);
+
+		if (rectMode == PConstants.CORNERS)
+		{
+			left   = Math.min(a,c);
+			top    = Math.min(b,d);
+			right  = Math.max(a,c);
+			bottom = Math.max(b,d);
+		}
+		else if (rectMode == PConstants.CENTER)
+		{
+			left   = a-Math.abs(c)/2;
+			right  = a+Math.abs(c)/2;
+			top    = b-Math.abs(d)/2;
+			bottom = b+Math.abs(d)/2;
+		}
+		else if (rectMode == PConstants.RADIUS)
+		{
+			left   = a-Math.abs(c);
+			right  = a+Math.abs(c);
+			top    = b-Math.abs(d);
+			bottom = b+Math.abs(d);
+		}
+
+		writeStyle();
+		addOp(Recording.RECT);
+		addCoords(left,top);
+		addCoords(right,bottom);
+	}
+
+	@Override
+	public void ellipse(float a, float b, float c, float d)
+	{
+		float[] ellipse = toRadiusMode(a,b,c,d);
+		writeStyle();
+		addOp(Recording.ELLIPSE);
+		addCoords(ellipse[0]-ellipse[2],ellipse[1]-ellipse[3]);
+		addCoords(ellipse[0]+ellipse[2],ellipse[1]+ellipse[3]);
+
+		// Replace the corners with the centre and radii.
+		System.arraycopy(ellipse,0,coords,numCoords-4,4);
+	}
+
+	@Override
+	public void arc(float a, float b, float c, float d, float start, float stop)
+	{
+		float[] ellipse = toRadiusMode(a,b,c,d);
+		writeStyle();
+		addOp(Recording.ARC);
+		addCoords(ellipse[0]-ellipse[2],ellipse[1]-ellipse[3]);
+		addCoords(ellipse[0]+ellipse[2],ellipse[1]+ellipse[3]);
+		System.arraycopy(ellipse,0,coords,numCoords-4,4);
+		ensureCoordCapacity(2);
+		coords[numCoords++] = start;
+		coords[numCoords++] = stop;
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Converts the given ellipse parameters into centre and radius values using the current ellipse mode.
+	 *  @return Centre and radii of the ellipse (cx,cy,rx,ry).
+	 */
+	private float[] toRadiusMode(float a, float b, float c, float d)
+	{
+		if (ellipseMode == PConstants.RADIUS)
+		{
+			return new float[] {a,b,Math.abs(c),Math.abs(d)};
+		}
+		if (ellipseMode == PConstants.CORNER)
+		{
+			return new float[] {a+c/2,b+d/2,Math.abs(c/2),Math.abs(d/2)};
+		}
+		if (ellipseMode == PConstants.CORNERS)
+		{
+			return new float[] {(a+c)/2,(b+d)/2,Math.abs(c-a)/2,Math.abs(d-b)/2};
+		}
+		return new float[] {a,b,Math.abs(c/2),Math.abs(d/2)};
+	}
+
+	/** Writes any changes in style since the last drawing operation to the recording.
+	 */
+	private void writeStyle()
+	{
+		if (frame != null)
+		{
+			frame.checkMatrix();
+		}
+
+		if ((styleWritten == false) || (fill != lastFill) || (fill && (fillColor != lastFillColour)))
+		{
+			if (fill)
+			{
+				addOp(Recording.FILL);
+				addOp(fillColor);
+			}
+			else
+			{
+				addOp(Recording.NO_FILL);
+			}
+			lastFill = fill;
+			lastFillColour = fillColor;
+		}
+
+		if ((styleWritten == false) || (stroke != lastStroke) || (stroke && (strokeColor != lastStrokeColour)))
+		{
+			if (stroke)
+			{
+				addOp(Recording.STROKE);
+				addOp(strokeColor);
+			}
+			else
+			{
+				addOp(Recording.NO_STROKE);
+			}
+			lastStroke = stroke;
+			lastStrokeColour = strokeColor;
+		}
+
+		if ((styleWritten == false) || (strokeWeight != lastWeight))
+		{
+			addOp(Recording.WEIGHT);
+			ensureCoordCapacity(1);
+			coords[numCoords++] = strokeWeight;
+			lastWeight = strokeWeight;
+		}
+
+		if (stroke)
+		{
+			maxWeight = Math.max(maxWeight, strokeWeight);
+		}
+		styleWritten = true;
+	}
+
+	/** Adds the given operation code or integer argument to the recording.
+	 *  @param op Operation code or argument to add.
+	 */
+	private void addOp(int op)
+	{
+		if (numOps == ops.length)
+		{
+			int[] newOps = new int[ops.length*2];
+			System.arraycopy(ops,0,newOps,0,numOps);
+			ops = newOps;
+		}
+		ops[numOps++] = op;
+	}
+
+	/** Adds the given coordinate pair to the recording and updates the recording's bounds.
+	 *  @param x x coordinate to add.
+	 *  @param y y coordinate to add.
+	 */
+	private void addCoords(float x, float y)
+	{
+		ensureCoordCapacity(2);
+		coords[numCoords++] = x;
+		coords[numCoords++] = y;
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+	}
+
+	/** Ensures there is enough space in the coordinate buffer to add the given number of values.
+	 *  @param numValues Number of values to be added.
+	 */
+	private void ensureCoordCapacity(int numValues)
+	{
+		if (numCoords+numValues > coords.length)
+		{
+			float[] newCoords = new float[Math.max(coords.length*2, numCoords+numValues)];
+			System.arraycopy(coords,0,newCoords,0,numCoords);
+			coords = newCoords;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.gicentre.handy;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import processing.core.PVector;
 
@@ -65,6 +66,150 @@ public class Simplifier
 		}
 	}
 		
+	/** Identifies the vertices of part of a line that are retained by Douglas-Peucker simplification using the
+	 *  given tolerance. Unlike <code>simplify()</code> this stores no results between calls, so may be used by
+	 *  several threads at once, and it subdivides the line with an explicit stack rather than by recursion, so
+	 *  may be used on lines with very many vertices. The first and last vertices are always retained.
+	 *  @param xCoords x coordinates of the line.
+	 *  @param yCoords y coordinates of the line.
+	 *  @param start Index of the first vertex of the part to simplify.
+	 *  @param end Index of the last vertex of the part to simplify.
+	 *  @param tol Douglas-Peucker tolerance (in spatial units).
+	 *  @param keep Set to true for each retained vertex between <code>start</code> and <code>end</code> and false for the others.
+	 *  @return Number of retained vertices.
+	 */
+	public static int simplify(float[] xCoords, float[] yCoords, int start, int end, float tol, boolean[] keep)
+	{
+		if (end <= start)
+		{
+			keep[start] = true;
+			return 1;
+		}
+		for (int i=start+1; i<end; i++)
+		{
+			keep[i] = false;
+		}
+		keep[start] = true;
+		keep[end] = true;
+		int numKept = 2;
+		BulkKernels kernels = BulkKernels.getInstance();
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = start;
+		stack[top++] = end;
+
+		while (top > 0)
+		{
+			int last  = stack[--top];
+			int first = stack[--top];
+			if (last-first < 2)
+			{
+				continue;
+			}
+
+			int furthestNode = kernels.furthestPoint(xCoords,yCoords,first,last,tol*tol);
+			if (furthestNode >= 0)
+			{
+				keep[furthestNode] = true;
+				numKept++;
+				if (top+4 > stack.length)
+				{
+					int[] newStack = new int[stack.length*2];
+					System.arraycopy(stack,0,newStack,0,top);
+					stack = newStack;
+				}
+				stack[top++] = first;
+				stack[top++] = furthestNode;
+				stack[top++] = furthestNode;
+				stack[top++] = last;
+			}
+		}
+		return numKept;
+	}
+
+	/** Identifies the vertices of a line, stored as interleaved coordinates in a buffer, that are retained by
+	 *  Douglas-Peucker simplification using the given tolerance. Coordinates are read directly from the buffer,
+	 *  which may be a view of a memory-mapped file, without being copied. As with the array version, this
+	 *  stores no results between calls and does not recurse. The first and last vertices are always retained.
+	 *  @param coords Buffer containing the line's coordinates.
+	 *  @param offset Index in the buffer of the x coordinate of the first vertex. Its y coordinate follows it.
+	 *  @param numVertices Number of vertices in the line.
+	 *  @param stride Number of buffer values between the start of one vertex and the next.
+	 *  @param tol Douglas-Peucker tolerance (in spatial units).
+	 *  @param keep Set to true for each retained vertex and false for the others, indexed by vertex number.
+	 *  @return Number of retained vertices.
+	 */
+	public static int simplify(FloatBuffer coords, int offset, int numVertices, int stride, float tol, boolean[] keep)
+	{
+		int end = numVertices-1;
+		if (end <= 0)
+		{
+			keep[0] = true;
+			return 1;
+		}
+		for (int i=1; i<end; i++)
+		{
+			keep[i] = false;
+		}
+		keep[0] = true;
+		keep[end] = true;
+		int numKept = 2;
+		float tolSq = tol*tol;
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = end;
+
+		while (top > 0)
+		{
+			int last  = stack[--top];
+			int first = stack[--top];
+			if (last-first < 2)
+			{
+				continue;
+			}
+
+			float ax = coords.get(offset+first*stride);
+			float ay = coords.get(offset+first*stride+1);
+			float ex = coords.get(offset+last*stride)-ax;
+			float ey = coords.get(offset+last*stride+1)-ay;
+			float lenSq = ex*ex + ey*ey;
+			float invLenSq = (lenSq > 0) ? 1/lenSq : 0;
+
+			float maxDistSq = tolSq;
+			int furthestNode = -1;
+			for (int i=first+1; i<last; i++)
+			{
+				int index = offset+i*stride;
+				float distSq = BulkKernels.segmentDistSq(coords.get(index)-ax,coords.get(index+1)-ay,ex,ey,invLenSq);
+				if (distSq > maxDistSq)
+				{
+					maxDistSq = distSq;
+					furthestNode = i;
+				}
+			}
+
+			if (furthestNode >= 0)
+			{
+				keep[furthestNode] = true;
+				numKept++;
+				if (top+4 > stack.length)
+				{
+					int[] newStack = new int[stack.length*2];
+					System.arraycopy(stack,0,newStack,0,top);
+					stack = newStack;
+				}
+				stack[top++] = first;
+				stack[top++] = furthestNode;
+				stack[top++] = furthestNode;
+				stack[top++] = last;
+			}
+		}
+		return numKept;
+	}
+
 	/** Provides the simplified x coordinates. This should only be called after simplify().
 	 *  @return x coordinates of simplified line.
 	 */
@@ -110,22 +255,8 @@ public class Simplifier
 			return;
 		}
 
-		Segment seg = new Segment(xOriginal[start],yOriginal[start],xOriginal[end],yOriginal[end]);
-		float maxDist = 0;
-		int furthestNode = 0;
-		for (int i=start+1; i<end; i++)
-		{
-			float dist = seg.calcDistance(xOriginal[i],yOriginal[i]);
-			//System.out.println("Dist from "+seg+" is "+dist);
-
-			if (dist > maxDist)
-			{
-				maxDist = dist;
-				furthestNode = i;
-			}
-		}
-
-		if (maxDist > tolerance)
+		int furthestNode = BulkKernels.getInstance().furthestPoint(xOriginal,yOriginal,start,end,tolerance*tolerance);
+		if (furthestNode >= 0)
 		{
 			douglasPeucker(start,furthestNode);
 			douglasPeucker(furthestNode,end);
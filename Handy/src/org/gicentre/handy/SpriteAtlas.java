@@ -0,0 +1,208 @@
+package org.gicentre.handy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+
+//*****************************************************************************************
+/** Offscreen image holding pre-rasterised sketchy marks. Sprites are packed into rows
+ *  ('shelves') of a single Java2D image so that each mark can be drawn with one image blit.
+ *  Each sprite is identified by the type of mark, its size bucket, its random variant and
+ *  the fill and stroke settings of the graphics context it was generated for. The whole
+ *  atlas is discarded when it is full or when the renderer's own sketchy settings change.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class SpriteAtlas
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	static final int ATLAS_SIZE = 1024;		// Width and height of the atlas image in pixels.
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private PGraphics atlas;				// Image holding all sprites.
+	private Map<Key,Sprite> sprites;		// Location of each sprite within the atlas.
+	private double[] settings;				// Renderer settings used to generate the current sprites.
+	private int shelfX, shelfY;				// Position at which the next sprite will be placed.
+	private int shelfHeight;				// Height of the current row of sprites.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates an empty sprite atlas.
+	 *  @param parent Sketch used to create the offscreen atlas image.
+	 */
+	SpriteAtlas(PApplet parent)
+	{
+		atlas = parent.createGraphics(ATLAS_SIZE,ATLAS_SIZE,PConstants.JAVA2D);
+		sprites = new HashMap<Key,Sprite>();
+		settings = new double[0];
+		clear();
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Reports the image into which sprites are drawn.
+	 *  @return Atlas image.
+	 */
+	PGraphics getImage()
+	{
+		return atlas;
+	}
+
+	/** Removes all sprites from the atlas.
+	 */
+	void clear()
+	{
+		atlas.beginDraw();
+		atlas.clear();
+		atlas.endDraw();
+		sprites.clear();
+		shelfX = 0;
+		shelfY = 0;
+		shelfHeight = 0;
+	}
+
+	/** Compares the given renderer settings with those used to generate the existing sprites,
+	 *  clearing the atlas if they differ.
+	 *  @param newSettings Current renderer settings. These are copied so the array may be reused.
+	 */
+	void checkSettings(double[] newSettings)
+	{
+		if (!Arrays.equals(settings,newSettings))
+		{
+			settings = newSettings.clone();
+			clear();
+		}
+	}
+
+	/** Provides the sprite with the given key if it has already been generated.
+	 *  @param key Identifier of the sprite.
+	 *  @return Sprite location within the atlas or null if not yet generated.
+	 */
+	Sprite get(Key key)
+	{
+		return sprites.get(key);
+	}
+
+	/** Reserves space in the atlas for a new sprite. If there is insufficient room, the atlas is
+	 *  cleared first.
+	 *  @param key Identifier of the new sprite.
+	 *  @param width Width of the sprite in pixels.
+	 *  @param height Height of the sprite in pixels.
+	 *  @return Location of the new sprite or null if it is too large to fit in the atlas.
+	 */
+	Sprite allocate(Key key, int width, int height)
+	{
+		if ((width > ATLAS_SIZE) || (height > ATLAS_SIZE))
+		{
+			return null;
+		}
+
+		if (shelfX + width > ATLAS_SIZE)
+		{
+			// Start a new row.
+			shelfX = 0;
+			shelfY += shelfHeight;
+			shelfHeight = 0;
+		}
+		if (shelfY + height > ATLAS_SIZE)
+		{
+			clear();
+		}
+
+		Sprite sprite = new Sprite(shelfX,shelfY,width,height);
+		shelfX += width;
+		shelfHeight = Math.max(shelfHeight,height);
+		sprites.put(key,sprite);
+		return sprite;
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** Location of a single sprite within the atlas.
+	 */
+	static class Sprite
+	{
+		final int u, v, width, height;
+
+		Sprite(int u, int v, int width, int height)
+		{
+			this.u = u;
+			this.v = v;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	/** Identifies a sprite by its mark type, size, variant and graphics style.
+	 */
+	static class Key
+	{
+		final int type, widthBucket, heightBucket, variant;
+		final boolean isFill, isStroke;
+		final int fillColour, strokeColour;
+		final float weight;
+
+		Key(int type, int widthBucket, int heightBucket, int variant, PGraphics g)
+		{
+			this.type = type;
+			this.widthBucket = widthBucket;
+			this.heightBucket = heightBucket;
+			this.variant = variant;
+			this.isFill = g.fill;
+			this.isStroke = g.stroke;
+			this.fillColour = g.fillColor;
+			this.strokeColour = g.strokeColor;
+			this.weight = g.strokeWeight;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int h = type;
+			h = 31*h + widthBucket;
+			h = 31*h + heightBucket;
+			h = 31*h + variant;
+			h = 31*h + (isFill ? fillColour : 1);
+			h = 31*h + (isStroke ? strokeColour : 1);
+			h = 31*h + Float.floatToIntBits(weight);
+			return h;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key)obj;
+			return (type == other.type) && (widthBucket == other.widthBucket) &&
+				   (heightBucket == other.heightBucket) && (variant == other.variant) &&
+				   (isFill == other.isFill) && (!isFill || (fillColour == other.fillColour)) &&
+				   (isStroke == other.isStroke) && (!isStroke || (strokeColour == other.strokeColour)) &&
+				   (weight == other.weight);
+		}
+	}
+}
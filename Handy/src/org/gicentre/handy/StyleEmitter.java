@@ -0,0 +1,98 @@
+package org.gicentre.handy;
+
+import processing.core.PGraphics;
+
+//*****************************************************************************************
+/** Forwards fill and stroke changes to a graphics context only when they would change its
+ *  effective style. Processing colour calls are relatively expensive since each one is passed
+ *  through colour mode conversion and, for some renderers, the creation of new native colour
+ *  and stroke objects. The handy renderer repeatedly sets the same style for each of the many
+ *  lines that make up a sketchy shape, so most of these calls can be skipped. The effective
+ *  style is read from the graphics context's own style fields rather than a separate copy so
+ *  that it remains correct after any <code>pushStyle()</code> and <code>popStyle()</code>.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+final class StyleEmitter
+{
+	/** Prevents this class from being instantiated.
+	 */
+	private StyleEmitter()
+	{
+		// Do not allow instantiation of this class since it contains only static methods.
+	}
+
+	/** Sets the fill colour of the given graphics context if it is not already in use.
+	 *  @param g Graphics context to modify.
+	 *  @param colour Fill colour.
+	 */
+	static void fill(PGraphics g, int colour)
+	{
+		if ((g.fill == false) || (g.fillColor != colour))
+		{
+			g.fill(colour);
+		}
+	}
+
+	/** Turns off filling in the given graphics context if it is currently on.
+	 *  @param g Graphics context to modify.
+	 */
+	static void noFill(PGraphics g)
+	{
+		if (g.fill)
+		{
+			g.noFill();
+		}
+	}
+
+	/** Sets the stroke colour of the given graphics context if it is not already in use.
+	 *  @param g Graphics context to modify.
+	 *  @param colour Stroke colour.
+	 */
+	static void stroke(PGraphics g, int colour)
+	{
+		if ((g.stroke == false) || (g.strokeColor != colour))
+		{
+			g.stroke(colour);
+		}
+	}
+
+	/** Turns off stroking in the given graphics context if it is currently on.
+	 *  @param g Graphics context to modify.
+	 */
+	static void noStroke(PGraphics g)
+	{
+		if (g.stroke)
+		{
+			g.noStroke();
+		}
+	}
+
+	/** Sets the stroke weight of the given graphics context if it differs from the current weight.
+	 *  @param g Graphics context to modify.
+	 *  @param weight Stroke weight.
+	 */
+	static void strokeWeight(PGraphics g, float weight)
+	{
+		if (g.strokeWeight != weight)
+		{
+			g.strokeWeight(weight);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package org.gicentre.handy;
+
+import java.util.Arrays;
+
+//*****************************************************************************************
+/** Growable store of shape vertices held as separate arrays of x, y and z coordinates. The
+ *  buffer is reused from one shape to the next so that once it has grown to the size of the
+ *  largest shape drawn, adding vertices requires no further allocation. Coordinate arrays
+ *  are exposed directly and may be longer than the number of vertices they hold.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class VertexBuffer
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	float[] xs, ys, zs;			// Coordinates of each vertex.
+	int size;					// Number of vertices currently stored.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates an empty vertex buffer.
+	 *  @param capacity Initial number of vertices that can be stored before the buffer grows.
+	 */
+	VertexBuffer(int capacity)
+	{
+		capacity = Math.max(1,capacity);
+		xs = new float[capacity];
+		ys = new float[capacity];
+		zs = new float[capacity];
+		size = 0;
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Adds a 2d vertex to the buffer. Its z coordinate is set to 0.
+	 *  @param x x coordinate of the vertex.
+	 *  @param y y coordinate of the vertex.
+	 */
+	void add(float x, float y)
+	{
+		add(x,y,0);
+	}
+
+	/** Adds a 3d vertex to the buffer.
+	 *  @param x x coordinate of the vertex.
+	 *  @param y y coordinate of the vertex.
+	 *  @param z z coordinate of the vertex.
+	 */
+	void add(float x, float y, float z)
+	{
+		if (size == xs.length)
+		{
+			xs = Arrays.copyOf(xs,size*2);
+			ys = Arrays.copyOf(ys,size*2);
+			zs = Arrays.copyOf(zs,size*2);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		zs[size] = z;
+		size++;
+	}
+
+	/** Removes all vertices from the buffer while retaining its storage.
+	 */
+	void clear()
+	{
+		size = 0;
+	}
+}
@@ -0,0 +1,346 @@
+package org.gicentre.handy.batch;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.gicentre.handy.HandyRenderer;
+
+import processing.core.PGraphicsJava2D;
+
+//*****************************************************************************************
+/** Renders sketchy scenes to PNG images without a running sketch. Jobs, each described by a
+ *  <code>SceneDescription</code>, are shared between a fixed pool of worker threads. Each worker
+ *  keeps its own offscreen Java2D graphics context, handy renderer and output image, which are
+ *  reused for every job of the same size, so the cost of each job is dominated by drawing and
+ *  encoding. Nothing requires a display so batches can run with <code>java.awt.headless=true</code>.
+ *  Can be run from the command line with:
+ *  <pre>
+ *  java -Djava.awt.headless=true org.gicentre.handy.batch.BatchRenderer [-workers n] [-out directory] scenes...
+ *  </pre>
+ *  where each scene is a scene description file or a directory of them.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class BatchRenderer
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private ExecutorService pool;				// Fixed pool of worker threads.
+	private ThreadLocal<Worker> workers;		// Rendering resources owned by each worker thread.
+	private File outputDir;						// Directory into which images are written.
+
+	private long firstSubmission;				// Time at which the first job was submitted.
+	private long lastCompletion;				// Time at which the most recent job was completed.
+	private long[] latencies;					// Time from submission to completion of each job.
+	private long[] renderTimes;					// Time spent rendering and writing each job.
+	private int numCompleted;					// Number of jobs completed, including failures.
+	private int numFailed;						// Number of jobs that could not be completed.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a batch renderer with the given number of worker threads.
+	 *  @param numWorkers Number of jobs that can be rendered simultaneously.
+	 *  @param outputDir Directory into which rendered images are written.
+	 */
+	public BatchRenderer(int numWorkers, File outputDir)
+	{
+		this.outputDir = outputDir;
+		this.latencies = new long[256];
+		this.renderTimes = new long[256];
+		this.firstSubmission = -1;
+
+		pool = Executors.newFixedThreadPool(Math.max(1,numWorkers), new ThreadFactory()
+		{
+			private int threadID = 0;
+
+			public synchronized Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task,"handy-batch-"+(threadID++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		workers = new ThreadLocal<Worker>()
+		{
+			@Override
+			protected Worker initialValue()
+			{
+				return new Worker();
+			}
+		};
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Adds a scene to the queue of jobs to be rendered. The image is written to the output directory
+	 *  using the scene's output name, or if it does not have one, its name with a <code>.png</code> extension.
+	 *  @param scene Scene to render.
+	 *  @return Future providing the file into which the image was written once the job is complete.
+	 */
+	public Future<File> submit(final SceneDescription scene)
+	{
+		final long submitted = System.nanoTime();
+		synchronized (this)
+		{
+			if (firstSubmission < 0)
+			{
+				firstSubmission = submitted;
+			}
+		}
+
+		String name = scene.getOutput() == null ? scene.getName()+".png" : scene.getOutput();
+		final File file = new File(outputDir,name);
+
+		return pool.submit(new Callable<File>()
+		{
+			public File call() throws IOException
+			{
+				long started = System.nanoTime();
+				boolean isComplete = false;
+				try
+				{
+					workers.get().render(scene,file);
+					isComplete = true;
+					return file;
+				}
+				finally
+				{
+					long finished = System.nanoTime();
+					recordJob(finished-submitted,finished-started,finished,isComplete);
+					if (isComplete == false)
+					{
+						System.err.println("Unable to render scene "+scene.getName()+" to "+file);
+					}
+				}
+			}
+		});
+	}
+
+	/** Waits for all submitted jobs to complete and stops the worker threads. No further jobs may be
+	 *  submitted after this has been called.
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+		try
+		{
+			pool.awaitTermination(Long.MAX_VALUE,TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Provides a summary of the throughput and latency of all jobs completed so far.
+	 *  @return Report on completed jobs.
+	 */
+	public synchronized BatchReport getReport()
+	{
+		long elapsed = numCompleted > 0 ? lastCompletion-firstSubmission : 0;
+		return new BatchReport(numFailed,elapsed,latencies,renderTimes,numCompleted);
+	}
+
+	/** Renders the scene description files given on the command line.
+	 *  @param args Command line arguments: optional <code>-workers n</code> and <code>-out directory</code>
+	 *              followed by scene description files or directories containing them.
+	 */
+	public static void main(String[] args)
+	{
+		if (System.getProperty("java.awt.headless") == null)
+		{
+			System.setProperty("java.awt.headless","true");
+		}
+
+		int numWorkers = Runtime.getRuntime().availableProcessors();
+		File outputDir = new File(".");
+		List<File> sceneFiles = new ArrayList<File>();
+
+		for (int i=0; i<args.length; i++)
+		{
+			if (args[i].equals("-workers") && (i < args.length-1))
+			{
+				numWorkers = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-out") && (i < args.length-1))
+			{
+				outputDir = new File(args[++i]);
+			}
+			else
+			{
+				File file = new File(args[i]);
+				if (file.isDirectory())
+				{
+					File[] contents = file.listFiles();
+					Arrays.sort(contents);
+					for (File sceneFile : contents)
+					{
+						if (sceneFile.isFile())
+						{
+							sceneFiles.add(sceneFile);
+						}
+					}
+				}
+				else
+				{
+					sceneFiles.add(file);
+				}
+			}
+		}
+
+		if (sceneFiles.isEmpty())
+		{
+			System.err.println("Usage: BatchRenderer [-workers n] [-out directory] scenes...");
+			return;
+		}
+		if (!outputDir.isDirectory() && !outputDir.mkdirs())
+		{
+			System.err.println("Cannot create output directory "+outputDir);
+			return;
+		}
+
+		BatchRenderer batch = new BatchRenderer(numWorkers,outputDir);
+		List<Future<File>> results = new ArrayList<Future<File>>();
+		for (File sceneFile : sceneFiles)
+		{
+			try
+			{
+				results.add(batch.submit(SceneDescription.read(sceneFile)));
+			}
+			catch (IOException e)
+			{
+				System.err.println("Cannot read scene "+sceneFile+": "+e.getMessage());
+			}
+			catch (IllegalArgumentException e)
+			{
+				System.err.println("Cannot render scene "+sceneFile+": "+e.getMessage());
+			}
+		}
+
+		for (Future<File> result : results)
+		{
+			try
+			{
+				result.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (ExecutionException e)
+			{
+				System.err.println(e.getCause());
+			}
+		}
+		batch.shutdown();
+		System.out.println(batch.getReport());
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Stores the timings of a completed job.
+	 *  @param latency Time from submission to completion in nanoseconds.
+	 *  @param renderTime Time spent rendering and writing the image in nanoseconds.
+	 *  @param completed Time at which the job was completed.
+	 *  @param isComplete True if the job was successful.
+	 */
+	private synchronized void recordJob(long latency, long renderTime, long completed, boolean isComplete)
+	{
+		if (numCompleted == latencies.length)
+		{
+			latencies = Arrays.copyOf(latencies,numCompleted*2);
+			renderTimes = Arrays.copyOf(renderTimes,numCompleted*2);
+		}
+		latencies[numCompleted] = latency;
+		renderTimes[numCompleted] = renderTime;
+		numCompleted++;
+		if (isComplete == false)
+		{
+			numFailed++;
+		}
+		lastCompletion = Math.max(lastCompletion,completed);
+	}
+
+	// ---------------------------------- Nested classes ---------------------------------
+
+	/** Offscreen graphics context, renderer and image owned by a single worker thread.
+	 */
+	private static class Worker
+	{
+		private PGraphicsJava2D graphics;
+		private HandyRenderer handy;
+		private BufferedImage image;
+
+		/** Draws the given scene and writes it as a PNG image, reusing this worker's resources if the
+		 *  scene is the same size as the previous one.
+		 *  @param scene Scene to draw.
+		 *  @param file File into which the image is written.
+		 *  @throws IOException If the image cannot be written.
+		 */
+		void render(SceneDescription scene, File file) throws IOException
+		{
+			int width = scene.getWidth();
+			int height = scene.getHeight();
+
+			if ((graphics == null) || (graphics.width != width) || (graphics.height != height))
+			{
+				graphics = new PGraphicsJava2D();
+				graphics.setPrimary(false);
+				graphics.setSize(width,height);
+				graphics.smooth();
+				image = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
+
+				if (handy == null)
+				{
+					handy = new HandyRenderer(graphics);
+				}
+				else
+				{
+					handy.setGraphics(graphics);
+				}
+			}
+
+			graphics.beginDraw();
+			scene.draw(handy);
+			graphics.endDraw();
+
+			graphics.loadPixels();
+			image.setRGB(0,0,width,height,graphics.pixels,0,width);
+			if (ImageIO.write(image,"png",file) == false)
+			{
+				throw new IOException("No PNG writer available.");
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package org.gicentre.handy.batch;
+
+import java.util.Arrays;
+
+//*****************************************************************************************
+/** Summary of the throughput and latency of a set of jobs completed by a batch renderer.
+ *  Latency is measured from the time a job is submitted to the time its image has been
+ *  written, so includes any time spent waiting for a free worker. Render time excludes
+ *  this waiting time. Reports are immutable snapshots.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class BatchReport
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private final int numJobs;					// Number of completed jobs, including failures.
+	private final int numFailed;				// Number of jobs that could not be rendered.
+	private final double elapsed;				// Time from first submission to last completion in seconds.
+	private final double[] latencies;			// Sorted latency of each job in milliseconds.
+	private final double meanRenderTime;		// Mean time spent rendering and writing each job in milliseconds.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates a report from the given timings.
+	 *  @param numFailed Number of jobs that could not be rendered.
+	 *  @param elapsedNanos Time from first submission to last completion in nanoseconds.
+	 *  @param latencyNanos Latency of each completed job in nanoseconds.
+	 *  @param renderNanos Render time of each completed job in nanoseconds.
+	 *  @param numValues Number of completed jobs.
+	 */
+	BatchReport(int numFailed, long elapsedNanos, long[] latencyNanos, long[] renderNanos, int numValues)
+	{
+		this.numJobs = numValues;
+		this.numFailed = numFailed;
+		this.elapsed = elapsedNanos/1e9;
+
+		latencies = new double[numValues];
+		double totalRender = 0;
+		for (int i=0; i<numValues; i++)
+		{
+			latencies[i] = latencyNanos[i]/1e6;
+			totalRender += renderNanos[i]/1e6;
+		}
+		Arrays.sort(latencies);
+		meanRenderTime = numValues > 0 ? totalRender/numValues : 0;
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Reports the number of jobs completed, including any that failed.
+	 *  @return Number of completed jobs.
+	 */
+	public int getNumJobs()
+	{
+		return numJobs;
+	}
+
+	/** Reports the number of jobs that could not be rendered or written.
+	 *  @return Number of failed jobs.
+	 */
+	public int getNumFailed()
+	{
+		return numFailed;
+	}
+
+	/** Reports the time between the first job being submitted and the last being completed.
+	 *  @return Elapsed time in seconds.
+	 */
+	public double getElapsedTime()
+	{
+		return elapsed;
+	}
+
+	/** Reports the number of jobs completed per second.
+	 *  @return Throughput in jobs per second.
+	 */
+	public double getThroughput()
+	{
+		return elapsed > 0 ? numJobs/elapsed : 0;
+	}
+
+	/** Reports the mean time spent by a worker rendering and writing each job.
+	 *  @return Mean render time in milliseconds.
+	 */
+	public double getMeanRenderTime()
+	{
+		return meanRenderTime;
+	}
+
+	/** Reports the latency below which the given proportion of jobs were completed.
+	 *  @param percentile Percentile to report between 0 and 100.
+	 *  @return Latency in milliseconds, or 0 if no jobs have been completed.
+	 */
+	public double getLatency(double percentile)
+	{
+		if (latencies.length == 0)
+		{
+			return 0;
+		}
+		int index = (int)Math.ceil(Math.max(0,Math.min(100,percentile))/100*latencies.length)-1;
+		return latencies[Math.max(0,index)];
+	}
+
+	/** Provides a textual summary of the report.
+	 *  @return Summary of throughput and latency.
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("%d jobs (%d failed) in %.2f s: %.1f jobs/s, mean render %.1f ms, "+
+							 "latency p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms",
+							 Integer.valueOf(numJobs), Integer.valueOf(numFailed), Double.valueOf(elapsed),
+							 Double.valueOf(getThroughput()), Double.valueOf(meanRenderTime),
+							 Double.valueOf(getLatency(50)), Double.valueOf(getLatency(95)),
+							 Double.valueOf(getLatency(99)), Double.valueOf(getLatency(100)));
+	}
+}
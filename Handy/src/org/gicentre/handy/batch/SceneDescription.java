@@ -0,0 +1,549 @@
+package org.gicentre.handy.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.gicentre.handy.HandyPresets;
+import org.gicentre.handy.HandyRenderer;
+import org.gicentre.handy.HandyStyle;
+
+import processing.core.PGraphics;
+
+//*****************************************************************************************
+/** Compact description of a sketchy scene that can be drawn without a running sketch. A scene
+ *  is defined as plain text with one command per line. Header commands give the size of the
+ *  image, the random seed, the handy preset style, the background colour and optionally the
+ *  name of the output file:
+ *  <pre>
+ *  size 200 150
+ *  seed 42
+ *  preset pencil
+ *  background ffffff
+ *  output thumbnail.png
+ *  </pre>
+ *  These are followed by any number of style and drawing commands, which are applied in order:
+ *  <pre>
+ *  fill ff8040            stroke 000000        noFill     noStroke
+ *  strokeWeight 2         roughness 1.5        bowing 1   fillGap 3
+ *  fillWeight 1           hachureAngle -41
+ *  rect 10 10 80 40       ellipse 100 75 50 30 line 0 0 200 150
+ *  triangle 10 140 50 100 90 140                quad 110 140 130 100 190 110 170 140
+ *  arc 150 40 60 60 0 3.14                      shape 10 10 40 10 25 30 ...
+ *  polyLine 0 75 50 60 100 90 150 60 200 75
+ *  </pre>
+ *  Colours are given as 6 digit (RRGGBB) or 8 digit (AARRGGBB) hexadecimal values. Presets are
+ *  <code>pencil</code>, <code>colouredPencil</code>, <code>waterAndInk</code>, <code>marker</code>
+ *  or <code>none</code>. Scenes may be at most <code>MAX_SIZE</code> pixels wide or high and contain
+ *  at most <code>MAX_PIXELS</code> pixels. Blank lines and lines starting with <code>#</code> are
+ *  ignored, as are other invalid lines apart from an invalid size, which rejects the scene. Commands
+ *  are stored as operation codes and numeric arguments so that scenes are cheap to keep in memory
+ *  and to draw repeatedly.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class SceneDescription
+{
+	// ------------------------------- Class Variables -----------------------------------
+
+	// Names of each drawing or style command and the number of arguments each takes (-1 for any even number).
+	private static final String[] COMMANDS = {"fill", "noFill", "stroke", "noStroke", "strokeWeight",
+											  "roughness", "bowing", "fillGap", "fillWeight", "hachureAngle",
+											  "rect", "ellipse", "line", "triangle", "quad", "arc", "shape", "polyLine"};
+	private static final int[] NUM_ARGS   = {1, 0, 1, 0, 1,
+											 1, 1, 1, 1, 1,
+											 4, 4, 4, 6, 8, 6, -1, -1};
+
+	private static final int FILL          = 0;
+	private static final int NO_FILL       = 1;
+	private static final int STROKE        = 2;
+	private static final int NO_STROKE     = 3;
+	private static final int STROKE_WEIGHT = 4;
+	private static final int ROUGHNESS     = 5;
+	private static final int BOWING        = 6;
+	private static final int FILL_GAP      = 7;
+	private static final int FILL_WEIGHT   = 8;
+	private static final int HACHURE_ANGLE = 9;
+	private static final int RECT          = 10;
+	private static final int ELLIPSE       = 11;
+	private static final int LINE          = 12;
+	private static final int TRIANGLE      = 13;
+	private static final int QUAD          = 14;
+	private static final int ARC           = 15;
+	private static final int SHAPE         = 16;
+	private static final int POLYLINE      = 17;
+
+	/** Largest width or height of a scene in pixels. */
+	public static final int MAX_SIZE = 8192;
+
+	/** Largest number of pixels in a scene. */
+	public static final int MAX_PIXELS = 4096*4096;
+
+	// -------------------------------- Object Variables ---------------------------------
+
+	private String name;					// Name identifying the scene.
+	private int width, height;				// Size of the scene in pixels.
+	private long seed;						// Seed for the scene's random variation.
+	private HandyStyle style;				// Initial sketchy style.
+	private int bgColour;					// Background colour.
+	private String output;					// Name of output file, or null if not specified.
+
+	private int[] ops;						// Operation code, number of arguments and colour of each command.
+	private int numOps;
+	private float[] args;					// Numeric arguments of each command.
+	private int numArgs;
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates an empty white scene of the given size using the default handy style.
+	 *  @param name Name identifying the scene.
+	 *  @param width Width of the scene in pixels.
+	 *  @param height Height of the scene in pixels.
+	 *  @throws IllegalArgumentException If the scene exceeds the maximum size.
+	 */
+	public SceneDescription(String name, int width, int height)
+	{
+		checkSize(width,height);
+		this.name = name;
+		this.width = Math.max(1,width);
+		this.height = Math.max(1,height);
+		this.seed = 12345;
+		this.style = HandyStyle.DEFAULT;
+		this.bgColour = 0xffffffff;
+		this.output = null;
+		this.ops = new int[48];
+		this.args = new float[128];
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Reads a scene description from the given text file. The scene is named after the file.
+	 *  @param file File containing the scene description.
+	 *  @return Scene read from the file.
+	 *  @throws IOException If the file cannot be read.
+	 *  @throws IllegalArgumentException If the scene's size is invalid or exceeds the maximum size.
+	 */
+	public static SceneDescription read(File file) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try
+		{
+			String name = file.getName();
+			int dot = name.lastIndexOf('.');
+			return read(dot > 0 ? name.substring(0,dot) : name, reader);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/** Creates a scene from the given text description.
+	 *  @param name Name identifying the scene.
+	 *  @param text Text describing the scene.
+	 *  @return Scene described by the text.
+	 *  @throws IllegalArgumentException If the scene's size is invalid or exceeds the maximum size.
+	 */
+	public static SceneDescription parse(String name, String text)
+	{
+		try
+		{
+			return read(name, new BufferedReader(new StringReader(text)));
+		}
+		catch (IOException e)
+		{
+			// Should not happen when reading from a string.
+			System.err.println("Problem reading scene description: "+e);
+			return new SceneDescription(name,100,100);
+		}
+	}
+
+	/** Reports the name identifying this scene.
+	 *  @return Name of the scene.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/** Reports the width of the scene.
+	 *  @return Width of the scene in pixels.
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/** Reports the height of the scene.
+	 *  @return Height of the scene in pixels.
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/** Reports the seed used to generate the scene's random variation.
+	 *  @return Random number seed.
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	/** Sets the seed used to generate the scene's random variation, replacing any given in its description.
+	 *  @param seed Random number seed.
+	 */
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/** Reports the name of the file to which this scene should be written.
+	 *  @return Output file name, or null if none was specified.
+	 */
+	public String getOutput()
+	{
+		return output;
+	}
+
+	/** Draws the scene with the given renderer into the renderer's current graphics context. The renderer's
+	 *  seed and style are replaced with those of the scene so that a scene always looks the same however
+	 *  often it is drawn. This should be called between the graphics context's <code>beginDraw()</code>
+	 *  and <code>endDraw()</code>.
+	 *  @param handy Renderer with which to draw the scene.
+	 */
+	public void draw(HandyRenderer handy)
+	{
+		PGraphics g = handy.getGraphics();
+		g.background(bgColour);
+		g.fill(0xffffffff);
+		g.stroke(0xff000000);
+		g.strokeWeight(1);
+		handy.setStyle(style);
+		handy.setSeed(seed);
+
+		int a=0;
+		for (int i=0; i<numOps; i+=3)
+		{
+			int n = ops[i+1];
+			switch (ops[i])
+			{
+				case FILL:
+					g.fill(ops[i+2]);
+					break;
+				case NO_FILL:
+					g.noFill();
+					break;
+				case STROKE:
+					g.stroke(ops[i+2]);
+					break;
+				case NO_STROKE:
+					g.noStroke();
+					break;
+				case STROKE_WEIGHT:
+					g.strokeWeight(args[a]);
+					break;
+				case ROUGHNESS:
+					handy.setRoughness(args[a]);
+					break;
+				case BOWING:
+					handy.setBowing(args[a]);
+					break;
+				case FILL_GAP:
+					handy.setFillGap(args[a]);
+					break;
+				case FILL_WEIGHT:
+					handy.setFillWeight(args[a]);
+					break;
+				case HACHURE_ANGLE:
+					handy.setHachureAngle(args[a]);
+					break;
+				case RECT:
+					handy.rect(args[a],args[a+1],args[a+2],args[a+3]);
+					break;
+				case ELLIPSE:
+					handy.ellipse(args[a],args[a+1],args[a+2],args[a+3]);
+					break;
+				case LINE:
+					handy.line(args[a],args[a+1],args[a+2],args[a+3]);
+					break;
+				case TRIANGLE:
+					handy.triangle(args[a],args[a+1],args[a+2],args[a+3],args[a+4],args[a+5]);
+					break;
+				case QUAD:
+					handy.quad(args[a],args[a+1],args[a+2],args[a+3],args[a+4],args[a+5],args[a+6],args[a+7]);
+					break;
+				case ARC:
+					handy.arc(args[a],args[a+1],args[a+2],args[a+3],args[a+4],args[a+5]);
+					break;
+				case SHAPE:
+				case POLYLINE:
+				{
+					float[] xs = new float[n/2];
+					float[] ys = new float[n/2];
+					for (int p=0; p<n/2; p++)
+					{
+						xs[p] = args[a+p*2];
+						ys[p] = args[a+p*2+1];
+					}
+					if (ops[i] == SHAPE)
+					{
+						handy.shape(xs,ys);
+					}
+					else
+					{
+						handy.polyLine(xs,ys);
+					}
+					break;
+				}
+				default:
+					System.err.println("Unknown command in scene "+name+".");
+					return;
+			}
+			a += n;
+		}
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Creates a scene from the text provided by the given reader.
+	 *  @param name Name identifying the scene.
+	 *  @param reader Reader providing the scene description.
+	 *  @return Scene described by the text.
+	 *  @throws IOException If the text cannot be read.
+	 */
+	private static SceneDescription read(String name, BufferedReader reader) throws IOException
+	{
+		SceneDescription scene = new SceneDescription(name,100,100);
+		String line;
+		int lineNumber = 0;
+
+		while ((line = reader.readLine()) != null)
+		{
+			lineNumber++;
+			String[] tokens = line.trim().split("\\s+");
+			if ((tokens[0].length() == 0) || (tokens[0].startsWith("#")))
+			{
+				continue;
+			}
+
+			try
+			{
+				if (scene.readHeader(tokens) == false)
+				{
+					scene.readCommand(tokens);
+				}
+			}
+			catch (IllegalArgumentException e)
+			{
+				if (tokens[0].equals("size"))
+				{
+					// Drawing at a different size from that requested would give the wrong image.
+					throw new IllegalArgumentException("Invalid size in line "+lineNumber+" of scene "+name+": "+e.getMessage());
+				}
+				System.err.println("Ignoring line "+lineNumber+" of scene "+name+": "+e.getMessage());
+			}
+		}
+		return scene;
+	}
+
+	/** Applies the given header command to this scene.
+	 *  @param tokens Command name followed by its arguments.
+	 *  @return True if the tokens represent a header command, false otherwise.
+	 */
+	private boolean readHeader(String[] tokens)
+	{
+		String command = tokens[0];
+		if (command.equals("size"))
+		{
+			checkNumArgs(tokens,2);
+			int newWidth = Integer.parseInt(tokens[1]);
+			int newHeight = Integer.parseInt(tokens[2]);
+			checkSize(newWidth,newHeight);
+			width = Math.max(1,newWidth);
+			height = Math.max(1,newHeight);
+		}
+		else if (command.equals("seed"))
+		{
+			checkNumArgs(tokens,1);
+			seed = Long.parseLong(tokens[1]);
+		}
+		else if (command.equals("background"))
+		{
+			checkNumArgs(tokens,1);
+			bgColour = parseColour(tokens[1]);
+		}
+		else if (command.equals("output"))
+		{
+			checkNumArgs(tokens,1);
+			output = tokens[1];
+		}
+		else if (command.equals("preset"))
+		{
+			checkNumArgs(tokens,1);
+			String preset = tokens[1];
+			if (preset.equalsIgnoreCase("pencil"))
+			{
+				style = HandyPresets.getPencilStyle();
+			}
+			else if (preset.equalsIgnoreCase("colouredPencil"))
+			{
+				style = HandyPresets.getColouredPencilStyle();
+			}
+			else if (preset.equalsIgnoreCase("waterAndInk"))
+			{
+				style = HandyPresets.getWaterAndInkStyle();
+			}
+			else if (preset.equalsIgnoreCase("marker"))
+			{
+				style = HandyPresets.getMarkerStyle();
+			}
+			else if (preset.equalsIgnoreCase("none"))
+			{
+				style = HandyStyle.DEFAULT;
+			}
+			else
+			{
+				throw new IllegalArgumentException("unknown preset '"+preset+"'");
+			}
+		}
+		else
+		{
+			return false;
+		}
+		return true;
+	}
+
+	/** Adds the given style or drawing command to this scene.
+	 *  @param tokens Command name followed by its arguments.
+	 */
+	private void readCommand(String[] tokens)
+	{
+		int op = -1;
+		for (int i=0; i<COMMANDS.length; i++)
+		{
+			if (COMMANDS[i].equals(tokens[0]))
+			{
+				op = i;
+				break;
+			}
+		}
+		if (op < 0)
+		{
+			throw new IllegalArgumentException("unknown command '"+tokens[0]+"'");
+		}
+
+		int n = tokens.length-1;
+		if (NUM_ARGS[op] >= 0)
+		{
+			checkNumArgs(tokens,NUM_ARGS[op]);
+		}
+		else if ((n < 4) || (n%2 != 0))
+		{
+			throw new IllegalArgumentException(tokens[0]+" requires an even number of at least 4 coordinates");
+		}
+
+		// Colours are stored with the operation code rather than as numeric arguments.
+		int colour = 0;
+		if ((op == FILL) || (op == STROKE))
+		{
+			colour = parseColour(tokens[1]);
+			n = 0;
+		}
+		float[] values = new float[n];
+		for (int i=0; i<n; i++)
+		{
+			values[i] = Float.parseFloat(tokens[i+1]);
+		}
+
+		if (numOps+3 > ops.length)
+		{
+			int[] newOps = new int[ops.length*2];
+			System.arraycopy(ops,0,newOps,0,numOps);
+			ops = newOps;
+		}
+		ops[numOps++] = op;
+		ops[numOps++] = n;
+		ops[numOps++] = colour;
+
+		if (numArgs+n > args.length)
+		{
+			float[] newArgs = new float[Math.max(args.length*2,numArgs+n)];
+			System.arraycopy(args,0,newArgs,0,numArgs);
+			args = newArgs;
+		}
+		System.arraycopy(values,0,args,numArgs,n);
+		numArgs += n;
+	}
+
+	/** Checks that the given command has the expected number of arguments.
+	 *  @param tokens Command name followed by its arguments.
+	 *  @param numExpected Number of arguments expected.
+	 */
+	private static void checkNumArgs(String[] tokens, int numExpected)
+	{
+		if (tokens.length-1 != numExpected)
+		{
+			throw new IllegalArgumentException(tokens[0]+" requires "+numExpected+" argument"+(numExpected==1?"":"s"));
+		}
+	}
+
+	/** Checks that a scene of the given size can be drawn without using an unreasonable amount of memory.
+	 *  @param width Width of the scene in pixels.
+	 *  @param height Height of the scene in pixels.
+	 *  @throws IllegalArgumentException If the scene exceeds the maximum size.
+	 */
+	private static void checkSize(int width, int height)
+	{
+		if ((width > MAX_SIZE) || (height > MAX_SIZE) || ((long)width*height > MAX_PIXELS))
+		{
+			throw new IllegalArgumentException("scene of "+width+" x "+height+" pixels exceeds the maximum of "+
+											   MAX_SIZE+" pixels on each side and "+MAX_PIXELS+" pixels in total");
+		}
+	}
+
+	/** Converts a 6 or 8 digit hexadecimal colour into an ARGB colour value.
+	 *  @param hex Hexadecimal representation of the colour, optionally preceded by '#' or '0x'.
+	 *  @return ARGB colour. Colours without an alpha component are fully opaque.
+	 */
+	private static int parseColour(String hex)
+	{
+		String digits = hex;
+		if (digits.startsWith("#"))
+		{
+			digits = digits.substring(1);
+		}
+		else if (digits.startsWith("0x") || digits.startsWith("0X"))
+		{
+			digits = digits.substring(2);
+		}
+
+		if (digits.length() == 6)
+		{
+			return 0xff000000 | (int)Long.parseLong(digits,16);
+		}
+		if (digits.length() == 8)
+		{
+			return (int)Long.parseLong(digits,16);
+		}
+		throw new IllegalArgumentException("colour '"+hex+"' should have 6 or 8 hexadecimal digits");
+	}
+}
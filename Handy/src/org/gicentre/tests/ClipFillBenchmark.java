@@ -0,0 +1,184 @@
+package org.gicentre.tests;
+
+import org.gicentre.handy.HandyRenderer;
+
+import processing.core.PApplet;
+
+//*****************************************************************************************
+/** Sketch to compare the speed of swept and clipped hachuring of shapes. Swept hachures are
+ *  calculated by sweeping across the shape's edges, as is done for shapes below the clip fill
+ *  threshold. Star shapes with increasing numbers of vertices are hachured with each strategy
+ *  and the mean time per shape written to the console, together with the number of vertices
+ *  above which clipping becomes faster. This can be used to choose a value for
+ *  <code>HandyRenderer.setClipFillThreshold()</code>. The left shape is drawn with swept
+ *  hachures and the right with clipped ones. Press the up and down arrows to change the
+ *  number of vertices drawn.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can 
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  
+ * See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see 
+ * http://www.gnu.org/licenses/.
+ */
+
+@SuppressWarnings("serial")
+public class ClipFillBenchmark extends PApplet
+{
+	// ------------------------------ Starter method -------------------------------
+
+	/** Creates a simple application to compare hachuring strategies.
+	 *  @param args Command line arguments (ignored).
+	 */
+	public static void main(String[] args)
+	{
+		PApplet.main(new String[] {"org.gicentre.tests.ClipFillBenchmark"});
+	}
+
+	// ----------------------------- Object variables ------------------------------
+
+	private static final int[] NUM_VERTICES = {4,8,16,32,64,128,256,512,1024,2048,4096,8192,16384};
+	private static final int NUM_WARMUPS = 10;
+	private static final int NUM_REPEATS = 20;
+
+	private HandyRenderer h;
+	private int sizeIndex;
+
+	// ---------------------------- Processing methods -----------------------------
+
+	/** Sets up the sketch and times each hachuring strategy.
+	 */
+	public void setup()
+	{
+		size(1000,500);
+		smooth();
+		h = new HandyRenderer(this);
+		h.setSeed(1234);
+		sizeIndex = 6;
+
+		println("Vertices  Swept (ms)  Clipped (ms)");
+		int crossover = -1;
+		for (int n : NUM_VERTICES)
+		{
+			float[][] star = createStar(n,250,250,220);
+			float swept = timeFill(star,Integer.MAX_VALUE);
+			float clipped = timeFill(star,0);
+			println(nf(n,8)+"  "+nf(swept,6,3)+"     "+nf(clipped,8,3));
+			if ((crossover < 0) && (clipped < swept))
+			{
+				crossover = n;
+			}
+			else if (clipped >= swept)
+			{
+				crossover = -1;
+			}
+		}
+		if (crossover > 0)
+		{
+			println("Clipped hachuring is faster from about "+crossover+" vertices.");
+		}
+		else
+		{
+			println("Clipped hachuring was not faster for any shape.");
+		}
+		h.setClipFillThreshold(Integer.MAX_VALUE);
+	}
+
+	/** Draws the same shape with swept and clipped hachures.
+	 */
+	public void draw()
+	{
+		background(255);
+		float[][] star = createStar(NUM_VERTICES[sizeIndex],250,250,220);
+
+		fill(180,80,80);
+		stroke(0);
+		h.setClipFillThreshold(Integer.MAX_VALUE);
+		h.shape(star[0],star[1],true);
+
+		pushMatrix();
+		translate(500,0);
+		h.setClipFillThreshold(0);
+		h.shape(star[0],star[1],true);
+		popMatrix();
+
+		fill(0);
+		text(NUM_VERTICES[sizeIndex]+" vertices",10,height-10);
+		noLoop();
+	}
+
+	/** Changes the number of vertices drawn when the up or down arrow is pressed.
+	 */
+	public void keyPressed()
+	{
+		if (key == CODED)
+		{
+			if ((keyCode == UP) && (sizeIndex < NUM_VERTICES.length-1))
+			{
+				sizeIndex++;
+				loop();
+			}
+			else if ((keyCode == DOWN) && (sizeIndex > 0))
+			{
+				sizeIndex--;
+				loop();
+			}
+		}
+	}
+
+	// ------------------------------ Private methods ------------------------------
+
+	/** Reports the mean time taken to hachure the given shape.
+	 *  @param star x and y coordinates of the shape to hachure.
+	 *  @param threshold Clip fill threshold to use.
+	 *  @return Mean time per shape in milliseconds.
+	 */
+	private float timeFill(float[][] star, int threshold)
+	{
+		// Only time the hachures, not the outline.
+		noStroke();
+		fill(180,80,80);
+		h.setClipFillThreshold(threshold);
+		for (int i=0; i<NUM_WARMUPS; i++)
+		{
+			h.shape(star[0],star[1],true);
+		}
+		long start = System.nanoTime();
+		for (int i=0; i<NUM_REPEATS; i++)
+		{
+			h.shape(star[0],star[1],true);
+		}
+		return (System.nanoTime()-start)/(1e6f*NUM_REPEATS);
+	}
+
+	/** Creates a star shaped polygon with the given number of vertices.
+	 *  @param n Number of vertices.
+	 *  @param cx x coordinate of the centre of the star.
+	 *  @param cy y coordinate of the centre of the star.
+	 *  @param radius Radius of the star's outer points.
+	 *  @return Array holding the x and y coordinates of the star.
+	 */
+	private static float[][] createStar(int n, float cx, float cy, float radius)
+	{
+		float[] xs = new float[n];
+		float[] ys = new float[n];
+		for (int i=0; i<n; i++)
+		{
+			float angle = TWO_PI*i/n;
+			float r = (i%2 == 0) ? radius : radius*0.7f;
+			xs[i] = cx + r*cos(angle);
+			ys[i] = cy + r*sin(angle);
+		}
+		return new float[][] {xs,ys};
+	}
+}
@@ -129,12 +129,23 @@ public class GraphExample extends PApplet
 		
 		float barWidth = (height-50)/26f;
 		float cx = width*.66f;
+		float[] barXs = new float[data.length];
+		float[] barYs = new float[data.length];
+		float[] barWidths = new float[data.length];
+		float[] barHeights = new float[data.length];
+		for (int i=0; i<data.length; i++)
+		{
+			barXs[i] = cx;
+			barYs[i] = 10+i*barWidth;
+			barWidths[i] = data[i];
+			barHeights[i] = barWidth-4;
+		}
+		fill(162,187,243);
+		h.rects(barXs,barYs,barWidths,barHeights);
+		
 		for (int i=0; i<data.length; i++)
 		{
 			float barLength = data[i];
-			fill(162,187,243);
-			h.rect(cx,10+i*barWidth,barLength,barWidth-4);
-			
 			fill(100);
 			if (barLength>0)
 			{
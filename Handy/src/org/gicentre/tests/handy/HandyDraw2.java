@@ -307,6 +307,16 @@ public class HandyDraw2 extends PGraphics{
 		canvas.box(bWidth, bHeight, bDepth);
 	}
 
+	/** Draws the given text with sketchy glyph outlines.
+	 *  @param str Text to draw.
+	 *  @param x x coordinate of the text's position.
+	 *  @param y y coordinate of the text's position.
+	 */
+	@Override
+	public void text(String str, float x, float y) {
+		handyRenderer.text(str, x, y);
+	}
+
 	// -------------------------------- End of customised methods  --------------------------------
 	
 	@Override
@@ -1197,11 +1207,6 @@ public class HandyDraw2 extends PGraphics{
 		canvas.text(str, x, y, z);
 	}
 
-	@Override
-	public void text(String str, float x, float y) {
-		canvas.text(str, x, y);
-	}
-
 	@Override
 	public void text(String str) {
 		canvas.text(str);
@@ -0,0 +1,173 @@
+package org.gicentre.handy;
+
+import java.util.Arrays;
+import java.util.Random;
+
+//*****************************************************************************************
+/** Compares the speed of the scalar and vector implementations of the bulk kernels. Each
+ *  kernel is timed on arrays of increasing size and the time per value written to the console,
+ *  together with a check that both implementations give identical results. Run with:
+ *  <pre>
+ *  java --add-modules jdk.incubator.vector org.gicentre.handy.KernelBenchmark
+ *  </pre>
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+public class KernelBenchmark
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private static final int[] SIZES = {16,64,256,1024,4096,16384,65536,262144};
+	private static final int MIN_VALUES = 1<<24;	// Minimum number of values processed in each timing.
+	private static final int NUM_WARMUPS = 3;
+
+	private BulkKernels scalar, vector;
+	private float[] xs, ys, work1, work2, range;
+	private int furthest;							// Result of the most recent furthest point search.
+	private float sink;								// Prevents results being optimised away.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates the benchmark with random test data.
+	 */
+	private KernelBenchmark()
+	{
+		scalar = new BulkKernels();
+		vector = new VectorKernels();
+
+		int maxSize = SIZES[SIZES.length-1];
+		Random rand = new Random(1);
+		xs = new float[maxSize];
+		ys = new float[maxSize];
+		for (int i=0; i<maxSize; i++)
+		{
+			// A noisy line, typical of the detailed boundaries that are simplified.
+			xs[i] = i*0.1f + (float)rand.nextGaussian();
+			ys[i] = 100*(float)Math.sin(i*0.001) + (float)rand.nextGaussian();
+		}
+		work1 = new float[maxSize];
+		work2 = new float[maxSize];
+		range = new float[2];
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Runs the benchmark.
+	 *  @param args Command line arguments (ignored).
+	 */
+	public static void main(String[] args)
+	{
+		new KernelBenchmark().run();
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Times each kernel with each implementation and reports the results.
+	 */
+	private void run()
+	{
+		System.out.println("Comparing "+scalar.getName()+" and "+vector.getName()+" kernels (ns per value)");
+		System.out.println(String.format("%-10s %9s %10s %10s %8s %s","Kernel","Size","Scalar","Vector","Speedup","Identical"));
+
+		String[] kernelNames = {"range","offsets","transform","furthest"};
+		for (int k=0; k<kernelNames.length; k++)
+		{
+			for (int size : SIZES)
+			{
+				for (int w=0; w<NUM_WARMUPS; w++)
+				{
+					time(scalar,k,size);
+					time(vector,k,size);
+				}
+				double scalarTime = time(scalar,k,size);
+				float[] scalarResult = result(k,size);
+				double vectorTime = time(vector,k,size);
+				boolean isIdentical = Arrays.equals(scalarResult,result(k,size));
+
+				System.out.println(String.format("%-10s %9d %10.3f %10.3f %7.2fx %s",kernelNames[k],Integer.valueOf(size),
+												 Double.valueOf(scalarTime),Double.valueOf(vectorTime),
+												 Double.valueOf(scalarTime/vectorTime),Boolean.valueOf(isIdentical)));
+			}
+		}
+		if (sink == 42)
+		{
+			System.out.println();
+		}
+	}
+
+	/** Times repeated application of a kernel.
+	 *  @param kernels Implementation to time.
+	 *  @param kernel Index of the kernel to time.
+	 *  @param size Number of values processed by each application of the kernel.
+	 *  @return Mean time per value in nanoseconds.
+	 */
+	private double time(BulkKernels kernels, int kernel, int size)
+	{
+		int numRepeats = Math.max(1,MIN_VALUES/size);
+		long start = System.nanoTime();
+		for (int r=0; r<numRepeats; r++)
+		{
+			switch (kernel)
+			{
+				case 0:
+					kernels.range(xs,0,size,range);
+					sink += range[0]+range[1];
+					break;
+				case 1:
+					System.arraycopy(xs,0,work1,0,size);
+					kernels.offsets(work1,0,size,-2,2,1.5f);
+					sink += work1[size-1];
+					break;
+				case 2:
+					System.arraycopy(xs,0,work1,0,size);
+					System.arraycopy(ys,0,work2,0,size);
+					kernels.transform(work1,work2,0,size,0.8f,-0.6f,10,0.3f,0.4f,-5);
+					sink += work1[size-1]+work2[size-1];
+					break;
+				default:
+					furthest = kernels.furthestPoint(xs,ys,0,size-1,1);
+					sink += furthest;
+					break;
+			}
+		}
+		return (System.nanoTime()-start)/((double)numRepeats*size);
+	}
+
+	/** Provides the values produced by the most recent application of a kernel so that implementations can be compared.
+	 *  @param kernel Index of the kernel.
+	 *  @param size Number of values processed by the kernel.
+	 *  @return Values produced by the kernel.
+	 */
+	private float[] result(int kernel, int size)
+	{
+		switch (kernel)
+		{
+			case 0:
+				return range.clone();
+			case 1:
+				return Arrays.copyOf(work1,size);
+			case 2:
+				float[] points = Arrays.copyOf(work1,size*2);
+				System.arraycopy(work2,0,points,size,size);
+				return points;
+			default:
+				return new float[] {furthest};
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package org.gicentre.handy;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+//*****************************************************************************************
+/** Bulk kernels that use the JDK vector API to process as many values at once as the platform's
+ *  SIMD registers allow. Each kernel performs exactly the same floating point operations on each
+ *  value as the scalar kernels, so results are identical. Leftover values that do not fill a whole
+ *  vector are processed by the scalar kernels. Requires Java 17 or later, compiled and run with
+ *  <code>--add-modules jdk.incubator.vector</code>. This class is loaded by reflection from
+ *  <code>BulkKernels.getInstance()</code> so is never referenced directly by the main library.
+ *  @author agent.
+ *  @version 1.0, 19th October, 2026.
+ */
+// *****************************************************************************************
+
+/* This file is part of Handy sketchy drawing library. Handy is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Handy is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * source code (see COPYING.LESSER included with this source code). If not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+class VectorKernels extends BulkKernels
+{
+	// -------------------------------- Object Variables ---------------------------------
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	private static final int MIN_LENGTH = 4*SPECIES.length();	// Shorter arrays are faster with scalar kernels.
+
+	// ---------------------------------- Constructor ------------------------------------
+
+	/** Creates the vector implementation of the bulk kernels.
+	 */
+	VectorKernels()
+	{
+		if (SPECIES.length() < 2)
+		{
+			throw new UnsupportedOperationException("No SIMD support on this platform.");
+		}
+	}
+
+	// ------------------------------------- Methods -------------------------------------
+
+	/** Reports the name of this implementation of the kernels.
+	 *  @return Description of the kernels including the number of values processed at once.
+	 */
+	@Override
+	String getName()
+	{
+		return "vector ("+SPECIES.length()+" lanes)";
+	}
+
+	/** Finds the smallest and largest values in part of an array.
+	 *  @param values Values to search.
+	 *  @param start Index of the first value to consider.
+	 *  @param end Index one beyond the last value to consider. Must be greater than <code>start</code>.
+	 *  @param range Array into which the minimum and maximum values are placed.
+	 */
+	@Override
+	void range(float[] values, int start, int end, float[] range)
+	{
+		if (end-start < MIN_LENGTH)
+		{
+			super.range(values,start,end,range);
+			return;
+		}
+
+		int vecEnd = start + SPECIES.loopBound(end-start);
+		FloatVector min = FloatVector.fromArray(SPECIES,values,start);
+		FloatVector max = min;
+		for (int i=start+SPECIES.length(); i<vecEnd; i+=SPECIES.length())
+		{
+			FloatVector v = FloatVector.fromArray(SPECIES,values,i);
+			min = min.min(v);
+			max = max.max(v);
+		}
+		float minVal = min.reduceLanes(VectorOperators.MIN);
+		float maxVal = max.reduceLanes(VectorOperators.MAX);
+		for (int i=vecEnd; i<end; i++)
+		{
+			minVal = Math.min(minVal,values[i]);
+			maxVal = Math.max(maxVal,values[i]);
+		}
+		range[0] = minVal;
+		range[1] = maxVal;
+	}
+
+	/** Converts uniform random numbers between 0 and 1 into random offsets in place. Each value v becomes
+	 *  <code>scale*(v*(maxVal-minVal)+minVal)</code>.
+	 *  @param values Random numbers to convert.
+	 *  @param start Index of the first value to convert.
+	 *  @param end Index one beyond the last value to convert.
+	 *  @param minVal Offset corresponding to a random number of 0 before scaling.
+	 *  @param maxVal Offset corresponding to a random number of 1 before scaling.
+	 *  @param scale Scaling applied to each offset, usually the renderer's roughness.
+	 */
+	@Override
+	void offsets(float[] values, int start, int end, float minVal, float maxVal, float scale)
+	{
+		if (end-start < MIN_LENGTH)
+		{
+			super.offsets(values,start,end,minVal,maxVal,scale);
+			return;
+		}
+
+		float range = maxVal-minVal;
+		int vecEnd = start + SPECIES.loopBound(end-start);
+		for (int i=start; i<vecEnd; i+=SPECIES.length())
+		{
+			FloatVector.fromArray(SPECIES,values,i).mul(range).add(minVal).mul(scale).intoArray(values,i);
+		}
+		super.offsets(values,vecEnd,end,minVal,maxVal,scale);
+	}
+
+	/** Applies the affine transformation (a*x + b*y + c, d*x + e*y + f) to a set of points in place.
+	 *  @param xs x coordinates of the points.
+	 *  @param ys y coordinates of the points.
+	 *  @param start Index of the first point to transform.
+	 *  @param end Index one beyond the last point to transform.
+	 *  @param a Scaling of x coordinates contributing to the new x coordinate.
+	 *  @param b Scaling of y coordinates contributing to the new x coordinate.
+	 *  @param c Translation of the new x coordinate.
+	 *  @param d Scaling of x coordinates contributing to the new y coordinate.
+	 *  @param e Scaling of y coordinates contributing to the new y coordinate.
+	 *  @param f Translation of the new y coordinate.
+	 */
+	@Override
+	void transform(float[] xs, float[] ys, int start, int end, float a, float b, float c, float d, float e, float f)
+	{
+		if (end-start < MIN_LENGTH)
+		{
+			super.transform(xs,ys,start,end,a,b,c,d,e,f);
+			return;
+		}
+
+		int vecEnd = start + SPECIES.loopBound(end-start);
+		for (int i=start; i<vecEnd; i+=SPECIES.length())
+		{
+			FloatVector x = FloatVector.fromArray(SPECIES,xs,i);
+			FloatVector y = FloatVector.fromArray(SPECIES,ys,i);
+			x.mul(a).add(y.mul(b)).add(c).intoArray(xs,i);
+			x.mul(d).add(y.mul(e)).add(f).intoArray(ys,i);
+		}
+		super.transform(xs,ys,vecEnd,end,a,b,c,d,e,f);
+	}
+
+	/** Finds the vertex between two others that is furthest from the straight segment joining them. The
+	 *  largest distance is found with vectors and then the first vertex at that distance located.
+	 *  @param xs x coordinates of the line.
+	 *  @param ys y coordinates of the line.
+	 *  @param first Index of the vertex at the start of the segment.
+	 *  @param last Index of the vertex at the end of the segment.
+	 *  @param tolSq Squared distance that the furthest vertex must exceed.
+	 *  @return Index of the first of the furthest vertices, or -1 if no vertex is further than the tolerance.
+	 */
+	@Override
+	int furthestPoint(float[] xs, float[] ys, int first, int last, float tolSq)
+	{
+		int start = first+1;
+		if (last-start < MIN_LENGTH)
+		{
+			return super.furthestPoint(xs,ys,first,last,tolSq);
+		}
+
+		int vecEnd = start + SPECIES.loopBound(last-start);
+
+		float ax = xs[first];
+		float ay = ys[first];
+		float ex = xs[last]-ax;
+		float ey = ys[last]-ay;
+		float lenSq = ex*ex + ey*ey;
+		float invLenSq = (lenSq > 0) ? 1/lenSq : 0;
+
+		// Find the largest distance.
+		FloatVector maxDistSq = FloatVector.broadcast(SPECIES,tolSq);
+		for (int i=start; i<vecEnd; i+=SPECIES.length())
+		{
+			maxDistSq = maxDistSq.max(segmentDistSq(xs,ys,i,ax,ay,ex,ey,invLenSq));
+		}
+		float maxVal = maxDistSq.reduceLanes(VectorOperators.MAX);
+		for (int i=vecEnd; i<last; i++)
+		{
+			maxVal = Math.max(maxVal,segmentDistSq(xs[i]-ax,ys[i]-ay,ex,ey,invLenSq));
+		}
+		if (maxVal <= tolSq)
+		{
+			return -1;
+		}
+
+		// Find the first vertex at that distance.
+		for (int i=start; i<vecEnd; i+=SPECIES.length())
+		{
+			VectorMask<Float> isFurthest = segmentDistSq(xs,ys,i,ax,ay,ex,ey,invLenSq).eq(maxVal);
+			if (isFurthest.anyTrue())
+			{
+				return i + isFurthest.firstTrue();
+			}
+		}
+		for (int i=vecEnd; i<last; i++)
+		{
+			if (segmentDistSq(xs[i]-ax,ys[i]-ay,ex,ey,invLenSq) == maxVal)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// --------------------------------- Private methods ---------------------------------
+
+	/** Calculates the squared distances between a vector of points and a segment, performing the same
+	 *  operations as the scalar <code>segmentDistSq()</code>.
+	 *  @param xs x coordinates of the points.
+	 *  @param ys y coordinates of the points.
+	 *  @param i Index of the first point in the vector.
+	 *  @param ax x coordinate of the start of the segment.
+	 *  @param ay y coordinate of the start of the segment.
+	 *  @param ex x coordinate of the end of the segment relative to its start.
+	 *  @param ey y coordinate of the end of the segment relative to its start.
+	 *  @param invLenSq Reciprocal of the squared length of the segment, or 0 if it has zero length.
+	 *  @return Squared distances from each point to the nearest point on the segment.
+	 */
+	private static FloatVector segmentDistSq(float[] xs, float[] ys, int i, float ax, float ay, float ex, float ey, float invLenSq)
+	{
+		FloatVector px = FloatVector.fromArray(SPECIES,xs,i).sub(ax);
+		FloatVector py = FloatVector.fromArray(SPECIES,ys,i).sub(ay);
+		FloatVector u = px.mul(ex).add(py.mul(ey)).mul(invLenSq).max(0).min(1);
+		FloatVector dx = px.sub(u.mul(ex));
+		FloatVector dy = py.sub(u.mul(ey));
+		return dx.mul(dx).add(dy.mul(dy));
+	}
+}